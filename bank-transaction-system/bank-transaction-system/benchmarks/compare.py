@@ -0,0 +1,78 @@
+#!/usr/bin/env python3
+"""Compares two JMH JSON result files written by run-benchmarks.sh.
+
+For every benchmark present in both runs, prints the primary score
+(throughput or average time) and the allocation per operation reported by
+the GC profiler (gc.alloc.rate.norm, bytes/op), with the relative change.
+
+Usage: python3 compare.py results/<base>.json results/<candidate>.json
+"""
+import json
+import sys
+
+
+def load(path):
+    with open(path) as f:
+        runs = json.load(f)
+    results = {}
+    for run in runs:
+        name = run["benchmark"].rsplit(".", 2)
+        key = ".".join(name[-2:])
+        if run.get("params"):
+            key += " " + ",".join(f"{k}={v}" for k, v in sorted(run["params"].items()))
+        key += f" [{run['mode']}, {run['threads']}t]"
+        primary = run["primaryMetric"]
+        alloc = run.get("secondaryMetrics", {}).get("gc.alloc.rate.norm")
+        results[key] = {
+            "score": primary["score"],
+            "error": primary["scoreError"],
+            "unit": primary["scoreUnit"],
+            "mode": run["mode"],
+            "alloc": alloc["score"] if alloc else None,
+        }
+    return results
+
+
+def change(base, new):
+    if base in (None, 0) or new is None:
+        return ""
+    return f"{(new - base) / base * 100:+.1f}%"
+
+
+def verdict(mode, base, new, error):
+    # Higher is better for throughput, lower for time-per-op modes.
+    delta = new["score"] - base["score"]
+    if abs(delta) <= max(error, base["error"]):
+        return "~"
+    better = delta > 0 if mode == "thrpt" else delta < 0
+    return "better" if better else "WORSE"
+
+
+def main():
+    if len(sys.argv) != 3:
+        sys.exit(__doc__)
+    base, new = load(sys.argv[1]), load(sys.argv[2])
+
+    header = (f"{'benchmark':<60} {'base':>17} {'new':>17} {'change':>8} {'':>7}"
+              f" {'B/op base':>10} {'B/op new':>10} {'change':>8}")
+    print(header)
+    print("-" * len(header))
+    for key in sorted(base.keys() & new.keys()):
+        b, n = base[key], new[key]
+        print(f"{key:<60} "
+              f"{b['score']:>10.2f} {b['unit']:<6} "
+              f"{n['score']:>10.2f} {n['unit']:<6} "
+              f"{change(b['score'], n['score']):>8} "
+              f"{verdict(b['mode'], b, n, n['error']):>7} "
+              f"{b['alloc'] if b['alloc'] is not None else float('nan'):>10.1f} "
+              f"{n['alloc'] if n['alloc'] is not None else float('nan'):>10.1f} "
+              f"{change(b['alloc'], n['alloc']):>8}")
+
+    for key in sorted(base.keys() - new.keys()):
+        print(f"{key:<60} only in base")
+    for key in sorted(new.keys() - base.keys()):
+        print(f"{key:<60} only in new")
+
+
+if __name__ == "__main__":
+    main()
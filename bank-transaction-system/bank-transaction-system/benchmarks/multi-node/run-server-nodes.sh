@@ -0,0 +1,104 @@
+#!/usr/bin/env bash
+#
+# Runs several central server JVMs on this host against the one local
+# PostgreSQL, for trying the bank clients' load balancing
+# (central-server.transaction-urls, forward.balancing.*).
+#
+# Node i listens on BASE_PORT + i, keeps its ingest log in its own directory
+# and gets an equal share of MAX_DB_CONNECTIONS Hikari connections. Only
+# node 0 maintains transaction_log partitions. Logs go to
+# ../results/node-<port>.log. The script prints the clients' URL list and
+# keeps running until Ctrl-C, which stops every node.
+#
+# Only one node per database may run the in-memory account ledger, so funds
+# are never checked against two copies of a balance. Node 0 runs it; the
+# others start with transaction.ledger.remote-url pointing at node 0 and ask
+# it for every funds check, authenticated by a secret shared by all nodes
+# (TRANSACTION_LEDGER_SECRET; a random one per run unless set).
+#
+# Usage: ./run-server-nodes.sh [nodes]
+#   ./run-server-nodes.sh            # 3 nodes on 8080, 8090, 8100
+#   BASE_PORT=9000 STEP=1 ./run-server-nodes.sh 4
+#
+# Settings (environment):
+#   BASE_PORT           port of node 0                         (default 8080)
+#   STEP                port step between nodes                (default 10)
+#   MAX_DB_CONNECTIONS  Hikari connections across all nodes    (default 80)
+#   JAVA_OPTS           JVM options of each node               (default -Xms512m -Xmx1g)
+#   TRANSACTION_LEDGER_SECRET  secret of the ledger calls         (default random)
+set -euo pipefail
+
+cd "$(dirname "$0")"
+
+NODES=${1:-3}
+BASE_PORT=${BASE_PORT:-8080}
+STEP=${STEP:-10}
+MAX_DB_CONNECTIONS=${MAX_DB_CONNECTIONS:-80}
+JAVA_OPTS=${JAVA_OPTS:--Xms512m -Xmx1g}
+# Passed in the environment, not on the command line, so ps does not show it.
+export TRANSACTION_LEDGER_SECRET=${TRANSACTION_LEDGER_SECRET:-$(head -c 16 /dev/urandom | od -An -tx1 | tr -d ' \n')}
+
+echo "== building ../../server"
+(cd ../../server && mvn -B -q -DskipTests package)
+jar=$(ls ../../server/target/*.jar | grep -v original | head -n 1)
+
+mkdir -p ../results data
+pids=()
+stop_nodes() {
+    for pid in "${pids[@]}"; do
+        kill "$pid" 2>/dev/null || true
+    done
+    for pid in "${pids[@]}"; do
+        wait "$pid" 2>/dev/null || true
+    done
+}
+trap stop_nodes EXIT
+
+pool=$(( MAX_DB_CONNECTIONS / NODES ))
+urls=()
+
+# Starts node i in the background.
+start_node() {
+    local i=$1 port partitions=false ledger="http://localhost:${BASE_PORT}"
+    port=$(( BASE_PORT + i * STEP ))
+    if [ "$i" -eq 0 ]; then
+        partitions=true
+        ledger=""
+    fi
+    # shellcheck disable=SC2086
+    java $JAVA_OPTS -jar "$jar" \
+        --server.port="$port" \
+        --spring.datasource.hikari.maximum-pool-size="$pool" \
+        --spring.datasource.hikari.minimum-idle=2 \
+        --transaction.ingest.dir="data/ingest-log-${port}" \
+        --transaction.partitions.enabled="$partitions" \
+        --transaction.ledger.remote-url="$ledger" \
+        > "../results/node-${port}.log" 2>&1 &
+    pids+=($!)
+    urls+=("http://localhost:${port}/server/transaction/process")
+    echo "   node ${i}: port ${port}, pid $!"
+}
+
+# Node 0 must hold the ledger lock before the others call it.
+start_node 0
+health="${urls[0]%/server/transaction/process}/actuator/health"
+for _ in $(seq 1 120); do
+    if curl -fs "$health" > /dev/null; then
+        break
+    fi
+    sleep 1
+done
+curl -fs "$health" > /dev/null || { echo "${health} did not come up" >&2; exit 1; }
+
+for i in $(seq 1 $(( NODES - 1 ))); do
+    start_node "$i"
+done
+
+list=$(IFS=,; echo "${urls[*]}")
+echo
+echo "Node 0 runs the ledger, the other $(( NODES - 1 )) use it. Start the bank clients with:"
+echo "  --central-server.transaction-urls=${list}"
+echo "  --forward.balancing.strategy=trx-id-hash   (the default; or least-outstanding)"
+echo
+echo "Ctrl-C stops all nodes."
+wait
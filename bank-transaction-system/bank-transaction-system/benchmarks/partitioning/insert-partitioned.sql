@@ -0,0 +1,13 @@
+-- One group-commit batch as TransactionLogWriter writes it, against the
+-- partitioned table (trx_date derived from the id, as TrxIdDate does).
+-- BATCH rows per statement.
+INSERT INTO transaction_log (trx_id, trx_date, bank_id, customer_id, from_account, to_account, amount,
+                             currency, status, reason, request_timestamp, processed_timestamp,
+                             processing_time_ms)
+SELECT 'TRX-' || lpad(id::TEXT, 19, '0'),
+       (TIMESTAMP 'epoch' + ((id >> 23) + 1735689600000) * INTERVAL '1 millisecond')::DATE,
+       'BANK_A', 892345, '1234567890', '9876543210', 1250.75, 'INR', 'SUCCESS', 'Completed', now(), now(), 1
+FROM (SELECT (((extract(epoch FROM clock_timestamp()) * 1000)::BIGINT - 1735689600000) << 23)
+                 | (nextval('bench_seq') % 8192) AS id
+      FROM generate_series(1, :batch::INT)) ids
+ON CONFLICT (trx_id, trx_date) DO NOTHING RETURNING trx_id;
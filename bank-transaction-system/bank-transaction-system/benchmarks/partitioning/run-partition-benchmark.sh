@@ -0,0 +1,66 @@
+#!/usr/bin/env bash
+#
+# Insert throughput of transaction_log before (one unpartitioned table) and
+# after (daily partitions) partitioning, on top of a given amount of history.
+#
+# For each history size and layout the table is rebuilt and loaded, then
+# pgbench runs TransactionLogWriter-style multi-row INSERT ... ON CONFLICT
+# statements for DURATION seconds. Results go to
+# ../results/partition-insert-<commit>.csv.
+#
+# Needs psql and pgbench on the PATH; connection settings come from the
+# usual PG* environment variables. The database is dropped and recreated.
+#
+# Usage: ./run-partition-benchmark.sh [history rows ...]
+#   ./run-partition-benchmark.sh                      # 10M and 100M rows
+#   DURATION=30 ./run-partition-benchmark.sh 1000000
+#
+# Settings (environment):
+#   BENCH_DB   database to (re)create          (default bank_partition_bench)
+#   DAYS       days the history is spread over (default 30)
+#   CLIENTS    concurrent pgbench clients      (default 16)
+#   BATCH      rows per INSERT statement       (default 500)
+#   DURATION   seconds per measurement         (default 60)
+set -euo pipefail
+
+cd "$(dirname "$0")"
+
+BENCH_DB=${BENCH_DB:-bank_partition_bench}
+DAYS=${DAYS:-30}
+CLIENTS=${CLIENTS:-16}
+BATCH=${BATCH:-500}
+DURATION=${DURATION:-60}
+SIZES=("$@")
+if [ ${#SIZES[@]} -eq 0 ]; then
+    SIZES=(10000000 100000000)
+fi
+
+commit=$(git rev-parse --short HEAD)
+mkdir -p ../results
+out="../results/partition-insert-${commit}.csv"
+echo "layout,history_rows,batch,clients,statements_per_sec,rows_per_sec,latency_avg_ms,table_size_mb" > "$out"
+
+psql -v ON_ERROR_STOP=1 -d postgres -q -c "DROP DATABASE IF EXISTS ${BENCH_DB}" -c "CREATE DATABASE ${BENCH_DB}"
+
+for rows in "${SIZES[@]}"; do
+    for layout in heap partitioned; do
+        echo "== ${layout}, ${rows} historical rows: loading"
+        psql -v ON_ERROR_STOP=1 -d "$BENCH_DB" -q -v rows="$rows" -v days="$DAYS" -f "setup-${layout}.sql"
+        psql -d "$BENCH_DB" -q -c "CHECKPOINT"
+
+        echo "== ${layout}, ${rows} historical rows: inserting for ${DURATION}s"
+        report=$(pgbench -n -M prepared -c "$CLIENTS" -j "$CLIENTS" -T "$DURATION" -D batch="$BATCH" \
+            -f "insert-${layout}.sql" "$BENCH_DB")
+        tps=$(sed -n 's/^tps = \([0-9.]*\).*/\1/p' <<< "$report" | head -n 1)
+        latency=$(sed -n 's/^latency average = \([0-9.]*\) ms/\1/p' <<< "$report")
+        size=$(psql -d "$BENCH_DB" -At -c \
+            "SELECT round(sum(pg_total_relation_size(relid)) / 1048576.0)
+             FROM pg_partition_tree('transaction_log')")
+        rate=$(awk -v t="$tps" -v b="$BATCH" 'BEGIN { printf "%.0f", t * b }')
+
+        echo "   ${tps} statements/s = ${rate} rows/s, avg latency ${latency} ms"
+        echo "${layout},${rows},${BATCH},${CLIENTS},${tps},${rate},${latency},${size}" >> "$out"
+    done
+done
+
+echo "Results written to ${out}"
@@ -0,0 +1,42 @@
+-- "Before": the unpartitioned transaction_log (one heap, global unique
+-- B-tree on trx_id, BIGSERIAL primary key), loaded with :rows historical
+-- rows spread over the last :days days.
+--
+-- Indexes are built after the load, which is much faster than maintaining
+-- them row by row and leaves them as compact as a long-lived table's.
+
+DROP TABLE IF EXISTS transaction_log;
+DROP SEQUENCE IF EXISTS bench_seq;
+CREATE SEQUENCE bench_seq;
+
+CREATE TABLE transaction_log (
+    id BIGSERIAL,
+    trx_id VARCHAR(50) NOT NULL,
+    bank_id VARCHAR(20) NOT NULL,
+    customer_id BIGINT NOT NULL,
+    from_account VARCHAR(20) NOT NULL,
+    to_account VARCHAR(20) NOT NULL,
+    amount NUMERIC(18, 2) NOT NULL,
+    currency VARCHAR(10) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    reason VARCHAR(255),
+    request_timestamp TIMESTAMPTZ NOT NULL,
+    processed_timestamp TIMESTAMPTZ NOT NULL,
+    processing_time_ms BIGINT NOT NULL
+);
+
+-- trxIds in the bank clients' format: milliseconds since 2025-01-01 << 23 | sequence
+WITH p AS (
+    SELECT (extract(epoch FROM now()) * 1000)::BIGINT - :days::BIGINT * 86400000 AS start_ms,
+           (:days::BIGINT * 86400000) / :rows AS step_ms
+)
+INSERT INTO transaction_log (trx_id, bank_id, customer_id, from_account, to_account, amount, currency,
+                             status, reason, request_timestamp, processed_timestamp, processing_time_ms)
+SELECT 'TRX-' || lpad((((p.start_ms + g * p.step_ms - 1735689600000) << 23) | (g % 8192))::TEXT, 19, '0'),
+       'BANK_A', 892345, '1234567890', '9876543210', 1250.75, 'INR', 'SUCCESS', 'Completed',
+       to_timestamp((p.start_ms + g * p.step_ms) / 1000.0), to_timestamp((p.start_ms + g * p.step_ms) / 1000.0), 1
+FROM p, generate_series(1, :rows) g;
+
+ALTER TABLE transaction_log ADD PRIMARY KEY (id);
+ALTER TABLE transaction_log ADD CONSTRAINT transaction_log_trx_id_key UNIQUE (trx_id);
+VACUUM ANALYZE transaction_log;
@@ -0,0 +1,52 @@
+-- "After": transaction_log partitioned by day on trx_date, as in
+-- server/src/main/resources/schema.sql, with partitions for the last :days
+-- days and the next 7 (what TransactionLogPartitionManager keeps in place),
+-- loaded with :rows historical rows spread over the last :days days.
+
+DROP TABLE IF EXISTS transaction_log;
+DROP SEQUENCE IF EXISTS bench_seq;
+CREATE SEQUENCE bench_seq;
+
+CREATE TABLE transaction_log (
+    id BIGSERIAL NOT NULL,
+    trx_id VARCHAR(50) NOT NULL,
+    trx_date DATE NOT NULL,
+    bank_id VARCHAR(20) NOT NULL,
+    customer_id BIGINT NOT NULL,
+    from_account VARCHAR(20) NOT NULL,
+    to_account VARCHAR(20) NOT NULL,
+    amount NUMERIC(18, 2) NOT NULL,
+    currency VARCHAR(10) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    reason VARCHAR(255),
+    request_timestamp TIMESTAMPTZ NOT NULL,
+    processed_timestamp TIMESTAMPTZ NOT NULL,
+    processing_time_ms BIGINT NOT NULL
+) PARTITION BY RANGE (trx_date);
+
+CREATE TABLE transaction_log_undated PARTITION OF transaction_log
+    FOR VALUES FROM ('1970-01-01') TO ('1970-01-02');
+CREATE TABLE transaction_log_default PARTITION OF transaction_log DEFAULT;
+
+SELECT format('CREATE TABLE %I PARTITION OF transaction_log FOR VALUES FROM (%L) TO (%L)',
+              'transaction_log_p' || to_char(d, 'YYYYMMDD'), d, d + 1)
+FROM (SELECT g::DATE AS d
+      FROM generate_series((now() AT TIME ZONE 'UTC')::DATE - :days - 1,
+                           (now() AT TIME ZONE 'UTC')::DATE + 7, INTERVAL '1 day') g) days
+\gexec
+
+WITH p AS (
+    SELECT (extract(epoch FROM now()) * 1000)::BIGINT - :days::BIGINT * 86400000 AS start_ms,
+           (:days::BIGINT * 86400000) / :rows AS step_ms
+)
+INSERT INTO transaction_log (trx_id, trx_date, bank_id, customer_id, from_account, to_account, amount,
+                             currency, status, reason, request_timestamp, processed_timestamp,
+                             processing_time_ms)
+SELECT 'TRX-' || lpad((((p.start_ms + g * p.step_ms - 1735689600000) << 23) | (g % 8192))::TEXT, 19, '0'),
+       (TIMESTAMP 'epoch' + (p.start_ms + g * p.step_ms) * INTERVAL '1 millisecond')::DATE,
+       'BANK_A', 892345, '1234567890', '9876543210', 1250.75, 'INR', 'SUCCESS', 'Completed',
+       to_timestamp((p.start_ms + g * p.step_ms) / 1000.0), to_timestamp((p.start_ms + g * p.step_ms) / 1000.0), 1
+FROM p, generate_series(1, :rows) g;
+
+ALTER TABLE transaction_log ADD CONSTRAINT uk_trx_id UNIQUE (trx_id, trx_date);
+VACUUM ANALYZE transaction_log;
@@ -0,0 +1,23 @@
+#!/usr/bin/env bash
+#
+# Builds the JMH benchmarks for the current checkout and runs them with the
+# GC profiler, writing results/<commit>.json for compare.py.
+#
+# Usage: ./run-benchmarks.sh [extra JMH arguments, e.g. a benchmark regex]
+#   ./run-benchmarks.sh
+#   ./run-benchmarks.sh RequestDecodeBenchmark -f 3
+set -euo pipefail
+
+cd "$(dirname "$0")"
+
+commit=$(git rev-parse --short HEAD)
+if ! git diff --quiet HEAD -- ../server ../client-bank-a .; then
+    commit="${commit}-dirty"
+fi
+
+mvn -B -q clean package
+
+mkdir -p results
+java -jar target/benchmarks.jar -prof gc -rf json -rff "results/${commit}.json" "$@"
+
+echo "Results written to results/${commit}.json"
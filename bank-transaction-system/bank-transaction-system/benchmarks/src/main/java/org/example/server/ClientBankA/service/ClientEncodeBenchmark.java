@@ -0,0 +1,72 @@
+package org.example.server.ClientBankA.service;
+
+import org.example.server.ClientBankA.xml.TransactionRequestXml;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bank client side encoding of one TransactionRequestXml: the XML the
+ * clients have always sent versus the compact binary payload.
+ *
+ * Bytes on the wire for each encoding are printed once per fork.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClientEncodeBenchmark {
+
+    private XmlConverter xmlConverter;
+    private TransactionRequestXml request;
+
+    @Setup
+    public void setup() {
+        xmlConverter = new XmlConverter();
+        request = sampleRequest();
+        System.out.printf("%nPayload bytes: xml=%d, binary=%d%n",
+                xmlConverter.toXmlBytes(request).length,
+                TransactionPayloadEncoder.toBinary(request).length);
+    }
+
+    @Benchmark
+    public String xmlConverterToXml() {
+        return xmlConverter.toXml(request);
+    }
+
+    @Benchmark
+    public byte[] xmlConverterToXmlBytes() {
+        return xmlConverter.toXmlBytes(request);
+    }
+
+    @Benchmark
+    public byte[] binaryEncode() {
+        return TransactionPayloadEncoder.toBinary(request);
+    }
+
+    private static TransactionRequestXml sampleRequest() {
+        TransactionRequestXml r = new TransactionRequestXml();
+        r.setTrxId("TRX-0001234567890126849");
+        r.setBankId("BANK_A");
+        r.setCustomerId(892345L);
+        r.setFromAccount("1234567890");
+        r.setToAccount("9876543210");
+        r.setAmount(new BigDecimal("1250.75"));
+        r.setCurrency("INR");
+        r.setTimestamp(OffsetDateTime.parse("2025-09-23T15:41:32.456+05:30"));
+        return r;
+    }
+}
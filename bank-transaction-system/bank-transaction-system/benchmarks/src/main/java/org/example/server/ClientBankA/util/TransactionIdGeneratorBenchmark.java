@@ -0,0 +1,69 @@
+package org.example.server.ClientBankA.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TransactionIdGenerator.nextId() with one shared generator under 1, 8 and
+ * 64 concurrent callers, as on a busy bank client.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransactionIdGeneratorBenchmark {
+
+    private Path stateDir;
+    private TransactionIdGenerator generator;
+
+    @Setup
+    public void setup() throws IOException {
+        stateDir = Files.createTempDirectory("trx-id-bench");
+        generator = new TransactionIdGenerator(1, 0, stateDir.resolve("trx-id.hwm").toString(), 10000);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (var files = Files.list(stateDir)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(stateDir);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String nextId1Thread() {
+        return generator.nextId();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String nextId8Threads() {
+        return generator.nextId();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public String nextId64Threads() {
+        return generator.nextId();
+    }
+}
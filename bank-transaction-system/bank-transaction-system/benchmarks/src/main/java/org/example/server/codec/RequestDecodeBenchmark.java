@@ -0,0 +1,78 @@
+package org.example.server.codec;
+
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import org.example.server.ClientBankA.service.TransactionPayloadEncoder;
+import org.example.server.ClientBankA.service.XmlConverter;
+import org.example.server.ClientBankA.xml.TransactionRequestXml;
+import org.example.server.config.ServerConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server side decoding of one request body, as produced by a bank client:
+ * the shared XmlMapper (the original path), the fast XML decoder, and the
+ * compact binary decoder.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestDecodeBenchmark {
+
+    private XmlMapper xmlMapper;
+    private TransactionRequestXmlDecoder xmlDecoder;
+    private TransactionRequestBinaryDecoder binaryDecoder;
+    private byte[] xml;
+    private byte[] binary;
+
+    @Setup
+    public void setup() {
+        xmlMapper = new ServerConfig().xmlMapper();
+        xmlDecoder = new TransactionRequestXmlDecoder(xmlMapper);
+        binaryDecoder = new TransactionRequestBinaryDecoder();
+
+        TransactionRequestXml request = new TransactionRequestXml();
+        request.setTrxId("TRX-0001234567890126849");
+        request.setBankId("BANK_A");
+        request.setCustomerId(892345L);
+        request.setFromAccount("1234567890");
+        request.setToAccount("9876543210");
+        request.setAmount(new BigDecimal("1250.75"));
+        request.setCurrency("INR");
+        request.setTimestamp(OffsetDateTime.parse("2025-09-23T15:41:32.456+05:30"));
+
+        XmlConverter xmlConverter = new XmlConverter();
+        xml = xmlConverter.toXmlBytes(request);
+        binary = new TransactionPayloadEncoder(xmlConverter, "binary", false).encode(request);
+    }
+
+    @Benchmark
+    public org.example.server.model.TransactionRequestXml xmlMapperReadValue() throws IOException {
+        return xmlMapper.readValue(xml, org.example.server.model.TransactionRequestXml.class);
+    }
+
+    @Benchmark
+    public org.example.server.model.TransactionRequestXml fastXmlDecode() throws IOException {
+        return xmlDecoder.decode(xml, xml.length);
+    }
+
+    @Benchmark
+    public org.example.server.model.TransactionRequestXml binaryDecode() throws IOException {
+        return binaryDecoder.decode(binary);
+    }
+}
@@ -0,0 +1,75 @@
+package org.example.server.rules;
+
+import org.example.server.model.TransactionRequestXml;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The server's default rules.json, compiled, on a valid request (every rule
+ * runs), one rejected at the fromAccount check and one over the INR limit.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RuleEvaluationBenchmark {
+
+    private CompiledRuleSet rules;
+    private TransactionRequestXml valid;
+    private TransactionRequestXml invalidAccount;
+    private TransactionRequestXml overLimit;
+
+    @Setup
+    public void setup() throws IOException {
+        try (InputStream in = RuleEvaluationBenchmark.class.getResourceAsStream("/rules.json")) {
+            rules = RuleCompiler.compile(RuleEngine.read(in), 1, "rules.json");
+        }
+        valid = request("1234567890", "1250.75");
+        invalidAccount = request("12345X7890", "1250.75");
+        overLimit = request("1234567890", "250000.00");
+    }
+
+    @Benchmark
+    public String evaluateValid() {
+        return rules.evaluate(valid);
+    }
+
+    @Benchmark
+    public String evaluateInvalidAccount() {
+        return rules.evaluate(invalidAccount);
+    }
+
+    @Benchmark
+    public String evaluateOverLimit() {
+        return rules.evaluate(overLimit);
+    }
+
+    private static TransactionRequestXml request(String fromAccount, String amount) {
+        TransactionRequestXml r = new TransactionRequestXml();
+        r.setTrxId("TRX-0001234567890126849");
+        r.setBankId("BANK_A");
+        r.setCustomerId(892345L);
+        r.setFromAccount(fromAccount);
+        r.setToAccount("9876543210");
+        r.setAmount(new BigDecimal(amount));
+        r.setCurrency("INR");
+        r.setTimestamp(OffsetDateTime.parse("2025-09-23T15:41:32.456+05:30"));
+        return r;
+    }
+}
@@ -0,0 +1,134 @@
+package org.example.server.service;
+
+import org.example.server.repository.AccountBalanceRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * AccountLedgerService.transfer() with every transfer touching one hot
+ * account (half into it, half out of it, against 10,000 other accounts),
+ * under 1, 4, 16 and 64 concurrent callers, with hot-account slots off and
+ * on. With slots on, throughput should grow with the caller count up to the
+ * number of cores; with them off it stays at about the 1-thread figure.
+ *
+ * The account is made hot by contention during warm-up (threshold 100), so
+ * the 1-thread case runs the ordinary shard-locked path either way.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HotAccountBenchmark {
+
+    private static final String HOT = "1234567890";
+    private static final int OTHER_ACCOUNTS = 10_000;
+    private static final BigDecimal AMOUNT = new BigDecimal("10.00");
+
+    @Param({"false", "true"})
+    private boolean hotSlots;
+
+    private AccountLedgerService ledger;
+    private String[] others;
+
+    @Setup(Level.Trial)
+    public void setup() throws InterruptedException {
+        others = new String[OTHER_ACCOUNTS];
+        for (int i = 0; i < OTHER_ACCOUNTS; i++) {
+            others[i] = String.format("%010d", i);
+        }
+        AccountBalanceRepository repository = new AccountBalanceRepository() {
+            @Override
+            public void forEachBalance(BiConsumer<String, BigDecimal> consumer) {
+                consumer.accept(HOT, new BigDecimal("1000000000.00"));
+                for (String account : others) {
+                    consumer.accept(account, new BigDecimal("1000000000.00"));
+                }
+            }
+
+            @Override
+            public boolean tryAcquireLedgerLock() {
+                return true;
+            }
+
+            @Override
+            public void releaseLedgerLock() {
+            }
+
+            @Override
+            public boolean isLedgerLockHeld() {
+                return true;
+            }
+
+            @Override
+            public void claimLedger(String owner) {
+            }
+
+            @Override
+            public boolean isLedgerOwner(String owner) {
+                return true;
+            }
+
+            @Override
+            public void foldDeltas() {
+            }
+        };
+        ledger = new AccountLedgerService(repository, 64, 1000, "", 2000, "", 2000, hotSlots, 0, 100, 1000, 64);
+        ledger.load();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        ledger.stop();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public AccountLedgerService.TransferResult transfer1Thread() {
+        return transfer();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public AccountLedgerService.TransferResult transfer4Threads() {
+        return transfer();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public AccountLedgerService.TransferResult transfer16Threads() {
+        return transfer();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public AccountLedgerService.TransferResult transfer64Threads() {
+        return transfer();
+    }
+
+    private AccountLedgerService.TransferResult transfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String other = others[random.nextInt(OTHER_ACCOUNTS)];
+        return random.nextBoolean()
+                ? ledger.transfer(null, other, HOT, AMOUNT)
+                : ledger.transfer(null, HOT, other, AMOUNT);
+    }
+}
@@ -0,0 +1,44 @@
+-- wrk script: POSTs TransactionRequest XML to /server/transaction/process,
+-- as the bank clients do.
+--
+-- Every request carries a new trxId, TRX-yyyyMMdd-<run>-<thread>-<n>, dated
+-- today (UTC) so rows land in the current daily partition. RUN (environment)
+-- keeps ids of separate runs apart. Transfers alternate between the two seed
+-- accounts so balances stay level however long the run is.
+
+local run = os.getenv("RUN") or tostring(os.time())
+local day = os.date("!%Y%m%d")
+local threads = 0
+
+function setup(thread)
+    thread:set("thread_id", threads)
+    threads = threads + 1
+end
+
+function init(args)
+    counter = 0
+    prefix = "TRX-" .. day .. "-" .. run .. "-" .. thread_id .. "-"
+end
+
+local headers = { ["Content-Type"] = "application/xml" }
+
+local template = [[<TransactionRequest>
+<TrxId>%s</TrxId>
+<BankId>BANK_A</BankId>
+<CustomerId>1001</CustomerId>
+<FromAccount>%s</FromAccount>
+<ToAccount>%s</ToAccount>
+<Amount>1.00</Amount>
+<Currency>INR</Currency>
+<Timestamp>2025-01-01T00:00:00Z</Timestamp>
+</TransactionRequest>]]
+
+function request()
+    counter = counter + 1
+    local from, to = "1234567890", "9876543210"
+    if counter % 2 == 0 then
+        from, to = to, from
+    end
+    local body = string.format(template, prefix .. counter, from, to)
+    return wrk.format("POST", nil, headers, body)
+end
@@ -0,0 +1,125 @@
+#!/usr/bin/env bash
+#
+# Side-by-side load test of the two server builds under the same load:
+#   servlet  - ../../server          (Tomcat + transactionExecutor + JDBC)
+#   reactive - ../../server-reactive (WebFlux on Netty + R2DBC)
+#
+# Each build in turn is started against the same database, warmed up, and
+# then driven by wrk with CONNECTIONS concurrent keep-alive clients posting
+# TransactionRequest XML (post-transaction.lua) for DURATION seconds.
+# transaction_log is emptied before each build so both start alike.
+# Results go to ../results/stack-comparison-<commit>.csv, alongside each
+# build's log and full wrk report.
+#
+# Needs wrk, psql, curl and a JDK on the PATH, PostgreSQL reachable as in
+# both application.yml files (psql uses the usual PG* variables), and a
+# file-descriptor limit above CONNECTIONS for wrk and the servers.
+#
+# Usage: ./run-stack-comparison.sh [servlet] [reactive]
+#   ./run-stack-comparison.sh                          # both, 8000 clients
+#   CONNECTIONS=2000 DURATION=30 ./run-stack-comparison.sh reactive
+#
+# Settings (environment):
+#   CONNECTIONS  concurrent clients            (default 8000)
+#   THREADS      wrk threads                   (default 16)
+#   DURATION     seconds measured per build    (default 60)
+#   WARMUP       seconds of warm-up per build  (default 20)
+#   DB           database of both builds       (default banktransdb)
+#   JAVA_OPTS    JVM options of the servers    (default -Xms2g -Xmx2g)
+set -euo pipefail
+
+cd "$(dirname "$0")"
+
+CONNECTIONS=${CONNECTIONS:-8000}
+THREADS=${THREADS:-16}
+DURATION=${DURATION:-60}
+WARMUP=${WARMUP:-20}
+DB=${DB:-banktransdb}
+JAVA_OPTS=${JAVA_OPTS:--Xms2g -Xmx2g}
+STACKS=("$@")
+if [ ${#STACKS[@]} -eq 0 ]; then
+    STACKS=(servlet reactive)
+fi
+
+URL=http://localhost:8080/server/transaction/process
+HEALTH=http://localhost:8080/actuator/health
+
+commit=$(git rev-parse --short HEAD)
+mkdir -p ../results
+out="../results/stack-comparison-${commit}.csv"
+echo "stack,connections,duration_s,requests_per_sec,latency_p50_ms,latency_p99_ms,non_2xx,socket_errors,rows_logged" > "$out"
+
+module_of() {
+    case "$1" in
+        servlet) echo ../../server ;;
+        reactive) echo ../../server-reactive ;;
+        *) echo "Unknown stack: $1" >&2; exit 1 ;;
+    esac
+}
+
+# wrk prints latencies as 950.00us / 12.34ms / 1.20s
+to_ms() {
+    awk -v v="$1" 'BEGIN {
+        if (v ~ /us$/) { sub(/us$/, "", v); printf "%.3f", v / 1000 }
+        else if (v ~ /ms$/) { sub(/ms$/, "", v); printf "%.3f", v }
+        else if (v ~ /s$/) { sub(/s$/, "", v); printf "%.3f", v * 1000 }
+        else print v
+    }'
+}
+
+server_pid=
+stop_server() {
+    if [ -n "$server_pid" ]; then
+        kill "$server_pid" 2>/dev/null || true
+        wait "$server_pid" 2>/dev/null || true
+        server_pid=
+    fi
+}
+trap stop_server EXIT
+
+for stack in "${STACKS[@]}"; do
+    module=$(module_of "$stack")
+    echo "== ${stack}: building ${module}"
+    (cd "$module" && mvn -B -q -DskipTests package)
+    jar=$(ls "$module"/target/*.jar | grep -v original | head -n 1)
+
+    psql -v ON_ERROR_STOP=1 -d "$DB" -q -c "TRUNCATE transaction_log" 2>/dev/null || true
+
+    echo "== ${stack}: starting ${jar}"
+    # shellcheck disable=SC2086
+    java $JAVA_OPTS -jar "$jar" > "../results/stack-comparison-${commit}-${stack}.log" 2>&1 &
+    server_pid=$!
+    for _ in $(seq 1 120); do
+        if curl -fs "$HEALTH" > /dev/null; then
+            break
+        fi
+        sleep 1
+    done
+    curl -fs "$HEALTH" > /dev/null || { echo "${stack} did not come up" >&2; exit 1; }
+
+    echo "== ${stack}: warming up for ${WARMUP}s"
+    RUN="warmup$(date +%s)" wrk -t "$THREADS" -c "$CONNECTIONS" -d "${WARMUP}s" \
+        -s post-transaction.lua "$URL" > /dev/null
+    before=$(psql -d "$DB" -At -c "SELECT count(*) FROM transaction_log")
+
+    echo "== ${stack}: ${CONNECTIONS} clients for ${DURATION}s"
+    report=$(RUN="run$(date +%s)" wrk -t "$THREADS" -c "$CONNECTIONS" -d "${DURATION}s" --timeout 30s \
+        --latency -s post-transaction.lua "$URL")
+    echo "$report" > "../results/stack-comparison-${commit}-${stack}.txt"
+    after=$(psql -d "$DB" -At -c "SELECT count(*) FROM transaction_log")
+
+    rps=$(sed -n 's/^Requests\/sec: *\([0-9.]*\).*/\1/p' <<< "$report")
+    p50=$(to_ms "$(awk '$1 == "50%" { print $2 }' <<< "$report")")
+    p99=$(to_ms "$(awk '$1 == "99%" { print $2 }' <<< "$report")")
+    non2xx=$(sed -n 's/^ *Non-2xx or 3xx responses: *\([0-9]*\).*/\1/p' <<< "$report")
+    errors=$(sed -n 's/^ *Socket errors: connect \([0-9]*\), read \([0-9]*\), write \([0-9]*\), timeout \([0-9]*\).*/\1+\2+\3+\4/p' <<< "$report")
+    errors=$(( ${errors:-0} ))
+    rows=$(( after - before ))
+
+    echo "   ${rps} req/s, p50 ${p50} ms, p99 ${p99} ms, non-2xx ${non2xx:-0}, socket errors ${errors}, ${rows} rows"
+    echo "${stack},${CONNECTIONS},${DURATION},${rps},${p50},${p99},${non2xx:-0},${errors},${rows}" >> "$out"
+
+    stop_server
+done
+
+echo "Results written to ${out}"
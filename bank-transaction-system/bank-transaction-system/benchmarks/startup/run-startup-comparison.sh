@@ -0,0 +1,228 @@
+#!/usr/bin/env bash
+#
+# Time to first successful transaction and resident memory of the server
+# and the bank clients in each startup mode:
+#   jvm      - java -jar, as today
+#   cds      - unpacked jar on the class path with an AppCDS archive
+#              (-XX:SharedArchiveFile, created by a training run)
+#   aot-cds  - as cds, plus the Spring AOT-generated context
+#              (-Dspring.aot.enabled=true)
+#   native   - GraalVM native image (skipped if native-image is not on the PATH)
+#
+# Each module is built once with -Pnative package (jar with AOT classes) and,
+# for native, -Pnative native:compile. A run starts the process and sends one
+# transaction after another until the first SUCCESS:
+#   server   - TransactionRequest XML to /server/transaction/process
+#   clients  - JSON to /bank/transaction, then the long-poll
+#              /bank/transaction/{trxId}/result; the server runs alongside
+#              in jvm mode, started once
+# The time from launch to that SUCCESS and the process RSS right after it are
+# recorded. Each run gets a fresh ingest log / outbox directory.
+# Results go to ../results/startup-<commit>.csv, one row per run, with each
+# run's log next to it.
+#
+# Needs curl, unzip, a JDK 21 on the PATH (GraalVM for JDK 21 for native),
+# GNU date, and PostgreSQL reachable as in server/application.yml.
+#
+# Usage: ./run-startup-comparison.sh [module...]
+#   ./run-startup-comparison.sh                       # server, client-bank-a, client-bank-b
+#   RUNS=5 MODES="jvm native" ./run-startup-comparison.sh server
+#
+# Settings (environment):
+#   RUNS       measured runs per module and mode          (default 3)
+#   MODES      modes to measure                           (default jvm cds aot-cds native)
+#   JAVA_OPTS  JVM options of the measured JVM modes      (default -Xms512m -Xmx1g)
+set -euo pipefail
+
+cd "$(dirname "$0")"
+
+RUNS=${RUNS:-3}
+MODES=${MODES:-jvm cds aot-cds native}
+JAVA_OPTS=${JAVA_OPTS:--Xms512m -Xmx1g}
+MODULES=("$@")
+if [ ${#MODULES[@]} -eq 0 ]; then
+    MODULES=(server client-bank-a client-bank-b)
+fi
+
+commit=$(git rev-parse --short HEAD)
+mkdir -p ../results
+results=$(cd ../results && pwd)
+out="${results}/startup-${commit}.csv"
+echo "module,mode,run,first_success_ms,rss_mb" > "$out"
+
+if ! command -v native-image > /dev/null; then
+    echo "native-image not found; native mode is skipped"
+    MODES=$(tr ' ' '\n' <<< "$MODES" | grep -vx native | tr '\n' ' ')
+fi
+
+port_of() {
+    case "$1" in
+        server) echo 8080 ;;
+        client-bank-a) echo 8081 ;;
+        client-bank-b) echo 8082 ;;
+        *) echo "Unknown module: $1" >&2; exit 1 ;;
+    esac
+}
+
+now_ms() {
+    echo $(( $(date +%s%N) / 1000000 ))
+}
+
+# Processes are started from command substitutions, so they are not children
+# of this shell: wait for them to exit by polling.
+stop() {
+    kill "$1" 2>/dev/null || true
+    while kill -0 "$1" 2>/dev/null; do
+        sleep 0.1
+    done
+}
+
+support_pid=
+measured_pid=
+stop_all() {
+    if [ -n "$measured_pid" ]; then
+        stop "$measured_pid"
+    fi
+    if [ -n "$support_pid" ]; then
+        stop "$support_pid"
+    fi
+}
+trap stop_all EXIT
+
+# Sends transactions to module until one succeeds, for up to 180 s.
+seq_no=0
+first_success() {
+    local module=$1 port=$2 deadline=$(( $(date +%s) + 180 ))
+    while [ "$(date +%s)" -lt "$deadline" ]; do
+        seq_no=$(( seq_no + 1 ))
+        if [ "$module" = server ]; then
+            local trx_id
+            trx_id="TRX-$(date -u +%Y%m%d)-startup$$-${seq_no}"
+            if curl -fs -m 5 -H 'Content-Type: application/xml' \
+                --data "<TransactionRequest><TrxId>${trx_id}</TrxId><BankId>BANK_A</BankId><CustomerId>1001</CustomerId><FromAccount>1234567890</FromAccount><ToAccount>9876543210</ToAccount><Amount>1.00</Amount><Currency>INR</Currency></TransactionRequest>" \
+                "http://localhost:${port}/server/transaction/process" | grep -q '"status":"SUCCESS"'; then
+                return 0
+            fi
+        else
+            local trx_id
+            trx_id=$(curl -fs -m 5 -H 'Content-Type: application/json' \
+                --data '{"customerId":1001,"fromAccount":"1234567890","toAccount":"9876543210","amount":1.00,"currency":"INR"}' \
+                "http://localhost:${port}/bank/transaction" | sed -n 's/.*"trxId":"\([^"]*\)".*/\1/p') || true
+            if [ -n "$trx_id" ] && curl -fs -m 15 \
+                "http://localhost:${port}/bank/transaction/${trx_id}/result?timeoutMs=10000" \
+                | grep -q '"status":"SUCCESS"'; then
+                return 0
+            fi
+        fi
+        sleep 0.05
+    done
+    return 1
+}
+
+# Starts module in mode with per-run directories; prints the pid.
+launch() {
+    local module=$1 mode=$2 work=$3 log=$4 args
+    if [ "$module" = server ]; then
+        args="--transaction.ingest.dir=${work}/run/ingest"
+    else
+        args="--outbox.dir=${work}/run/outbox"
+    fi
+    rm -rf "${work}/run"
+    mkdir -p "${work}/run"
+    case "$mode" in
+        jvm)
+            # shellcheck disable=SC2086
+            (cd "$work" && exec java $JAVA_OPTS -jar "${work}/app.jar" $args) > "$log" 2>&1 &
+            ;;
+        cds | aot-cds)
+            local aot=false
+            if [ "$mode" = aot-cds ]; then
+                aot=true
+            fi
+            # shellcheck disable=SC2086
+            (cd "$work" && exec java $JAVA_OPTS -XX:SharedArchiveFile="${work}/${mode}.jsa" -XX:+AutoCreateSharedArchive \
+                -Dspring.aot.enabled=$aot -cp "${work}/exploded/BOOT-INF/classes:${work}/exploded/BOOT-INF/lib/*" \
+                "$(cat "${work}/main-class")" $args) > "$log" 2>&1 &
+            ;;
+        native)
+            # shellcheck disable=SC2086
+            (cd "$work" && exec "${work}/app-native" $args) > "$log" 2>&1 &
+            ;;
+    esac
+    echo $!
+}
+
+build() {
+    local module=$1 work=$2
+    echo "== ${module}: building"
+    (cd "../../${module}" && mvn -B -q -DskipTests -Pnative package)
+    local jar
+    jar=$(ls "../../${module}"/target/*.jar | grep -v original | head -n 1)
+    rm -rf "$work"
+    mkdir -p "$work"
+    cp "$jar" "${work}/app.jar"
+    unzip -q "${work}/app.jar" -d "${work}/exploded"
+    unzip -p "${work}/app.jar" META-INF/MANIFEST.MF | sed -n 's/^Start-Class: *//p' | tr -d '\r' > "${work}/main-class"
+    if grep -qw native <<< "$MODES"; then
+        echo "== ${module}: building native image"
+        (cd "../../${module}" && mvn -B -q -DskipTests -Pnative native:compile)
+        cp "$(find "../../${module}/target" -maxdepth 1 -type f -perm -u+x ! -name '*.jar' | head -n 1)" \
+            "${work}/app-native"
+    fi
+}
+
+# The clients need a server to succeed against: the server jar in jvm mode.
+start_support_server() {
+    local work
+    work="$(pwd)/target/server-support"
+    if ! ls ../../server/target/*.jar > /dev/null 2>&1; then
+        (cd ../../server && mvn -B -q -DskipTests package)
+    fi
+    rm -rf "$work"
+    mkdir -p "$work"
+    cp "$(ls ../../server/target/*.jar | grep -v original | head -n 1)" "${work}/app.jar"
+    echo "== starting the server for the clients"
+    support_pid=$(launch server jvm "$work" "${results}/startup-${commit}-support-server.log")
+    first_success server 8080 || { echo "server did not come up" >&2; exit 1; }
+}
+
+for module in "${MODULES[@]}"; do
+    port=$(port_of "$module")
+    work="$(pwd)/target/${module}"
+    build "$module" "$work"
+
+    if [ "$module" != server ] && [ -z "$support_pid" ]; then
+        start_support_server
+    fi
+
+    for mode in $MODES; do
+        if [ "$mode" = cds ] || [ "$mode" = aot-cds ]; then
+            echo "== ${module} ${mode}: training run for the CDS archive"
+            rm -f "${work}/${mode}.jsa"
+            measured_pid=$(launch "$module" "$mode" "$work" "${results}/startup-${commit}-${module}-${mode}-training.log")
+            first_success "$module" "$port" || { echo "${module} ${mode} did not come up" >&2; exit 1; }
+            # The archive is written when the JVM exits normally.
+            stop "$measured_pid"
+        fi
+
+        for run in $(seq 1 "$RUNS"); do
+            log="${results}/startup-${commit}-${module}-${mode}-${run}.log"
+            start=$(now_ms)
+            measured_pid=$(launch "$module" "$mode" "$work" "$log")
+            if ! first_success "$module" "$port"; then
+                echo "${module} ${mode} run ${run} did not succeed; see ${log}" >&2
+                exit 1
+            fi
+            elapsed=$(( $(now_ms) - start ))
+            rss_kb=$(ps -o rss= -p "$measured_pid" | tr -d ' ')
+            rss_mb=$(awk -v kb="$rss_kb" 'BEGIN { printf "%.1f", kb / 1024 }')
+            stop "$measured_pid"
+            measured_pid=
+
+            echo "   ${module} ${mode} run ${run}: first SUCCESS after ${elapsed} ms, RSS ${rss_mb} MB"
+            echo "${module},${mode},${run},${elapsed},${rss_mb}" >> "$out"
+        done
+    done
+done
+
+echo "Results written to ${out}"
@@ -5,15 +5,21 @@ import com.fasterxml.jackson.dataformat.xml.XmlMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
 import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 @Configuration
+@ImportRuntimeHints(ClientRuntimeHints.class)
 public class ClientConfig {
 
     /**
@@ -21,19 +27,45 @@ public class ClientConfig {
      * from Bank A client to the central server.
      */
     @Bean(destroyMethod = "shutdown")
-    public ExecutorService forwardExecutor() {
+    public ExecutorService forwardExecutor(
+            @Value("${forward.executor.pool-size:50}") int poolSize,
+            @Value("${forward.executor.virtual-threads:false}") boolean virtualThreads,
+            @Value("${forward.executor.max-concurrency:${forward.http.max-connections:200}}") int maxConcurrency) {
+        if (virtualThreads) {
+            // One virtual thread per forward, capped at the HTTP connection pool size
+            return new BoundedVirtualThreadExecutor("forward-vt-", maxConcurrency);
+        }
         // Tune this size based on expected concurrency from this client
-        return Executors.newFixedThreadPool(50);
+        return Executors.newFixedThreadPool(poolSize);
+    }
+
+    /**
+     * In virtual-thread mode Tomcat handles each request on its own virtual
+     * thread instead of its platform worker pool.
+     *
+     * The flag is read at runtime rather than with @ConditionalOnProperty,
+     * whose outcome a native image fixes at AOT build time.
+     */
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer(
+            @Value("${forward.executor.virtual-threads:false}") boolean virtualThreads) {
+        return protocolHandler -> {
+            if (virtualThreads) {
+                protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+            }
+        };
     }
 
     /**
      * RestTemplate backed by Apache HttpClient5 with connection pooling.
      */
     @Bean
-    public RestTemplate restTemplate() {
+    public RestTemplate restTemplate(@Value("${forward.http.max-connections:200}") int maxConnections,
+                                     @Value("${forward.http.connect-timeout-ms:2000}") int connectTimeoutMs,
+                                     @Value("${forward.http.read-timeout-ms:5000}") int readTimeoutMs) {
         PoolingHttpClientConnectionManager cm = new PoolingHttpClientConnectionManager();
-        cm.setMaxTotal(200);
-        cm.setDefaultMaxPerRoute(200);
+        cm.setMaxTotal(maxConnections);
+        cm.setDefaultMaxPerRoute(maxConnections);
 
         var httpClient = HttpClients.custom()
                 .setConnectionManager(cm)
@@ -41,9 +73,31 @@ public class ClientConfig {
 
         HttpComponentsClientHttpRequestFactory factory =
                 new HttpComponentsClientHttpRequestFactory(httpClient);
-        factory.setConnectTimeout(2000);
-        factory.setReadTimeout(5000);
+        factory.setConnectTimeout(connectTimeoutMs);
+        factory.setReadTimeout(readTimeoutMs);
 
         return new RestTemplate(factory);
     }
+
+    /**
+     * Non-blocking JDK HttpClient used when forward.http.transport=async.
+     *
+     * Prefers HTTP/2: against the server's cleartext endpoint the first
+     * request upgrades the connection (h2c) and later forwards are
+     * multiplexed over it as concurrent streams. Responses are handled on a
+     * few async-threads instead of one pooled thread per in-flight forward.
+     */
+    @Bean
+    public HttpClient forwardHttpClient(@Value("${forward.http.connect-timeout-ms:2000}") long connectTimeoutMs,
+                                        @Value("${forward.http.async-threads:4}") int asyncThreads) {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .executor(Executors.newFixedThreadPool(asyncThreads, r -> {
+                    Thread t = new Thread(r, "forward-http");
+                    t.setDaemon(true);
+                    return t;
+                }))
+                .build();
+    }
 }
@@ -0,0 +1,36 @@
+package org.example.server.ClientBankA.config;
+
+import org.example.server.ClientBankA.dto.BankTransactionRequest;
+import org.example.server.ClientBankA.dto.BankTransactionResponse;
+import org.example.server.ClientBankA.dto.TransactionStatus;
+import org.example.server.ClientBankA.xml.TransactionRequestXml;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+/**
+ * Native-image hints for what Spring's AOT processing cannot find itself.
+ *
+ * - TransactionRequestXml: written by XmlConverter's XmlMapper, outside any
+ *   handler signature.
+ * - BankTransactionRequest, BankTransactionResponse, TransactionStatus: the
+ *   JSON bodies of /bank/transaction, returned inside
+ *   CompletableFuture<ResponseEntity<...>>. Registered explicitly rather
+ *   than relying on AOT to unwrap the generics.
+ *
+ * Server responses are only read as JSON trees (readTree), which needs no
+ * hints.
+ */
+public class ClientRuntimeHints implements RuntimeHintsRegistrar {
+
+    private final BindingReflectionHintsRegistrar bindingHints = new BindingReflectionHintsRegistrar();
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        bindingHints.registerReflectionHints(hints.reflection(),
+                TransactionRequestXml.class,
+                BankTransactionRequest.class,
+                BankTransactionResponse.class,
+                TransactionStatus.class);
+    }
+}
@@ -2,49 +2,69 @@ package org.example.server.ClientBankA.controller;
 
 import org.example.server.ClientBankA.dto.BankTransactionRequest;
 import org.example.server.ClientBankA.dto.BankTransactionResponse;
-import org.example.server.ClientBankA.service.ServerForwarder;
-import org.example.server.ClientBankA.service.XmlConverter;
+import org.example.server.ClientBankA.dto.TransactionStatus;
+import org.example.server.ClientBankA.service.ForwardOutbox;
+import org.example.server.ClientBankA.service.TransactionPayloadEncoder;
+import org.example.server.ClientBankA.service.TransactionStatusStore;
 import org.example.server.ClientBankA.util.TransactionIdGenerator;
 import org.example.server.ClientBankA.xml.TransactionRequestXml;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.OffsetDateTime;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * REST controller for Bank A.
  *
- * Endpoint:
+ * Endpoints:
  *   POST /bank/transaction
+ *   GET  /bank/transaction/{trxId}
+ *   GET  /bank/transaction/{trxId}/result?timeoutMs=
  *
  * Responsibilities:
  * - Accept JSON transaction request.
  * - Generate unique trxId.
- * - Map JSON DTO to XML model and convert to XML string.
- * - Forward XML asynchronously to the central server.
- * - Immediately respond with status "FORWARDED".
+ * - Map JSON DTO to XML model and encode it (XML, or the compact binary
+ *   format with forward.payload-format=binary).
+ * - Record the payload in the durable ForwardOutbox, which forwards it to the
+ *   central server in the background (with retries).
+ * - Respond with status "FORWARDED" once the outbox has it on disk.
+ * - Serve the status of forwarded transactions from the local
+ *   TransactionStatusStore, without a round trip to the server; /result
+ *   long-polls until the server's final status is known.
  */
 @RestController
 @RequestMapping("/bank")
 public class BankTransactionController {
 
     private final TransactionIdGenerator idGenerator;
-    private final XmlConverter xmlConverter;
-    private final ServerForwarder serverForwarder;
+    private final TransactionPayloadEncoder payloadEncoder;
+    private final ForwardOutbox outbox;
+    private final TransactionStatusStore statusStore;
+    private final long defaultPollTimeoutMs;
+    private final long maxPollTimeoutMs;
 
     public BankTransactionController(TransactionIdGenerator idGenerator,
-                                     XmlConverter xmlConverter,
-                                     ServerForwarder serverForwarder) {
+                                     TransactionPayloadEncoder payloadEncoder,
+                                     ForwardOutbox outbox,
+                                     TransactionStatusStore statusStore,
+                                     @Value("${status.long-poll.default-timeout-ms:25000}") long defaultPollTimeoutMs,
+                                     @Value("${status.long-poll.max-timeout-ms:50000}") long maxPollTimeoutMs) {
         this.idGenerator = idGenerator;
-        this.xmlConverter = xmlConverter;
-        this.serverForwarder = serverForwarder;
+        this.payloadEncoder = payloadEncoder;
+        this.outbox = outbox;
+        this.statusStore = statusStore;
+        this.defaultPollTimeoutMs = defaultPollTimeoutMs;
+        this.maxPollTimeoutMs = maxPollTimeoutMs;
     }
 
     /**
      * Handles incoming JSON transaction request and forwards it to the server.
      */
     @PostMapping("/transaction")
-    public ResponseEntity<BankTransactionResponse> handleTransaction(
+    public CompletableFuture<ResponseEntity<BankTransactionResponse>> handleTransaction(
             @RequestBody BankTransactionRequest request) {
 
         String trxId = idGenerator.nextId();
@@ -59,15 +79,46 @@ public class BankTransactionController {
         xmlRequest.setCurrency(request.getCurrency());
         xmlRequest.setTimestamp(OffsetDateTime.now());
 
-        String xml = xmlConverter.toXml(xmlRequest);
+        byte[] payload = payloadEncoder.encode(xmlRequest);
 
-        // Asynchronous forwarding, non-blocking for this HTTP thread
-        serverForwarder.forwardAsync(xml);
+        // Durable hand-off; forwarding itself happens in the background
+        CompletableFuture<Void> durable = outbox.submit(trxId, payload);
 
         BankTransactionResponse response =
                 new BankTransactionResponse(trxId, "FORWARDED",
                         "Transaction forwarded to server");
 
-        return ResponseEntity.accepted().body(response);
+        return durable.thenApply(v -> {
+            statusStore.forwarded(trxId);
+            return ResponseEntity.accepted().body(response);
+        });
+    }
+
+    /**
+     * Current status of a transaction: FORWARDED, or the server's result.
+     * 404 if unknown to this client or expired from the status store.
+     */
+    @GetMapping("/transaction/{trxId}")
+    public ResponseEntity<TransactionStatus> getStatus(@PathVariable String trxId) {
+        TransactionStatus status = statusStore.get(trxId);
+        return status != null ? ResponseEntity.ok(status) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Long poll: answers as soon as the server's result is known, or with
+     * FORWARDED after timeoutMs (capped at status.long-poll.max-timeout-ms).
+     */
+    @GetMapping("/transaction/{trxId}/result")
+    public CompletableFuture<ResponseEntity<TransactionStatus>> awaitResult(
+            @PathVariable String trxId,
+            @RequestParam(required = false) Long timeoutMs) {
+
+        long timeout = timeoutMs != null
+                ? Math.max(0, Math.min(timeoutMs, maxPollTimeoutMs))
+                : defaultPollTimeoutMs;
+        return statusStore.awaitSettled(trxId, timeout)
+                .thenApply(status -> status != null
+                        ? ResponseEntity.ok(status)
+                        : ResponseEntity.<TransactionStatus>notFound().build());
     }
 }
@@ -0,0 +1,162 @@
+package org.example.server.ClientBankA.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.server.ClientBankA.dto.TransactionStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Settles transactions the server answered ACCEPTED.
+ *
+ * A server with transaction.ingest.ack=DURABLE answers ACCEPTED as soon as a
+ * transaction is durably queued, and the outbox acks it on that answer; the
+ * outcome is only known later. ForwardOutbox hands such trxIds to track().
+ *
+ * Every interval-ms the resolver asks the node each tracked trxId routes to
+ * for its status (POST /server/transaction/status, at most batch-size trxIds
+ * per request). SUCCESS / FAILED is recorded in the TransactionStatusStore,
+ * which wakes up its long polls; PROCESSING and NOT_FOUND are asked again on
+ * the next run, as is everything after a failed request. A trxId still
+ * unresolved after give-up-minutes is dropped and stays ACCEPTED until the
+ * status store evicts it.
+ */
+@Component
+public class AcceptedStatusResolver {
+
+    private static final Logger log = LoggerFactory.getLogger(AcceptedStatusResolver.class);
+
+    private static final String SUCCESS = "SUCCESS";
+    private static final String FAILED = "FAILED";
+
+    private final ServerEndpoints endpoints;
+    private final TransactionStatusStore statusStore;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final long intervalMs;
+    private final int batchSize;
+    private final Duration requestTimeout;
+    private final long giveUpNanos;
+    // trxId -> System.nanoTime() when the server accepted it
+    private final ConcurrentHashMap<String, Long> accepted = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    // Set while lookups are failing, so an outage is logged once, not per run
+    private final AtomicBoolean failing = new AtomicBoolean();
+
+    public AcceptedStatusResolver(ServerEndpoints endpoints,
+                                  TransactionStatusStore statusStore,
+                                  HttpClient httpClient,
+                                  ObjectMapper objectMapper,
+                                  @Value("${status.resolver.interval-ms:1000}") long intervalMs,
+                                  @Value("${status.resolver.batch-size:1000}") int batchSize,
+                                  @Value("${status.resolver.timeout-ms:5000}") long timeoutMs,
+                                  @Value("${status.resolver.give-up-minutes:60}") long giveUpMinutes) {
+        this.endpoints = endpoints;
+        this.statusStore = statusStore;
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.intervalMs = intervalMs;
+        this.batchSize = batchSize;
+        this.requestTimeout = Duration.ofMillis(timeoutMs);
+        this.giveUpNanos = TimeUnit.MINUTES.toNanos(giveUpMinutes);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "status-resolver");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::resolve, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Keeps asking the server for trxId's outcome until it is final.
+     */
+    public void track(String trxId) {
+        accepted.putIfAbsent(trxId, System.nanoTime());
+    }
+
+    private void resolve() {
+        if (accepted.isEmpty()) {
+            return;
+        }
+        try {
+            long now = System.nanoTime();
+            Map<ServerEndpoints.Endpoint, List<String>> byEndpoint = new HashMap<>();
+            accepted.forEach((trxId, since) -> {
+                if (now - since > giveUpNanos) {
+                    accepted.remove(trxId, since);
+                } else {
+                    byEndpoint.computeIfAbsent(endpoints.choose(trxId), e -> new ArrayList<>()).add(trxId);
+                }
+            });
+            byEndpoint.forEach((endpoint, trxIds) -> {
+                for (int from = 0; from < trxIds.size(); from += batchSize) {
+                    lookup(endpoint, trxIds.subList(from, Math.min(trxIds.size(), from + batchSize)));
+                }
+            });
+        } catch (RuntimeException e) {
+            // Never let an exception cancel the schedule.
+            log.warn("Resolving accepted transactions failed", e);
+        }
+    }
+
+    private void lookup(ServerEndpoints.Endpoint endpoint, List<String> trxIds) {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(endpoint.statusUri())
+                    .timeout(requestTimeout)
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(trxIds)))
+                    .build();
+            HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() / 100 != 2) {
+                throw new IOException("Server answered " + response.statusCode());
+            }
+            for (JsonNode node : objectMapper.readTree(response.body())) {
+                String trxId = node.path("trxId").asText(null);
+                String status = node.path("status").asText(null);
+                if (trxId != null && (SUCCESS.equals(status) || FAILED.equals(status))
+                        && accepted.remove(trxId) != null) {
+                    statusStore.complete(new TransactionStatus(trxId, status, node.path("reason").asText(null), null));
+                }
+            }
+            if (failing.compareAndSet(true, false)) {
+                log.info("Status lookups recovered");
+            }
+        } catch (IOException e) {
+            if (failing.compareAndSet(false, true)) {
+                log.warn("Status lookup at {} failed, retrying: {}", endpoint, e.toString());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,46 +1,543 @@
 package org.example.server.ClientBankA.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.http.RequestEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
 
-import java.net.URI;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Asynchronous client for sending XML requests from Bank A to the central server.
+ *
+ * Modes:
+ * - Single (default): one POST to a server node's /process per transaction.
+ * - Batching (forward.batch.enabled=true): transactions are buffered and a
+ *   "forward-batcher" thread groups them into one <TransactionBatch> POST to
+ *   a node's /process-batch, as soon as forward.batch.size items are
+ *   buffered or forward.batch.linger-ms after the first one, whichever comes
+ *   first. The batcher does not wait for a batch's response, so several
+ *   batches can be in flight at once.
+ *
+ * In both modes the returned future completes with the server's JSON result
+ * for that transaction; in batching mode the NDJSON batch response is
+ * demultiplexed by trxId.
+ *
+ * The node for each request is picked by ServerEndpoints at send time, so a
+ * retry may go elsewhere. With trx-id-hash routing a batch is split into one
+ * request per node.
+ *
+ * Transports (forward.http.transport):
+ * - blocking: RestTemplate on the forward executor; each in-flight request
+ *   holds an executor thread and a pooled connection for its round trip.
+ * - async: the non-blocking JDK HttpClient over HTTP/2, so thousands of
+ *   requests share a few connections and threads. At most
+ *   forward.http.max-in-flight requests are outstanding at once.
+ *
+ * Back-pressure: when the batch buffer is full, or max-in-flight async
+ * requests are outstanding, forwardAsync() blocks the calling thread.
+ *
+ * Metrics (Micrometer, exported through /actuator/prometheus):
+ * - forward.queue{mode}: nanosecond timer from forwardAsync() until the
+ *   request is sent: executor wait, max-in-flight wait, or time spent in the
+ *   batch buffer. Histogram with p50/p95/p99.
+ * - forward.round-trip{mode,outcome}: from sending the request until the
+ *   response (for batches: the whole NDJSON stream) has been received.
+ * - forward.in-flight, forward.batch.buffered: current async requests and
+ *   buffered batch items; executor.*{name=forwardExecutor}: executor queue
+ *   depth and active threads.
  **/
 @Component
 public class ServerForwarder {
 
+    private static final String BATCH_START = "<TransactionBatch>";
+    private static final String BATCH_END = "</TransactionBatch>";
+
     private final ExecutorService executor;
     private final RestTemplate restTemplate;
-    private final String serverUrl;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final ServerEndpoints endpoints;
+    private final boolean batching;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final BlockingQueue<PendingForward> buffer;
+    private final boolean async;
+    private final Duration requestTimeout;
+    private final Semaphore asyncInFlight;
+    private final Timer singleQueue;
+    private final Timer batchQueue;
+    private final Timer singleRoundTrip;
+    private final Timer singleRoundTripFailed;
+    private final Timer batchRoundTrip;
+    private final Timer batchRoundTripFailed;
+
+    private volatile boolean running;
+    private Thread batcher;
 
     public ServerForwarder(ExecutorService executor,
                            RestTemplate restTemplate,
-                           @Value("${central-server.transaction-url}") String serverUrl) {
+                           HttpClient httpClient,
+                           ObjectMapper objectMapper,
+                           MeterRegistry registry,
+                           ServerEndpoints endpoints,
+                           @Value("${forward.batch.enabled:false}") boolean batching,
+                           @Value("${forward.batch.size:100}") int batchSize,
+                           @Value("${forward.batch.linger-ms:1}") long lingerMs,
+                           @Value("${forward.batch.capacity:10000}") int capacity,
+                           @Value("${forward.http.transport:blocking}") String transport,
+                           @Value("${forward.http.read-timeout-ms:5000}") long readTimeoutMs,
+                           @Value("${forward.http.max-in-flight:5000}") int maxInFlight) {
         this.executor = executor;
         this.restTemplate = restTemplate;
-        this.serverUrl = serverUrl;
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.endpoints = endpoints;
+        this.batching = batching;
+        this.batchSize = batchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMs);
+        this.buffer = batching ? new ArrayBlockingQueue<>(capacity) : null;
+        this.async = "async".equalsIgnoreCase(transport);
+        this.requestTimeout = Duration.ofMillis(readTimeoutMs);
+        this.asyncInFlight = new Semaphore(maxInFlight);
+
+        this.singleQueue = timer(registry, "forward.queue", "mode", "single");
+        this.batchQueue = timer(registry, "forward.queue", "mode", "batch");
+        this.singleRoundTrip = timer(registry, "forward.round-trip", "mode", "single", "outcome", "success");
+        this.singleRoundTripFailed = timer(registry, "forward.round-trip", "mode", "single", "outcome", "error");
+        this.batchRoundTrip = timer(registry, "forward.round-trip", "mode", "batch", "outcome", "success");
+        this.batchRoundTripFailed = timer(registry, "forward.round-trip", "mode", "batch", "outcome", "error");
+        Gauge.builder("forward.in-flight", asyncInFlight, permits -> maxInFlight - permits.availablePermits())
+                .description("Outstanding async forward requests")
+                .register(registry);
+        if (batching) {
+            Gauge.builder("forward.batch.buffered", buffer, BlockingQueue::size)
+                    .description("Transactions waiting in the batch buffer")
+                    .register(registry);
+        }
+        new ExecutorServiceMetrics(executor, "forwardExecutor", Tags.empty()).bindTo(registry);
+    }
+
+    private static Timer timer(MeterRegistry registry, String name, String... tags) {
+        return Timer.builder(name)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!batching) {
+            return;
+        }
+        running = true;
+        batcher = new Thread(this::runBatcher, "forward-batcher");
+        batcher.setDaemon(true);
+        batcher.start();
     }
 
-    public CompletableFuture<Void> forwardAsync(String xml) {
-        return CompletableFuture.runAsync(() -> {
+    /**
+     * Stops accepting transactions and sends whatever is still buffered.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!batching) {
+            return;
+        }
+        running = false;
+        batcher.join(TimeUnit.SECONDS.toMillis(10));
+        List<PendingForward> rest = new ArrayList<>();
+        buffer.drainTo(rest);
+        for (int from = 0; from < rest.size(); from += batchSize) {
+            route(rest.subList(from, Math.min(rest.size(), from + batchSize))).forEach(this::send);
+        }
+    }
+
+    /**
+     * Forwards one transaction.
+     *
+     * @param trxId   Id of the transaction, used to match it in a batch response.
+     * @param payload Encoded transaction (see TransactionPayloadEncoder). Only
+     *                XML payloads can be batched; others are sent on their own.
+     * @return future completing with the server's JSON result for this transaction.
+     */
+    public CompletableFuture<String> forwardAsync(String trxId, byte[] payload) {
+        boolean single = !batching || !TransactionPayloadEncoder.isXml(payload);
+        if (single && async) {
+            return sendAsync(trxId, payload);
+        }
+        if (single) {
+            long enqueuedAt = System.nanoTime();
+            return CompletableFuture.supplyAsync(() -> {
+                ServerEndpoints.Endpoint endpoint = endpoints.choose(trxId);
+                long sentAt = endpoint.begin();
+                singleQueue.record(sentAt - enqueuedAt, TimeUnit.NANOSECONDS);
+                RequestEntity<byte[]> request = RequestEntity
+                        .post(endpoint.processUri())
+                        .contentType(TransactionPayloadEncoder.contentType(payload))
+                        .body(payload);
+                boolean ok = false;
+                try {
+                    String body = restTemplate.exchange(request, String.class).getBody();
+                    ok = true;
+                    return body;
+                } finally {
+                    endpoint.end(sentAt, ok);
+                    (ok ? singleRoundTrip : singleRoundTripFailed)
+                            .record(System.nanoTime() - sentAt, TimeUnit.NANOSECONDS);
+                }
+            }, executor);
+        }
+
+        if (!running) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Server forwarder is stopped"));
+        }
+        PendingForward pending = new PendingForward(trxId, payload);
+        try {
+            buffer.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+        return pending.result;
+    }
+
+    private void runBatcher() {
+        while (running || !buffer.isEmpty()) {
+            List<PendingForward> batch = new ArrayList<>(batchSize);
             try {
-                RequestEntity<String> request = RequestEntity
-                        .post(URI.create(serverUrl))
-                        .contentType(MediaType.APPLICATION_XML)
-                        .body(xml);
-
-                // We don't care about the response here, this is fire-and-forget.
-                restTemplate.exchange(request, String.class);
-            } catch (Exception e) {
-                // In a real app: log the error with a logger
+                PendingForward first = buffer.poll(lingerNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // Linger until the batch is full or the first item has waited linger-ms.
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < batchSize) {
+                    buffer.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingForward next = buffer.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                for (Map.Entry<ServerEndpoints.Endpoint, List<PendingForward>> group : route(batch).entrySet()) {
+                    if (async) {
+                        sendAsync(group.getKey(), group.getValue());
+                    } else {
+                        executor.execute(() -> send(group.getKey(), group.getValue()));
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                route(batch).forEach(this::send);
+                return;
+            } catch (RejectedExecutionException e) {
+                fail(batch, e);
             }
-        }, executor);
+        }
+    }
+
+    /**
+     * Splits a batch by the node each item goes to: with trx-id-hash routing
+     * per trxId, otherwise all of it to one node.
+     */
+    private Map<ServerEndpoints.Endpoint, List<PendingForward>> route(List<PendingForward> batch) {
+        if (batch.isEmpty()) {
+            return Map.of();
+        }
+        if (!endpoints.routesByTrxId()) {
+            return Map.of(endpoints.choose(null), batch);
+        }
+        Map<ServerEndpoints.Endpoint, List<PendingForward>> groups = new HashMap<>();
+        for (PendingForward p : batch) {
+            groups.computeIfAbsent(endpoints.choose(p.trxId), e -> new ArrayList<>()).add(p);
+        }
+        return groups;
+    }
+
+    /**
+     * Sends one batch and completes each item's future from the NDJSON lines
+     * of the response. Items without a result line fail.
+     */
+    private void send(ServerEndpoints.Endpoint endpoint, List<PendingForward> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Map<String, PendingForward> byTrxId = index(batch);
+        byte[] bytes = batchBody(batch);
+
+        long sentAt = queued(batch);
+        long started = endpoint.begin();
+        boolean ok = false;
+        try {
+            restTemplate.execute(endpoint.batchUri(), HttpMethod.POST,
+                    request -> {
+                        request.getHeaders().setContentType(MediaType.APPLICATION_XML);
+                        request.getHeaders().set(HttpHeaders.ACCEPT, MediaType.APPLICATION_NDJSON_VALUE);
+                        request.getBody().write(bytes);
+                    },
+                    response -> {
+                        BufferedReader reader = new BufferedReader(
+                                new InputStreamReader(response.getBody(), StandardCharsets.UTF_8));
+                        String line;
+                        while ((line = reader.readLine()) != null) {
+                            demultiplex(line, byTrxId);
+                        }
+                        return null;
+                    });
+            ok = true;
+            fail(byTrxId.values(), new IllegalStateException("No result in batch response"));
+        } catch (RuntimeException e) {
+            fail(byTrxId.values(), e);
+        } finally {
+            endpoint.end(started, ok);
+            (ok ? batchRoundTrip : batchRoundTripFailed)
+                    .record(System.nanoTime() - sentAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Single forward over the non-blocking client.
+     */
+    private CompletableFuture<String> sendAsync(String trxId, byte[] payload) {
+        long enqueuedAt = System.nanoTime();
+        try {
+            asyncInFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+        ServerEndpoints.Endpoint endpoint = endpoints.choose(trxId);
+        long sentAt = endpoint.begin();
+        singleQueue.record(sentAt - enqueuedAt, TimeUnit.NANOSECONDS);
+        HttpRequest request = HttpRequest.newBuilder(endpoint.processUri())
+                .timeout(requestTimeout)
+                .header(HttpHeaders.CONTENT_TYPE, TransactionPayloadEncoder.contentType(payload).toString())
+                .POST(HttpRequest.BodyPublishers.ofByteArray(payload))
+                .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, ex) -> {
+                    asyncInFlight.release();
+                    boolean ok = ex == null && response.statusCode() / 100 == 2;
+                    endpoint.end(sentAt, ok);
+                    (ok ? singleRoundTrip : singleRoundTripFailed)
+                            .record(System.nanoTime() - sentAt, TimeUnit.NANOSECONDS);
+                })
+                .thenApply(response -> {
+                    if (response.statusCode() / 100 != 2) {
+                        throw new ServerStatusException(response.statusCode(), "Server answered " + response.statusCode() + " for " + trxId);
+                    }
+                    return response.body();
+                });
+    }
+
+    /**
+     * Batch over the non-blocking client; NDJSON lines are demultiplexed as
+     * they arrive, on the client's async threads.
+     */
+    private void sendAsync(ServerEndpoints.Endpoint endpoint, List<PendingForward> batch)
+            throws InterruptedException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Map<String, PendingForward> byTrxId = index(batch);
+        HttpRequest request = HttpRequest.newBuilder(endpoint.batchUri())
+                .timeout(requestTimeout)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_XML_VALUE)
+                .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_NDJSON_VALUE)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(batchBody(batch)))
+                .build();
+
+        asyncInFlight.acquire();
+        long sentAt = queued(batch);
+        long started = endpoint.begin();
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.fromLineSubscriber(new LineDemultiplexer(byTrxId)))
+                .whenComplete((response, ex) -> {
+                    asyncInFlight.release();
+                    boolean ok = ex == null && response.statusCode() / 100 == 2;
+                    endpoint.end(started, ok);
+                    (ok ? batchRoundTrip : batchRoundTripFailed)
+                            .record(System.nanoTime() - sentAt, TimeUnit.NANOSECONDS);
+                    if (ex != null) {
+                        fail(byTrxId.values(), ex);
+                    } else if (response.statusCode() / 100 != 2) {
+                        fail(byTrxId.values(), new ServerStatusException(response.statusCode(), "Server answered " + response.statusCode()));
+                    } else {
+                        fail(byTrxId.values(), new IllegalStateException("No result in batch response"));
+                    }
+                });
+    }
+
+    /**
+     * Records how long each item of a batch waited before being sent.
+     *
+     * @return the send time, System.nanoTime().
+     */
+    private long queued(List<PendingForward> batch) {
+        long now = System.nanoTime();
+        for (PendingForward p : batch) {
+            batchQueue.record(now - p.enqueuedAt, TimeUnit.NANOSECONDS);
+        }
+        return now;
+    }
+
+    /**
+     * Indexes a batch by trxId for demultiplexing its results.
+     */
+    private static Map<String, PendingForward> index(List<PendingForward> batch) {
+        Map<String, PendingForward> byTrxId = new HashMap<>(batch.size() * 2);
+        for (PendingForward p : batch) {
+            PendingForward earlier = byTrxId.putIfAbsent(p.trxId, p);
+            if (earlier != null) {
+                // The server answers a repeated trxId once; share that answer.
+                earlier.result.whenComplete((json, ex) -> {
+                    if (ex == null) {
+                        p.result.complete(json);
+                    } else {
+                        p.result.completeExceptionally(ex);
+                    }
+                });
+            }
+        }
+        return byTrxId;
+    }
+
+    private static byte[] batchBody(List<PendingForward> batch) {
+        byte[] start = BATCH_START.getBytes(StandardCharsets.US_ASCII);
+        byte[] end = BATCH_END.getBytes(StandardCharsets.US_ASCII);
+        int length = start.length + end.length;
+        for (PendingForward p : batch) {
+            length += p.payload.length;
+        }
+        ByteBuffer body = ByteBuffer.allocate(length).put(start);
+        for (PendingForward p : batch) {
+            body.put(p.payload);
+        }
+        return body.put(end).array();
+    }
+
+    /**
+     * Completes the future of the item one NDJSON result line belongs to.
+     */
+    private void demultiplex(String line, Map<String, PendingForward> byTrxId) throws IOException {
+        if (line.isBlank()) {
+            return;
+        }
+        String trxId = objectMapper.readTree(line).path("trxId").asText(null);
+        PendingForward p = trxId != null ? byTrxId.remove(trxId) : null;
+        if (p != null) {
+            p.result.complete(line);
+        }
+    }
+
+    private static void fail(Iterable<PendingForward> items, Throwable ex) {
+        for (PendingForward p : items) {
+            p.result.completeExceptionally(ex);
+        }
+    }
+
+    /**
+     * Receives the lines of an async batch response. Lines arrive one at a
+     * time, so the per-batch map needs no locking; items left over when the
+     * response ends are failed by the caller.
+     */
+    private final class LineDemultiplexer implements Flow.Subscriber<String> {
+        private final Map<String, PendingForward> byTrxId;
+
+        private LineDemultiplexer(Map<String, PendingForward> byTrxId) {
+            this.byTrxId = byTrxId;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String line) {
+            try {
+                demultiplex(line, byTrxId);
+            } catch (IOException e) {
+                // Not a result line; its item fails when the response ends.
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            // Reported through the response future.
+        }
+
+        @Override
+        public void onComplete() {
+            // Reported through the response future.
+        }
+    }
+
+    /**
+     * A non-2xx answer of the non-blocking client; the blocking one reports
+     * it as a RestClientResponseException.
+     */
+    public static final class ServerStatusException extends IllegalStateException {
+        private final int statusCode;
+
+        public ServerStatusException(int statusCode, String message) {
+            super(message);
+            this.statusCode = statusCode;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+    }
+
+    private static final class PendingForward {
+        private final String trxId;
+        private final byte[] payload;
+        private final long enqueuedAt = System.nanoTime();
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+
+        private PendingForward(String trxId, byte[] payload) {
+            this.trxId = trxId;
+            this.payload = payload;
+        }
     }
 }
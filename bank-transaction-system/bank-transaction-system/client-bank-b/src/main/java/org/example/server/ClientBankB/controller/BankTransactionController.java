@@ -3,49 +3,69 @@ package org.example.server.ClientBankB.controller;
 
 import org.example.server.ClientBankB.dto.BankTransactionRequest;
 import org.example.server.ClientBankB.dto.BankTransactionResponse;
-import org.example.server.ClientBankB.service.ServerForwarder;
-import org.example.server.ClientBankB.service.XmlConverter;
+import org.example.server.ClientBankB.dto.TransactionStatus;
+import org.example.server.ClientBankB.service.ForwardOutbox;
+import org.example.server.ClientBankB.service.TransactionPayloadEncoder;
+import org.example.server.ClientBankB.service.TransactionStatusStore;
 import org.example.server.ClientBankB.util.TransactionIdGenerator;
 import org.example.server.ClientBankB.xml.TransactionRequestXml;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.OffsetDateTime;
+import java.util.concurrent.CompletableFuture;
 
 /**
- * REST controller for the central server.
+ * REST controller for Bank B.
  *
- * Exposes:
- *   POST /server/transaction/process
- * Consumes:
- *   application/xml (TransactionRequest XML)
- * Produces:
- *   application/json (TransactionResponseDto)
+ * Endpoints:
+ *   POST /bank/transaction
+ *   GET  /bank/transaction/{trxId}
+ *   GET  /bank/transaction/{trxId}/result?timeoutMs=
  *
- * The controller is intentionally thin and delegates heavy work to
- * TransactionOrchestratorService.
+ * Responsibilities:
+ * - Accept JSON transaction request.
+ * - Generate unique trxId.
+ * - Map JSON DTO to XML model and encode it (XML, or the compact binary
+ *   format with forward.payload-format=binary).
+ * - Record the payload in the durable ForwardOutbox, which forwards it to the
+ *   central server in the background (with retries).
+ * - Respond with status "FORWARDED" once the outbox has it on disk.
+ * - Serve the status of forwarded transactions from the local
+ *   TransactionStatusStore, without a round trip to the server; /result
+ *   long-polls until the server's final status is known.
  */
 @RestController
 @RequestMapping("/bank")
 public class BankTransactionController {
 
     private final TransactionIdGenerator idGenerator;
-    private final XmlConverter xmlConverter;
-    private final ServerForwarder serverForwarder;
+    private final TransactionPayloadEncoder payloadEncoder;
+    private final ForwardOutbox outbox;
+    private final TransactionStatusStore statusStore;
+    private final long defaultPollTimeoutMs;
+    private final long maxPollTimeoutMs;
 
     public BankTransactionController(TransactionIdGenerator idGenerator,
-                                     XmlConverter xmlConverter,
-                                     ServerForwarder serverForwarder) {
+                                     TransactionPayloadEncoder payloadEncoder,
+                                     ForwardOutbox outbox,
+                                     TransactionStatusStore statusStore,
+                                     @Value("${status.long-poll.default-timeout-ms:25000}") long defaultPollTimeoutMs,
+                                     @Value("${status.long-poll.max-timeout-ms:50000}") long maxPollTimeoutMs) {
         this.idGenerator = idGenerator;
-        this.xmlConverter = xmlConverter;
-        this.serverForwarder = serverForwarder;
+        this.payloadEncoder = payloadEncoder;
+        this.outbox = outbox;
+        this.statusStore = statusStore;
+        this.defaultPollTimeoutMs = defaultPollTimeoutMs;
+        this.maxPollTimeoutMs = maxPollTimeoutMs;
     }
 
     /**
      * Handles incoming JSON transaction request and forwards it to the server.
      */
     @PostMapping("/transaction")
-    public ResponseEntity<BankTransactionResponse> handleTransaction(
+    public CompletableFuture<ResponseEntity<BankTransactionResponse>> handleTransaction(
             @RequestBody BankTransactionRequest request) {
 
         // 1. Generate transaction ID
@@ -62,17 +82,49 @@ public class BankTransactionController {
         xmlRequest.setCurrency(request.getCurrency());
         xmlRequest.setTimestamp(OffsetDateTime.now());
 
-        // 3. Convert to XML string
-        String xml = xmlConverter.toXml(xmlRequest);
+        // 3. Encode (XML, or compact binary with forward.payload-format=binary)
+        byte[] payload = payloadEncoder.encode(xmlRequest);
 
-        // 4. Async forward to central server
-        serverForwarder.forwardAsync(xml);
+        // 4. Record in the durable outbox, which forwards to the central server
+        CompletableFuture<Void> durable = outbox.submit(trxId, payload);
 
-        // 5. Immediate response
+        // 5. Respond once the outbox has it on disk
         BankTransactionResponse response =
                 new BankTransactionResponse(trxId, "FORWARDED",
                         "Transaction forwarded to server");
 
-        return ResponseEntity.accepted().body(response);
+        return durable.thenApply(v -> {
+            // 6. Track it locally until the server's result arrives
+            statusStore.forwarded(trxId);
+            return ResponseEntity.accepted().body(response);
+        });
+    }
+
+    /**
+     * Current status of a transaction: FORWARDED, or the server's result.
+     * 404 if unknown to this client or expired from the status store.
+     */
+    @GetMapping("/transaction/{trxId}")
+    public ResponseEntity<TransactionStatus> getStatus(@PathVariable String trxId) {
+        TransactionStatus status = statusStore.get(trxId);
+        return status != null ? ResponseEntity.ok(status) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Long poll: answers as soon as the server's result is known, or with
+     * FORWARDED after timeoutMs (capped at status.long-poll.max-timeout-ms).
+     */
+    @GetMapping("/transaction/{trxId}/result")
+    public CompletableFuture<ResponseEntity<TransactionStatus>> awaitResult(
+            @PathVariable String trxId,
+            @RequestParam(required = false) Long timeoutMs) {
+
+        long timeout = timeoutMs != null
+                ? Math.max(0, Math.min(timeoutMs, maxPollTimeoutMs))
+                : defaultPollTimeoutMs;
+        return statusStore.awaitSettled(trxId, timeout)
+                .thenApply(status -> status != null
+                        ? ResponseEntity.ok(status)
+                        : ResponseEntity.<TransactionStatus>notFound().build());
     }
 }
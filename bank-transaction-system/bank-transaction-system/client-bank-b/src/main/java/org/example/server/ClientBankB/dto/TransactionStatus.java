@@ -0,0 +1,22 @@
+package org.example.server.ClientBankB.dto;
+
+/**
+ * Last known status of a transaction on this client: FORWARDED until the
+ * central server has answered it, then the server's SUCCESS / FAILED with
+ * its reason and processing time. A server acknowledging with ack: DURABLE
+ * answers ACCEPTED (durably queued, not processed yet), which is not final:
+ * AcceptedStatusResolver asks the server for the outcome later.
+ */
+public record TransactionStatus(String trxId, String status, String reason, Long processingTimeMs) {
+
+    public static final String FORWARDED = "FORWARDED";
+    public static final String ACCEPTED = "ACCEPTED";
+
+    public static TransactionStatus forwarded(String trxId) {
+        return new TransactionStatus(trxId, FORWARDED, null, null);
+    }
+
+    public boolean settled() {
+        return !FORWARDED.equals(status) && !ACCEPTED.equals(status);
+    }
+}
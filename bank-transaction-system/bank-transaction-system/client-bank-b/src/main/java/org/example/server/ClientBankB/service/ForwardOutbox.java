@@ -0,0 +1,590 @@
+package org.example.server.ClientBankB.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.server.ClientBankB.dto.TransactionStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Durable, memory-mapped outbox between the controller and ServerForwarder.
+ *
+ * Every transaction is appended to an on-disk journal before the client
+ * answers FORWARDED, then forwarded in the background until the server has
+ * answered it. Nothing accepted is lost to a server outage, a failed
+ * forward or a client restart; a transaction the server refuses outright
+ * ends FAILED instead of being retried forever.
+ *
+ * Journal:
+ * - Append-only segment files (outbox.dir/outbox-N.log) of segment-size-mb,
+ *   memory-mapped, so an append is a copy into the page cache.
+ * - Record: length, CRC32C, state byte (pending/acked), trxId, payload. The
+ *   length is written last and the CRC is checked on replay, so a torn tail
+ *   record is ignored.
+ * - Group fsync: a single "outbox-syncer" thread forces everything appended
+ *   since its last fsync in one go and then completes all of those appends,
+ *   so callers wait for durability without an fsync per request. If the
+ *   fsync fails, the appends it covered are failed and marked acked, so a
+ *   transaction its caller was told failed is not forwarded on replay.
+ * - A segment is deleted once it is full and all its records are acked.
+ *
+ * Delivery:
+ * - An "outbox-drainer" thread forwards durable records (at most
+ *   max-in-flight at once) and marks them acked when the server has
+ *   returned a result, whatever its status. The result is recorded in the
+ *   TransactionStatusStore; an ACCEPTED one (server acking DURABLE) is not
+ *   final and is handed to AcceptedStatusResolver to settle.
+ * - Batch items the server shed ("Server Overloaded") are not results; they
+ *   are retried like failed forwards.
+ * - Failed forwards are retried with exponential backoff and jitter, from
+ *   retry.initial-backoff-ms up to retry.max-backoff-ms. Only outages, 5xx,
+ *   408 and 429 are retried: any other non-2xx answer (e.g. 400 for a
+ *   payload the server cannot read) would fail forever, so the transaction
+ *   is recorded FAILED and acked at once.
+ * - With retry.max-attempts > 0, a transaction still failing after that many
+ *   forwards is recorded FAILED and acked as well; 0 retries until the
+ *   server answers.
+ * - On startup, records not yet acked are replayed. Acks are not fsynced,
+ *   so a crash can resend an already answered trxId; the server answers it
+ *   with the original result.
+ *
+ * With outbox.enabled=false transactions are forwarded directly, as before,
+ * and results are still recorded.
+ */
+@Component
+public class ForwardOutbox {
+
+    private static final Logger log = LoggerFactory.getLogger(ForwardOutbox.class);
+
+    private static final String SEGMENT_PREFIX = "outbox-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    // int length | int crc | byte state | short trxId length | trxId | payload
+    private static final int CRC_OFFSET = 4;
+    private static final int STATE_OFFSET = 8;
+    private static final int ID_LENGTH_OFFSET = 9;
+    private static final int HEADER = 11;
+
+    private static final byte PENDING = 0;
+    private static final byte ACKED = 1;
+
+    private static final String SHED_REASON = "Server Overloaded";
+
+    private final ServerForwarder forwarder;
+    private final TransactionStatusStore statusStore;
+    private final AcceptedStatusResolver resolver;
+    private final boolean enabled;
+    private final Path dir;
+    private final int segmentSize;
+    private final Semaphore inFlight;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final int maxAttempts;
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final BlockingQueue<PendingSync> unsynced = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Entry> ready = new LinkedBlockingQueue<>();
+    private final ScheduledExecutorService retryScheduler;
+    private final List<Thread> workers = new ArrayList<>();
+    // Set while forwards are failing, so an outage is logged once, not per transaction
+    private final AtomicBoolean failing = new AtomicBoolean();
+
+    private Segment current;
+    private long nextSegmentId;
+    private volatile boolean running;
+
+    public ForwardOutbox(ServerForwarder forwarder,
+                         TransactionStatusStore statusStore,
+                         AcceptedStatusResolver resolver,
+                         @Value("${outbox.enabled:true}") boolean enabled,
+                         @Value("${outbox.dir:data/bank-b-outbox}") String dir,
+                         @Value("${outbox.segment-size-mb:64}") int segmentSizeMb,
+                         @Value("${outbox.max-in-flight:1000}") int maxInFlight,
+                         @Value("${outbox.retry.initial-backoff-ms:100}") long initialBackoffMs,
+                         @Value("${outbox.retry.max-backoff-ms:30000}") long maxBackoffMs,
+                         @Value("${outbox.retry.max-attempts:0}") int maxAttempts) {
+        this.forwarder = forwarder;
+        this.statusStore = statusStore;
+        this.resolver = resolver;
+        this.enabled = enabled;
+        this.dir = Path.of(dir);
+        this.segmentSize = segmentSizeMb * 1024 * 1024;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.maxAttempts = maxAttempts;
+        this.retryScheduler = enabled
+                ? Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "outbox-retry"))
+                : null;
+    }
+
+    /**
+     * Replays records left over from the previous run, opens a fresh segment
+     * and starts the syncer and drainer threads.
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(dir);
+
+        List<Long> ids;
+        try (Stream<Path> files = Files.list(dir)) {
+            ids = files.map(ForwardOutbox::segmentId)
+                    .filter(id -> id >= 0)
+                    .sorted()
+                    .toList();
+        }
+        int replayed = 0;
+        for (long id : ids) {
+            replayed += replay(id);
+            nextSegmentId = id + 1;
+        }
+        if (replayed > 0) {
+            log.info("Replaying {} un-acknowledged transactions from the outbox", replayed);
+        }
+        current = openSegment(nextSegmentId++);
+
+        running = true;
+        workers.add(daemon(this::runSyncer, "outbox-syncer"));
+        workers.add(daemon(this::runDrainer, "outbox-drainer"));
+        workers.forEach(Thread::start);
+    }
+
+    /**
+     * Stops forwarding and makes every appended record durable. Records not
+     * yet acked are replayed on the next start.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        retryScheduler.shutdownNow();
+        for (Thread t : workers) {
+            t.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    /**
+     * Records a transaction for forwarding.
+     *
+     * @return future completing once the transaction is durable in the
+     *         outbox (or, with the outbox disabled, handed to the forwarder).
+     */
+    public CompletableFuture<Void> submit(String trxId, byte[] payload) {
+        if (!enabled) {
+            forwarder.forwardAsync(trxId, payload).thenAccept(response -> {
+                TransactionStatus status = parse(trxId, response);
+                if (status != null) {
+                    record(status);
+                }
+            });
+            return CompletableFuture.completedFuture(null);
+        }
+        if (!running) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Forward outbox is stopped"));
+        }
+
+        byte[] id = trxId.getBytes(StandardCharsets.UTF_8);
+        int length = HEADER + id.length + payload.length;
+        if (length > segmentSize || id.length > Short.MAX_VALUE) {
+            return CompletableFuture.failedFuture(
+                    new IllegalArgumentException("Transaction too large for the outbox: " + trxId));
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(id);
+        crc.update(payload);
+
+        PendingSync pending;
+        appendLock.lock();
+        try {
+            if (current.position + length > segmentSize) {
+                roll();
+            }
+            Segment segment = current;
+            int offset = segment.position;
+            MappedByteBuffer buf = segment.buffer;
+            buf.putInt(offset + CRC_OFFSET, (int) crc.getValue());
+            buf.put(offset + STATE_OFFSET, PENDING);
+            buf.putShort(offset + ID_LENGTH_OFFSET, (short) id.length);
+            buf.put(offset + HEADER, id);
+            buf.put(offset + HEADER + id.length, payload);
+            // Length last: a record without it is not there on replay.
+            buf.putInt(offset, length);
+            segment.position += length;
+            segment.pending.incrementAndGet();
+            pending = new PendingSync(new Entry(segment, offset));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        } finally {
+            appendLock.unlock();
+        }
+        unsynced.add(pending);
+        return pending.durable;
+    }
+
+    private void runSyncer() {
+        List<PendingSync> batch = new ArrayList<>();
+        while (running || !unsynced.isEmpty()) {
+            try {
+                PendingSync first = unsynced.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // Everything appended while the previous fsync ran shares this one.
+                unsynced.drainTo(batch);
+                sync(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                unsynced.drainTo(batch);
+                sync(batch);
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void sync(List<PendingSync> batch) {
+        try {
+            Segment forced = null;
+            for (PendingSync p : batch) {
+                if (p.entry.segment != forced) {
+                    forced = p.entry.segment;
+                    forced.buffer.force();
+                }
+            }
+        } catch (UncheckedIOException e) {
+            log.error("Outbox fsync failed for {} transactions", batch.size(), e);
+            for (PendingSync p : batch) {
+                // Still in the page cache and likely to reach disk: abandon it.
+                ack(p.entry);
+                p.durable.completeExceptionally(e);
+            }
+            return;
+        }
+        for (PendingSync p : batch) {
+            p.durable.complete(null);
+            ready.add(p.entry);
+        }
+    }
+
+    private void runDrainer() {
+        while (running) {
+            try {
+                Entry entry = ready.poll(100, TimeUnit.MILLISECONDS);
+                if (entry == null) {
+                    continue;
+                }
+                inFlight.acquire();
+                send(entry);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void send(Entry entry) {
+        CompletableFuture<String> result;
+        try {
+            result = forwarder.forwardAsync(entry.trxId(), entry.payload());
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        result.whenComplete((response, ex) -> {
+            inFlight.release();
+            if (ex != null) {
+                int statusCode = statusCode(ex);
+                if (retryable(statusCode)) {
+                    retry(entry, ex);
+                } else {
+                    giveUp(entry, "Rejected by server (HTTP " + statusCode + ")");
+                }
+                return;
+            }
+            String trxId = entry.trxId();
+            TransactionStatus status = parse(trxId, response);
+            if (status != null && SHED_REASON.equals(status.reason())) {
+                retry(entry, new IllegalStateException(SHED_REASON));
+                return;
+            }
+            if (failing.compareAndSet(true, false)) {
+                log.info("Forwarding to the server recovered");
+            }
+            if (status != null) {
+                record(status);
+            }
+            ack(entry);
+        });
+    }
+
+    /**
+     * @return the server's result, or null if it could not be read; the
+     *         transaction is then still acked, as the server has it.
+     */
+    private TransactionStatus parse(String trxId, String response) {
+        try {
+            return statusStore.parse(trxId, response);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unreadable server response for {}: {}", trxId, e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * @return HTTP status of a failed forward, or 0 if the server did not
+     *         answer (connection refused, timeout, ...).
+     */
+    private static int statusCode(Throwable ex) {
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        if (cause instanceof ServerForwarder.ServerStatusException e) {
+            return e.getStatusCode();
+        }
+        if (cause instanceof RestClientResponseException e) {
+            return e.getStatusCode().value();
+        }
+        return 0;
+    }
+
+    private static boolean retryable(int statusCode) {
+        return statusCode == 0 || statusCode >= 500 || statusCode == 408 || statusCode == 429;
+    }
+
+    /**
+     * Records a transaction that will not be forwarded again as FAILED and
+     * acks it.
+     */
+    private void giveUp(Entry entry, String reason) {
+        String trxId = entry.trxId();
+        log.warn("Giving up forwarding {}: {}", trxId, reason);
+        statusStore.complete(new TransactionStatus(trxId, "FAILED", reason, null));
+        ack(entry);
+    }
+
+    private void record(TransactionStatus status) {
+        statusStore.complete(status);
+        if (!status.settled()) {
+            resolver.track(status.trxId());
+        }
+    }
+
+    private void ack(Entry entry) {
+        Segment segment = entry.segment;
+        segment.buffer.put(entry.offset + STATE_OFFSET, ACKED);
+        if (segment.pending.decrementAndGet() == 0 && segment.sealed) {
+            delete(segment);
+        }
+    }
+
+    private void retry(Entry entry, Throwable ex) {
+        entry.attempts++;
+        if (maxAttempts > 0 && entry.attempts >= maxAttempts) {
+            giveUp(entry, "Forward attempts exhausted");
+            return;
+        }
+        if (failing.compareAndSet(false, true)) {
+            log.warn("Forwarding to the server failed, retrying with backoff: {}", ex.toString());
+        }
+        long backoff = Math.min(maxBackoffMs, initialBackoffMs << Math.min(entry.attempts - 1, 20));
+        long delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+        if (!running) {
+            return;
+        }
+        try {
+            retryScheduler.schedule(() -> ready.add(entry), delay, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException shuttingDown) {
+            // Left pending on disk; replayed on the next start.
+        }
+    }
+
+    /**
+     * Seals the current segment and starts a new one. Caller holds appendLock.
+     */
+    private void roll() throws IOException {
+        Segment full = current;
+        current = openSegment(nextSegmentId++);
+        full.sealed = true;
+        if (full.pending.get() == 0) {
+            delete(full);
+        }
+    }
+
+    /**
+     * Scans a segment left by a previous run and queues its pending records.
+     *
+     * @return number of pending records.
+     */
+    private int replay(long id) throws IOException {
+        Segment segment = mapSegment(id);
+        MappedByteBuffer buf = segment.buffer;
+        List<Entry> pending = new ArrayList<>();
+        int offset = 0;
+        while (offset + HEADER <= segmentSize) {
+            int length = buf.getInt(offset);
+            int idLength = length >= HEADER ? buf.getShort(offset + ID_LENGTH_OFFSET) : -1;
+            if (length < HEADER || offset + length > segmentSize
+                    || idLength < 0 || HEADER + idLength > length) {
+                break;
+            }
+            byte[] record = new byte[length - HEADER];
+            buf.get(offset + HEADER, record);
+            CRC32C crc = new CRC32C();
+            crc.update(record);
+            if ((int) crc.getValue() != buf.getInt(offset + CRC_OFFSET)) {
+                break;
+            }
+            if (buf.get(offset + STATE_OFFSET) == PENDING) {
+                Entry entry = new Entry(segment, offset);
+                statusStore.forwarded(entry.trxId());
+                pending.add(entry);
+            }
+            offset += length;
+        }
+
+        segment.position = segmentSize;
+        segment.sealed = true;
+        segment.pending.set(pending.size());
+        if (pending.isEmpty()) {
+            delete(segment);
+        }
+        ready.addAll(pending);
+        return pending.size();
+    }
+
+    private Segment openSegment(long id) throws IOException {
+        Segment segment = mapSegment(id);
+        syncDirectory();
+        return segment;
+    }
+
+    private Segment mapSegment(long id) throws IOException {
+        Path path = dir.resolve(SEGMENT_PREFIX + id + SEGMENT_SUFFIX);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Mapping read-write grows a new file to the full segment size, zero-filled.
+            return new Segment(path, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+        }
+    }
+
+    /**
+     * Makes a new segment's directory entry durable along with its data.
+     */
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not supported on every platform; the segment data itself is still fsynced.
+        }
+    }
+
+    private void delete(Segment segment) {
+        if (!segment.deleted.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            log.warn("Could not delete acknowledged outbox segment {}", segment.path, e);
+        }
+    }
+
+    private static long segmentId(Path path) {
+        String name = path.getFileName().toString();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static Thread daemon(Runnable task, String name) {
+        Thread t = new Thread(task, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    private static final class Segment {
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicBoolean deleted = new AtomicBoolean();
+        // Guarded by appendLock
+        private int position;
+        private volatile boolean sealed;
+
+        private Segment(Path path, MappedByteBuffer buffer) {
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+
+    private static final class Entry {
+        private final Segment segment;
+        private final int offset;
+        // Only touched by one retry at a time
+        private int attempts;
+
+        private Entry(Segment segment, int offset) {
+            this.segment = segment;
+            this.offset = offset;
+        }
+
+        String trxId() {
+            byte[] id = new byte[segment.buffer.getShort(offset + ID_LENGTH_OFFSET)];
+            segment.buffer.get(offset + HEADER, id);
+            return new String(id, StandardCharsets.UTF_8);
+        }
+
+        byte[] payload() {
+            int idLength = segment.buffer.getShort(offset + ID_LENGTH_OFFSET);
+            byte[] payload = new byte[segment.buffer.getInt(offset) - HEADER - idLength];
+            segment.buffer.get(offset + HEADER + idLength, payload);
+            return payload;
+        }
+    }
+
+    private static final class PendingSync {
+        private final Entry entry;
+        private final CompletableFuture<Void> durable = new CompletableFuture<>();
+
+        private PendingSync(Entry entry) {
+            this.entry = entry;
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package org.example.server.ClientBankB.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The central server nodes Bank B forwards to, and the choice between them.
+ *
+ * Nodes are listed in central-server.transaction-urls (their /process URLs,
+ * comma-separated); /process-batch, /status and /actuator/health are found
+ * next to each. With a single node, every call returns it and nothing else runs.
+ *
+ * Routing (forward.balancing.strategy):
+ * - trx-id-hash (default): rendezvous hashing of the trxId over the
+ *   available nodes, so a transaction and all its retries reach the same
+ *   node. Duplicate detection and status lookups are node-local, so a retry
+ *   sent elsewhere would only be caught by the database. When a node
+ *   leaves, only its trxIds move.
+ * - least-outstanding: the available node with the fewest requests in
+ *   flight from this client, relative to its weight. Retries may reach
+ *   another node, so a warning is logged when several nodes are listed.
+ *
+ * Health:
+ * - Passive: a node is ejected after eject.consecutive-failures failed
+ *   requests in a row (errors, timeouts, non-2xx including 503), or when its
+ *   average round trip exceeds eject.slow-ms. A node is never ejected for
+ *   slowness if it is the last one available.
+ * - Active: every health.interval-ms each node's /actuator/health is
+ *   probed. health.unhealthy-threshold failed probes in a row eject it.
+ * - An ejected node stays out for eject.base-ms times the number of times
+ *   it was ejected in a row (at most eject.max-ms), and comes back only
+ *   after a successful probe.
+ * - A node that comes back is re-admitted gradually: its weight ramps from
+ *   10% to 100% over slow-start-ms. With trx-id-hash, only that share of
+ *   its trxIds is routed to it; the others stay on their fallback node.
+ * - If no node is available, requests go to all nodes anyway rather than
+ *   failing here; the outbox retries whatever fails.
+ *
+ * Metrics: forward.endpoint.outstanding{endpoint} and
+ * forward.endpoint.weight{endpoint} (0 while ejected).
+ */
+@Component
+public class ServerEndpoints {
+
+    private static final Logger log = LoggerFactory.getLogger(ServerEndpoints.class);
+
+    private static final double MIN_SLOW_START_WEIGHT = 0.1;
+    // Weight of the latest round trip in the moving average
+    private static final double LATENCY_ALPHA = 0.2;
+
+    private final List<Endpoint> endpoints;
+    private final boolean hashRouting;
+    private final HttpClient httpClient;
+    private final long healthIntervalMs;
+    private final Duration healthTimeout;
+    private final int unhealthyThreshold;
+    private final int failureThreshold;
+    private final long slowNanos;
+    private final long ejectBaseNanos;
+    private final long ejectMaxNanos;
+    private final long slowStartNanos;
+    private final ScheduledExecutorService healthChecker;
+
+    public ServerEndpoints(HttpClient httpClient,
+                           MeterRegistry registry,
+                           @Value("${central-server.transaction-urls:${central-server.transaction-url}}") String transactionUrls,
+                           @Value("${central-server.batch-url:}") String batchUrl,
+                           @Value("${forward.balancing.strategy:trx-id-hash}") String strategy,
+                           @Value("${forward.balancing.health.interval-ms:2000}") long healthIntervalMs,
+                           @Value("${forward.balancing.health.timeout-ms:1000}") long healthTimeoutMs,
+                           @Value("${forward.balancing.health.unhealthy-threshold:2}") int unhealthyThreshold,
+                           @Value("${forward.balancing.eject.consecutive-failures:5}") int failureThreshold,
+                           @Value("${forward.balancing.eject.slow-ms:2000}") long slowMs,
+                           @Value("${forward.balancing.eject.base-ms:5000}") long ejectBaseMs,
+                           @Value("${forward.balancing.eject.max-ms:60000}") long ejectMaxMs,
+                           @Value("${forward.balancing.slow-start-ms:30000}") long slowStartMs) {
+        List<String> urls = Arrays.stream(transactionUrls.split(","))
+                .map(String::trim)
+                .filter(url -> !url.isEmpty())
+                .toList();
+        if (urls.isEmpty()) {
+            throw new IllegalArgumentException("central-server.transaction-urls lists no server");
+        }
+        List<Endpoint> list = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            // An explicit batch URL only makes sense for a single node.
+            String batch = urls.size() == 1 && !batchUrl.isBlank()
+                    ? batchUrl
+                    : url.replaceFirst("/process$", "/process-batch");
+            list.add(new Endpoint(url, batch));
+        }
+        this.endpoints = List.copyOf(list);
+        this.hashRouting = !"least-outstanding".equalsIgnoreCase(strategy);
+        if (!hashRouting && endpoints.size() > 1) {
+            log.warn("forward.balancing.strategy=least-outstanding with {} server nodes: retries of a trxId "
+                    + "may reach another node, which does not know it is in flight", endpoints.size());
+        }
+        this.httpClient = httpClient;
+        this.healthIntervalMs = healthIntervalMs;
+        this.healthTimeout = Duration.ofMillis(healthTimeoutMs);
+        this.unhealthyThreshold = unhealthyThreshold;
+        this.failureThreshold = failureThreshold;
+        this.slowNanos = TimeUnit.MILLISECONDS.toNanos(slowMs);
+        this.ejectBaseNanos = TimeUnit.MILLISECONDS.toNanos(ejectBaseMs);
+        this.ejectMaxNanos = TimeUnit.MILLISECONDS.toNanos(ejectMaxMs);
+        this.slowStartNanos = TimeUnit.MILLISECONDS.toNanos(slowStartMs);
+        this.healthChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "forward-health");
+            t.setDaemon(true);
+            return t;
+        });
+
+        for (Endpoint e : endpoints) {
+            Gauge.builder("forward.endpoint.outstanding", e.outstanding, AtomicInteger::get)
+                    .tag("endpoint", e.processUrl)
+                    .description("Requests in flight to this server node")
+                    .register(registry);
+            Gauge.builder("forward.endpoint.weight", e, endpoint -> endpoint.weight(System.nanoTime()))
+                    .tag("endpoint", e.processUrl)
+                    .description("Routing weight of this server node: 0 ejected, 1 fully admitted")
+                    .register(registry);
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (endpoints.size() > 1 && healthIntervalMs > 0) {
+            healthChecker.scheduleWithFixedDelay(this::checkHealth, healthIntervalMs, healthIntervalMs,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        healthChecker.shutdownNow();
+    }
+
+    /**
+     * @param trxId transaction to route; only used by trx-id-hash.
+     * @return the node to send it to.
+     */
+    public Endpoint choose(String trxId) {
+        if (endpoints.size() == 1) {
+            return endpoints.get(0);
+        }
+        long now = System.nanoTime();
+        Endpoint chosen = hashRouting && trxId != null ? byHash(trxId, now, false) : leastOutstanding(now, false);
+        if (chosen == null) {
+            // Nothing available: spread over all nodes rather than fail here.
+            chosen = hashRouting && trxId != null ? byHash(trxId, now, true) : leastOutstanding(now, true);
+        }
+        return chosen;
+    }
+
+    /**
+     * @return whether each trxId is routed on its own (trx-id-hash), so a
+     *         batch may have to be split between nodes.
+     */
+    public boolean routesByTrxId() {
+        return hashRouting && endpoints.size() > 1;
+    }
+
+    private Endpoint leastOutstanding(long now, boolean ignoreHealth) {
+        Endpoint best = null;
+        double bestLoad = Double.MAX_VALUE;
+        for (Endpoint e : endpoints) {
+            double weight = ignoreHealth ? 1 : e.weight(now);
+            if (weight <= 0) {
+                continue;
+            }
+            double load = (e.outstanding.get() + 1) / weight;
+            if (load < bestLoad) {
+                bestLoad = load;
+                best = e;
+            }
+        }
+        return best;
+    }
+
+    private Endpoint byHash(String trxId, long now, boolean ignoreHealth) {
+        long key = mix(trxId.hashCode());
+        // Which share of a slow-starting node's trxIds this one falls in, 0..1
+        double share = (key >>> 11) * 0x1.0p-53;
+        Endpoint best = null;
+        long bestScore = Long.MIN_VALUE;
+        for (Endpoint e : endpoints) {
+            if (!ignoreHealth) {
+                double weight = e.weight(now);
+                if (weight <= 0 || share >= weight) {
+                    continue;
+                }
+            }
+            long score = mix(key ^ e.seed);
+            if (best == null || score > bestScore) {
+                bestScore = score;
+                best = e;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Probes every node's /actuator/health; the probes run concurrently on
+     * the HTTP client.
+     */
+    private void checkHealth() {
+        for (Endpoint e : endpoints) {
+            HttpRequest probe = HttpRequest.newBuilder(e.healthUri)
+                    .timeout(healthTimeout)
+                    .GET()
+                    .build();
+            httpClient.sendAsync(probe, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, ex) -> e.probed(ex == null && response.statusCode() / 100 == 2));
+        }
+    }
+
+    private int availableCount(long now) {
+        int count = 0;
+        for (Endpoint e : endpoints) {
+            if (e.weight(now) > 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Finalization step of MurmurHash3 (fmix64).
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93e185a8b53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private enum State {
+        HEALTHY,
+        EJECTED,
+        RECOVERING
+    }
+
+    /**
+     * One central server node and its health as seen from this client.
+     */
+    public final class Endpoint {
+        private final String processUrl;
+        private final URI processUri;
+        private final URI batchUri;
+        private final URI statusUri;
+        private final URI healthUri;
+        private final long seed;
+        private final AtomicInteger outstanding = new AtomicInteger();
+
+        // Guarded by this
+        private State state = State.HEALTHY;
+        private long stateSince = System.nanoTime();
+        private long ejectedUntil;
+        private int ejections;
+        private int consecutiveFailures;
+        private int failedProbes;
+        private double avgLatencyNanos;
+
+        private Endpoint(String processUrl, String batchUrl) {
+            this.processUrl = processUrl;
+            this.processUri = URI.create(processUrl);
+            this.batchUri = URI.create(batchUrl);
+            this.statusUri = processUri.resolve("status");
+            this.healthUri = processUri.resolve("/actuator/health");
+            this.seed = mix(processUrl.hashCode());
+        }
+
+        public URI processUri() {
+            return processUri;
+        }
+
+        public URI batchUri() {
+            return batchUri;
+        }
+
+        public URI statusUri() {
+            return statusUri;
+        }
+
+        /**
+         * Counts a request to this node as outstanding.
+         *
+         * @return the send time, to pass to {@link #end}.
+         */
+        public long begin() {
+            outstanding.incrementAndGet();
+            return System.nanoTime();
+        }
+
+        /**
+         * Records the outcome of a request started with {@link #begin}.
+         */
+        public void end(long startedAt, boolean ok) {
+            outstanding.decrementAndGet();
+            long now = System.nanoTime();
+            long latency = now - startedAt;
+            boolean slow;
+            synchronized (this) {
+                avgLatencyNanos = avgLatencyNanos == 0
+                        ? latency
+                        : avgLatencyNanos + LATENCY_ALPHA * (latency - avgLatencyNanos);
+                consecutiveFailures = ok ? 0 : consecutiveFailures + 1;
+                if (state == State.EJECTED) {
+                    return;
+                }
+                if (consecutiveFailures >= failureThreshold) {
+                    eject(now, consecutiveFailures + " failed requests in a row");
+                    return;
+                }
+                slow = avgLatencyNanos > slowNanos;
+            }
+            // Counted without holding this: other nodes' locks are taken.
+            if (slow && availableCount(now) > 1) {
+                synchronized (this) {
+                    if (state != State.EJECTED && avgLatencyNanos > slowNanos) {
+                        eject(now, "average round trip "
+                                + TimeUnit.NANOSECONDS.toMillis((long) avgLatencyNanos) + " ms");
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return routing weight: 0 while ejected, ramping up to 1 during slow start.
+         */
+        private synchronized double weight(long now) {
+            if (state == State.EJECTED) {
+                if (healthIntervalMs > 0 || now - ejectedUntil < 0) {
+                    return 0;
+                }
+                // No health checks: the ejection simply expires.
+                recover(now);
+            }
+            if (state == State.RECOVERING) {
+                long elapsed = now - stateSince;
+                if (elapsed < slowStartNanos) {
+                    return Math.max(MIN_SLOW_START_WEIGHT, (double) elapsed / slowStartNanos);
+                }
+                state = State.HEALTHY;
+                stateSince = now;
+                ejections = 0;
+            }
+            return 1;
+        }
+
+        private synchronized void probed(boolean healthy) {
+            long now = System.nanoTime();
+            failedProbes = healthy ? 0 : failedProbes + 1;
+            if (state == State.EJECTED) {
+                if (healthy && now - ejectedUntil >= 0) {
+                    recover(now);
+                }
+            } else if (failedProbes >= unhealthyThreshold) {
+                eject(now, failedProbes + " failed health checks");
+            }
+        }
+
+        /** Caller holds this. */
+        private void recover(long now) {
+            state = State.RECOVERING;
+            stateSince = now;
+            consecutiveFailures = 0;
+            avgLatencyNanos = 0;
+            log.info("Server node {} is back, re-admitting it over {} ms", processUrl,
+                    TimeUnit.NANOSECONDS.toMillis(slowStartNanos));
+        }
+
+        /** Caller holds this. */
+        private void eject(long now, String reason) {
+            ejections++;
+            long duration = Math.min(ejectMaxNanos, ejectBaseNanos * ejections);
+            state = State.EJECTED;
+            stateSince = now;
+            ejectedUntil = now + duration;
+            log.warn("Ejecting server node {} for {} ms: {}", processUrl,
+                    TimeUnit.NANOSECONDS.toMillis(duration), reason);
+        }
+
+        @Override
+        public String toString() {
+            return processUrl;
+        }
+    }
+}
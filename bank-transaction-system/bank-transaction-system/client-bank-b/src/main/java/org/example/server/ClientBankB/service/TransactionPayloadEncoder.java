@@ -0,0 +1,128 @@
+package org.example.server.ClientBankB.service;
+
+import org.example.server.ClientBankB.xml.TransactionRequestXml;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+
+/**
+ * Encodes a TransactionRequestXml into the wire payload sent to the server.
+ *
+ * Formats (forward.payload-format):
+ * - xml (default): the TransactionRequest XML document from XmlConverter.
+ * - binary: a compact fixed-layout record, sent as
+ *   application/x-bank-transaction. Layout (big-endian):
+ *   - byte: format version (1)
+ *   - byte: presence bitmask, bit i set if field i is present, in the order
+ *     TrxId, BankId, CustomerId, FromAccount, ToAccount, Amount, Currency, Timestamp
+ *   - then each present field, in that order:
+ *     - strings:    u16 length + UTF-8 bytes
+ *     - CustomerId: int64
+ *     - Amount:     int32 scale + u8 length + two's-complement unscaled value
+ *     - Timestamp:  int64 epoch second + int32 nano + int32 offset seconds
+ *
+ * The format of a stored payload is recognised from its first byte, so
+ * payloads written under one setting are still sent correctly after the
+ * setting changes.
+ */
+@Component
+public class TransactionPayloadEncoder {
+
+    public static final MediaType BINARY = MediaType.parseMediaType("application/x-bank-transaction");
+
+    private static final byte VERSION = 1;
+
+    private final XmlConverter xmlConverter;
+    private final boolean binary;
+
+    public TransactionPayloadEncoder(XmlConverter xmlConverter,
+                                     @Value("${forward.payload-format:xml}") String format,
+                                     @Value("${forward.batch.enabled:false}") boolean batching) {
+        this.xmlConverter = xmlConverter;
+        this.binary = "binary".equalsIgnoreCase(format);
+        if (binary && batching) {
+            // <TransactionBatch> is an XML document, so batched items must be XML.
+            throw new IllegalStateException("forward.payload-format=binary requires forward.batch.enabled=false");
+        }
+    }
+
+    public byte[] encode(TransactionRequestXml request) {
+        return binary ? toBinary(request) : xmlConverter.toXmlBytes(request);
+    }
+
+    /**
+     * Content type of an encoded payload.
+     */
+    public static MediaType contentType(byte[] payload) {
+        return isXml(payload) ? MediaType.APPLICATION_XML : BINARY;
+    }
+
+    public static boolean isXml(byte[] payload) {
+        return payload.length == 0 || payload[0] != VERSION;
+    }
+
+    static byte[] toBinary(TransactionRequestXml r) {
+        byte[] trxId = utf8(r.getTrxId());
+        byte[] bankId = utf8(r.getBankId());
+        byte[] fromAccount = utf8(r.getFromAccount());
+        byte[] toAccount = utf8(r.getToAccount());
+        byte[] currency = utf8(r.getCurrency());
+        byte[] unscaled = r.getAmount() != null ? r.getAmount().unscaledValue().toByteArray() : null;
+        OffsetDateTime timestamp = r.getTimestamp();
+
+        int present = 0;
+        int size = 2;
+        if (trxId != null) { present |= 1; size += 2 + trxId.length; }
+        if (bankId != null) { present |= 1 << 1; size += 2 + bankId.length; }
+        if (r.getCustomerId() != null) { present |= 1 << 2; size += 8; }
+        if (fromAccount != null) { present |= 1 << 3; size += 2 + fromAccount.length; }
+        if (toAccount != null) { present |= 1 << 4; size += 2 + toAccount.length; }
+        if (unscaled != null) { present |= 1 << 5; size += 5 + unscaled.length; }
+        if (currency != null) { present |= 1 << 6; size += 2 + currency.length; }
+        if (timestamp != null) { present |= 1 << 7; size += 16; }
+
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        buf.put(VERSION).put((byte) present);
+        putString(buf, trxId);
+        putString(buf, bankId);
+        if (r.getCustomerId() != null) buf.putLong(r.getCustomerId());
+        putString(buf, fromAccount);
+        putString(buf, toAccount);
+        if (unscaled != null) {
+            BigDecimal amount = r.getAmount();
+            if (unscaled.length > 255) {
+                throw new IllegalArgumentException("Amount too large to encode: " + amount);
+            }
+            buf.putInt(amount.scale()).put((byte) unscaled.length).put(unscaled);
+        }
+        putString(buf, currency);
+        if (timestamp != null) {
+            buf.putLong(timestamp.toEpochSecond())
+                    .putInt(timestamp.getNano())
+                    .putInt(timestamp.getOffset().getTotalSeconds());
+        }
+        return buf.array();
+    }
+
+    private static byte[] utf8(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("Field too long to encode");
+        }
+        return bytes;
+    }
+
+    private static void putString(ByteBuffer buf, byte[] value) {
+        if (value != null) {
+            buf.putShort((short) value.length).put(value);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package org.example.server.ClientBankB.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.example.server.ClientBankB.dto.TransactionStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded in-memory store of transaction statuses, so callers can learn the
+ * final outcome from this client instead of asking the central server.
+ *
+ * Responsibilities:
+ * - A transaction is FORWARDED once the outbox has it, and becomes final when
+ *   ForwardOutbox receives the server's TransactionResponseDto for it.
+ * - Entries are evicted ttl-minutes after their last update, or earlier when
+ *   more than max-size are held.
+ * - Long polls wait for the final status of a FORWARDED transaction.
+ *
+ * Concurrency:
+ * - Statuses live in a Caffeine cache; a FORWARDED entry never replaces a
+ *   final one, whichever update arrives first.
+ * - All long polls of one trxId share one Waiter, whose future is completed
+ *   when the result is recorded. Each poll waits on its own dependent future,
+ *   so a poll that times out does not affect the others. The Waiter counts
+ *   its polls and is dropped when the last one ends, settled or not.
+ */
+@Component
+public class TransactionStatusStore {
+
+    private final ObjectMapper objectMapper;
+    private final Cache<String, TransactionStatus> statuses;
+    private final ConcurrentHashMap<String, Waiter> waiters = new ConcurrentHashMap<>();
+
+    public TransactionStatusStore(ObjectMapper objectMapper,
+                                  @Value("${status.store.max-size:1000000}") long maxSize,
+                                  @Value("${status.store.ttl-minutes:60}") long ttlMinutes) {
+        this.objectMapper = objectMapper;
+        this.statuses = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .build();
+    }
+
+    /**
+     * Marks a transaction as accepted and on its way to the server.
+     */
+    public void forwarded(String trxId) {
+        statuses.asMap().putIfAbsent(trxId, TransactionStatus.forwarded(trxId));
+    }
+
+    /**
+     * Records the server's answer; a final one also wakes up its long polls.
+     */
+    public void complete(TransactionStatus status) {
+        statuses.put(status.trxId(), status);
+        if (!status.settled()) {
+            return;
+        }
+        Waiter waiter = waiters.remove(status.trxId());
+        if (waiter != null) {
+            waiter.result.complete(status);
+        }
+    }
+
+    /**
+     * Parses a TransactionResponseDto returned by the server.
+     *
+     * @throws IOException if the response is not one.
+     */
+    public TransactionStatus parse(String trxId, String json) throws IOException {
+        JsonNode node = objectMapper.readTree(json);
+        String status = node.path("status").asText(null);
+        if (status == null) {
+            throw new IOException("No status in server response for " + trxId);
+        }
+        JsonNode time = node.get("processingTimeMs");
+        return new TransactionStatus(trxId, status, node.path("reason").asText(null),
+                time != null && time.canConvertToLong() ? time.asLong() : null);
+    }
+
+    /**
+     * @return current status, or null if unknown (never seen, or evicted).
+     */
+    public TransactionStatus get(String trxId) {
+        return statuses.getIfPresent(trxId);
+    }
+
+    /**
+     * Waits up to timeoutMs for the final status of a transaction.
+     *
+     * @return future completing with the final status as soon as it is
+     *         known, else with the status after timeoutMs; null if unknown.
+     */
+    public CompletableFuture<TransactionStatus> awaitSettled(String trxId, long timeoutMs) {
+        TransactionStatus current = get(trxId);
+        if (current == null || current.settled()) {
+            return CompletableFuture.completedFuture(current);
+        }
+        Waiter waiter = waiters.compute(trxId, (k, w) -> {
+            Waiter registered = w != null ? w : new Waiter();
+            registered.polls++;
+            return registered;
+        });
+        // The result may have been recorded between the check and registering.
+        TransactionStatus latest = get(trxId);
+        if (latest != null && latest.settled()) {
+            waiter.result.complete(latest);
+        }
+        return waiter.result.thenApply(status -> status)
+                .completeOnTimeout(null, timeoutMs, TimeUnit.MILLISECONDS)
+                .thenApply(status -> {
+                    release(trxId, waiter);
+                    return status != null ? status : get(trxId);
+                });
+    }
+
+    /**
+     * Ends one poll; the last poll of a Waiter still registered drops it.
+     */
+    private void release(String trxId, Waiter waiter) {
+        waiters.computeIfPresent(trxId, (k, w) -> w == waiter && --w.polls == 0 ? null : w);
+    }
+
+    /**
+     * @return trxIds with at least one long poll waiting.
+     */
+    int waiting() {
+        return waiters.size();
+    }
+
+    private static final class Waiter {
+        private final CompletableFuture<TransactionStatus> result = new CompletableFuture<>();
+        // Only changed inside waiters.compute*
+        private int polls;
+    }
+}
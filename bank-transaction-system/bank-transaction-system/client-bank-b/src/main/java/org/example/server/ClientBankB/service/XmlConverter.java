@@ -28,4 +28,12 @@ public class XmlConverter {
             throw new RuntimeException("Error converting to XML", e);
         }
     }
+
+    public byte[] toXmlBytes(TransactionRequestXml request) {
+        try {
+            return xmlMapper.writeValueAsBytes(request);
+        } catch (Exception e) {
+            throw new RuntimeException("Error converting to XML", e);
+        }
+    }
 }
@@ -1,35 +1,169 @@
 package org.example.server.ClientBankB.util;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Thread-safe transaction ID generator for Bank A.
+ * Lock-free, restart-safe transaction ID generator for Bank B.
  *
- * Format: TRX-YYYYMMDD-000001
+ * Format: TRX-0000000000000000000 (the 64-bit id, 19 zero-padded digits)
  *
- * Uses
- * - AtomicLong for sequence.
+ * 64-bit layout (high to low):
+ * - 1 bit:   always 0, so ids stay positive
+ * - 40 bits: milliseconds since 2025-01-01T00:00:00Z (~34 years)
+ * - 5 bits:  bank code (trx-id.bank-code), so banks never collide
+ * - 5 bits:  node index (trx-id.node), for scaled-out instances of one bank
+ * - 13 bits: per-millisecond sequence (8192 ids/ms)
  *
+ * Uses:
+ * - One AtomicLong CAS per id; when a millisecond's sequence is exhausted the
+ *   generator borrows the next millisecond instead of waiting, so ids stay
+ *   strictly increasing even if the wall clock stalls or steps back.
+ * - A persisted high-water mark: timestamps are leased in blocks of
+ *   lease-ms and the end of the lease is fsynced to trx-id.state-file before
+ *   any id beyond it is issued. After a restart (or a clock step back) the
+ *   generator resumes after the lease, so ids are never reused.
  */
 
 @Component
 public class TransactionIdGenerator {
 
-    private final AtomicLong sequence = new AtomicLong(1);
-    private volatile LocalDate currentDate = LocalDate.now();
-    private final DateTimeFormatter dateFmt = DateTimeFormatter.BASIC_ISO_DATE;
+    public static final long EPOCH_MS = 1735689600000L; // 2025-01-01T00:00:00Z
 
-    public synchronized String nextId() {
-        LocalDate today = LocalDate.now();
-        if (!today.equals(currentDate)) {
-            currentDate = today;
-            sequence.set(1);
+    private static final int SEQUENCE_BITS = 13;
+    private static final int NODE_BITS = 5;
+    private static final int BANK_BITS = 5;
+    private static final int NODE_SHIFT = SEQUENCE_BITS;
+    private static final int BANK_SHIFT = SEQUENCE_BITS + NODE_BITS;
+    private static final int TIME_SHIFT = SEQUENCE_BITS + NODE_BITS + BANK_BITS;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private static final int ID_DIGITS = 19;
+    private static final byte[] PREFIX = "TRX-".getBytes(StandardCharsets.US_ASCII);
+
+    // (timestamp << SEQUENCE_BITS) | sequence of the last issued id
+    private final AtomicLong state;
+    private final long scope;
+    private final Path stateFile;
+    private final long leaseMs;
+    private volatile long leasedUntil;
+
+    public TransactionIdGenerator(@Value("${trx-id.bank-code:2}") int bankCode,
+                                  @Value("${trx-id.node:0}") int node,
+                                  @Value("${trx-id.state-file:data/bank-b-trx-id.hwm}") String stateFile,
+                                  @Value("${trx-id.lease-ms:10000}") long leaseMs) {
+        if (bankCode < 0 || bankCode >= (1 << BANK_BITS) || node < 0 || node >= (1 << NODE_BITS)) {
+            throw new IllegalArgumentException("trx-id.bank-code and trx-id.node must be in [0, 31]");
+        }
+        this.scope = ((long) bankCode << BANK_SHIFT) | ((long) node << NODE_SHIFT);
+        this.stateFile = Path.of(stateFile);
+        this.leaseMs = leaseMs;
+
+        long highWaterMark = readHighWaterMark();
+        long start = Math.max(System.currentTimeMillis() - EPOCH_MS, highWaterMark + 1);
+        this.state = new AtomicLong(start << SEQUENCE_BITS);
+        extendLease(start);
+    }
+
+    public String nextId() {
+        return format(nextNumericId());
+    }
+
+    /**
+     * Next id in its 64-bit form; strictly increasing for this generator.
+     */
+    public long nextNumericId() {
+        long now = System.currentTimeMillis() - EPOCH_MS;
+        long prev;
+        long next;
+        do {
+            prev = state.get();
+            long prevTime = prev >>> SEQUENCE_BITS;
+            next = now > prevTime ? now << SEQUENCE_BITS : prev + 1;
+        } while (!state.compareAndSet(prev, next));
+
+        long time = next >>> SEQUENCE_BITS;
+        if (time >= leasedUntil) {
+            extendLease(time);
+        }
+        return (time << TIME_SHIFT) | scope | (next & SEQUENCE_MASK);
+    }
+
+    /**
+     * Formats a numeric id as TRX- plus 19 zero-padded digits.
+     */
+    public static String format(long id) {
+        byte[] chars = new byte[PREFIX.length + ID_DIGITS];
+        System.arraycopy(PREFIX, 0, chars, 0, PREFIX.length);
+        for (int i = chars.length - 1; i >= PREFIX.length; i--) {
+            chars[i] = (byte) ('0' + (id % 10));
+            id /= 10;
+        }
+        return new String(chars, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Epoch milliseconds encoded in an id.
+     */
+    public static long timestampOf(long id) {
+        return (id >>> TIME_SHIFT) + EPOCH_MS;
+    }
+
+    /**
+     * Bank code encoded in an id.
+     */
+    public static int bankCodeOf(long id) {
+        return (int) ((id >>> BANK_SHIFT) & ((1 << BANK_BITS) - 1));
+    }
+
+    /**
+     * Blocks id issuance past the current lease until a new lease end is on
+     * disk. Runs once every lease-ms, so the lock is off the common path.
+     */
+    private synchronized void extendLease(long time) {
+        if (time < leasedUntil) {
+            return;
+        }
+        long until = time + leaseMs;
+        try {
+            Path parent = stateFile.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            // Write-then-rename, so a crash never leaves a truncated mark behind.
+            Path tmp = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                channel.write(ByteBuffer.wrap(Long.toString(until).getBytes(StandardCharsets.US_ASCII)));
+                channel.force(true);
+            }
+            Files.move(tmp, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot persist transaction id high-water mark", e);
+        }
+        leasedUntil = until;
+    }
+
+    private long readHighWaterMark() {
+        try {
+            if (!Files.exists(stateFile)) {
+                return -1;
+            }
+            String text = Files.readString(stateFile, StandardCharsets.US_ASCII).trim();
+            return text.isEmpty() ? -1 : Long.parseLong(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read transaction id high-water mark", e);
         }
-        long seq = sequence.getAndIncrement();
-        return String.format("TRX-%s-%06d", currentDate.format(dateFmt), seq);
     }
 }
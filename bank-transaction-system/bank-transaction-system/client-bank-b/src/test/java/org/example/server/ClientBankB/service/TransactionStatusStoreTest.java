@@ -0,0 +1,65 @@
+package org.example.server.ClientBankB.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.server.ClientBankB.dto.TransactionStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TransactionStatusStoreTest {
+
+    private final TransactionStatusStore store = new TransactionStatusStore(new ObjectMapper(), 1000, 60);
+
+    @Test
+    void timedOutPollsLeaveNoWaiter() {
+        store.forwarded("TRX-1");
+
+        CompletableFuture<TransactionStatus> first = store.awaitSettled("TRX-1", 10);
+        CompletableFuture<TransactionStatus> second = store.awaitSettled("TRX-1", 20);
+
+        assertEquals(TransactionStatus.FORWARDED, first.join().status());
+        assertEquals(TransactionStatus.FORWARDED, second.join().status());
+        assertEquals(0, store.waiting());
+    }
+
+    @Test
+    void onePollTimingOutKeepsTheOthersWaiting() {
+        store.forwarded("TRX-1");
+
+        CompletableFuture<TransactionStatus> shortPoll = store.awaitSettled("TRX-1", 10);
+        CompletableFuture<TransactionStatus> longPoll = store.awaitSettled("TRX-1", 60_000);
+        shortPoll.join();
+
+        assertEquals(1, store.waiting());
+        store.complete(new TransactionStatus("TRX-1", "SUCCESS", null, 5L));
+
+        assertEquals("SUCCESS", longPoll.join().status());
+        assertEquals(0, store.waiting());
+    }
+
+    @Test
+    void acceptedDoesNotEndThePoll() {
+        store.forwarded("TRX-1");
+        CompletableFuture<TransactionStatus> poll = store.awaitSettled("TRX-1", 60_000);
+
+        store.complete(new TransactionStatus("TRX-1", TransactionStatus.ACCEPTED, "Queued for processing", 1L));
+
+        assertFalse(poll.isDone());
+        store.complete(new TransactionStatus("TRX-1", "SUCCESS", null, 5L));
+        assertEquals("SUCCESS", poll.join().status());
+        assertEquals(0, store.waiting());
+    }
+
+    @Test
+    void settledOrUnknownTransactionsAnswerAtOnce() {
+        store.complete(new TransactionStatus("TRX-1", "FAILED", "Insufficient funds", 3L));
+
+        assertEquals("FAILED", store.awaitSettled("TRX-1", 60_000).join().status());
+        assertNull(store.awaitSettled("TRX-2", 60_000).join());
+        assertEquals(0, store.waiting());
+    }
+}
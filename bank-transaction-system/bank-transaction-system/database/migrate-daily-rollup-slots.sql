@@ -0,0 +1,17 @@
+-- Adds the slot column to a transaction_daily_rollup created before the
+-- log writer flushers got rollup rows of their own (see schema.sql).
+--
+-- Run once, with the server stopped:
+--   psql -d banktransdb -v ON_ERROR_STOP=1 -f database/migrate-daily-rollup-slots.sql
+--
+-- Existing totals are kept as slot 0; reports sum over the slots.
+
+BEGIN;
+
+ALTER TABLE transaction_daily_rollup ADD COLUMN slot SMALLINT NOT NULL DEFAULT 0;
+ALTER TABLE transaction_daily_rollup ALTER COLUMN slot DROP DEFAULT;
+
+ALTER TABLE transaction_daily_rollup DROP CONSTRAINT transaction_daily_rollup_pkey;
+ALTER TABLE transaction_daily_rollup ADD PRIMARY KEY (trx_date, bank_id, currency, status, slot);
+
+COMMIT;
@@ -0,0 +1,76 @@
+-- Converts an unpartitioned transaction_log (the layout before daily
+-- partitioning) into the partitioned layout of schema.sql.
+--
+-- Run once, with the server stopped:
+--   psql -d banktransdb -v ON_ERROR_STOP=1 -f database/migrate-transaction-log-partitioning.sql
+--
+-- Every row is copied into the partition of the day encoded in its trx_id.
+-- The old table is kept as transaction_log_unpartitioned; drop it once the
+-- migration has been verified. When the server starts, it creates the
+-- partitions it still needs and expires days beyond the retention period.
+
+BEGIN;
+
+-- Same rules as org.example.server.util.TrxIdDate; keep both in sync.
+CREATE FUNCTION pg_temp.trx_id_date(trx_id TEXT) RETURNS DATE
+    LANGUAGE plpgsql IMMUTABLE AS $$
+BEGIN
+    IF trx_id ~ '^TRX-[0-9]{19}$' AND substr(trx_id, 5) <= '9223372036854775807' THEN
+        -- top 40 bits: milliseconds since 2025-01-01T00:00:00Z
+        RETURN (TIMESTAMP 'epoch'
+                    + ((substr(trx_id, 5)::BIGINT >> 23) + 1735689600000) * INTERVAL '1 millisecond')::DATE;
+    ELSIF trx_id ~ '^TRX-[0-9]{8}-' THEN
+        RETURN to_date(substr(trx_id, 5, 8), 'YYYYMMDD');
+    END IF;
+    RETURN DATE '1970-01-01';
+EXCEPTION WHEN OTHERS THEN
+    RETURN DATE '1970-01-01';
+END
+$$;
+
+ALTER TABLE transaction_log RENAME TO transaction_log_unpartitioned;
+
+CREATE TABLE transaction_log (
+    id BIGINT NOT NULL DEFAULT nextval('transaction_log_id_seq'),
+    trx_id VARCHAR(50) NOT NULL,
+    trx_date DATE NOT NULL,
+    bank_id VARCHAR(20) NOT NULL,
+    customer_id BIGINT NOT NULL,
+    from_account VARCHAR(20) NOT NULL,
+    to_account VARCHAR(20) NOT NULL,
+    amount NUMERIC(18, 2) NOT NULL,
+    currency VARCHAR(10) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    reason VARCHAR(255),
+    request_timestamp TIMESTAMPTZ NOT NULL,
+    processed_timestamp TIMESTAMPTZ NOT NULL,
+    processing_time_ms BIGINT NOT NULL,
+    CONSTRAINT uk_trx_id UNIQUE (trx_id, trx_date)
+) PARTITION BY RANGE (trx_date);
+
+ALTER SEQUENCE transaction_log_id_seq OWNED BY transaction_log.id;
+
+CREATE TABLE transaction_log_undated PARTITION OF transaction_log
+    FOR VALUES FROM ('1970-01-01') TO ('1970-01-02');
+
+CREATE TABLE transaction_log_default PARTITION OF transaction_log DEFAULT;
+
+-- One partition per day present in the old table
+SELECT format('CREATE TABLE %I PARTITION OF transaction_log FOR VALUES FROM (%L) TO (%L)',
+              'transaction_log_p' || to_char(d, 'YYYYMMDD'), d, d + 1)
+FROM (SELECT DISTINCT pg_temp.trx_id_date(trx_id) AS d FROM transaction_log_unpartitioned) days
+WHERE d <> DATE '1970-01-01'
+ORDER BY d
+\gexec
+
+INSERT INTO transaction_log (id, trx_id, trx_date, bank_id, customer_id, from_account, to_account,
+                             amount, currency, status, reason, request_timestamp, processed_timestamp,
+                             processing_time_ms)
+SELECT id, trx_id, pg_temp.trx_id_date(trx_id), bank_id, customer_id, from_account, to_account,
+       amount, currency, status, reason, request_timestamp, processed_timestamp,
+       processing_time_ms
+FROM transaction_log_unpartitioned;
+
+COMMIT;
+
+ANALYZE transaction_log;
@@ -0,0 +1,38 @@
+package org.example.server.reactive;
+
+import org.example.server.codec.TransactionRequestBinaryDecoder;
+import org.example.server.codec.TransactionRequestXmlDecoder;
+import org.example.server.rules.RuleEngine;
+import org.example.server.service.AccountLedgerService;
+import org.example.server.service.TransactionLogPartitionManager;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Import;
+
+/**
+ * Entry point for the reactive build of the central transaction server.
+ *
+ * Responsibilities:
+ * - Bootstraps Spring Boot on WebFlux (Reactor Netty) and R2DBC, with the
+ *   configuration in application.yml.
+ * - Imports the server components it shares with the servlet build:
+ *   request decoders, RuleEngine, the in-memory AccountLedgerService and
+ *   TransactionLogPartitionManager.
+ *   Only org.example.server.reactive is component-scanned, so none of the
+ *   servlet build's controllers or JDBC services are picked up.
+ * - Exposes POST /server/transaction/process, with the same request and
+ *   response formats as the servlet build.
+ */
+@SpringBootApplication
+@Import({
+        TransactionRequestXmlDecoder.class,
+        TransactionRequestBinaryDecoder.class,
+        RuleEngine.class,
+        AccountLedgerService.class,
+        TransactionLogPartitionManager.class
+})
+public class ReactiveServerApplication {
+    public static void main(String[] args) {
+        SpringApplication.run(ReactiveServerApplication.class, args);
+    }
+}
@@ -0,0 +1,45 @@
+package org.example.server.reactive.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Reactive server configuration.
+ *
+ * - Exposes the shared XmlMapper used by TransactionRequestXmlDecoder.
+ * - Exposes the primary JSON ObjectMapper used by the WebFlux JSON codecs.
+ *
+ * There is no transactionExecutor: requests are decoded, validated and
+ * applied to the ledger on the Netty event loop that read them, and only
+ * the database write is asynchronous.
+ */
+@Configuration
+public class ReactiveServerConfig {
+
+    /**
+     * XmlMapper is thread-safe once fully configured and reused for all requests.
+     */
+    @Bean
+    public XmlMapper xmlMapper() {
+        XmlMapper mapper = new XmlMapper();
+        mapper.registerModule(new JavaTimeModule());
+        mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        return mapper;
+    }
+
+    /**
+     * XmlMapper is itself an ObjectMapper, so without a primary JSON mapper
+     * Spring Boot would back off its own and use the XmlMapper for JSON bodies.
+     */
+    @Bean
+    @Primary
+    public ObjectMapper objectMapper(Jackson2ObjectMapperBuilder builder) {
+        return builder.createXmlMapper(false).build();
+    }
+}
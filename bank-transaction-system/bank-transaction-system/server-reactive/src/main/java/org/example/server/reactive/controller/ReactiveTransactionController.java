@@ -0,0 +1,74 @@
+package org.example.server.reactive.controller;
+
+import org.example.server.codec.TransactionRequestBinaryDecoder;
+import org.example.server.dto.TransactionResponseDto;
+import org.example.server.exception.ServerOverloadedException;
+import org.example.server.reactive.service.ReactiveTransactionProcessor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+/**
+ * WebFlux controller of the reactive server; same contract as the servlet
+ * build's TransactionController for single transactions.
+ *
+ * Exposes:
+ *   POST /server/transaction/process
+ *     Consumes application/xml (TransactionRequest XML), or
+ *     application/x-bank-transaction (the same record in compact binary form)
+ *     Produces application/json (TransactionResponseDto)
+ *
+ * The body is buffered by the codec (bounded by spring.codec.max-in-memory-size)
+ * without blocking, then decoded and processed by ReactiveTransactionProcessor.
+ * Requests shed because the log writer is full are answered with 503 Service
+ * Unavailable and a Retry-After header.
+ *
+ * /process-batch and the status endpoints are only served by the servlet
+ * build; bank clients must use forward.batch.enabled=false against this one.
+ * So is /server/ledger: a reactive node either runs the ledger for itself
+ * alone or uses a servlet node's through transaction.ledger.remote-url.
+ */
+@RestController
+@RequestMapping("/server/transaction")
+public class ReactiveTransactionController {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final ReactiveTransactionProcessor processor;
+
+    public ReactiveTransactionController(ReactiveTransactionProcessor processor) {
+        this.processor = processor;
+    }
+
+    @PostMapping(
+            value = "/process",
+            consumes = MediaType.APPLICATION_XML_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public Mono<TransactionResponseDto> process(@RequestBody(required = false) byte[] xml) {
+        return processor.processXml(xml != null ? xml : EMPTY);
+    }
+
+    @PostMapping(
+            value = "/process",
+            consumes = TransactionRequestBinaryDecoder.MEDIA_TYPE,
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public Mono<TransactionResponseDto> processBinary(@RequestBody(required = false) byte[] body) {
+        return processor.processBinary(body != null ? body : EMPTY);
+    }
+
+    /**
+     * Requests shed by back-pressure get a fast 503 with Retry-After.
+     */
+    @ExceptionHandler(ServerOverloadedException.class)
+    public ResponseEntity<TransactionResponseDto> overloaded(ServerOverloadedException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(ex.getRetryAfterSeconds()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(new TransactionResponseDto(ex.getTrxId(), "FAILED", "Server Overloaded", 0));
+    }
+}
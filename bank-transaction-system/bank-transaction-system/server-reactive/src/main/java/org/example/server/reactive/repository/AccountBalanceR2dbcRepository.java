@@ -0,0 +1,165 @@
+package org.example.server.reactive.repository;
+
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ValidationDepth;
+import org.example.server.repository.AccountBalanceRepository;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.function.BiConsumer;
+
+/**
+ * R2DBC access to 'account_balance' for the shared AccountLedgerService.
+ *
+ * The ledger calls this only at startup and from its "ledger-fold" thread,
+ * never on an event loop, so these methods block until the database has
+ * answered. Requests only ever touch the in-memory ledger.
+ *
+ * The ledger lock is a session-level Postgres advisory lock, held on a
+ * connection taken from the pool for the life of the ledger and checked by
+ * the ledger every few seconds.
+ */
+@Repository
+public class AccountBalanceR2dbcRepository implements AccountBalanceRepository {
+
+    private static final String SELECT_ALL =
+            "SELECT b.account_no, b.balance + COALESCE(d.delta, 0) FROM account_balance b "
+                    + "LEFT JOIN (SELECT account_no, sum(delta) AS delta FROM account_balance_delta "
+                    + "GROUP BY account_no) d ON d.account_no = b.account_no";
+
+    /** Same statement as AccountBalanceJdbcRepository's. */
+    private static final String FOLD_DELTAS =
+            "WITH moved AS (DELETE FROM account_balance_delta WHERE (account_no, slot) IN ("
+                    + "SELECT account_no, slot FROM account_balance_delta ORDER BY account_no, slot FOR UPDATE) "
+                    + "RETURNING account_no, delta) "
+                    + "UPDATE account_balance b SET balance = b.balance + m.delta "
+                    + "FROM (SELECT account_no, sum(delta) AS delta FROM moved GROUP BY account_no) m "
+                    + "WHERE b.account_no = m.account_no";
+
+    private static final String TRY_LOCK = "SELECT pg_try_advisory_lock($1)";
+
+    private static final String UNLOCK = "SELECT pg_advisory_unlock($1)";
+
+    private static final String CLAIM =
+            "INSERT INTO account_ledger_owner (id, owner, loaded_at) VALUES (1, $1, now()) "
+                    + "ON CONFLICT (id) DO UPDATE SET owner = EXCLUDED.owner, loaded_at = EXCLUDED.loaded_at";
+
+    private static final String SELECT_OWNER = "SELECT owner FROM account_ledger_owner WHERE id = 1";
+
+    private static final Duration LOCK_CHECK_TIMEOUT = Duration.ofSeconds(5);
+
+    private final DatabaseClient databaseClient;
+    private final ConnectionFactory connectionFactory;
+
+    // Holds the ledger lock; guarded by this
+    private Connection lockConnection;
+
+    public AccountBalanceR2dbcRepository(DatabaseClient databaseClient,
+                                         ConnectionFactory connectionFactory) {
+        this.databaseClient = databaseClient;
+        this.connectionFactory = connectionFactory;
+    }
+
+    @Override
+    public synchronized boolean tryAcquireLedgerLock() {
+        if (lockConnection != null) {
+            return true;
+        }
+        Connection connection = Mono.from(connectionFactory.create()).block();
+        boolean locked = false;
+        try {
+            locked = Boolean.TRUE.equals(lockQuery(connection, TRY_LOCK).block());
+        } finally {
+            if (!locked) {
+                Mono.from(connection.close()).block();
+            }
+        }
+        if (locked) {
+            lockConnection = connection;
+        }
+        return locked;
+    }
+
+    @Override
+    public synchronized void releaseLedgerLock() {
+        if (lockConnection == null) {
+            return;
+        }
+        Connection connection = lockConnection;
+        lockConnection = null;
+        // Pooled connections outlive the session lock's owner: unlock explicitly.
+        Mono.usingWhen(Mono.just(connection), c -> lockQuery(c, UNLOCK), Connection::close)
+                .block();
+    }
+
+    @Override
+    public synchronized boolean isLedgerLockHeld() {
+        if (lockConnection == null) {
+            return false;
+        }
+        Boolean valid = Mono.from(lockConnection.validate(ValidationDepth.REMOTE))
+                .timeout(LOCK_CHECK_TIMEOUT)
+                .onErrorReturn(false)
+                .block();
+        if (Boolean.TRUE.equals(valid)) {
+            return true;
+        }
+        Connection connection = lockConnection;
+        lockConnection = null;
+        // The session may only be unreachable for now: unlock in case it comes back.
+        Mono.usingWhen(Mono.just(connection), c -> lockQuery(c, UNLOCK), Connection::close)
+                .timeout(LOCK_CHECK_TIMEOUT)
+                .onErrorResume(e -> Mono.empty())
+                .block();
+        return false;
+    }
+
+    @Override
+    public void claimLedger(String owner) {
+        databaseClient.sql(CLAIM)
+                .bind(0, owner)
+                .fetch()
+                .rowsUpdated()
+                .block();
+    }
+
+    @Override
+    public boolean isLedgerOwner(String owner) {
+        return Boolean.TRUE.equals(databaseClient.sql(SELECT_OWNER)
+                .map((row, meta) -> owner.equals(row.get(0, String.class)))
+                .first()
+                .defaultIfEmpty(false)
+                .block());
+    }
+
+    private static Mono<Boolean> lockQuery(Connection connection, String sql) {
+        return Flux.from(connection.createStatement(sql).bind(0, LEDGER_LOCK_KEY).execute())
+                .flatMap(result -> result.map((row, meta) -> row.get(0, Boolean.class)))
+                .next();
+    }
+
+    @Override
+    public void forEachBalance(BiConsumer<String, BigDecimal> consumer) {
+        databaseClient.sql(SELECT_ALL)
+                .map((row, meta) -> {
+                    consumer.accept(row.get(0, String.class), row.get(1, BigDecimal.class));
+                    return Boolean.TRUE;
+                })
+                .all()
+                .then()
+                .block();
+    }
+
+    @Override
+    public void foldDeltas() {
+        databaseClient.sql(FOLD_DELTAS)
+                .fetch()
+                .rowsUpdated()
+                .block();
+    }
+}
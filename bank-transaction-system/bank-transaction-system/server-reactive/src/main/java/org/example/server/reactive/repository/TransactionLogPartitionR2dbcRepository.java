@@ -0,0 +1,144 @@
+package org.example.server.reactive.repository;
+
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.Result;
+import org.example.server.repository.TransactionLogPartitionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * R2DBC access to the daily partitions of 'transaction_log' for the shared
+ * TransactionLogPartitionManager.
+ *
+ * The manager calls this only at startup and from its "partition-maintenance"
+ * thread, never on an event loop, so these methods block until the database
+ * has answered. Statements and locking are the same as in
+ * TransactionLogPartitionJdbcRepository.
+ */
+@Repository
+public class TransactionLogPartitionR2dbcRepository implements TransactionLogPartitionRepository {
+
+    private static final String SELECT_PARTITIONS =
+            "SELECT c.relname FROM pg_inherits i "
+                    + "JOIN pg_class c ON c.oid = i.inhrelid "
+                    + "WHERE i.inhparent = 'transaction_log'::regclass";
+
+    private static final String HAS_DEFAULT_PARTITION =
+            "SELECT partdefid <> 0 FROM pg_partitioned_table WHERE partrelid = 'transaction_log'::regclass";
+
+    private static final String IS_DETACH_PENDING =
+            "SELECT inhdetachpending FROM pg_inherits WHERE inhrelid = to_regclass($1)";
+
+    private static final String DELETE_EXPIRED_DEFAULT_ROWS =
+            "DELETE FROM transaction_log_default WHERE trx_date < $1";
+
+    // transaction_log_archive has the columns of transaction_log in the same order.
+    private static final String ARCHIVE_EXPIRED_DEFAULT_ROWS =
+            "WITH moved AS (DELETE FROM transaction_log_default WHERE trx_date < $1 RETURNING *) "
+                    + "INSERT INTO transaction_log_archive SELECT * FROM moved";
+
+    private final DatabaseClient databaseClient;
+    private final long lockTimeoutMs;
+
+    public TransactionLogPartitionR2dbcRepository(DatabaseClient databaseClient,
+                                                  @Value("${transaction.partitions.lock-timeout-ms:5000}")
+                                                  long lockTimeoutMs) {
+        this.databaseClient = databaseClient;
+        this.lockTimeoutMs = lockTimeoutMs;
+    }
+
+    @Override
+    public List<LocalDate> findPartitionDays() {
+        return databaseClient.sql(SELECT_PARTITIONS)
+                .map((row, meta) -> row.get(0, String.class))
+                .all()
+                .map(TransactionLogPartitionRepository::day)
+                .filter(Objects::nonNull)
+                .collectList()
+                .block();
+    }
+
+    @Override
+    public void createPartition(LocalDate day) {
+        executeInTransaction("CREATE TABLE IF NOT EXISTS " + TransactionLogPartitionRepository.name(day)
+                + " PARTITION OF transaction_log FOR VALUES FROM ('" + day + "') TO ('" + day.plusDays(1) + "')");
+    }
+
+    @Override
+    public void detachPartition(LocalDate day) {
+        String name = TransactionLogPartitionRepository.name(day);
+        String detach = "ALTER TABLE transaction_log DETACH PARTITION " + name;
+        if (queryFlag(databaseClient.sql(IS_DETACH_PENDING).bind(0, name))) {
+            executeOutsideTransaction(detach + " FINALIZE");
+        } else if (queryFlag(databaseClient.sql(HAS_DEFAULT_PARTITION))) {
+            executeInTransaction(detach);
+        } else {
+            executeOutsideTransaction(detach + " CONCURRENTLY");
+        }
+    }
+
+    @Override
+    public void dropPartition(LocalDate day) {
+        executeInTransaction("DROP TABLE IF EXISTS " + TransactionLogPartitionRepository.name(day));
+    }
+
+    @Override
+    public int deleteExpiredDefaultRows(LocalDate cutoff) {
+        return rowsUpdated(databaseClient.sql(DELETE_EXPIRED_DEFAULT_ROWS).bind(0, cutoff));
+    }
+
+    @Override
+    public int archiveExpiredDefaultRows(LocalDate cutoff) {
+        return rowsUpdated(databaseClient.sql(ARCHIVE_EXPIRED_DEFAULT_ROWS).bind(0, cutoff));
+    }
+
+    private static boolean queryFlag(DatabaseClient.GenericExecuteSpec spec) {
+        return Boolean.TRUE.equals(spec.map((row, meta) -> row.get(0, Boolean.class))
+                .first()
+                .block());
+    }
+
+    private static int rowsUpdated(DatabaseClient.GenericExecuteSpec spec) {
+        Long rows = spec.fetch().rowsUpdated().block();
+        return rows != null ? rows.intValue() : 0;
+    }
+
+    /**
+     * Runs one DDL statement in its own transaction, under SET LOCAL
+     * lock_timeout.
+     */
+    private void executeInTransaction(String ddl) {
+        databaseClient.inConnection(connection -> Mono.from(connection.beginTransaction())
+                        .then(execute(connection, "SET LOCAL lock_timeout = " + lockTimeoutMs))
+                        .then(execute(connection, ddl))
+                        .then(Mono.from(connection.commitTransaction()))
+                        .onErrorResume(ex -> Mono.from(connection.rollbackTransaction()).then(Mono.error(ex))))
+                .block();
+    }
+
+    /**
+     * Runs one DDL statement that Postgres refuses inside a transaction
+     * block, under a session lock_timeout that is reset before the pooled
+     * connection is returned.
+     */
+    private void executeOutsideTransaction(String ddl) {
+        databaseClient.inConnection(connection -> execute(connection, "SET lock_timeout = " + lockTimeoutMs)
+                        .then(Mono.usingWhen(Mono.just(connection),
+                                c -> execute(c, ddl),
+                                c -> execute(c, "RESET lock_timeout"))))
+                .block();
+    }
+
+    private static Mono<Void> execute(Connection connection, String sql) {
+        return Flux.from(connection.createStatement(sql).execute())
+                .flatMap(Result::getRowsUpdated)
+                .then();
+    }
+}
@@ -0,0 +1,158 @@
+package org.example.server.reactive.repository;
+
+import org.example.server.dto.TransactionOutcome;
+import org.example.server.entity.TransactionLog;
+import org.example.server.util.TrxIdDate;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.DatabaseClient.GenericExecuteSpec;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * R2DBC access to 'transaction_log', the non-blocking counterpart of the
+ * servlet build's TransactionLogJdbcRepository.
+ *
+ * A batch is written as one multi-row
+ * INSERT ... ON CONFLICT (trx_id, trx_date) DO NOTHING RETURNING trx_id
+ * statement, with the same columns and the same partition key (trx_date,
+ * derived from trx_id by TrxIdDate) as the JDBC repository, so both builds
+ * can write to the same table. It also maintains transaction_daily_rollup
+ * and account_balance_delta in the same statement, one slot per concurrent
+ * statement, as the JDBC repository does.
+ */
+@Repository
+public class TransactionLogR2dbcRepository {
+
+    private static final int COLUMN_COUNT = 13;
+
+    /** Postgres caps bind parameters per statement at 32767. */
+    public static final int MAX_ROWS_PER_STATEMENT = 32767 / COLUMN_COUNT;
+
+    private static final String INSERT_PREFIX =
+            "WITH inserted AS (INSERT INTO transaction_log (trx_id, trx_date, bank_id, customer_id, "
+                    + "from_account, to_account, amount, currency, status, reason, request_timestamp, processed_timestamp, "
+                    + "processing_time_ms) VALUES ";
+
+    /**
+     * Adds the inserted rows to transaction_daily_rollup, and the netted
+     * balance changes of the inserted SUCCESS rows to account_balance_delta,
+     * in the same statement, so both commit together with (and only for) the
+     * rows that were actually inserted. Each caller passes its own slot, so
+     * concurrent batches update different rows of both tables and never wait
+     * on each other's commits. Rows are upserted in key order.
+     */
+    private static final String INSERT_SUFFIX = " ON CONFLICT (trx_id, trx_date) DO NOTHING "
+            + "RETURNING trx_id, trx_date, bank_id, from_account, to_account, currency, status, amount), ";
+
+    private static final String ROLLUP_INSERTED = "rollup AS (INSERT INTO transaction_daily_rollup "
+            + "(trx_date, bank_id, currency, status, slot, tx_count, total_amount) "
+            + "SELECT trx_date, bank_id, currency, status, %1$d, count(*), sum(amount) FROM inserted "
+            + "GROUP BY trx_date, bank_id, currency, status "
+            + "ORDER BY trx_date, bank_id, currency, status "
+            + "ON CONFLICT (trx_date, bank_id, currency, status, slot) DO UPDATE SET "
+            + "tx_count = transaction_daily_rollup.tx_count + EXCLUDED.tx_count, "
+            + "total_amount = transaction_daily_rollup.total_amount + EXCLUDED.total_amount), ";
+
+    private static final String BALANCE_DELTAS = "balances AS (INSERT INTO account_balance_delta "
+            + "(account_no, slot, delta) "
+            + "SELECT account_no, %1$d, sum(delta) FROM ("
+            + "SELECT from_account AS account_no, -amount AS delta FROM inserted WHERE status = 'SUCCESS' "
+            + "UNION ALL SELECT to_account, amount FROM inserted WHERE status = 'SUCCESS') moves "
+            + "GROUP BY account_no ORDER BY account_no "
+            + "ON CONFLICT (account_no, slot) DO UPDATE SET "
+            + "delta = account_balance_delta.delta + EXCLUDED.delta) ";
+
+    private static final String INSERT_RESULT = "SELECT trx_id FROM inserted";
+
+    private static final String SELECT_OUTCOME =
+            "SELECT status, reason FROM transaction_log WHERE trx_id = $1 AND trx_date = $2";
+
+    private final DatabaseClient databaseClient;
+
+    public TransactionLogR2dbcRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    /**
+     * Looks up the recorded outcome of a transaction.
+     *
+     * @return the outcome, or empty if the trxId is not in the table.
+     */
+    public Mono<TransactionOutcome> findOutcome(String trxId) {
+        return databaseClient.sql(SELECT_OUTCOME)
+                .bind(0, trxId)
+                .bind(1, TrxIdDate.of(trxId))
+                .map((row, meta) -> new TransactionOutcome(row.get(0, String.class), row.get(1, String.class)))
+                .first();
+    }
+
+    /**
+     * Inserts all rows in a single statement.
+     *
+     * @param logs rows to insert; at most {@link #MAX_ROWS_PER_STATEMENT}.
+     * @param slot rollup and balance delta slot of the calling statement (0..32767).
+     * @return trxIds that were actually inserted (rows missing from the set
+     *         already existed in the table).
+     */
+    public Mono<Set<String>> insertIgnoringDuplicates(List<TransactionLog> logs, int slot) {
+        if (logs.size() > MAX_ROWS_PER_STATEMENT) {
+            return Mono.error(new IllegalArgumentException("Batch of " + logs.size()
+                    + " rows exceeds " + MAX_ROWS_PER_STATEMENT));
+        }
+
+        GenericExecuteSpec spec = databaseClient.sql(buildInsertSql(logs.size(), slot));
+        int i = 0;
+        for (TransactionLog log : logs) {
+            spec = bind(spec, i++, log.getTrxId(), String.class);
+            spec = bind(spec, i++, log.getTrxDate(), LocalDate.class);
+            spec = bind(spec, i++, log.getBankId(), String.class);
+            spec = bind(spec, i++, log.getCustomerId(), Long.class);
+            spec = bind(spec, i++, log.getFromAccount(), String.class);
+            spec = bind(spec, i++, log.getToAccount(), String.class);
+            spec = bind(spec, i++, log.getAmount(), BigDecimal.class);
+            spec = bind(spec, i++, log.getCurrency(), String.class);
+            spec = bind(spec, i++, log.getStatus(), String.class);
+            spec = bind(spec, i++, log.getReason(), String.class);
+            spec = bind(spec, i++, log.getRequestTimestamp(), OffsetDateTime.class);
+            spec = bind(spec, i++, log.getProcessedTimestamp(), OffsetDateTime.class);
+            spec = bind(spec, i++, log.getProcessingTimeMs(), Long.class);
+        }
+        return spec.map((row, meta) -> row.get(0, String.class))
+                .all()
+                .collect(() -> new HashSet<String>(logs.size() * 2), Set::add);
+    }
+
+    private static <T> GenericExecuteSpec bind(GenericExecuteSpec spec, int index, T value, Class<T> type) {
+        return value != null ? spec.bind(index, value) : spec.bindNull(index, type);
+    }
+
+    private static String buildInsertSql(int rows, int slot) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + rows * COLUMN_COUNT * 6
+                + INSERT_SUFFIX.length() + ROLLUP_INSERTED.length() + BALANCE_DELTAS.length()
+                + INSERT_RESULT.length() + 12);
+        sql.append(INSERT_PREFIX);
+        int parameter = 1;
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "(" : ", (");
+            for (int c = 0; c < COLUMN_COUNT; c++) {
+                if (c > 0) {
+                    sql.append(", ");
+                }
+                sql.append('$').append(parameter++);
+            }
+            sql.append(')');
+        }
+        sql.append(INSERT_SUFFIX)
+                .append(ROLLUP_INSERTED.formatted(slot))
+                .append(BALANCE_DELTAS.formatted(slot))
+                .append(INSERT_RESULT);
+        return sql.toString();
+    }
+}
@@ -0,0 +1,207 @@
+package org.example.server.reactive.service;
+
+import jakarta.annotation.PreDestroy;
+import org.example.server.entity.TransactionLog;
+import org.example.server.exception.ServerOverloadedException;
+import org.example.server.reactive.repository.TransactionLogR2dbcRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Group-commit stage for TransactionLog persistence over R2DBC, the
+ * non-blocking counterpart of the servlet build's TransactionLogWriter.
+ *
+ * Rows handed to {@link #write(TransactionLog)} are collected in a bounded
+ * buffer and written in multi-row batches by at most max-in-flight-batches
+ * concurrent statements. There are no flusher threads and no linger timer:
+ * whenever a statement slot is free, everything buffered so far (up to
+ * batch-size rows) is sent at once. Under light load a row is written on its
+ * own straight away; under heavy load rows pile up while the statements in
+ * flight run, so batches grow with the load. Each statement in flight holds
+ * one of max-in-flight-batches rollup slots, so concurrent statements never
+ * update the same transaction_daily_rollup rows.
+ *
+ * Back-pressure: the buffer and the statement slots are the only queues
+ * between the event loop and the database. When the database falls behind
+ * and the buffer is full, write() fails with ServerOverloadedException
+ * (answered 503 + Retry-After) instead of blocking an event loop.
+ *
+ * Callers always answer after the row's batch has committed (the servlet
+ * build's FLUSH durability); the result of write() does not depend on the
+ * caller staying subscribed.
+ */
+@Service
+public class ReactiveTransactionLogWriter {
+
+    private final TransactionLogR2dbcRepository repository;
+    private final BlockingQueue<PendingLog> buffer;
+    private final int batchSize;
+    private final long retryAfterSeconds;
+    // Rollup slots not held by a batch in flight
+    private final ConcurrentLinkedQueue<Integer> freeSlots = new ConcurrentLinkedQueue<>();
+
+    // Batches being written
+    private final AtomicInteger inFlightBatches = new AtomicInteger();
+    // Serializes drain(): only the caller that raises it from 0 drains
+    private final AtomicInteger drainRequests = new AtomicInteger();
+
+    private volatile boolean running = true;
+
+    public ReactiveTransactionLogWriter(TransactionLogR2dbcRepository repository,
+                                        @Value("${transaction.log-writer.capacity:20000}") int capacity,
+                                        @Value("${transaction.log-writer.batch-size:500}") int batchSize,
+                                        @Value("${transaction.log-writer.max-in-flight-batches:8}") int maxInFlightBatches,
+                                        @Value("${transaction.admission.retry-after-seconds:1}") long retryAfterSeconds) {
+        this.repository = repository;
+        this.buffer = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = Math.min(batchSize, TransactionLogR2dbcRepository.MAX_ROWS_PER_STATEMENT);
+        for (int slot = 0; slot < maxInFlightBatches; slot++) {
+            freeSlots.add(slot);
+        }
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Stops accepting rows and waits for the buffered ones to be written
+     * before the connection pool is closed.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while ((!buffer.isEmpty() || inFlightBatches.get() > 0) && System.nanoTime() < deadline) {
+            drain();
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Buffers a row for the next batch. The row is buffered immediately, not
+     * on subscription.
+     *
+     * @return Mono of true once the row's batch is committed, false if its
+     *         trxId already existed; failing with ServerOverloadedException
+     *         if the buffer is full.
+     */
+    public Mono<Boolean> write(TransactionLog row) {
+        if (!running) {
+            return Mono.error(new IllegalStateException("Transaction log writer is stopped"));
+        }
+        PendingLog pending = new PendingLog(row);
+        if (!buffer.offer(pending)) {
+            return Mono.error(new ServerOverloadedException(row.getTrxId(),
+                    "Transaction log buffer full", retryAfterSeconds));
+        }
+        drain();
+        return pending.result.asMono();
+    }
+
+    /**
+     * Starts batches while rollup slots are free and rows are buffered.
+     * Called after every write and after every finished batch.
+     */
+    private void drain() {
+        if (drainRequests.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            while (!buffer.isEmpty()) {
+                Integer slot = freeSlots.poll();
+                if (slot == null) {
+                    break;
+                }
+                List<PendingLog> batch = new ArrayList<>(Math.min(batchSize, buffer.size()));
+                buffer.drainTo(batch, batchSize);
+                if (batch.isEmpty()) {
+                    freeSlots.add(slot);
+                    break;
+                }
+                inFlightBatches.incrementAndGet();
+                flush(batch, slot)
+                        .doFinally(signal -> {
+                            inFlightBatches.decrementAndGet();
+                            freeSlots.add(slot);
+                            drain();
+                        })
+                        .subscribe();
+            }
+            missed = drainRequests.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * Writes one batch and completes its rows. If the batch statement fails
+     * (e.g. a row violating a NOT NULL column), rows are retried one by one
+     * so a single bad row cannot fail its neighbours.
+     */
+    private Mono<Void> flush(List<PendingLog> batch, int slot) {
+        // Only the first occurrence of a trxId within a batch can be inserted.
+        Map<String, PendingLog> unique = new HashMap<>(batch.size() * 2);
+        List<PendingLog> rows = new ArrayList<>(batch.size());
+        List<PendingLog> duplicates = new ArrayList<>();
+        for (PendingLog p : batch) {
+            if (unique.putIfAbsent(p.row.getTrxId(), p) == null) {
+                rows.add(p);
+            } else {
+                duplicates.add(p);
+            }
+        }
+
+        Mono<Void> written = insert(rows, slot)
+                .onErrorResume(ex -> rows.size() > 1, ex -> Flux.fromIterable(rows)
+                        .concatMap(p -> insert(List.of(p), slot).onErrorResume(single -> {
+                            fail(p, single);
+                            return Mono.empty();
+                        }))
+                        .then())
+                .onErrorResume(ex -> {
+                    fail(rows.get(0), ex);
+                    return Mono.empty();
+                });
+        return written.doFinally(signal -> duplicates.forEach(p -> p.result.tryEmitValue(false)));
+    }
+
+    private Mono<Void> insert(List<PendingLog> rows, int slot) {
+        List<TransactionLog> logs = new ArrayList<>(rows.size());
+        for (PendingLog p : rows) {
+            logs.add(p.row);
+        }
+        return repository.insertIgnoringDuplicates(logs, slot)
+                .doOnNext(inserted -> complete(rows, inserted))
+                .then();
+    }
+
+    private static void complete(List<PendingLog> rows, Set<String> inserted) {
+        for (PendingLog p : rows) {
+            p.result.tryEmitValue(inserted.contains(p.row.getTrxId()));
+        }
+    }
+
+    private static void fail(PendingLog p, Throwable ex) {
+        p.result.tryEmitError(ex);
+    }
+
+    private static final class PendingLog {
+        private final TransactionLog row;
+        private final Sinks.One<Boolean> result = Sinks.one();
+
+        private PendingLog(TransactionLog row) {
+            this.row = row;
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package org.example.server.reactive.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.example.server.codec.TransactionRequestBinaryDecoder;
+import org.example.server.codec.TransactionRequestXmlDecoder;
+import org.example.server.dto.TransactionOutcome;
+import org.example.server.dto.TransactionResponseDto;
+import org.example.server.entity.TransactionLog;
+import org.example.server.exception.ServerOverloadedException;
+import org.example.server.model.TransactionRequestXml;
+import org.example.server.reactive.repository.TransactionLogR2dbcRepository;
+import org.example.server.rules.RuleEngine;
+import org.example.server.service.AccountLedgerService;
+import org.example.server.service.TransactionLogPartitionManager;
+import org.example.server.util.TrxIdDate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decodes and processes a single transaction without blocking, the reactive
+ * counterpart of the servlet build's TransactionOrchestratorService and
+ * TransactionProcessingService.
+ *
+ * This class:
+ * - Decodes the buffered body with the shared TransactionRequestXmlDecoder
+ *   or TransactionRequestBinaryDecoder.
+ * - Answers requests missing a field of a NOT NULL column, or whose trxId is
+ *   dated outside the partitions kept by the shared
+ *   TransactionLogPartitionManager, FAILED without logging them, as the
+ *   servlet build does: such a row would fail its whole batch.
+ * - Validates it against the shared RuleEngine and applies the transfer to
+ *   the shared in-memory AccountLedgerService, on the calling event loop:
+ *   both are CPU-only, so there is no hop to a worker pool. Only with a
+ *   remote ledger (transaction.ledger.remote-url) are transfers and
+ *   reversals, which then block on the ledger node, run on boundedElastic.
+ *   While the ledger is unavailable the request is answered
+ *   503 + Retry-After, not logged.
+ * - Hands the TransactionLog row to ReactiveTransactionLogWriter and answers
+ *   once its batch has committed.
+ *
+ * Duplicates:
+ * - A concurrent duplicate waits for and replays its in-flight original.
+ * - Recently processed trxIds are replayed from an in-memory cache of
+ *   transaction.idempotency.cache-size outcomes.
+ * - Older duplicates are caught by the ON CONFLICT insert: the transfer is
+ *   reversed and the original outcome is read back and replayed, so a resent
+ *   trxId gets its original answer, as from the servlet build.
+ *
+ * Concurrency:
+ * - Once started, processing runs to completion even if the HTTP exchange
+ *   is cancelled (client gone), so the ledger and the log cannot diverge and
+ *   waiting duplicates are always answered.
+ * - A transfer is applied to the ledger before its log row is written; if the
+ *   row turns out to be a duplicate or cannot be persisted, the transfer is
+ *   reversed.
+ */
+@Service
+public class ReactiveTransactionProcessor {
+
+    private final TransactionRequestXmlDecoder requestDecoder;
+    private final TransactionRequestBinaryDecoder binaryDecoder;
+    private final RuleEngine ruleEngine;
+    private final AccountLedgerService ledger;
+    private final ReactiveTransactionLogWriter logWriter;
+    private final TransactionLogR2dbcRepository logRepository;
+    private final TransactionLogPartitionManager partitionManager;
+    private final Cache<String, TransactionOutcome> recentOutcomes;
+    private final long retryAfterSeconds;
+
+    // Tracks in-flight transactions to avoid concurrent duplicates
+    private final ConcurrentHashMap<String, Sinks.One<TransactionResponseDto>> inFlightTransactions =
+            new ConcurrentHashMap<>();
+
+    public ReactiveTransactionProcessor(TransactionRequestXmlDecoder requestDecoder,
+                                        TransactionRequestBinaryDecoder binaryDecoder,
+                                        RuleEngine ruleEngine,
+                                        AccountLedgerService ledger,
+                                        ReactiveTransactionLogWriter logWriter,
+                                        TransactionLogR2dbcRepository logRepository,
+                                        TransactionLogPartitionManager partitionManager,
+                                        @Value("${transaction.idempotency.cache-size:200000}") long cacheSize,
+                                        @Value("${transaction.admission.retry-after-seconds:1}") long retryAfterSeconds) {
+        this.requestDecoder = requestDecoder;
+        this.binaryDecoder = binaryDecoder;
+        this.ruleEngine = ruleEngine;
+        this.ledger = ledger;
+        this.logWriter = logWriter;
+        this.logRepository = logRepository;
+        this.partitionManager = partitionManager;
+        this.recentOutcomes = Caffeine.newBuilder().maximumSize(cacheSize).build();
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Decodes an XML body and processes the transaction.
+     */
+    public Mono<TransactionResponseDto> processXml(byte[] body) {
+        return process(body, b -> requestDecoder.decode(b, b.length), "Invalid XML format");
+    }
+
+    /**
+     * Decodes a binary-encoded body and processes the transaction.
+     */
+    public Mono<TransactionResponseDto> processBinary(byte[] body) {
+        return process(body, binaryDecoder::decode, "Invalid binary format");
+    }
+
+    private Mono<TransactionResponseDto> process(byte[] body, BodyDecoder decoder, String invalidReason) {
+        long startTime = System.currentTimeMillis();
+        TransactionRequestXml request;
+        try {
+            request = decoder.decode(body);
+        } catch (Exception e) {
+            // Validation error: body cannot be decoded
+            return Mono.just(new TransactionResponseDto(null, "FAILED", invalidReason,
+                    System.currentTimeMillis() - startTime));
+        }
+        return process(request, startTime);
+    }
+
+    /**
+     * Process a single decoded transaction request.
+     *
+     * @param request   Decoded request.
+     * @param startTime Time in ms when request handling started.
+     * @return Mono of the response with status, reason, and processing time.
+     */
+    public Mono<TransactionResponseDto> process(TransactionRequestXml request, long startTime) {
+        String trxId = request.getTrxId();
+
+        Sinks.One<TransactionResponseDto> result = Sinks.one();
+        if (trxId != null) {
+            Sinks.One<TransactionResponseDto> original = inFlightTransactions.putIfAbsent(trxId, result);
+            if (original != null) {
+                return original.asMono()
+                        .map(response -> replay(trxId,
+                                new TransactionOutcome(response.getStatus(), response.getReason()), startTime))
+                        .onErrorResume(ex -> Mono.fromSupplier(() -> new TransactionResponseDto(trxId, "FAILED",
+                                "Duplicate Transaction (in-flight)", System.currentTimeMillis() - startTime)));
+            }
+        }
+
+        // Subscribed here rather than by the caller; see "Concurrency" above.
+        handle(request, startTime).subscribe(
+                response -> {
+                    release(trxId, result);
+                    result.tryEmitValue(response);
+                },
+                ex -> {
+                    release(trxId, result);
+                    result.tryEmitError(ex);
+                });
+        return result.asMono();
+    }
+
+    private void release(String trxId, Sinks.One<TransactionResponseDto> result) {
+        if (trxId != null) {
+            inFlightTransactions.remove(trxId, result);
+        }
+    }
+
+    private Mono<TransactionResponseDto> handle(TransactionRequestXml request, long startTime) {
+        String trxId = request.getTrxId();
+        try {
+            TransactionOutcome previous = trxId != null ? recentOutcomes.getIfPresent(trxId) : null;
+            if (previous != null) {
+                return Mono.just(replay(trxId, previous, startTime));
+            }
+
+            String validationError = ruleEngine.evaluate(request);
+            String unstorable = unstorable(request);
+            if (unstorable != null) {
+                // The row could never be inserted, or would be expired at once: answer without persisting it.
+                String reason = validationError != null ? validationError : unstorable;
+                return Mono.just(new TransactionResponseDto(trxId, "FAILED", reason,
+                        System.currentTimeMillis() - startTime));
+            }
+            if (validationError != null) {
+                return saveLog(request, "FAILED", validationError, startTime)
+                        .flatMap(inserted -> inserted
+                                ? Mono.just(new TransactionResponseDto(trxId, "FAILED", validationError,
+                                        System.currentTimeMillis() - startTime))
+                                : original(trxId, startTime));
+            }
+
+            AccountLedgerService.TransferRef ref = ledger.newTransfer(trxId);
+            return transfer(ref, request).flatMap(transfer -> {
+                boolean applied = transfer == AccountLedgerService.TransferResult.OK;
+                String status = applied ? "SUCCESS" : "FAILED";
+                String reason = switch (transfer) {
+                    case OK -> "Completed";
+                    case INSUFFICIENT_FUNDS -> "Insufficient Balance";
+                    case UNKNOWN_ACCOUNT -> "Unknown Account";
+                    case INVALID_AMOUNT -> "Invalid amount";
+                    case UNAVAILABLE -> throw new ServerOverloadedException(trxId, "Account ledger unavailable",
+                            retryAfterSeconds);
+                };
+
+                return saveLog(request, status, reason, startTime)
+                        .doOnNext(inserted -> {
+                            if (applied && !inserted) {
+                                reverse(ref, request);
+                            }
+                        })
+                        .doOnError(ex -> {
+                            if (applied) {
+                                reverse(ref, request);
+                            }
+                        })
+                        .flatMap(inserted -> inserted
+                                ? Mono.just(new TransactionResponseDto(trxId, status, reason,
+                                        System.currentTimeMillis() - startTime))
+                                : original(trxId, startTime));
+            });
+        } catch (RuntimeException ex) {
+            return Mono.error(ex);
+        }
+    }
+
+    private Mono<AccountLedgerService.TransferResult> transfer(AccountLedgerService.TransferRef ref,
+                                                               TransactionRequestXml request) {
+        if (!ledger.isRemote()) {
+            return Mono.just(ledger.transfer(
+                    ref, request.getFromAccount(), request.getToAccount(), request.getAmount()));
+        }
+        return Mono.fromCallable(() -> ledger.transfer(
+                        ref, request.getFromAccount(), request.getToAccount(), request.getAmount()))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private void reverse(AccountLedgerService.TransferRef ref, TransactionRequestXml request) {
+        if (!ledger.isRemote()) {
+            ledger.reverse(ref, request.getFromAccount(), request.getToAccount(), request.getAmount());
+            return;
+        }
+        Schedulers.boundedElastic().schedule(() ->
+                ledger.reverse(ref, request.getFromAccount(), request.getToAccount(), request.getAmount()));
+    }
+
+    /**
+     * Answers a trxId that was already in the table with its recorded outcome.
+     */
+    private Mono<TransactionResponseDto> original(String trxId, long startTime) {
+        return logRepository.findOutcome(trxId)
+                .map(outcome -> {
+                    recentOutcomes.put(trxId, outcome);
+                    return replay(trxId, outcome, startTime);
+                })
+                .switchIfEmpty(Mono.fromSupplier(() -> new TransactionResponseDto(trxId, "FAILED",
+                        "Duplicate Transaction", System.currentTimeMillis() - startTime)));
+    }
+
+    /**
+     * Answers a duplicate trxId with the outcome of its original request.
+     */
+    private static TransactionResponseDto replay(String trxId, TransactionOutcome outcome, long startTime) {
+        return new TransactionResponseDto(trxId, outcome.status(), outcome.reason(),
+                System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Same checks as TransactionProcessingService.unstorable().
+     *
+     * @return null if the row can be stored, or the reason it cannot.
+     */
+    private String unstorable(TransactionRequestXml r) {
+        String missing = missingColumn(r);
+        return missing != null ? missing : partitionManager.checkTrxDate(TrxIdDate.of(r.getTrxId()));
+    }
+
+    private static String missingColumn(TransactionRequestXml r) {
+        if (r.getTrxId() == null || r.getTrxId().isBlank()) return "Missing trxId";
+        if (r.getBankId() == null) return "Missing bankId";
+        if (r.getCustomerId() == null) return "Missing customerId";
+        if (r.getFromAccount() == null) return "Invalid fromAccount";
+        if (r.getToAccount() == null) return "Invalid toAccount";
+        if (r.getAmount() == null) return "Invalid amount";
+        if (r.getCurrency() == null) return "Invalid currency";
+        return null;
+    }
+
+    /**
+     * Builds the transaction log entry, with the same columns as the servlet
+     * build, and queues it for the next batch. Once the row is committed its
+     * outcome is cached for replays.
+     *
+     * @return Mono of false if the trxId already exists.
+     */
+    private Mono<Boolean> saveLog(TransactionRequestXml r, String status, String reason, long startTime) {
+        TransactionLog log = new TransactionLog();
+        log.setTrxId(r.getTrxId());
+        log.setTrxDate(TrxIdDate.of(r.getTrxId()));
+        log.setBankId(r.getBankId());
+        log.setCustomerId(r.getCustomerId());
+        log.setFromAccount(r.getFromAccount());
+        log.setToAccount(r.getToAccount());
+        log.setAmount(r.getAmount());
+        log.setCurrency(r.getCurrency());
+        log.setStatus(status);
+        log.setReason(reason);
+        log.setRequestTimestamp(r.getTimestamp() != null
+                ? r.getTimestamp()
+                : OffsetDateTime.now());
+        log.setProcessedTimestamp(OffsetDateTime.now());
+        log.setProcessingTimeMs(System.currentTimeMillis() - startTime);
+
+        String trxId = r.getTrxId();
+        return logWriter.write(log).doOnNext(inserted -> {
+            if (inserted && trxId != null) {
+                recentOutcomes.put(trxId, new TransactionOutcome(status, reason));
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface BodyDecoder {
+        TransactionRequestXml decode(byte[] body) throws IOException;
+    }
+}
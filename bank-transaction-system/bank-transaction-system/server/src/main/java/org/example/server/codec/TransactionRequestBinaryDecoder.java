@@ -0,0 +1,133 @@
+package org.example.server.codec;
+
+import org.example.server.model.TransactionRequestXml;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Decoder for the compact binary encoding of a TransactionRequest, the
+ * alternative to XML negotiated with Content-Type: application/x-bank-transaction.
+ *
+ * Layout (big-endian), written by the bank clients' TransactionPayloadEncoder:
+ * - byte: format version (1)
+ * - byte: presence bitmask, bit i set if field i is present, in the order
+ *   TrxId, BankId, CustomerId, FromAccount, ToAccount, Amount, Currency, Timestamp
+ * - then each present field, in that order:
+ *   - strings:    u16 length + UTF-8 bytes
+ *   - CustomerId: int64
+ *   - Amount:     int32 scale + u8 length + two's-complement unscaled value
+ *   - Timestamp:  int64 epoch second + int32 nano + int32 offset seconds
+ *
+ * A fixed field order and no tags keep a typical request under 100 bytes and
+ * decoding down to a handful of buffer reads.
+ */
+@Component
+public class TransactionRequestBinaryDecoder {
+
+    public static final String MEDIA_TYPE = "application/x-bank-transaction";
+
+    static final byte VERSION = 1;
+
+    private static final int MAX_BODY = 16 * 1024;
+
+    private static final int TRX_ID = 1;
+    private static final int BANK_ID = 1 << 1;
+    private static final int CUSTOMER_ID = 1 << 2;
+    private static final int FROM_ACCOUNT = 1 << 3;
+    private static final int TO_ACCOUNT = 1 << 4;
+    private static final int AMOUNT = 1 << 5;
+    private static final int CURRENCY = 1 << 6;
+    private static final int TIMESTAMP = 1 << 7;
+
+    /**
+     * Reads the whole body and decodes it.
+     *
+     * @throws IOException if the body cannot be read or is not a valid record.
+     */
+    public TransactionRequestXml decode(InputStream in) throws IOException {
+        byte[] body = in.readNBytes(MAX_BODY + 1);
+        if (body.length > MAX_BODY) {
+            throw new IOException("Binary transaction exceeds " + MAX_BODY + " bytes");
+        }
+        return decode(body);
+    }
+
+    public TransactionRequestXml decode(byte[] body) throws IOException {
+        try {
+            ByteBuffer buf = ByteBuffer.wrap(body);
+            if (buf.get() != VERSION) {
+                throw new IOException("Unsupported binary transaction version");
+            }
+            int present = buf.get() & 0xFF;
+
+            TransactionRequestXml r = new TransactionRequestXml();
+            if ((present & TRX_ID) != 0) r.setTrxId(string(buf));
+            if ((present & BANK_ID) != 0) r.setBankId(string(buf));
+            if ((present & CUSTOMER_ID) != 0) r.setCustomerId(buf.getLong());
+            if ((present & FROM_ACCOUNT) != 0) r.setFromAccount(string(buf));
+            if ((present & TO_ACCOUNT) != 0) r.setToAccount(string(buf));
+            if ((present & AMOUNT) != 0) r.setAmount(decimal(buf));
+            if ((present & CURRENCY) != 0) r.setCurrency(string(buf));
+            if ((present & TIMESTAMP) != 0) r.setTimestamp(timestamp(buf));
+
+            if (buf.hasRemaining()) {
+                throw new IOException("Trailing bytes after binary transaction");
+            }
+            return r;
+        } catch (BufferUnderflowException | IllegalArgumentException | ArithmeticException
+                 | DateTimeException e) {
+            throw new IOException("Malformed binary transaction", e);
+        }
+    }
+
+    private static String string(ByteBuffer buf) {
+        int length = buf.getShort() & 0xFFFF;
+        if (length > buf.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value = new String(buf.array(), buf.position(), length, StandardCharsets.UTF_8);
+        buf.position(buf.position() + length);
+        return value;
+    }
+
+    private static BigDecimal decimal(ByteBuffer buf) {
+        int scale = buf.getInt();
+        int length = buf.get() & 0xFF;
+        if (length == 0) {
+            throw new IllegalArgumentException("Empty amount");
+        }
+        if (length <= 8) {
+            // Sign-extend the first byte, then shift in the rest.
+            long unscaled = buf.get();
+            for (int i = 1; i < length; i++) {
+                unscaled = (unscaled << 8) | (buf.get() & 0xFF);
+            }
+            return BigDecimal.valueOf(unscaled, scale);
+        }
+        byte[] magnitude = new byte[length];
+        buf.get(magnitude);
+        return new BigDecimal(new BigInteger(magnitude), scale);
+    }
+
+    /**
+     * Normalised to UTC, like the XML decoders.
+     */
+    private static OffsetDateTime timestamp(ByteBuffer buf) {
+        long epochSecond = buf.getLong();
+        int nano = buf.getInt();
+        // Validated only; the sender's offset does not survive normalisation.
+        ZoneOffset.ofTotalSeconds(buf.getInt());
+        return OffsetDateTime.ofInstant(Instant.ofEpochSecond(epochSecond, nano), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,386 @@
+package org.example.server.codec;
+
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import org.example.server.model.TransactionRequestXml;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * Fast decoder for the fixed <TransactionRequest> document.
+ *
+ * The request body is read straight from the servlet InputStream into a
+ * per-thread reusable byte buffer (per request in virtual-thread mode, where
+ * threads are not reused) and scanned in place:
+ * - String fields are the only allocations (one String per element).
+ * - CustomerId, Amount and Timestamp are parsed directly from the bytes,
+ *   without an intermediate String.
+ *
+ * Anything outside the flat shape the bank clients produce (attributes,
+ * namespaces, comments, CDATA, entities, unknown or repeated elements,
+ * non-UTF-8 encodings, exponent amounts, bodies over 16 KB, ...) falls back
+ * to the shared XmlMapper, so behaviour for unusual input is unchanged.
+ */
+@Component
+public class TransactionRequestXmlDecoder {
+
+    private static final int INITIAL_BUFFER = 1024;
+    private static final int MAX_BUFFER = 16 * 1024;
+
+    private static final ThreadLocal<byte[]> BUFFER =
+            ThreadLocal.withInitial(() -> new byte[INITIAL_BUFFER]);
+
+    private static final byte[] ROOT = ascii("TransactionRequest");
+
+    private static final int TRX_ID = 0;
+    private static final int BANK_ID = 1;
+    private static final int CUSTOMER_ID = 2;
+    private static final int FROM_ACCOUNT = 3;
+    private static final int TO_ACCOUNT = 4;
+    private static final int AMOUNT = 5;
+    private static final int CURRENCY = 6;
+    private static final int TIMESTAMP = 7;
+
+    private static final byte[][] FIELDS = {
+            ascii("TrxId"),
+            ascii("BankId"),
+            ascii("CustomerId"),
+            ascii("FromAccount"),
+            ascii("ToAccount"),
+            ascii("Amount"),
+            ascii("Currency"),
+            ascii("Timestamp")
+    };
+
+    private final XmlMapper xmlMapper;
+
+    public TransactionRequestXmlDecoder(XmlMapper xmlMapper) {
+        this.xmlMapper = xmlMapper;
+    }
+
+    /**
+     * Reads the whole body and decodes it.
+     *
+     * @throws IOException if the body cannot be read or is not a valid
+     *                     TransactionRequest (reported by the XmlMapper fallback).
+     */
+    public TransactionRequestXml decode(InputStream in) throws IOException {
+        byte[] buf = BUFFER.get();
+        int len = 0;
+        int n;
+        while ((n = in.read(buf, len, buf.length - len)) != -1) {
+            len += n;
+            if (len == buf.length) {
+                if (buf.length >= MAX_BUFFER) {
+                    // Oversized body: not ours to handle, let Jackson stream the rest.
+                    return xmlMapper.readValue(new SequenceInputStream(
+                            new ByteArrayInputStream(Arrays.copyOf(buf, len)), in), TransactionRequestXml.class);
+                }
+                buf = Arrays.copyOf(buf, buf.length * 2);
+                BUFFER.set(buf);
+            }
+        }
+        return decode(buf, len);
+    }
+
+    /**
+     * Decodes an already buffered body.
+     */
+    public TransactionRequestXml decode(byte[] buf, int len) throws IOException {
+        TransactionRequestXml request = parse(buf, len);
+        if (request != null) {
+            return request;
+        }
+        return xmlMapper.readValue(buf, 0, len, TransactionRequestXml.class);
+    }
+
+    /**
+     * @return the decoded request, or null if the document needs the fallback.
+     */
+    static TransactionRequestXml parse(byte[] b, int len) {
+        int p = skipProlog(b, skipWhitespace(b, 0, len), len);
+        if (p < 0 || !startTag(b, p, len, ROOT)) {
+            return null;
+        }
+        p += ROOT.length + 2;
+
+        TransactionRequestXml r = new TransactionRequestXml();
+        int seen = 0;
+        while (true) {
+            p = skipWhitespace(b, p, len);
+            if (p + 1 >= len || b[p] != '<') {
+                return null;
+            }
+            if (b[p + 1] == '/') {
+                if (!endTag(b, p, len, ROOT)) {
+                    return null;
+                }
+                p += ROOT.length + 3;
+                return skipWhitespace(b, p, len) == len ? r : null;
+            }
+
+            int field = matchField(b, p, len);
+            if (field < 0 || (seen & (1 << field)) != 0) {
+                return null;
+            }
+            seen |= 1 << field;
+
+            int start = p + FIELDS[field].length + 2;
+            int end = start;
+            while (end < len && b[end] != '<') {
+                if (b[end] == '&') {
+                    return null;
+                }
+                end++;
+            }
+            if (!endTag(b, end, len, FIELDS[field]) || !assign(r, field, b, start, end)) {
+                return null;
+            }
+            p = end + FIELDS[field].length + 3;
+        }
+    }
+
+    private static boolean assign(TransactionRequestXml r, int field, byte[] b, int start, int end) {
+        switch (field) {
+            case TRX_ID -> r.setTrxId(string(b, start, end));
+            case BANK_ID -> r.setBankId(string(b, start, end));
+            case FROM_ACCOUNT -> r.setFromAccount(string(b, start, end));
+            case TO_ACCOUNT -> r.setToAccount(string(b, start, end));
+            case CURRENCY -> r.setCurrency(string(b, start, end));
+            case CUSTOMER_ID -> {
+                long value = parseLong(b, start, end);
+                if (value < 0) {
+                    return false;
+                }
+                r.setCustomerId(value);
+            }
+            case AMOUNT -> {
+                BigDecimal value = parseDecimal(b, start, end);
+                if (value == null) {
+                    return false;
+                }
+                r.setAmount(value);
+            }
+            case TIMESTAMP -> {
+                OffsetDateTime value = parseTimestamp(b, start, end);
+                if (value == null) {
+                    return false;
+                }
+                r.setTimestamp(value);
+            }
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String string(byte[] b, int start, int end) {
+        return new String(b, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Non-negative decimal integer of up to 18 digits; -1 if not in that form.
+     */
+    static long parseLong(byte[] b, int start, int end) {
+        int digits = end - start;
+        if (digits == 0 || digits > 18) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int d = b[i] - '0';
+            if (d < 0 || d > 9) {
+                return -1;
+            }
+            value = value * 10 + d;
+        }
+        return value;
+    }
+
+    /**
+     * Plain decimal with optional sign and fraction, up to 18 significant
+     * digits; null if not in that form. Scale matches new BigDecimal(text).
+     */
+    static BigDecimal parseDecimal(byte[] b, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (b[i] == '-' || b[i] == '+')) {
+            negative = b[i] == '-';
+            i++;
+        }
+        long unscaled = 0;
+        int digits = 0;
+        int scale = -1;
+        for (; i < end; i++) {
+            byte c = b[i];
+            if (c == '.') {
+                if (scale >= 0) {
+                    return null;
+                }
+                scale = 0;
+                continue;
+            }
+            if (c < '0' || c > '9' || ++digits > 18) {
+                return null;
+            }
+            unscaled = unscaled * 10 + (c - '0');
+            if (scale >= 0) {
+                scale++;
+            }
+        }
+        if (digits == 0) {
+            return null;
+        }
+        return BigDecimal.valueOf(negative ? -unscaled : unscaled, Math.max(scale, 0));
+    }
+
+    /**
+     * yyyy-MM-ddTHH:mm:ss[.fraction](Z|+HH:MM|-HH:MM); null for any other form.
+     * The result is normalised to UTC, as Jackson does with its default
+     * ADJUST_DATES_TO_CONTEXT_TIME_ZONE setting.
+     */
+    static OffsetDateTime parseTimestamp(byte[] b, int start, int end) {
+        if (end - start < 20
+                || b[start + 4] != '-' || b[start + 7] != '-' || b[start + 10] != 'T'
+                || b[start + 13] != ':' || b[start + 16] != ':') {
+            return null;
+        }
+        int year = digits(b, start, 4);
+        int month = digits(b, start + 5, 2);
+        int day = digits(b, start + 8, 2);
+        int hour = digits(b, start + 11, 2);
+        int minute = digits(b, start + 14, 2);
+        int second = digits(b, start + 17, 2);
+        if ((year | month | day | hour | minute | second) < 0) {
+            return null;
+        }
+
+        int p = start + 19;
+        int nanos = 0;
+        if (b[p] == '.') {
+            p++;
+            int fractionDigits = 0;
+            while (p < end && b[p] >= '0' && b[p] <= '9') {
+                if (++fractionDigits > 9) {
+                    return null;
+                }
+                nanos = nanos * 10 + (b[p] - '0');
+                p++;
+            }
+            if (fractionDigits == 0) {
+                return null;
+            }
+            for (int i = fractionDigits; i < 9; i++) {
+                nanos *= 10;
+            }
+        }
+
+        ZoneOffset offset;
+        if (p == end - 1 && b[p] == 'Z') {
+            offset = ZoneOffset.UTC;
+        } else if (p == end - 6 && (b[p] == '+' || b[p] == '-') && b[p + 3] == ':') {
+            int offsetHours = digits(b, p + 1, 2);
+            int offsetMinutes = digits(b, p + 4, 2);
+            if ((offsetHours | offsetMinutes) < 0) {
+                return null;
+            }
+            int sign = b[p] == '-' ? -1 : 1;
+            try {
+                offset = ZoneOffset.ofHoursMinutes(sign * offsetHours, sign * offsetMinutes);
+            } catch (DateTimeException e) {
+                return null;
+            }
+        } else {
+            return null;
+        }
+
+        try {
+            OffsetDateTime value = OffsetDateTime.of(year, month, day, hour, minute, second, nanos, offset);
+            return offset == ZoneOffset.UTC ? value : value.withOffsetSameInstant(ZoneOffset.UTC);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    private static int digits(byte[] b, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            int d = b[i] - '0';
+            if (d < 0 || d > 9) {
+                return -1;
+            }
+            value = value * 10 + d;
+        }
+        return value;
+    }
+
+    /**
+     * Skips an optional <?xml ...?> declaration. Returns -1 if it declares an
+     * encoding other than UTF-8 (or its ASCII subset).
+     */
+    private static int skipProlog(byte[] b, int p, int len) {
+        if (p + 5 > len || b[p] != '<' || b[p + 1] != '?') {
+            return p;
+        }
+        int end = p + 2;
+        while (end + 1 < len && !(b[end] == '?' && b[end + 1] == '>')) {
+            end++;
+        }
+        if (end + 1 >= len) {
+            return -1;
+        }
+        String declaration = new String(b, p, end - p, StandardCharsets.US_ASCII);
+        int enc = declaration.indexOf("encoding");
+        if (enc >= 0) {
+            String rest = declaration.substring(enc).toUpperCase();
+            if (!rest.contains("UTF-8") && !rest.contains("US-ASCII")) {
+                return -1;
+            }
+        }
+        return skipWhitespace(b, end + 2, len);
+    }
+
+    private static int skipWhitespace(byte[] b, int p, int len) {
+        while (p < len && (b[p] == ' ' || b[p] == '\n' || b[p] == '\r' || b[p] == '\t')) {
+            p++;
+        }
+        return p;
+    }
+
+    private static int matchField(byte[] b, int p, int len) {
+        for (int i = 0; i < FIELDS.length; i++) {
+            if (startTag(b, p, len, FIELDS[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** Matches <name> at p. */
+    private static boolean startTag(byte[] b, int p, int len, byte[] name) {
+        int close = p + 1 + name.length;
+        return close < len && b[p] == '<' && b[close] == '>'
+                && Arrays.equals(b, p + 1, close, name, 0, name.length);
+    }
+
+    /** Matches </name> at p. */
+    private static boolean endTag(byte[] b, int p, int len, byte[] name) {
+        int close = p + 2 + name.length;
+        return close < len && b[p] == '<' && b[p + 1] == '/' && b[close] == '>'
+                && Arrays.equals(b, p + 2, close, name, 0, name.length);
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,99 @@
+package org.example.server.config;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ExecutorService that runs every task on its own virtual thread while
+ * capping how many tasks run at once.
+ *
+ * Virtual threads make blocking cheap, but the resources they block on
+ * (JDBC connections, pooled HTTP connections) are still finite. Each task
+ * first takes a permit from a semaphore sized to that resource; waiting for
+ * a permit parks only the task's own virtual thread, never the submitter.
+ *
+ * Tasks waiting for a permit are this executor's queue; once maxQueued of
+ * them are waiting, execute() rejects like a full ThreadPoolExecutor would.
+ */
+public class BoundedVirtualThreadExecutor extends AbstractExecutorService {
+
+    private final ExecutorService delegate;
+    private final Semaphore permits;
+    private final int maxConcurrency;
+    private final int maxQueued;
+    private final AtomicInteger queued = new AtomicInteger();
+
+    public BoundedVirtualThreadExecutor(String namePrefix, int maxConcurrency, int maxQueued) {
+        this.delegate = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(namePrefix, 0).factory());
+        this.permits = new Semaphore(maxConcurrency);
+        this.maxConcurrency = maxConcurrency;
+        this.maxQueued = maxQueued;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            throw new RejectedExecutionException("Queue full (" + maxQueued + " tasks waiting)");
+        }
+        try {
+            delegate.execute(() -> {
+                permits.acquireUninterruptibly();
+                queued.decrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Tasks submitted but still waiting for a permit.
+     */
+    public int getQueuedCount() {
+        return queued.get();
+    }
+
+    /**
+     * Tasks currently holding a permit.
+     */
+    public int getActiveCount() {
+        return maxConcurrency - permits.availablePermits();
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+}
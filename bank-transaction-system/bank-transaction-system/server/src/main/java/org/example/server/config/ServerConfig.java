@@ -1,25 +1,38 @@
 package org.example.server.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.dataformat.xml.XmlMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.apache.coyote.http2.Http2Protocol;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.tomcat.TomcatConnectorCustomizer;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Server-level configuration.
  *
  * - Exposes a dedicated ExecutorService for multithreaded transaction processing.
  * - Exposes a shared XmlMapper for XML <-> Java conversion (Jackson XML).
+ * - Exposes the primary JSON ObjectMapper used for JSON request and response bodies.
+ * - Imports the native-image hints of ServerRuntimeHints.
  *
  * The ExecutorService decouples HTTP request threads from processing threads,
  * allowing controlled concurrency and back-pressure.
  */
 @Configuration
+@ImportRuntimeHints(ServerRuntimeHints.class)
 public class ServerConfig {
 
 
@@ -34,13 +47,78 @@ public class ServerConfig {
         return mapper;
     }
 
+    /**
+     * XmlMapper is itself an ObjectMapper, so without a primary JSON mapper
+     * Spring Boot would back off its own and use the XmlMapper for JSON bodies.
+     */
+    @Bean
+    @Primary
+    public ObjectMapper objectMapper(Jackson2ObjectMapperBuilder builder) {
+        return builder.createXmlMapper(false).build();
+    }
+
     /**
      * Fixed thread pool used for processing transaction requests in parallel.
      * Size is tuned for CPU cores and expected workload.
+     *
+     * The queue is bounded at queue-capacity: once full, submissions are
+     * rejected and answered with 503 instead of piling up in memory.
+     *
+     * With transaction.executor.virtual-threads=true every task runs on its
+     * own virtual thread instead, with at most max-concurrency (default: the
+     * Hikari pool size) running at once and at most queue-capacity waiting.
      */
     @Bean(destroyMethod = "shutdown")
     public ExecutorService transactionExecutor(
-            @Value("${transaction.executor.pool-size:100}") int poolSize) {
-        return Executors.newFixedThreadPool(poolSize);
+            @Value("${transaction.executor.pool-size:100}") int poolSize,
+            @Value("${transaction.executor.queue-capacity:2000}") int queueCapacity,
+            @Value("${transaction.executor.virtual-threads:false}") boolean virtualThreads,
+            @Value("${transaction.executor.max-concurrency:${spring.datasource.hikari.maximum-pool-size:80}}")
+            int maxConcurrency) {
+        if (virtualThreads) {
+            return new BoundedVirtualThreadExecutor("txn-vt-", maxConcurrency, queueCapacity);
+        }
+        return new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity));
+    }
+
+    /**
+     * In virtual-thread mode Tomcat handles each request on its own virtual
+     * thread instead of its max-threads platform pool.
+     *
+     * The bean always exists and reads the flag at runtime: a native image
+     * fixes @ConditionalOnProperty outcomes at AOT build time, so the flag
+     * could not be switched on the built image otherwise.
+     */
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer(
+            @Value("${transaction.executor.virtual-threads:false}") boolean virtualThreads) {
+        return protocolHandler -> {
+            if (virtualThreads) {
+                protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+            }
+        };
+    }
+
+    /**
+     * With server.http2.enabled the bank clients upgrade to cleartext HTTP/2
+     * (h2c) and multiplex their forwards over a few connections. Tomcat's
+     * default of 100 concurrent streams per connection would make them open
+     * extra connections, so the limit is raised to max-concurrent-streams.
+     *
+     * Unconditional for the same reason as the customizer above; without
+     * server.http2.enabled the connector has no Http2Protocol to adjust.
+     */
+    @Bean
+    public TomcatConnectorCustomizer http2ConnectorCustomizer(
+            @Value("${transaction.http2.max-concurrent-streams:2000}") int maxConcurrentStreams) {
+        return connector -> {
+            for (var upgradeProtocol : connector.findUpgradeProtocols()) {
+                if (upgradeProtocol instanceof Http2Protocol http2) {
+                    http2.setMaxConcurrentStreams(maxConcurrentStreams);
+                    http2.setMaxConcurrentStreamExecution(maxConcurrentStreams);
+                }
+            }
+        };
     }
-}
\ No newline at end of file
+}
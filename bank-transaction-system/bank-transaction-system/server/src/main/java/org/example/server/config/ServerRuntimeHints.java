@@ -0,0 +1,48 @@
+package org.example.server.config;
+
+import org.example.server.dto.DailyRollupDto;
+import org.example.server.dto.RollupRebuildStatus;
+import org.example.server.dto.RuleSetStats;
+import org.example.server.dto.TransactionResponseDto;
+import org.example.server.dto.TransactionStatsDto;
+import org.example.server.dto.TransactionStatusDto;
+import org.example.server.model.TransactionRequestXml;
+import org.example.server.rules.RuleSetDefinition;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+/**
+ * Native-image hints for what Spring's AOT processing cannot find itself.
+ *
+ * AOT registers the types of @RequestBody parameters and plain handler
+ * return types. These are bound by Jackson elsewhere, or are returned
+ * through ResponseEntity<?> or a ResponseBodyEmitter:
+ * - TransactionRequestXml: read by TransactionRequestXmlDecoder's XmlMapper
+ *   fallback and by TransactionBatchService.
+ * - TransactionResponseDto: /process responses and /process-batch lines.
+ * - RuleSetDefinition (and the RuleDefinitions in it): read from rules.json.
+ * - The JSON DTOs of the status, rules, reports and stats endpoints.
+ *
+ * BindingReflectionHintsRegistrar follows property types, so nested DTOs and
+ * records are covered. rules.json is registered as a resource; schema.sql
+ * is already covered by Spring Boot's SQL initialization hints.
+ */
+public class ServerRuntimeHints implements RuntimeHintsRegistrar {
+
+    private final BindingReflectionHintsRegistrar bindingHints = new BindingReflectionHintsRegistrar();
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        bindingHints.registerReflectionHints(hints.reflection(),
+                TransactionRequestXml.class,
+                TransactionResponseDto.class,
+                TransactionStatusDto.class,
+                RuleSetDefinition.class,
+                RuleSetStats.class,
+                DailyRollupDto.class,
+                RollupRebuildStatus.class,
+                TransactionStatsDto.class);
+        hints.resources().registerPattern("rules.json");
+    }
+}
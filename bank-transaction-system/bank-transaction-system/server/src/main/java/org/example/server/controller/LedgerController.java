@@ -0,0 +1,113 @@
+package org.example.server.controller;
+
+import org.example.server.service.AccountLedgerService;
+import org.example.server.service.AccountLedgerService.TransferRef;
+import org.example.server.service.LedgerTransferRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * The in-memory account ledger, served to the other server nodes of the
+ * database (those started with transaction.ledger.remote-url).
+ *
+ * Exposes:
+ *   POST /server/ledger/transfer
+ *     Consumes form parameters trxId, attempt, from, to, amount
+ *     Produces text/plain (the AccountLedgerService.TransferResult name)
+ *   POST /server/ledger/reverse
+ *     Consumes the same parameters; 204 once that attempt is undone (or
+ *     cancelled, if its transfer has not arrived)
+ *
+ * Only server nodes may call these: every call must carry
+ * transaction.ledger.secret in the X-Ledger-Secret header, else it is
+ * answered 403; with no secret configured, every call is. Calls are
+ * idempotent per attempt and a reversal only undoes a transfer made for the
+ * same trxId and attempt (LedgerTransferRegistry); a call contradicting an
+ * earlier one of its attempt is answered 409.
+ *
+ * Both answer 404 on a node that does not run the ledger itself, so a
+ * misconfigured chain of remote nodes fails fast instead of looping.
+ */
+@RestController
+@RequestMapping("/server/ledger")
+public class LedgerController {
+
+    private final AccountLedgerService ledger;
+    private final LedgerTransferRegistry registry;
+    private final byte[] secret;
+
+    public LedgerController(AccountLedgerService ledger,
+                            LedgerTransferRegistry registry,
+                            @Value("${transaction.ledger.secret:}") String secret) {
+        this.ledger = ledger;
+        this.registry = registry;
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @PostMapping(value = "/transfer", produces = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<String> transfer(@RequestHeader(value = AccountLedgerService.SECRET_HEADER,
+                                                   required = false) String callerSecret,
+                                           @RequestParam String trxId,
+                                           @RequestParam String attempt,
+                                           @RequestParam String from,
+                                           @RequestParam String to,
+                                           @RequestParam BigDecimal amount) {
+        ResponseEntity<String> refused = refuse(callerSecret, trxId, attempt);
+        if (refused != null) {
+            return refused;
+        }
+        try {
+            return ResponseEntity.ok(registry.transfer(new TransferRef(trxId, attempt), from, to, amount).name());
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(ex.getMessage());
+        }
+    }
+
+    @PostMapping("/reverse")
+    public ResponseEntity<String> reverse(@RequestHeader(value = AccountLedgerService.SECRET_HEADER,
+                                                  required = false) String callerSecret,
+                                          @RequestParam String trxId,
+                                          @RequestParam String attempt,
+                                          @RequestParam String from,
+                                          @RequestParam String to,
+                                          @RequestParam BigDecimal amount) {
+        ResponseEntity<String> refused = refuse(callerSecret, trxId, attempt);
+        if (refused != null) {
+            return refused;
+        }
+        try {
+            registry.reverse(new TransferRef(trxId, attempt), from, to, amount);
+            return ResponseEntity.noContent().build();
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(ex.getMessage());
+        }
+    }
+
+    /**
+     * @return the answer to a call that must not reach the ledger, or null.
+     */
+    private ResponseEntity<String> refuse(String callerSecret, String trxId, String attempt) {
+        if (ledger.isRemote()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (secret.length == 0 || callerSecret == null
+                || !MessageDigest.isEqual(secret, callerSecret.getBytes(StandardCharsets.UTF_8))) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        if (trxId.isBlank() || attempt.isBlank()) {
+            return ResponseEntity.badRequest().body("trxId and attempt are required");
+        }
+        return null;
+    }
+}
@@ -0,0 +1,69 @@
+package org.example.server.controller;
+
+import org.example.server.dto.DailyRollupDto;
+import org.example.server.dto.RollupRebuildStatus;
+import org.example.server.service.TransactionReportService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Daily settlement reports and rollup rebuilds.
+ *
+ * Exposes:
+ *   GET  /server/reports/daily?from=YYYY-MM-DD[&to=YYYY-MM-DD]
+ *                                         count and total amount per day, bank,
+ *                                         currency and status (JSON), read from
+ *                                         the rollup; 400 for an invalid range
+ *   POST /server/reports/daily/{date}/rebuild
+ *                                         recomputes the day's rollup from
+ *                                         transaction_log in the background;
+ *                                         202 with the rebuild status
+ *   GET  /server/reports/daily/{date}/rebuild
+ *                                         status of the day's latest rebuild;
+ *                                         404 if there was none since startup
+ */
+@RestController
+@RequestMapping(value = "/server/reports", produces = MediaType.APPLICATION_JSON_VALUE)
+public class ReportController {
+
+    private final TransactionReportService reportService;
+
+    public ReportController(TransactionReportService reportService) {
+        this.reportService = reportService;
+    }
+
+    @GetMapping("/daily")
+    public ResponseEntity<?> daily(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                   @RequestParam(required = false)
+                                   @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        try {
+            List<DailyRollupDto> rows = reportService.daily(from, to != null ? to : from);
+            return ResponseEntity.ok(rows);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
+        }
+    }
+
+    @PostMapping("/daily/{date}/rebuild")
+    public ResponseEntity<?> rebuild(@PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(reportService.startRebuild(date));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
+        }
+    }
+
+    @GetMapping("/daily/{date}/rebuild")
+    public ResponseEntity<RollupRebuildStatus> rebuildStatus(
+            @PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        RollupRebuildStatus status = reportService.rebuildStatus(date);
+        return status != null ? ResponseEntity.ok(status) : ResponseEntity.notFound().build();
+    }
+}
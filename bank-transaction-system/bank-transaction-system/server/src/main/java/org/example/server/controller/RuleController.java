@@ -0,0 +1,47 @@
+package org.example.server.controller;
+
+import org.example.server.dto.RuleSetStats;
+import org.example.server.rules.RuleEngine;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Inspection and reload of the validation rules.
+ *
+ * Exposes:
+ *   GET  /server/rules         active rule set with per-rule hit counts and
+ *                              average evaluation time (JSON)
+ *   POST /server/rules/reload  recompiles the rules file; 400 with the error
+ *                              if it is invalid (the active set is kept)
+ */
+@RestController
+@RequestMapping(value = "/server/rules", produces = MediaType.APPLICATION_JSON_VALUE)
+public class RuleController {
+
+    private final RuleEngine ruleEngine;
+
+    public RuleController(RuleEngine ruleEngine) {
+        this.ruleEngine = ruleEngine;
+    }
+
+    @GetMapping
+    public RuleSetStats rules() {
+        return ruleEngine.stats();
+    }
+
+    @PostMapping("/reload")
+    public ResponseEntity<?> reload() {
+        try {
+            ruleEngine.reload();
+            return ResponseEntity.ok(ruleEngine.stats());
+        } catch (IllegalArgumentException ex) {
+            String message = ex.getCause() != null && ex.getCause().getMessage() != null
+                    ? ex.getMessage() + ": " + ex.getCause().getMessage()
+                    : ex.getMessage();
+            return ResponseEntity.badRequest().body(Map.of("error", message));
+        }
+    }
+}
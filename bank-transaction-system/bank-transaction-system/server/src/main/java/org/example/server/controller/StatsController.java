@@ -0,0 +1,34 @@
+package org.example.server.controller;
+
+import org.example.server.dto.TransactionStatsDto;
+import org.example.server.metrics.TransactionStats;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Live throughput and outcome dashboard, served from memory.
+ *
+ * Exposes:
+ *   GET /server/stats  TPS, success / failure ratios and p50/p99/p999 latency
+ *                      for the last 1, 5 and 60 minutes, plus outcome counts
+ *                      since startup per bank, status, reason and currency
+ *                      (JSON); 404 if transaction.stats.enabled is false
+ */
+@RestController
+@RequestMapping(value = "/server/stats", produces = MediaType.APPLICATION_JSON_VALUE)
+public class StatsController {
+
+    private final TransactionStats stats;
+
+    public StatsController(TransactionStats stats) {
+        this.stats = stats;
+    }
+
+    @GetMapping
+    public ResponseEntity<TransactionStatsDto> stats() {
+        return stats.isEnabled() ? ResponseEntity.ok(stats.snapshot()) : ResponseEntity.notFound().build();
+    }
+}
@@ -1,46 +1,187 @@
 package org.example.server.controller;
 
 
+import org.example.server.codec.TransactionRequestBinaryDecoder;
 import org.example.server.dto.TransactionResponseDto;
+import org.example.server.dto.TransactionStatusDto;
+import org.example.server.exception.ServerOverloadedException;
+import org.example.server.service.TransactionBatchService;
 import org.example.server.service.TransactionOrchestratorService;
+import org.example.server.service.TransactionStatusService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * REST controller for the central server.
  *
  * Exposes:
  *   POST /server/transaction/process
- * Consumes:
- *   application/xml (TransactionRequest XML)
- * Produces:
- *   application/json (TransactionResponseDto)
+ *     Consumes application/xml (TransactionRequest XML), or
+ *     application/x-bank-transaction (the same record in compact binary form)
+ *     Produces application/json (TransactionResponseDto)
+ *   POST /server/transaction/process-batch
+ *     Consumes application/xml (TransactionBatch of TransactionRequest elements)
+ *     Produces application/x-ndjson (one TransactionResponseDto per line, streamed
+ *     in completion order)
+ *   GET  /server/transaction/{trxId}
+ *     Produces application/json (TransactionStatusDto; 404 if unknown)
+ *   POST /server/transaction/status
+ *     Consumes application/json (array of up to transaction.status.max-bulk-size trxIds)
+ *     Produces application/json (one TransactionStatusDto per distinct trxId)
+ *
+ * Requests shed by admission control are answered with 503 Service
+ * Unavailable and a Retry-After header.
  *
  * The controller is intentionally thin and delegates heavy work to
- * TransactionOrchestratorService.
+ * TransactionOrchestratorService and TransactionBatchService.
  */
 @RestController
 @RequestMapping("/server/transaction")
 public class TransactionController {
 
     private final TransactionOrchestratorService orchestratorService;
+    private final TransactionBatchService batchService;
+    private final TransactionStatusService statusService;
+    private final long batchTimeoutMs;
 
-    public TransactionController(TransactionOrchestratorService orchestratorService) {
+    public TransactionController(TransactionOrchestratorService orchestratorService,
+                                 TransactionBatchService batchService,
+                                 TransactionStatusService statusService,
+                                 @Value("${transaction.batch.timeout-ms:120000}") long batchTimeoutMs) {
         this.orchestratorService = orchestratorService;
+        this.batchService = batchService;
+        this.statusService = statusService;
+        this.batchTimeoutMs = batchTimeoutMs;
     }
 
     /**
      * Accepts XML, forwards asynchronously to the processing executor,
      * and returns a CompletableFuture of the JSON response.
+     *
+     * The body is taken as a raw InputStream so it is decoded straight from
+     * the servlet stream instead of being materialised as a String first.
      */
     @PostMapping(
             value = "/process",
             consumes = MediaType.APPLICATION_XML_VALUE,
             produces = MediaType.APPLICATION_JSON_VALUE
     )
-    public CompletableFuture<TransactionResponseDto> process(@RequestBody String xml) {
+    public CompletableFuture<TransactionResponseDto> process(InputStream xml) {
         return orchestratorService.processAsync(xml);
     }
+
+    /**
+     * Same as {@link #process(InputStream)} for bodies sent in the compact
+     * binary encoding, selected by Content-Type. XML stays the default for
+     * external banks.
+     */
+    @PostMapping(
+            value = "/process",
+            consumes = TransactionRequestBinaryDecoder.MEDIA_TYPE,
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public CompletableFuture<TransactionResponseDto> processBinary(InputStream body) {
+        return orchestratorService.processBinaryAsync(body);
+    }
+
+    /**
+     * Streams a batch of XML requests through the processing executor and
+     * streams each JSON result back as soon as it is available.
+     *
+     * The emitter is returned at once; the body is parsed incrementally on a
+     * reader thread of TransactionBatchService while earlier items are
+     * already being processed and answered. The response stays open until
+     * every item has been answered.
+     */
+    @PostMapping(
+            value = "/process-batch",
+            consumes = MediaType.APPLICATION_XML_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE
+    )
+    public ResponseBodyEmitter processBatch(InputStream xml) {
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(batchTimeoutMs);
+        // Stops reading the batch once nobody receives its results.
+        AtomicBoolean cancelled = new AtomicBoolean();
+        emitter.onTimeout(() -> cancelled.set(true));
+        emitter.onError(ex -> cancelled.set(true));
+        emitter.onCompletion(() -> cancelled.set(true));
+        batchService.processBatch(xml, result -> send(emitter, result), cancelled)
+                .whenComplete((v, ex) -> {
+                    if (ex == null) {
+                        emitter.complete();
+                    } else if (!(ex instanceof CancellationException)) {
+                        emitter.completeWithError(ex);
+                    }
+                });
+        return emitter;
+    }
+
+    /**
+     * Status of one transaction, answered from memory for recent and unknown
+     * trxIds (see TransactionStatusService).
+     */
+    @GetMapping(value = "/{trxId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<TransactionStatusDto> status(@PathVariable String trxId) {
+        TransactionStatusDto status = statusService.lookup(trxId);
+        return TransactionStatusDto.NOT_FOUND.equals(status.status())
+                ? ResponseEntity.status(HttpStatus.NOT_FOUND).body(status)
+                : ResponseEntity.ok(status);
+    }
+
+    /**
+     * Status of many transactions with at most one DB query.
+     */
+    @PostMapping(
+            value = "/status",
+            consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public ResponseEntity<?> statuses(@RequestBody List<String> trxIds) {
+        try {
+            return ResponseEntity.ok(statusService.lookupAll(trxIds));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
+        }
+    }
+
+    /**
+     * Requests shed by admission control get a fast 503 with Retry-After
+     * instead of waiting out the client's read timeout.
+     */
+    @ExceptionHandler(ServerOverloadedException.class)
+    public ResponseEntity<TransactionResponseDto> overloaded(ServerOverloadedException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(ex.getRetryAfterSeconds()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(new TransactionResponseDto(ex.getTrxId(), "FAILED", "Server Overloaded", 0));
+    }
+
+    /**
+     * Writes one NDJSON line. The emitter is shared by all worker threads of
+     * the batch, so the object and its newline are written under one lock.
+     */
+    private static void send(ResponseBodyEmitter emitter, TransactionResponseDto result) {
+        try {
+            synchronized (emitter) {
+                emitter.send(result, MediaType.APPLICATION_JSON);
+                emitter.send("\n", MediaType.TEXT_PLAIN);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
@@ -0,0 +1,17 @@
+package org.example.server.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Number and total amount of the transactions of one day with one bank,
+ * currency and status, as kept in transaction_daily_rollup. Also used for
+ * the corrections applied by a rollup rebuild, where both may be negative.
+ */
+public record DailyRollupDto(LocalDate date,
+                             String bankId,
+                             String currency,
+                             String status,
+                             long count,
+                             BigDecimal totalAmount) {
+}
@@ -0,0 +1,23 @@
+package org.example.server.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * State of the latest rebuild of one day's rollup: RUNNING, DONE or FAILED,
+ * with the number of transaction_log rows scanned and the corrections that
+ * were applied (empty if the rollup already matched the log).
+ */
+public record RollupRebuildStatus(LocalDate date,
+                                  String state,
+                                  String startedAt,
+                                  String finishedAt,
+                                  int chunks,
+                                  long rowsScanned,
+                                  List<DailyRollupDto> corrections,
+                                  String error) {
+
+    public static final String RUNNING = "RUNNING";
+    public static final String DONE = "DONE";
+    public static final String FAILED = "FAILED";
+}
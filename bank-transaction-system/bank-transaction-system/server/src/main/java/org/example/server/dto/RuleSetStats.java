@@ -0,0 +1,15 @@
+package org.example.server.dto;
+
+import java.util.List;
+
+/**
+ * The active rule set: where it came from, how often it ran, its average
+ * evaluation time and per-rule rejection counts.
+ */
+public record RuleSetStats(long version,
+                           String source,
+                           String loadedAt,
+                           long evaluations,
+                           long avgEvaluationNanos,
+                           List<RuleStats> rules) {
+}
@@ -0,0 +1,7 @@
+package org.example.server.dto;
+
+/**
+ * Rejection count of one compiled rule.
+ */
+public record RuleStats(String name, String reason, long hits) {
+}
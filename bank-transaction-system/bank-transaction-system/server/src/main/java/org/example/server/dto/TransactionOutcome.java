@@ -0,0 +1,7 @@
+package org.example.server.dto;
+
+/**
+ * Final status and reason recorded for a processed trxId.
+ */
+public record TransactionOutcome(String status, String reason) {
+}
@@ -6,6 +6,7 @@ public class TransactionResponseDto {
     private String status;
     private String reason;
     private long processingTimeMs;
+    private long queueTimeMs;
 
     public TransactionResponseDto() {}
 
@@ -48,4 +49,12 @@ public class TransactionResponseDto {
         this.processingTimeMs = processingTimeMs;
     }
 
+    public long getQueueTimeMs() {
+        return queueTimeMs;
+    }
+
+    public void setQueueTimeMs(long queueTimeMs) {
+        this.queueTimeMs = queueTimeMs;
+    }
+
 }
\ No newline at end of file
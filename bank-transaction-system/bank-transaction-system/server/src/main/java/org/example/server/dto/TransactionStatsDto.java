@@ -0,0 +1,36 @@
+package org.example.server.dto;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Live view of the server from its in-memory counters (TransactionStats):
+ * throughput, success / failure ratios and latency percentiles for the last
+ * 1, 5 and 60 minutes, transactions per second over the last minute (oldest
+ * first), and outcome counts since startup.
+ */
+public record TransactionStatsDto(String generatedAt,
+                                  long uptimeSeconds,
+                                  Map<String, WindowStats> windows,
+                                  long[] lastMinutePerSecond,
+                                  List<OutcomeCount> outcomes) {
+
+    /**
+     * Totals of one window; latencies are from the start of processing to
+     * the response, in milliseconds.
+     */
+    public record WindowStats(long seconds,
+                              long count,
+                              long success,
+                              long failed,
+                              double tps,
+                              double successRatio,
+                              double failureRatio,
+                              double p50Ms,
+                              double p99Ms,
+                              double p999Ms) {
+    }
+
+    public record OutcomeCount(String bankId, String status, String reason, String currency, long count) {
+    }
+}
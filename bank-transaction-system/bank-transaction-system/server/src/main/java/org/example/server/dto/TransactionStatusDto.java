@@ -0,0 +1,11 @@
+package org.example.server.dto;
+
+/**
+ * Current status of a trxId: the recorded SUCCESS / FAILED outcome with its
+ * reason, PROCESSING while it is in flight, or NOT_FOUND.
+ */
+public record TransactionStatusDto(String trxId, String status, String reason) {
+
+    public static final String PROCESSING = "PROCESSING";
+    public static final String NOT_FOUND = "NOT_FOUND";
+}
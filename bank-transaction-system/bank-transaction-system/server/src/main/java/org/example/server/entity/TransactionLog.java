@@ -3,17 +3,20 @@ package org.example.server.entity;
 import jakarta.persistence.*;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.OffsetDateTime;
 
 /**
  * JPA entity representing a persisted transaction log.
  *
- * Mapped to table 'transaction_log' with a unique constraint on trx_id.
+ * Mapped to table 'transaction_log', which is partitioned by day on
+ * trx_date (the day encoded in the trxId, see TrxIdDate). The unique
+ * constraint on (trx_id, trx_date) makes trx_id unique across partitions.
  * Each row corresponds to one processed request (SUCCESS or FAILED).
  */
 @Entity
 @Table(name = "transaction_log", uniqueConstraints = {
-        @UniqueConstraint(name = "uk_trx_id", columnNames = "trx_id")
+        @UniqueConstraint(name = "uk_trx_id", columnNames = {"trx_id", "trx_date"})
 })
 public class TransactionLog {
 
@@ -21,9 +24,12 @@ public class TransactionLog {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Column(name = "trx_id", nullable = false, unique = true)
+    @Column(name = "trx_id", nullable = false)
     private String trxId;
 
+    @Column(name = "trx_date", nullable = false)
+    private LocalDate trxDate;
+
     @Column(name = "bank_id", nullable = false)
     private String bankId;
 
@@ -73,6 +79,14 @@ public class TransactionLog {
         this.trxId = trxId;
     }
 
+    public LocalDate getTrxDate() {
+        return trxDate;
+    }
+
+    public void setTrxDate(LocalDate trxDate) {
+        this.trxDate = trxDate;
+    }
+
     public String getBankId() {
         return bankId;
     }
@@ -0,0 +1,27 @@
+package org.example.server.exception;
+
+/**
+ * Raised when a transaction is shed by admission control: the processing
+ * queue was full, or the request waited in it longer than allowed.
+ *
+ * Mapped by TransactionController to HTTP 503 with a Retry-After header.
+ */
+public class ServerOverloadedException extends RuntimeException {
+
+    private final String trxId;
+    private final long retryAfterSeconds;
+
+    public ServerOverloadedException(String trxId, String message, long retryAfterSeconds) {
+        super(message);
+        this.trxId = trxId;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public String getTrxId() {
+        return trxId;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,605 @@
+package org.example.server.ingest;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.server.exception.ServerOverloadedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Embedded, append-only ingest log between HTTP acceptance and processing.
+ *
+ * Layout:
+ * - Segment files dir/ingest-N.log of segment-size-mb, memory-mapped, where
+ *   N is the offset of the segment's first record. Offsets number records
+ *   0, 1, 2, ... across all segments.
+ * - Record: length, CRC32C, type byte, raw request body. The length is
+ *   written last, so a torn tail record is ignored on recovery.
+ * - dir/ingest.checkpoint holds the committed offset: every record before it
+ *   has been processed.
+ *
+ * Writing:
+ * - {@link #append} copies a record into the current segment and returns a
+ *   future completed by the "ingest-syncer" thread once the record is on
+ *   disk. One fsync covers everything appended since the previous one.
+ * - A full segment is sealed and the next one started ("rolled").
+ * - Appends are refused with ServerOverloadedException once max-backlog
+ *   records are waiting to be processed, so a stalled consumer cannot fill
+ *   the disk.
+ *
+ * Reading:
+ * - A single reader takes durable records in offset order with
+ *   {@link #next}, and reports each as done with {@link #processed}, in any
+ *   order. The committed offset is the lowest offset not yet processed.
+ * - The "ingest-committer" thread writes the committed offset to the
+ *   checkpoint every commit-interval-ms and deletes sealed segments whose
+ *   records are all committed and which are older than retention-hours.
+ * - On startup, reading resumes at the checkpoint. Records processed after
+ *   the last checkpoint are read again; processing is idempotent by trxId.
+ *
+ * Concurrency:
+ * - Appends are serialized by appendLock; they only copy bytes, the fsync
+ *   happens outside it.
+ * - Each record may carry an in-memory attachment (e.g. the HTTP request
+ *   waiting for it), handed to the reader with the record. Records read
+ *   after a restart have none.
+ */
+@Component
+public class IngestLog {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestLog.class);
+
+    public static final byte TYPE_XML = 1;
+    public static final byte TYPE_BINARY = 2;
+
+    private static final String SEGMENT_PREFIX = "ingest-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT = "ingest.checkpoint";
+
+    // int length | int crc | byte type | payload
+    private static final int CRC_OFFSET = 4;
+    private static final int TYPE_OFFSET = 8;
+    private static final int HEADER = 9;
+
+    private final boolean enabled;
+    private final Path dir;
+    private final int segmentSize;
+    private final long maxBacklog;
+    private final long commitIntervalMs;
+    private final Duration retention;
+
+    // Segments by offset of their first record
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final BlockingQueue<PendingSync> unsynced = new LinkedBlockingQueue<>();
+    private final Map<Long, Object> attachments = new ConcurrentHashMap<>();
+    // Offsets handed to the reader and not yet processed
+    private final ConcurrentSkipListSet<Long> inProcess = new ConcurrentSkipListSet<>();
+    private final ReentrantLock readLock = new ReentrantLock();
+    private final Condition durableAdvanced = readLock.newCondition();
+    private final List<Thread> workers = new ArrayList<>();
+
+    // Guarded by appendLock
+    private Segment current;
+    private long nextOffset;
+
+    // Every record before durableOffset is on disk
+    private volatile long durableOffset;
+    // Next record for the reader; only advanced by the reader
+    private volatile long readOffset;
+    private Segment readSegment;
+    private int readPosition;
+    private volatile long checkpointed = -1;
+
+    private volatile boolean running;
+
+    public IngestLog(MeterRegistry registry,
+                     @Value("${transaction.ingest.enabled:false}") boolean enabled,
+                     @Value("${transaction.ingest.dir:data/ingest-log}") String dir,
+                     @Value("${transaction.ingest.segment-size-mb:64}") int segmentSizeMb,
+                     @Value("${transaction.ingest.max-backlog:1000000}") long maxBacklog,
+                     @Value("${transaction.ingest.commit-interval-ms:1000}") long commitIntervalMs,
+                     @Value("${transaction.ingest.retention-hours:24}") long retentionHours) {
+        this.enabled = enabled;
+        this.dir = Path.of(dir);
+        this.segmentSize = segmentSizeMb * 1024 * 1024;
+        this.maxBacklog = maxBacklog;
+        this.commitIntervalMs = commitIntervalMs;
+        this.retention = Duration.ofHours(retentionHours);
+
+        Gauge.builder("ingest.log.backlog", this, l -> l.durableOffset - l.committedOffset())
+                .description("Durable ingest log records not yet processed")
+                .register(registry);
+        Gauge.builder("ingest.log.segments", segments, Map::size)
+                .description("Segment files of the ingest log")
+                .register(registry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Recovers the segments and the checkpoint of the previous run, opens a
+     * segment for appends and starts the syncer and committer threads.
+     * Called by TransactionIngestService, which owns the log's lifecycle.
+     */
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(dir);
+
+        List<Long> bases;
+        try (Stream<Path> files = Files.list(dir)) {
+            bases = files.map(IngestLog::segmentBase)
+                    .filter(base -> base >= 0)
+                    .sorted()
+                    .toList();
+        }
+        for (long base : bases) {
+            segments.put(base, mapSegment(base));
+        }
+
+        if (segments.isEmpty()) {
+            current = openSegment(0);
+            nextOffset = 0;
+        } else {
+            Segment last = segments.lastEntry().getValue();
+            int count = recover(last);
+            nextOffset = last.base + count;
+            if (count == 0) {
+                current = last;
+            } else {
+                last.sealed = true;
+                current = openSegment(nextOffset);
+            }
+            segments.headMap(last.base).values().forEach(s -> s.sealed = true);
+        }
+        durableOffset = nextOffset;
+
+        long checkpoint = readCheckpoint();
+        readOffset = Math.max(checkpoint, segments.firstKey());
+        if (readOffset > nextOffset) {
+            log.warn("Ingest checkpoint {} is past the end of the log ({}); starting at the end",
+                    readOffset, nextOffset);
+            readOffset = nextOffset;
+        }
+        checkpointed = readOffset;
+        seek(readOffset);
+        if (nextOffset > readOffset) {
+            log.info("Resuming {} unprocessed ingest log records from offset {}",
+                    nextOffset - readOffset, readOffset);
+        }
+
+        running = true;
+        workers.add(daemon(this::runSyncer, "ingest-syncer"));
+        workers.add(daemon(this::runCommitter, "ingest-committer"));
+        workers.forEach(Thread::start);
+    }
+
+    /**
+     * Makes every appended record durable and checkpoints what has been
+     * processed. Unprocessed records are read again on the next start.
+     */
+    public void stop() throws InterruptedException {
+        if (!enabled || !running) {
+            return;
+        }
+        running = false;
+        for (Thread t : workers) {
+            t.interrupt();
+            t.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        checkpoint();
+    }
+
+    /**
+     * Appends a raw request.
+     *
+     * @param type       TYPE_XML or TYPE_BINARY.
+     * @param payload    request body as received.
+     * @param attachment handed to the reader with the record; may be null.
+     * @return future of the record's offset, completing once it is durable.
+     */
+    public CompletableFuture<Long> append(byte type, byte[] payload, Object attachment) {
+        if (!running) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Ingest log is stopped"));
+        }
+        int length = HEADER + payload.length;
+        if (length > segmentSize) {
+            return CompletableFuture.failedFuture(
+                    new IllegalArgumentException("Request too large for the ingest log"));
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(type);
+        crc.update(payload);
+
+        PendingSync pending;
+        appendLock.lock();
+        try {
+            if (nextOffset - committedOffset() >= maxBacklog) {
+                return CompletableFuture.failedFuture(new ServerOverloadedException(null,
+                        "Ingest backlog full", 1));
+            }
+            if (current.position + length > segmentSize) {
+                roll();
+            }
+            Segment segment = current;
+            int position = segment.position;
+            MappedByteBuffer buf = segment.buffer;
+            buf.putInt(position + CRC_OFFSET, (int) crc.getValue());
+            buf.put(position + TYPE_OFFSET, type);
+            buf.put(position + HEADER, payload);
+            // Length last: a record without it is not there on recovery.
+            buf.putInt(position, length);
+            segment.position += length;
+
+            long offset = nextOffset++;
+            if (attachment != null) {
+                attachments.put(offset, attachment);
+            }
+            pending = new PendingSync(segment, offset);
+            // Queued under the lock, so the syncer sees offsets in order.
+            unsynced.add(pending);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        } finally {
+            appendLock.unlock();
+        }
+        return pending.durable;
+    }
+
+    /**
+     * Waits up to timeout for the next durable record. Single reader only.
+     *
+     * @return the record, or null if none became durable in time.
+     */
+    public Record next(long timeout, TimeUnit unit) throws InterruptedException {
+        if (readOffset >= durableOffset) {
+            readLock.lock();
+            try {
+                long nanos = unit.toNanos(timeout);
+                while (readOffset >= durableOffset && nanos > 0) {
+                    nanos = durableAdvanced.awaitNanos(nanos);
+                }
+            } finally {
+                readLock.unlock();
+            }
+            if (readOffset >= durableOffset) {
+                return null;
+            }
+        }
+
+        long offset = readOffset;
+        Map.Entry<Long, Segment> entry = segments.floorEntry(offset);
+        if (readSegment != entry.getValue()) {
+            // The previous segment is exhausted; the record starts the next one.
+            readSegment = entry.getValue();
+            readPosition = 0;
+        }
+        MappedByteBuffer buf = readSegment.buffer;
+        int length = buf.getInt(readPosition);
+        byte type = buf.get(readPosition + TYPE_OFFSET);
+        byte[] payload = new byte[length - HEADER];
+        buf.get(readPosition + HEADER, payload);
+        CRC32C crc = new CRC32C();
+        crc.update(type);
+        crc.update(payload);
+        boolean intact = (int) crc.getValue() == buf.getInt(readPosition + CRC_OFFSET);
+        readPosition += length;
+
+        // In process before readOffset moves on, see committedOffset().
+        inProcess.add(offset);
+        readOffset = offset + 1;
+        Object attachment = attachments.remove(offset);
+        if (!intact) {
+            log.error("Ingest log record {} is corrupt and is skipped", offset);
+            processed(offset);
+            return next(timeout, unit);
+        }
+        return new Record(offset, type, payload, attachment);
+    }
+
+    /**
+     * Marks a record returned by {@link #next} as processed.
+     */
+    public void processed(long offset) {
+        inProcess.remove(offset);
+    }
+
+    /**
+     * @return lowest offset not yet processed; all records before it are.
+     */
+    public long committedOffset() {
+        long read = readOffset;
+        Long first = inProcess.isEmpty() ? null : inProcess.first();
+        return first != null ? Math.min(first, read) : read;
+    }
+
+    private void runSyncer() {
+        List<PendingSync> batch = new ArrayList<>();
+        while (running || !unsynced.isEmpty()) {
+            try {
+                PendingSync first = unsynced.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // Everything appended while the previous fsync ran shares this one.
+                unsynced.drainTo(batch);
+                sync(batch);
+            } catch (InterruptedException e) {
+                unsynced.drainTo(batch);
+                sync(batch);
+                if (!running) {
+                    return;
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void sync(List<PendingSync> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            Segment forced = null;
+            for (PendingSync p : batch) {
+                if (p.segment != forced) {
+                    forced = p.segment;
+                    forced.buffer.force();
+                }
+            }
+        } catch (UncheckedIOException e) {
+            // The records stay in the mapped file and are still read, but
+            // their requests are told that durability could not be confirmed.
+            log.error("Ingest log fsync failed for {} records", batch.size(), e);
+            for (PendingSync p : batch) {
+                p.durable.completeExceptionally(e);
+            }
+            advanceDurable(batch.get(batch.size() - 1).offset + 1);
+            return;
+        }
+        advanceDurable(batch.get(batch.size() - 1).offset + 1);
+        for (PendingSync p : batch) {
+            p.durable.complete(p.offset);
+        }
+    }
+
+    private void advanceDurable(long offset) {
+        readLock.lock();
+        try {
+            durableOffset = offset;
+            durableAdvanced.signalAll();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private void runCommitter() {
+        while (running) {
+            try {
+                Thread.sleep(commitIntervalMs);
+                checkpoint();
+                deleteExpiredSegments();
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException | UncheckedIOException e) {
+                log.warn("Ingest log checkpoint failed, will retry", e);
+            }
+        }
+    }
+
+    /**
+     * Writes the committed offset, atomically replacing the previous
+     * checkpoint.
+     */
+    private synchronized void checkpoint() {
+        long committed = committedOffset();
+        if (committed == checkpointed) {
+            return;
+        }
+        Path tmp = dir.resolve(CHECKPOINT + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, committed));
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            Files.move(tmp, dir.resolve(CHECKPOINT), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        checkpointed = committed;
+    }
+
+    /**
+     * Deletes sealed segments that are fully committed and past retention.
+     * Segments with unprocessed records are kept however old they are.
+     */
+    private void deleteExpiredSegments() throws IOException {
+        long committed = checkpointed;
+        long cutoff = System.currentTimeMillis() - retention.toMillis();
+        for (Map.Entry<Long, Segment> entry : segments.entrySet()) {
+            Segment segment = entry.getValue();
+            Long nextBase = segments.higherKey(entry.getKey());
+            if (!segment.sealed || nextBase == null || nextBase > committed) {
+                break;
+            }
+            if (Files.getLastModifiedTime(segment.path).toMillis() > cutoff) {
+                break;
+            }
+            segments.remove(entry.getKey());
+            Files.deleteIfExists(segment.path);
+            log.info("Deleted ingest log segment {}", segment.path.getFileName());
+        }
+    }
+
+    /**
+     * Seals the current segment and starts the next one at nextOffset.
+     * Caller holds appendLock.
+     */
+    private void roll() throws IOException {
+        Segment full = current;
+        current = openSegment(nextOffset);
+        full.sealed = true;
+    }
+
+    /**
+     * Counts the intact records of the last segment of a previous run and
+     * positions it for further appends.
+     */
+    private int recover(Segment segment) {
+        MappedByteBuffer buf = segment.buffer;
+        int count = 0;
+        int position = 0;
+        while (position + HEADER <= segmentSize) {
+            int length = buf.getInt(position);
+            if (length < HEADER || position + length > segmentSize) {
+                break;
+            }
+            byte[] record = new byte[length - CRC_OFFSET - 4];
+            buf.get(position + TYPE_OFFSET, record);
+            CRC32C crc = new CRC32C();
+            crc.update(record);
+            if ((int) crc.getValue() != buf.getInt(position + CRC_OFFSET)) {
+                break;
+            }
+            position += length;
+            count++;
+        }
+        segment.position = position;
+        return count;
+    }
+
+    /**
+     * Positions the reader on the record at offset.
+     */
+    private void seek(long offset) {
+        Map.Entry<Long, Segment> entry = segments.floorEntry(offset);
+        readSegment = entry.getValue();
+        readPosition = 0;
+        for (long o = entry.getKey(); o < offset; o++) {
+            readPosition += readSegment.buffer.getInt(readPosition);
+        }
+    }
+
+    private long readCheckpoint() throws IOException {
+        Path path = dir.resolve(CHECKPOINT);
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        byte[] bytes = Files.readAllBytes(path);
+        return bytes.length == Long.BYTES ? ByteBuffer.wrap(bytes).getLong() : 0;
+    }
+
+    private Segment openSegment(long base) throws IOException {
+        Segment segment = mapSegment(base);
+        segments.put(base, segment);
+        syncDirectory();
+        return segment;
+    }
+
+    private Segment mapSegment(long base) throws IOException {
+        Path path = dir.resolve(SEGMENT_PREFIX + base + SEGMENT_SUFFIX);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Mapping read-write grows a new file to the full segment size, zero-filled.
+            return new Segment(base, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+        }
+    }
+
+    /**
+     * Makes a new segment's directory entry durable along with its data.
+     */
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not supported on every platform; the segment data itself is still fsynced.
+        }
+    }
+
+    private static long segmentBase(Path path) {
+        String name = path.getFileName().toString();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static Thread daemon(Runnable task, String name) {
+        Thread t = new Thread(task, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    /**
+     * A durable record, as handed to the reader.
+     */
+    public record Record(long offset, byte type, byte[] payload, Object attachment) {
+    }
+
+    private static final class Segment {
+        private final long base;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        // Guarded by appendLock
+        private int position;
+        private volatile boolean sealed;
+
+        private Segment(long base, Path path, MappedByteBuffer buffer) {
+            this.base = base;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+
+    private static final class PendingSync {
+        private final Segment segment;
+        private final long offset;
+        private final CompletableFuture<Long> durable = new CompletableFuture<>();
+
+        private PendingSync(Segment segment, long offset) {
+            this.segment = segment;
+            this.offset = offset;
+        }
+    }
+}
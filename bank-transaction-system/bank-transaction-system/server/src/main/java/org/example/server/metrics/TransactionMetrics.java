@@ -0,0 +1,147 @@
+package org.example.server.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.example.server.config.BoundedVirtualThreadExecutor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer meters of the transaction pipeline, exported through
+ * /actuator/prometheus.
+ *
+ * Meters:
+ * - transaction.stage{stage}: nanosecond timer per processing stage, with a
+ *   Prometheus histogram and p50/p95/p99. Stages:
+ *   - decode:      XML / binary body to TransactionRequestXml (request thread)
+ *   - queue:       wait for a transactionExecutor worker
+ *   - in-flight:   in-flight trxId registration
+ *   - idempotency: IdempotencyStore lookup
+ *   - validate:    rule evaluation
+ *   - ledger:      ledger transfer
+ *   - persist:     until the log row is acknowledged by TransactionLogWriter
+ *   - total:       from dispatch to the executor until the response is ready
+ * - transaction.outcome{bankId,status,reason}: responses per outcome. bankId
+ *   comes from the request, so beyond max-bank-ids distinct values it is
+ *   reported as "other" to bound the number of series.
+ * - executor.*{name=transactionExecutor}: queue depth and active workers of
+ *   the processing executor, in either executor mode.
+ *
+ * HikariCP pool metrics (hikaricp.connections.acquire = pool wait,
+ * hikaricp.connections.pending, ...) are bound by Spring Boot itself.
+ */
+@Component
+public class TransactionMetrics {
+
+    public enum Stage {
+        DECODE("decode"),
+        QUEUE("queue"),
+        IN_FLIGHT("in-flight"),
+        IDEMPOTENCY("idempotency"),
+        VALIDATE("validate"),
+        LEDGER("ledger"),
+        PERSIST("persist"),
+        TOTAL("total");
+
+        private final String tag;
+
+        Stage(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private static final String EXECUTOR_NAME = "transactionExecutor";
+
+    private final MeterRegistry registry;
+    private final Timer[] stages;
+    private final ConcurrentHashMap<String, Boolean> bankIds = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Outcome, Counter> outcomes = new ConcurrentHashMap<>();
+    private final int maxBankIds;
+
+    public TransactionMetrics(MeterRegistry registry,
+                              ExecutorService transactionExecutor,
+                              @Value("${transaction.metrics.max-bank-ids:100}") int maxBankIds) {
+        this.registry = registry;
+        this.maxBankIds = maxBankIds;
+        this.stages = new Timer[Stage.values().length];
+        for (Stage stage : Stage.values()) {
+            stages[stage.ordinal()] = Timer.builder("transaction.stage")
+                    .description("Time spent in one stage of transaction processing")
+                    .tag("stage", stage.tag)
+                    .publishPercentileHistogram()
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(registry);
+        }
+        bindExecutor(transactionExecutor);
+    }
+
+    public void record(Stage stage, long nanos) {
+        stages[stage.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the time since start for stage.
+     *
+     * @return the current System.nanoTime(), the start of the next stage.
+     */
+    public long lap(Stage stage, long start) {
+        long now = System.nanoTime();
+        record(stage, now - start);
+        return now;
+    }
+
+    public void outcome(String bankId, String status, String reason) {
+        Outcome key = new Outcome(bankTag(bankId), status, reason != null ? reason : "");
+        outcomes.computeIfAbsent(key, k -> Counter.builder("transaction.outcome")
+                        .description("Processed transactions by bank, status and reason")
+                        .tags("bankId", k.bankId(), "status", k.status(), "reason", k.reason())
+                        .register(registry))
+                .increment();
+    }
+
+    private String bankTag(String bankId) {
+        if (bankId == null || bankId.isBlank()) {
+            return "unknown";
+        }
+        if (bankIds.containsKey(bankId)) {
+            return bankId;
+        }
+        if (bankIds.size() >= maxBankIds) {
+            return "other";
+        }
+        bankIds.putIfAbsent(bankId, Boolean.TRUE);
+        return bankId;
+    }
+
+    /**
+     * Micrometer's ExecutorServiceMetrics understands ThreadPoolExecutor; the
+     * virtual-thread executor gets the same executor.queued / executor.active
+     * gauges by hand.
+     */
+    private void bindExecutor(ExecutorService executor) {
+        if (executor instanceof ThreadPoolExecutor) {
+            new ExecutorServiceMetrics(executor, EXECUTOR_NAME, Tags.empty()).bindTo(registry);
+        } else if (executor instanceof BoundedVirtualThreadExecutor bounded) {
+            Gauge.builder("executor.queued", bounded, BoundedVirtualThreadExecutor::getQueuedCount)
+                    .description("Tasks waiting for a processing permit")
+                    .tag("name", EXECUTOR_NAME)
+                    .register(registry);
+            Gauge.builder("executor.active", bounded, BoundedVirtualThreadExecutor::getActiveCount)
+                    .description("Tasks currently being processed")
+                    .tag("name", EXECUTOR_NAME)
+                    .register(registry);
+        }
+    }
+
+    private record Outcome(String bankId, String status, String reason) {
+    }
+}
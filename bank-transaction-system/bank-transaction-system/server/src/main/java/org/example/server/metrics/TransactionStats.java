@@ -0,0 +1,289 @@
+package org.example.server.metrics;
+
+import org.example.server.dto.TransactionStatsDto;
+import org.example.server.dto.TransactionStatsDto.OutcomeCount;
+import org.example.server.dto.TransactionStatsDto.WindowStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process throughput, outcome and latency counters behind GET /server/stats,
+ * so the server's activity can be watched without querying transaction_log.
+ *
+ * Kept:
+ * - Outcome counts since startup per bankId, status, reason and currency.
+ *   bankIds and currencies come from the request, so beyond max-bank-ids /
+ *   max-currencies distinct values they are counted as "other".
+ * - Rolling windows: a ring of one-second slots covering the last 5 minutes
+ *   and a ring of one-minute slots covering the last hour. Each slot counts
+ *   transactions, successes and failures, and holds a latency histogram.
+ * - Latency histograms are log-linear over microseconds (8 buckets per power
+ *   of two, so a percentile is within about 12% of the true value).
+ *
+ * Concurrency:
+ * - record() is lock-free on the request path: LongAdder increments into
+ *   the current slots, histogram buckets included. Most requests land in the
+ *   same few buckets of the same slot, so a plain atomic per bucket would be
+ *   a contended cache line; a LongAdder stripes it per thread and snapshot()
+ *   sums the stripes. A slot is cleared under its own monitor once per
+ *   period, by the first writer that finds it holding an older period.
+ * - snapshot() reads the slots without stopping writers; a slot being
+ *   cleared while it is read can make one window momentarily approximate.
+ */
+@Component
+public class TransactionStats {
+
+    private static final String SUCCESS = "SUCCESS";
+    private static final String OTHER = "other";
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /** Up to 2^35 us (about 9.5 hours); slower values go to the last bucket. */
+    private static final int MAX_MAGNITUDE = 35;
+    private static final int BUCKETS = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private static final int SECOND_SLOTS = 300;
+    private static final int MINUTE_SLOTS = 60;
+
+    private final boolean enabled;
+    private final int maxBankIds;
+    private final int maxCurrencies;
+    private final long startedAtMillis = System.currentTimeMillis();
+    private final ConcurrentHashMap<Outcome, LongAdder> outcomes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Boolean> bankIds = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Boolean> currencies = new ConcurrentHashMap<>();
+    private final Ring seconds = new Ring(SECOND_SLOTS, 1);
+    private final Ring minutes = new Ring(MINUTE_SLOTS, 60);
+
+    public TransactionStats(@Value("${transaction.stats.enabled:true}") boolean enabled,
+                            @Value("${transaction.metrics.max-bank-ids:100}") int maxBankIds,
+                            @Value("${transaction.stats.max-currencies:50}") int maxCurrencies) {
+        this.enabled = enabled;
+        this.maxBankIds = maxBankIds;
+        this.maxCurrencies = maxCurrencies;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Counts one processed transaction.
+     *
+     * @param latencyNanos time from the start of processing to its response.
+     */
+    public void record(String bankId, String currency, String status, String reason, long latencyNanos) {
+        if (!enabled) {
+            return;
+        }
+        Outcome key = new Outcome(bounded(bankIds, bankId, maxBankIds), bounded(currencies, currency, maxCurrencies),
+                status, reason != null ? reason : "");
+        LongAdder count = outcomes.get(key);
+        if (count == null) {
+            count = outcomes.computeIfAbsent(key, k -> new LongAdder());
+        }
+        count.increment();
+
+        boolean success = SUCCESS.equals(status);
+        int bucket = bucket(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+        long nowSeconds = System.currentTimeMillis() / 1000;
+        seconds.record(nowSeconds, success, bucket);
+        minutes.record(nowSeconds, success, bucket);
+    }
+
+    /**
+     * @return the last 1, 5 and 60 minutes plus the outcome counts since
+     *         startup.
+     */
+    public TransactionStatsDto snapshot() {
+        long nowMillis = System.currentTimeMillis();
+        long nowSeconds = nowMillis / 1000;
+        long uptimeSeconds = Math.max(1, (nowMillis - startedAtMillis) / 1000);
+
+        Map<String, WindowStats> windows = new LinkedHashMap<>();
+        // Complete seconds only, so the per-second rates do not dip at the edge.
+        windows.put("1m", seconds.window(nowSeconds - 1, 60, uptimeSeconds));
+        windows.put("5m", seconds.window(nowSeconds - 1, SECOND_SLOTS, uptimeSeconds));
+        windows.put("60m", minutes.window(nowSeconds, MINUTE_SLOTS, uptimeSeconds));
+
+        long[] lastMinute = new long[60];
+        for (int i = 0; i < lastMinute.length; i++) {
+            lastMinute[i] = seconds.count(nowSeconds - lastMinute.length + i);
+        }
+
+        List<OutcomeCount> totals = new ArrayList<>(outcomes.size());
+        outcomes.forEach((k, v) -> totals.add(new OutcomeCount(k.bankId(), k.status(), k.reason(), k.currency(),
+                v.sum())));
+        totals.sort(Comparator.comparingLong(OutcomeCount::count).reversed());
+
+        return new TransactionStatsDto(Instant.ofEpochMilli(nowMillis).toString(), uptimeSeconds, windows,
+                lastMinute, totals);
+    }
+
+    private static String bounded(ConcurrentHashMap<String, Boolean> seen, String value, int max) {
+        if (value == null || value.isBlank()) {
+            return "unknown";
+        }
+        if (seen.containsKey(value)) {
+            return value;
+        }
+        if (seen.size() >= max) {
+            return OTHER;
+        }
+        seen.putIfAbsent(value, Boolean.TRUE);
+        return value;
+    }
+
+    /**
+     * Values below SUB_BUCKETS get a bucket each; above, each power of two is
+     * split into SUB_BUCKETS equal buckets.
+     */
+    static int bucket(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) Math.max(0, micros);
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(micros);
+        if (magnitude > MAX_MAGNITUDE) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (micros >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return the highest value (us) falling into bucket.
+     */
+    static long bucketUpperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int magnitude = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        long lower = (SUB_BUCKETS + sub) << (magnitude - SUB_BUCKET_BITS);
+        return lower + (1L << (magnitude - SUB_BUCKET_BITS)) - 1;
+    }
+
+    private static double percentileMs(long[] histogram, long total, double quantile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            seen += histogram[i];
+            if (seen >= rank) {
+                return bucketUpperBound(i) / 1000.0;
+            }
+        }
+        return bucketUpperBound(histogram.length - 1) / 1000.0;
+    }
+
+    /**
+     * Fixed number of slots of periodSeconds each, reused round-robin.
+     */
+    private static final class Ring {
+        private final Slot[] slots;
+        private final long periodSeconds;
+
+        private Ring(int size, long periodSeconds) {
+            this.slots = new Slot[size];
+            for (int i = 0; i < size; i++) {
+                slots[i] = new Slot();
+            }
+            this.periodSeconds = periodSeconds;
+        }
+
+        void record(long nowSeconds, boolean success, int bucket) {
+            long period = nowSeconds / periodSeconds;
+            Slot slot = slots[(int) (period % slots.length)];
+            if (slot.period != period) {
+                synchronized (slot) {
+                    if (slot.period < period) {
+                        slot.reset(period);
+                    } else if (slot.period > period) {
+                        // A writer stalled past the slot's next reuse; drop the sample.
+                        return;
+                    }
+                }
+            }
+            slot.count.increment();
+            if (success) {
+                slot.success.increment();
+            }
+            slot.latency[bucket].increment();
+        }
+
+        long count(long second) {
+            long period = second / periodSeconds;
+            Slot slot = slots[(int) (period % slots.length)];
+            return slot.period == period ? slot.count.sum() : 0;
+        }
+
+        /**
+         * Sums the n slots ending with the one holding lastSecond. Only the
+         * elapsed part of that last slot counts towards the window's length.
+         */
+        WindowStats window(long lastSecond, int n, long uptimeSeconds) {
+            long lastPeriod = lastSecond / periodSeconds;
+            long count = 0;
+            long success = 0;
+            long[] histogram = new long[BUCKETS];
+            for (long period = lastPeriod - n + 1; period <= lastPeriod; period++) {
+                Slot slot = slots[(int) (Math.floorMod(period, (long) slots.length))];
+                if (slot.period != period) {
+                    continue;
+                }
+                count += slot.count.sum();
+                success += slot.success.sum();
+                for (int i = 0; i < BUCKETS; i++) {
+                    histogram[i] += slot.latency[i].sum();
+                }
+            }
+            long elapsedInLast = lastSecond - lastPeriod * periodSeconds + 1;
+            long windowSeconds = Math.min((n - 1) * periodSeconds + elapsedInLast, uptimeSeconds);
+            long failed = count - success;
+            return new WindowStats(windowSeconds, count, success, failed,
+                    (double) count / windowSeconds,
+                    count == 0 ? 0 : (double) success / count,
+                    count == 0 ? 0 : (double) failed / count,
+                    percentileMs(histogram, count, 0.50),
+                    percentileMs(histogram, count, 0.99),
+                    percentileMs(histogram, count, 0.999));
+        }
+    }
+
+    private static final class Slot {
+        private volatile long period = -1;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder success = new LongAdder();
+        private final LongAdder[] latency = new LongAdder[BUCKETS];
+
+        private Slot() {
+            for (int i = 0; i < BUCKETS; i++) {
+                latency[i] = new LongAdder();
+            }
+        }
+
+        void reset(long newPeriod) {
+            count.reset();
+            success.reset();
+            for (LongAdder bucket : latency) {
+                bucket.reset();
+            }
+            period = newPeriod;
+        }
+    }
+
+    private record Outcome(String bankId, String currency, String status, String reason) {
+    }
+}
@@ -0,0 +1,162 @@
+package org.example.server.repository;
+
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Plain JDBC access to 'account_balance' for the in-memory ledger.
+ *
+ * The ledger reads every balance once at startup and afterwards only folds
+ * the deltas committed with the log rows into account_balance, so no request
+ * ever locks an account_balance row.
+ *
+ * The ledger lock is a session-level Postgres advisory lock, held on a
+ * connection taken from the pool for the life of the ledger and checked by
+ * the ledger every few seconds.
+ */
+@Repository
+public class AccountBalanceJdbcRepository implements AccountBalanceRepository {
+
+    private static final String SELECT_ALL =
+            "SELECT b.account_no, b.balance + COALESCE(d.delta, 0) FROM account_balance b "
+                    + "LEFT JOIN (SELECT account_no, sum(delta) AS delta FROM account_balance_delta "
+                    + "GROUP BY account_no) d ON d.account_no = b.account_no";
+
+    /**
+     * Deletes the delta rows, locked in key order (the order in which the log
+     * writers upsert them, so neither side can deadlock), and adds them to
+     * account_balance in the same statement.
+     */
+    private static final String FOLD_DELTAS =
+            "WITH moved AS (DELETE FROM account_balance_delta WHERE (account_no, slot) IN ("
+                    + "SELECT account_no, slot FROM account_balance_delta ORDER BY account_no, slot FOR UPDATE) "
+                    + "RETURNING account_no, delta) "
+                    + "UPDATE account_balance b SET balance = b.balance + m.delta "
+                    + "FROM (SELECT account_no, sum(delta) AS delta FROM moved GROUP BY account_no) m "
+                    + "WHERE b.account_no = m.account_no";
+
+    private static final String TRY_LOCK = "SELECT pg_try_advisory_lock(?)";
+
+    private static final String UNLOCK = "SELECT pg_advisory_unlock(?)";
+
+    private static final String CLAIM =
+            "INSERT INTO account_ledger_owner (id, owner, loaded_at) VALUES (1, ?, now()) "
+                    + "ON CONFLICT (id) DO UPDATE SET owner = EXCLUDED.owner, loaded_at = EXCLUDED.loaded_at";
+
+    private static final String SELECT_OWNER = "SELECT owner FROM account_ledger_owner WHERE id = 1";
+
+    private static final int LOCK_CHECK_TIMEOUT_SECONDS = 5;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSource dataSource;
+
+    // Holds the ledger lock; guarded by this
+    private Connection lockConnection;
+
+    public AccountBalanceJdbcRepository(JdbcTemplate jdbcTemplate, DataSource dataSource) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public synchronized boolean tryAcquireLedgerLock() {
+        if (lockConnection != null) {
+            return true;
+        }
+        try {
+            Connection connection = dataSource.getConnection();
+            boolean locked = false;
+            try (PreparedStatement ps = connection.prepareStatement(TRY_LOCK)) {
+                ps.setLong(1, LEDGER_LOCK_KEY);
+                try (ResultSet rs = ps.executeQuery()) {
+                    locked = rs.next() && rs.getBoolean(1);
+                }
+            } finally {
+                if (!locked) {
+                    connection.close();
+                }
+            }
+            if (locked) {
+                lockConnection = connection;
+            }
+            return locked;
+        } catch (SQLException e) {
+            throw new DataAccessResourceFailureException("Cannot take the account ledger lock", e);
+        }
+    }
+
+    @Override
+    public synchronized void releaseLedgerLock() {
+        if (lockConnection == null) {
+            return;
+        }
+        // Pooled connections outlive the session lock's owner: unlock explicitly.
+        try (Connection connection = lockConnection;
+             PreparedStatement ps = connection.prepareStatement(UNLOCK)) {
+            ps.setLong(1, LEDGER_LOCK_KEY);
+            ps.executeQuery().close();
+        } catch (SQLException e) {
+            throw new DataAccessResourceFailureException("Cannot release the account ledger lock", e);
+        } finally {
+            lockConnection = null;
+        }
+    }
+
+    @Override
+    public synchronized boolean isLedgerLockHeld() {
+        if (lockConnection == null) {
+            return false;
+        }
+        try {
+            if (lockConnection.isValid(LOCK_CHECK_TIMEOUT_SECONDS)) {
+                return true;
+            }
+        } catch (SQLException e) {
+            // Same as invalid: the session, and with it the lock, is gone.
+        }
+        Connection connection = lockConnection;
+        lockConnection = null;
+        // The session may only be unreachable for now: unlock in case it comes back.
+        try (connection; PreparedStatement ps = connection.prepareStatement(UNLOCK)) {
+            ps.setQueryTimeout(LOCK_CHECK_TIMEOUT_SECONDS);
+            ps.setLong(1, LEDGER_LOCK_KEY);
+            ps.executeQuery().close();
+        } catch (SQLException e) {
+            // Expected when the session is gone.
+        }
+        return false;
+    }
+
+    @Override
+    public void claimLedger(String owner) {
+        jdbcTemplate.update(CLAIM, owner);
+    }
+
+    @Override
+    public boolean isLedgerOwner(String owner) {
+        List<String> owners = jdbcTemplate.queryForList(SELECT_OWNER, String.class);
+        return !owners.isEmpty() && owner.equals(owners.get(0));
+    }
+
+    @Override
+    public void forEachBalance(BiConsumer<String, BigDecimal> consumer) {
+        jdbcTemplate.query(SELECT_ALL, rs -> {
+            consumer.accept(rs.getString(1), rs.getBigDecimal(2));
+        });
+    }
+
+    @Override
+    public void foldDeltas() {
+        jdbcTemplate.update(FOLD_DELTAS);
+    }
+}
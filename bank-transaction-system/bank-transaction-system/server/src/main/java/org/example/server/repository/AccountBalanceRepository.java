@@ -0,0 +1,69 @@
+package org.example.server.repository;
+
+import java.math.BigDecimal;
+import java.util.function.BiConsumer;
+
+/**
+ * Access to 'account_balance' as needed by AccountLedgerService: the ledger
+ * lock, one full read at startup, then periodic folds of the balance deltas
+ * that the log writers commit to 'account_balance_delta'.
+ *
+ * Implemented with JDBC here and with R2DBC by the reactive server, which
+ * reuses the ledger as is. Both are only called from the ledger's startup
+ * and background threads, never from a request.
+ */
+public interface AccountBalanceRepository {
+
+    /**
+     * Postgres advisory lock key of the ledger lock, shared by both builds.
+     */
+    long LEDGER_LOCK_KEY = 0x6c6564676572L;
+
+    /**
+     * Streams every account and its balance to the consumer, with the
+     * account's rows in account_balance_delta added.
+     */
+    void forEachBalance(BiConsumer<String, BigDecimal> consumer);
+
+    /**
+     * Takes the database-wide lock that lets only one process hold balances
+     * in memory. It is held on a connection of its own until
+     * {@link #releaseLedgerLock()} or until that connection ends, so a
+     * crashed process gives it up.
+     *
+     * @return false if another process holds it.
+     */
+    boolean tryAcquireLedgerLock();
+
+    /**
+     * Gives up the lock taken by {@link #tryAcquireLedgerLock()}, if held.
+     */
+    void releaseLedgerLock();
+
+    /**
+     * Checks with a round trip that the session holding the ledger lock is
+     * still alive. If it is gone (database restart, network drop, idle
+     * timeout), Postgres has released the lock with it: the connection is
+     * dropped and the lock has to be taken again with
+     * {@link #tryAcquireLedgerLock()}.
+     *
+     * @return true if the lock is still held.
+     */
+    boolean isLedgerLockHeld();
+
+    /**
+     * Records owner as the ledger that last loaded the balances.
+     */
+    void claimLedger(String owner);
+
+    /**
+     * @return true if no other ledger has claimed the balances since owner.
+     */
+    boolean isLedgerOwner(String owner);
+
+    /**
+     * Moves every row of account_balance_delta into account_balance in one
+     * statement. Balances as read by {@link #forEachBalance} do not change.
+     */
+    void foldDeltas();
+}
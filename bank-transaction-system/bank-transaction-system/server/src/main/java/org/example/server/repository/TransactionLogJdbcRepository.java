@@ -0,0 +1,232 @@
+package org.example.server.repository;
+
+import org.example.server.dto.TransactionOutcome;
+import org.example.server.entity.TransactionLog;
+import org.example.server.util.TrxIdDate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Plain JDBC access to 'transaction_log' for the group-commit write path.
+ *
+ * TransactionLog uses an IDENTITY id, so Hibernate cannot batch its inserts.
+ * This repository instead writes a whole batch as one multi-row
+ * INSERT ... ON CONFLICT (trx_id, trx_date) DO NOTHING RETURNING trx_id statement:
+ * - one round trip and one implicit commit per batch,
+ * - duplicate trxIds are skipped instead of aborting the batch,
+ * - the RETURNING set tells the caller exactly which rows were inserted,
+ * - the inserted rows are added to transaction_daily_rollup by the same
+ *   statement (a data-modifying CTE), so the rollup commits with them; each
+ *   flusher writes its own slot of the rollup,
+ * - likewise, the netted balance changes of the inserted SUCCESS rows are
+ *   added to account_balance_delta, so the stored balances always match the
+ *   committed log (see AccountLedgerService).
+ *
+ * The table is partitioned by trx_date, which is derived from trx_id
+ * (TrxIdDate), so a row's partition and its unique key (trx_id, trx_date)
+ * follow from its trxId alone. Lookups by trxId also filter on trx_date so
+ * only one partition's index is probed.
+ */
+@Repository
+public class TransactionLogJdbcRepository {
+
+    private static final int COLUMN_COUNT = 13;
+
+    /** Postgres caps bind parameters per statement at 32767. */
+    public static final int MAX_ROWS_PER_STATEMENT = 32767 / COLUMN_COUNT;
+
+    private static final String INSERT_PREFIX =
+            "WITH inserted AS (INSERT INTO transaction_log (trx_id, trx_date, bank_id, customer_id, "
+                    + "from_account, to_account, amount, currency, status, reason, request_timestamp, processed_timestamp, "
+                    + "processing_time_ms) VALUES ";
+
+    private static final String ROW_PLACEHOLDERS = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /**
+     * Adds the inserted rows to transaction_daily_rollup, and the netted
+     * balance changes of the inserted SUCCESS rows to account_balance_delta,
+     * in the same statement, so both commit together with (and only for) the
+     * rows that were actually inserted. Each caller passes its own slot, so
+     * concurrent batches update different rows of both tables and never wait
+     * on each other's commits. Rows are upserted in key order.
+     */
+    private static final String INSERT_SUFFIX = " ON CONFLICT (trx_id, trx_date) DO NOTHING "
+            + "RETURNING trx_id, trx_date, bank_id, from_account, to_account, currency, status, amount), ";
+
+    private static final String ROLLUP_INSERTED = "rollup AS (INSERT INTO transaction_daily_rollup "
+            + "(trx_date, bank_id, currency, status, slot, tx_count, total_amount) "
+            + "SELECT trx_date, bank_id, currency, status, %1$d, count(*), sum(amount) FROM inserted "
+            + "GROUP BY trx_date, bank_id, currency, status "
+            + "ORDER BY trx_date, bank_id, currency, status "
+            + "ON CONFLICT (trx_date, bank_id, currency, status, slot) DO UPDATE SET "
+            + "tx_count = transaction_daily_rollup.tx_count + EXCLUDED.tx_count, "
+            + "total_amount = transaction_daily_rollup.total_amount + EXCLUDED.total_amount), ";
+
+    private static final String BALANCE_DELTAS = "balances AS (INSERT INTO account_balance_delta "
+            + "(account_no, slot, delta) "
+            + "SELECT account_no, %1$d, sum(delta) FROM ("
+            + "SELECT from_account AS account_no, -amount AS delta FROM inserted WHERE status = 'SUCCESS' "
+            + "UNION ALL SELECT to_account, amount FROM inserted WHERE status = 'SUCCESS') moves "
+            + "GROUP BY account_no ORDER BY account_no "
+            + "ON CONFLICT (account_no, slot) DO UPDATE SET "
+            + "delta = account_balance_delta.delta + EXCLUDED.delta) ";
+
+    private static final String INSERT_RESULT = "SELECT trx_id FROM inserted";
+
+    private static final String SELECT_OUTCOME =
+            "SELECT status, reason FROM transaction_log WHERE trx_id = ? AND trx_date = ?";
+
+    private static final String SELECT_OUTCOMES_PREFIX =
+            "SELECT trx_id, status, reason FROM transaction_log WHERE trx_date IN (";
+
+    private static final String SELECT_ALL_TRX_IDS = "SELECT trx_id FROM transaction_log";
+
+    private static final int STREAM_FETCH_SIZE = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+
+    public TransactionLogJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        // Postgres only streams with a fetch size inside a transaction; see forEachTrxId.
+        this.streamingJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.streamingJdbcTemplate.setFetchSize(STREAM_FETCH_SIZE);
+    }
+
+    /**
+     * Looks up the recorded outcome of a transaction.
+     *
+     * @return the outcome, or null if the trxId is not in the table.
+     */
+    public TransactionOutcome findOutcome(String trxId) {
+        List<TransactionOutcome> rows = jdbcTemplate.query(SELECT_OUTCOME,
+                (rs, i) -> new TransactionOutcome(rs.getString(1), rs.getString(2)), trxId, TrxIdDate.of(trxId));
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    /**
+     * Looks up the recorded outcomes of many transactions with one
+     * trx_id IN (...) query, restricted to the partitions of their days.
+     *
+     * @return outcome by trxId; trxIds not in the table are absent.
+     */
+    public Map<String, TransactionOutcome> findOutcomes(Collection<String> trxIds) {
+        Map<String, TransactionOutcome> outcomes = new HashMap<>(trxIds.size() * 2);
+        if (trxIds.isEmpty()) {
+            return outcomes;
+        }
+        Set<LocalDate> days = new LinkedHashSet<>();
+        for (String trxId : trxIds) {
+            days.add(TrxIdDate.of(trxId));
+        }
+
+        StringBuilder sql = new StringBuilder(SELECT_OUTCOMES_PREFIX);
+        placeholders(sql, days.size());
+        sql.append(") AND trx_id IN (");
+        placeholders(sql, trxIds.size());
+        sql.append(')');
+
+        Object[] args = new Object[days.size() + trxIds.size()];
+        int i = 0;
+        for (LocalDate day : days) {
+            args[i++] = day;
+        }
+        for (String trxId : trxIds) {
+            args[i++] = trxId;
+        }
+        jdbcTemplate.query(sql.toString(), rs -> {
+            outcomes.put(rs.getString(1), new TransactionOutcome(rs.getString(2), rs.getString(3)));
+        }, args);
+        return outcomes;
+    }
+
+    /**
+     * Streams every trxId in the table without loading the result set into
+     * the heap (cursor-based fetch inside a read-only transaction).
+     */
+    @Transactional(readOnly = true)
+    public void forEachTrxId(Consumer<String> consumer) {
+        streamingJdbcTemplate.query(SELECT_ALL_TRX_IDS, rs -> {
+            consumer.accept(rs.getString(1));
+        });
+    }
+
+    /**
+     * Inserts all rows in a single statement.
+     *
+     * @param logs rows to insert; at most {@link #MAX_ROWS_PER_STATEMENT}.
+     * @param slot rollup and balance delta slot of the calling flusher (0..32767).
+     * @return trxIds that were actually inserted (rows missing from the set
+     *         already existed in the table).
+     */
+    public Set<String> insertIgnoringDuplicates(List<TransactionLog> logs, int slot) {
+        if (logs.size() > MAX_ROWS_PER_STATEMENT) {
+            throw new IllegalArgumentException("Batch of " + logs.size()
+                    + " rows exceeds " + MAX_ROWS_PER_STATEMENT);
+        }
+
+        Set<String> inserted = new HashSet<>(logs.size() * 2);
+        jdbcTemplate.query(buildInsertSql(logs.size(), slot),
+                ps -> bindRows(ps, logs),
+                rs -> {
+                    inserted.add(rs.getString(1));
+                });
+        return inserted;
+    }
+
+    private static void placeholders(StringBuilder sql, int count) {
+        for (int i = 0; i < count; i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+    }
+
+    private static String buildInsertSql(int rows, int slot) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length()
+                + rows * (ROW_PLACEHOLDERS.length() + 2) + INSERT_SUFFIX.length() + ROLLUP_INSERTED.length()
+                + BALANCE_DELTAS.length() + INSERT_RESULT.length() + 12);
+        sql.append(INSERT_PREFIX);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(ROW_PLACEHOLDERS);
+        }
+        sql.append(INSERT_SUFFIX)
+                .append(ROLLUP_INSERTED.formatted(slot))
+                .append(BALANCE_DELTAS.formatted(slot))
+                .append(INSERT_RESULT);
+        return sql.toString();
+    }
+
+    private static void bindRows(PreparedStatement ps, List<TransactionLog> logs) throws SQLException {
+        int i = 1;
+        for (TransactionLog log : logs) {
+            ps.setString(i++, log.getTrxId());
+            ps.setObject(i++, log.getTrxDate());
+            ps.setString(i++, log.getBankId());
+            ps.setObject(i++, log.getCustomerId());
+            ps.setString(i++, log.getFromAccount());
+            ps.setString(i++, log.getToAccount());
+            ps.setBigDecimal(i++, log.getAmount());
+            ps.setString(i++, log.getCurrency());
+            ps.setString(i++, log.getStatus());
+            ps.setString(i++, log.getReason());
+            ps.setObject(i++, log.getRequestTimestamp());
+            ps.setObject(i++, log.getProcessedTimestamp());
+            ps.setObject(i++, log.getProcessingTimeMs());
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package org.example.server.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JDBC implementation of TransactionLogPartitionRepository.
+ *
+ * Partition names are generated from LocalDate values only, never from
+ * external input, so they can safely be inlined into the DDL.
+ *
+ * Locking: CREATE, DETACH and DROP need a lock on transaction_log that
+ * queues behind every open transaction on it and, while queued, blocks all
+ * new inserts. Each statement therefore runs with lock_timeout set to
+ * lock-timeout-ms; if it cannot get its lock in time it fails, nothing
+ * waits on it any longer, and TransactionLogPartitionManager retries it on
+ * its next run.
+ * - DETACH uses DETACH PARTITION ... CONCURRENTLY where Postgres allows it,
+ *   which only takes SHARE UPDATE EXCLUSIVE and so never blocks inserts.
+ *   Postgres refuses it while the table has a default partition, as the
+ *   schema.sql one does; the plain DETACH is then used, in a transaction
+ *   with SET LOCAL lock_timeout.
+ * - A concurrent detach that failed in its second phase leaves the
+ *   partition pending; the next attempt completes it with FINALIZE.
+ */
+@Repository
+public class TransactionLogPartitionJdbcRepository implements TransactionLogPartitionRepository {
+
+    private static final String SELECT_PARTITIONS =
+            "SELECT c.relname FROM pg_inherits i "
+                    + "JOIN pg_class c ON c.oid = i.inhrelid "
+                    + "WHERE i.inhparent = 'transaction_log'::regclass";
+
+    private static final String HAS_DEFAULT_PARTITION =
+            "SELECT partdefid <> 0 FROM pg_partitioned_table WHERE partrelid = 'transaction_log'::regclass";
+
+    private static final String IS_DETACH_PENDING =
+            "SELECT inhdetachpending FROM pg_inherits WHERE inhrelid = to_regclass(?)";
+
+    private static final String DELETE_EXPIRED_DEFAULT_ROWS =
+            "DELETE FROM transaction_log_default WHERE trx_date < ?";
+
+    // transaction_log_archive has the columns of transaction_log in the same order.
+    private static final String ARCHIVE_EXPIRED_DEFAULT_ROWS =
+            "WITH moved AS (DELETE FROM transaction_log_default WHERE trx_date < ? RETURNING *) "
+                    + "INSERT INTO transaction_log_archive SELECT * FROM moved";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long lockTimeoutMs;
+
+    public TransactionLogPartitionJdbcRepository(JdbcTemplate jdbcTemplate,
+                                                 @Value("${transaction.partitions.lock-timeout-ms:5000}")
+                                                 long lockTimeoutMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.lockTimeoutMs = lockTimeoutMs;
+    }
+
+    @Override
+    public List<LocalDate> findPartitionDays() {
+        List<LocalDate> days = new ArrayList<>();
+        jdbcTemplate.query(SELECT_PARTITIONS, rs -> {
+            LocalDate day = TransactionLogPartitionRepository.day(rs.getString(1));
+            if (day != null) {
+                days.add(day);
+            }
+        });
+        return days;
+    }
+
+    @Override
+    public void createPartition(LocalDate day) {
+        executeInTransaction("CREATE TABLE IF NOT EXISTS " + TransactionLogPartitionRepository.name(day)
+                + " PARTITION OF transaction_log FOR VALUES FROM ('" + day + "') TO ('" + day.plusDays(1) + "')");
+    }
+
+    @Override
+    public void detachPartition(LocalDate day) {
+        String name = TransactionLogPartitionRepository.name(day);
+        String detach = "ALTER TABLE transaction_log DETACH PARTITION " + name;
+        if (Boolean.TRUE.equals(queryFlag(IS_DETACH_PENDING, name))) {
+            executeOutsideTransaction(detach + " FINALIZE");
+        } else if (Boolean.TRUE.equals(queryFlag(HAS_DEFAULT_PARTITION))) {
+            executeInTransaction(detach);
+        } else {
+            executeOutsideTransaction(detach + " CONCURRENTLY");
+        }
+    }
+
+    @Override
+    public void dropPartition(LocalDate day) {
+        executeInTransaction("DROP TABLE IF EXISTS " + TransactionLogPartitionRepository.name(day));
+    }
+
+    @Override
+    public int deleteExpiredDefaultRows(LocalDate cutoff) {
+        return jdbcTemplate.update(DELETE_EXPIRED_DEFAULT_ROWS, cutoff);
+    }
+
+    @Override
+    public int archiveExpiredDefaultRows(LocalDate cutoff) {
+        return jdbcTemplate.update(ARCHIVE_EXPIRED_DEFAULT_ROWS, cutoff);
+    }
+
+    private Boolean queryFlag(String sql, Object... args) {
+        List<Boolean> rows = jdbcTemplate.queryForList(sql, Boolean.class, args);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    /**
+     * Runs one DDL statement in its own transaction, under SET LOCAL
+     * lock_timeout.
+     */
+    private void executeInTransaction(String ddl) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET LOCAL lock_timeout = " + lockTimeoutMs);
+                statement.execute(ddl);
+                connection.commit();
+            } catch (SQLException | RuntimeException ex) {
+                connection.rollback();
+                throw ex;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Runs one DDL statement that Postgres refuses inside a transaction
+     * block, under a session lock_timeout that is reset before the pooled
+     * connection is returned.
+     */
+    private void executeOutsideTransaction(String ddl) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET lock_timeout = " + lockTimeoutMs);
+                try {
+                    statement.execute(ddl);
+                } finally {
+                    statement.execute("RESET lock_timeout");
+                }
+            }
+            return null;
+        });
+    }
+}
@@ -0,0 +1,77 @@
+package org.example.server.repository;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * DDL for the daily partitions of 'transaction_log', as needed by
+ * TransactionLogPartitionManager.
+ *
+ * A day's partition is named transaction_log_pYYYYMMDD and covers
+ * [day, day + 1) of trx_date. The undated and default partitions created by
+ * schema.sql do not follow that pattern and are never touched here, except
+ * that expired rows are moved out of the default partition: into
+ * 'transaction_log_archive', or deleted.
+ *
+ * Implemented with JDBC here and with R2DBC by the reactive server, which
+ * reuses the manager as is. Both are only called from the manager's
+ * startup and maintenance threads, never from a request. DDL gives up
+ * after transaction.partitions.lock-timeout-ms waiting for its lock; the
+ * manager retries it on its next run.
+ */
+public interface TransactionLogPartitionRepository {
+
+    String PREFIX = "transaction_log_p";
+    Pattern DAILY_PARTITION = Pattern.compile("transaction_log_p(\\d{8})");
+    DateTimeFormatter SUFFIX = DateTimeFormatter.BASIC_ISO_DATE;
+
+    /**
+     * @return days that currently have an attached daily partition.
+     */
+    List<LocalDate> findPartitionDays();
+
+    /**
+     * Creates the partition of day. Fails if the default partition already
+     * holds rows of that day.
+     */
+    void createPartition(LocalDate day);
+
+    /**
+     * Detaches the partition of day; its rows stay in a standalone table of
+     * the same name, e.g. for archiving.
+     */
+    void detachPartition(LocalDate day);
+
+    void dropPartition(LocalDate day);
+
+    /**
+     * Deletes rows older than cutoff that landed in the default partition.
+     *
+     * @return number of rows deleted.
+     */
+    int deleteExpiredDefaultRows(LocalDate cutoff);
+
+    /**
+     * Moves rows older than cutoff from the default partition into
+     * 'transaction_log_archive', in one statement.
+     *
+     * @return number of rows moved.
+     */
+    int archiveExpiredDefaultRows(LocalDate cutoff);
+
+    static String name(LocalDate day) {
+        return PREFIX + SUFFIX.format(day);
+    }
+
+    /**
+     * @return the day of a daily partition's table name, or null for any
+     * other table.
+     */
+    static LocalDate day(String tableName) {
+        Matcher m = DAILY_PARTITION.matcher(tableName);
+        return m.matches() ? LocalDate.parse(m.group(1), SUFFIX) : null;
+    }
+}
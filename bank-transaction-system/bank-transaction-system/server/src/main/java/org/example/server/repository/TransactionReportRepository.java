@@ -0,0 +1,167 @@
+package org.example.server.repository;
+
+import org.example.server.dto.DailyRollupDto;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Plain JDBC access to 'transaction_daily_rollup' and the scans that
+ * recompute it from 'transaction_log'.
+ *
+ * The rollup is read directly for reports. A rebuild recomputes one day in
+ * chunks: the day's partition is split into ranges of heap blocks (ctid
+ * ranges, answered by a TID range scan on Postgres 14+), and each chunk is
+ * aggregated by Postgres with GROUP BY bank_id, currency, status. Only the
+ * handful of grouped rows per chunk reach the JVM, never the day's rows.
+ *
+ * The scan methods are meant to run inside a REPEATABLE READ transaction
+ * that shares an exported snapshot (exportSnapshot / importSnapshot), so
+ * all chunks and the rollup they are compared with see the same data.
+ * Partition names come from TransactionLogPartitionRepository.name() and
+ * snapshot ids are checked against their format, so both can be inlined.
+ */
+@Repository
+public class TransactionReportRepository {
+
+    private static final Pattern SNAPSHOT_ID = Pattern.compile("[0-9A-Fa-f-]+");
+
+    private static final String SELECT_DAILY =
+            "SELECT trx_date, bank_id, currency, status, sum(tx_count), sum(total_amount) "
+                    + "FROM transaction_daily_rollup WHERE trx_date BETWEEN ? AND ? "
+                    + "GROUP BY trx_date, bank_id, currency, status "
+                    + "HAVING sum(tx_count) <> 0 OR sum(total_amount) <> 0 "
+                    + "ORDER BY trx_date, bank_id, currency, status";
+
+    private static final String EXPORT_SNAPSHOT = "SELECT pg_export_snapshot()";
+
+    private static final String SELECT_RELATION_BLOCKS =
+            "SELECT pg_relation_size(c.oid) / current_setting('block_size')::bigint "
+                    + "FROM pg_class c WHERE c.oid = to_regclass(?)";
+
+    private static final String AGGREGATE_COLUMNS =
+            "SELECT bank_id, currency, status, count(*), sum(amount) FROM ";
+
+    private static final String GROUP_BY = " GROUP BY bank_id, currency, status";
+
+    /** Corrections go to slot 0; only the sum over a group's slots is meaningful. */
+    private static final String UPSERT_DELTA =
+            "INSERT INTO transaction_daily_rollup (trx_date, bank_id, currency, status, slot, tx_count, total_amount) "
+                    + "VALUES (?, ?, ?, ?, 0, ?, ?) "
+                    + "ON CONFLICT (trx_date, bank_id, currency, status, slot) DO UPDATE SET "
+                    + "tx_count = transaction_daily_rollup.tx_count + EXCLUDED.tx_count, "
+                    + "total_amount = transaction_daily_rollup.total_amount + EXCLUDED.total_amount";
+
+    private static final String DELETE_EMPTY =
+            "DELETE FROM transaction_daily_rollup WHERE trx_date = ? AND tx_count = 0 AND total_amount = 0";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TransactionReportRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @return rollup rows of the days from..to (inclusive), summed over the
+     *         slots and ordered by day, bank, currency and status.
+     */
+    public List<DailyRollupDto> findDaily(LocalDate from, LocalDate to) {
+        return jdbcTemplate.query(SELECT_DAILY, (rs, i) -> new DailyRollupDto(
+                rs.getObject(1, LocalDate.class), rs.getString(2), rs.getString(3), rs.getString(4),
+                rs.getLong(5), rs.getBigDecimal(6)), from, to);
+    }
+
+    /**
+     * Exports the snapshot of the current transaction so other transactions
+     * can import it. Must be the first statement of a REPEATABLE READ
+     * transaction, which must stay open until they have.
+     */
+    public String exportSnapshot() {
+        return jdbcTemplate.queryForObject(EXPORT_SNAPSHOT, String.class);
+    }
+
+    /**
+     * Makes the current transaction see the exported snapshot. Must be the
+     * first statement of a REPEATABLE READ transaction.
+     */
+    public void importSnapshot(String snapshotId) {
+        if (!SNAPSHOT_ID.matcher(snapshotId).matches()) {
+            throw new IllegalArgumentException("Invalid snapshot id " + snapshotId);
+        }
+        jdbcTemplate.execute("SET TRANSACTION SNAPSHOT '" + snapshotId + "'");
+    }
+
+    /**
+     * @return number of heap blocks of day's partition, or -1 if the day has
+     *         no partition of its own.
+     */
+    public long partitionBlocks(LocalDate day) {
+        List<Long> blocks = jdbcTemplate.queryForList(SELECT_RELATION_BLOCKS, Long.class,
+                TransactionLogPartitionRepository.name(day));
+        return blocks.isEmpty() || blocks.get(0) == null ? -1 : blocks.get(0);
+    }
+
+    /**
+     * Aggregates the rows stored in blocks [fromBlock, toBlock) of day's
+     * partition; toBlock < 0 means up to the end of the partition.
+     */
+    public List<DailyRollupDto> aggregateBlocks(LocalDate day, long fromBlock, long toBlock) {
+        StringBuilder sql = new StringBuilder(AGGREGATE_COLUMNS)
+                .append(TransactionLogPartitionRepository.name(day))
+                .append(" WHERE ctid >= ?::tid");
+        if (toBlock >= 0) {
+            sql.append(" AND ctid < ?::tid");
+        }
+        sql.append(GROUP_BY);
+        return jdbcTemplate.query(sql.toString(), ps -> {
+            ps.setString(1, "(" + fromBlock + ",0)");
+            if (toBlock >= 0) {
+                ps.setString(2, "(" + toBlock + ",0)");
+            }
+        }, groupMapper(day));
+    }
+
+    /**
+     * Aggregates day's rows in the default partition, where they land while
+     * the day has no partition of its own.
+     */
+    public List<DailyRollupDto> aggregateDefaultPartition(LocalDate day) {
+        return jdbcTemplate.query(AGGREGATE_COLUMNS + "transaction_log_default WHERE trx_date = ?" + GROUP_BY,
+                groupMapper(day), day);
+    }
+
+    /**
+     * Aggregates all of day's rows through the parent table, for days without
+     * a partition of their own (e.g. the undated day 1970-01-01).
+     */
+    public List<DailyRollupDto> aggregateDay(LocalDate day) {
+        return jdbcTemplate.query(AGGREGATE_COLUMNS + "transaction_log WHERE trx_date = ?" + GROUP_BY,
+                groupMapper(day), day);
+    }
+
+    /**
+     * Adds the given counts and amounts (which may be negative) to the rollup
+     * and removes the slot rows of day that end up empty.
+     */
+    public void applyDeltas(LocalDate day, List<DailyRollupDto> deltas) {
+        jdbcTemplate.batchUpdate(UPSERT_DELTA, deltas, deltas.size(), (PreparedStatement ps, DailyRollupDto d) -> {
+            ps.setObject(1, d.date());
+            ps.setString(2, d.bankId());
+            ps.setString(3, d.currency());
+            ps.setString(4, d.status());
+            ps.setLong(5, d.count());
+            ps.setBigDecimal(6, d.totalAmount());
+        });
+        jdbcTemplate.update(DELETE_EMPTY, day);
+    }
+
+    private static RowMapper<DailyRollupDto> groupMapper(LocalDate day) {
+        return (rs, i) -> new DailyRollupDto(day, rs.getString(1), rs.getString(2), rs.getString(3),
+                rs.getLong(4), rs.getBigDecimal(5));
+    }
+}
@@ -0,0 +1,51 @@
+package org.example.server.rules;
+
+import org.example.server.model.TransactionRequestXml;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A rule compiled to a predicate over the request, with its rejection reason
+ * and a counter of how many requests it rejected.
+ */
+public final class CompiledRule {
+
+    @FunctionalInterface
+    interface Check {
+        boolean passes(TransactionRequestXml request);
+    }
+
+    private final String name;
+    private final String reason;
+    private final Check check;
+    private final LongAdder hits = new LongAdder();
+
+    CompiledRule(String name, String reason, Check check) {
+        this.name = name;
+        this.reason = reason;
+        this.check = check;
+    }
+
+    boolean passes(TransactionRequestXml request) {
+        if (check.passes(request)) {
+            return true;
+        }
+        hits.increment();
+        return false;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    /**
+     * Number of requests this rule rejected.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+}
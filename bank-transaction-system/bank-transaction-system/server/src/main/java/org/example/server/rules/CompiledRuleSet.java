@@ -0,0 +1,71 @@
+package org.example.server.rules;
+
+import org.example.server.model.TransactionRequestXml;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Immutable, flat chain of compiled rules, evaluated in order until the
+ * first rejection. Evaluation does not allocate; counters are LongAdders so
+ * concurrent workers do not contend on them.
+ */
+public final class CompiledRuleSet {
+
+    private final long version;
+    private final String source;
+    private final OffsetDateTime loadedAt;
+    private final CompiledRule[] rules;
+    private final LongAdder evaluations = new LongAdder();
+    private final LongAdder evaluationNanos = new LongAdder();
+
+    CompiledRuleSet(long version, String source, CompiledRule[] rules) {
+        this.version = version;
+        this.source = source;
+        this.loadedAt = OffsetDateTime.now();
+        this.rules = rules;
+    }
+
+    /**
+     * @return null if every rule passes, or the reason of the first rule that rejects the request.
+     */
+    public String evaluate(TransactionRequestXml request) {
+        long start = System.nanoTime();
+        try {
+            for (CompiledRule rule : rules) {
+                if (!rule.passes(request)) {
+                    return rule.getReason();
+                }
+            }
+            return null;
+        } finally {
+            evaluationNanos.add(System.nanoTime() - start);
+            evaluations.increment();
+        }
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public OffsetDateTime getLoadedAt() {
+        return loadedAt;
+    }
+
+    public List<CompiledRule> getRules() {
+        return List.of(rules);
+    }
+
+    public long getEvaluations() {
+        return evaluations.sum();
+    }
+
+    public long getEvaluationNanos() {
+        return evaluationNanos.sum();
+    }
+}
@@ -0,0 +1,163 @@
+package org.example.server.rules;
+
+import org.example.server.model.TransactionRequestXml;
+
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles rule definitions into a CompiledRuleSet.
+ *
+ * Everything that does not depend on the request (field accessors, regex
+ * patterns, limits, value sets) is resolved here, once, so evaluating a rule
+ * is a field read plus a comparison.
+ *
+ * Rule types ("field" is one of trxId, bankId, customerId, fromAccount,
+ * toAccount, amount, currency):
+ * - required:          field is present and, for strings, not blank.
+ * - digits:            field is exactly "length" ASCII digits.
+ * - pattern:           field matches "regex" (precompiled; allocates a Matcher,
+ *                      so prefer digits where it fits).
+ * - positive:          amount is greater than zero.
+ * - max-amount:        amount does not exceed "max"; optionally only for
+ *                      requests of "bankId" and/or "currency".
+ * - one-of / not-in:   field is / is not one of "values".
+ * - distinct-accounts: fromAccount differs from toAccount.
+ *
+ * Rules that need a value the request does not carry reject it, except
+ * max-amount, one-of and not-in, which leave missing values to the
+ * required/positive rules before them.
+ */
+public final class RuleCompiler {
+
+    private RuleCompiler() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if a definition is incomplete or of an unknown type.
+     */
+    public static CompiledRuleSet compile(RuleSetDefinition definition, long version, String source) {
+        if (definition == null || definition.getRules() == null || definition.getRules().isEmpty()) {
+            throw new IllegalArgumentException("Rule set has no rules");
+        }
+        List<RuleDefinition> rules = definition.getRules();
+        CompiledRule[] compiled = new CompiledRule[rules.size()];
+        Set<String> names = new HashSet<>();
+        for (int i = 0; i < compiled.length; i++) {
+            RuleDefinition rule = rules.get(i);
+            String name = rule.getName() != null ? rule.getName() : "rule-" + (i + 1);
+            if (!names.add(name)) {
+                throw new IllegalArgumentException("Duplicate rule name '" + name + "'");
+            }
+            try {
+                compiled[i] = new CompiledRule(name, require(rule.getReason(), "reason"), check(rule));
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException("Rule '" + name + "': " + ex.getMessage(), ex);
+            }
+        }
+        return new CompiledRuleSet(version, source, compiled);
+    }
+
+    private static CompiledRule.Check check(RuleDefinition rule) {
+        String type = require(rule.getType(), "type");
+        switch (type) {
+            case "required": {
+                Function<TransactionRequestXml, Object> field = field(rule.getField());
+                return r -> {
+                    Object value = field.apply(r);
+                    return value != null && !(value instanceof String s && s.isBlank());
+                };
+            }
+            case "digits": {
+                Function<TransactionRequestXml, String> field = stringField(rule.getField());
+                int length = require(rule.getLength(), "length");
+                return r -> isDigits(field.apply(r), length);
+            }
+            case "pattern": {
+                Function<TransactionRequestXml, String> field = stringField(rule.getField());
+                Pattern pattern = Pattern.compile(require(rule.getRegex(), "regex"));
+                return r -> {
+                    String value = field.apply(r);
+                    return value != null && pattern.matcher(value).matches();
+                };
+            }
+            case "positive":
+                return r -> r.getAmount() != null && r.getAmount().signum() > 0;
+            case "max-amount": {
+                BigDecimal max = require(rule.getMax(), "max");
+                String bankId = rule.getBankId();
+                String currency = rule.getCurrency();
+                return r -> r.getAmount() == null
+                        || (bankId != null && !bankId.equals(r.getBankId()))
+                        || (currency != null && !currency.equals(r.getCurrency()))
+                        || r.getAmount().compareTo(max) <= 0;
+            }
+            case "one-of": {
+                Function<TransactionRequestXml, String> field = stringField(rule.getField());
+                Set<String> values = Set.copyOf(require(rule.getValues(), "values"));
+                return r -> {
+                    String value = field.apply(r);
+                    return value == null || values.contains(value);
+                };
+            }
+            case "not-in": {
+                Function<TransactionRequestXml, String> field = stringField(rule.getField());
+                Set<String> values = Set.copyOf(require(rule.getValues(), "values"));
+                return r -> {
+                    String value = field.apply(r);
+                    return value == null || !values.contains(value);
+                };
+            }
+            case "distinct-accounts":
+                return r -> r.getFromAccount() == null || !r.getFromAccount().equals(r.getToAccount());
+            default:
+                throw new IllegalArgumentException("unknown type '" + type + "'");
+        }
+    }
+
+    private static boolean isDigits(String value, int length) {
+        if (value == null || value.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Function<TransactionRequestXml, Object> field(String name) {
+        return switch (require(name, "field")) {
+            case "customerId" -> TransactionRequestXml::getCustomerId;
+            case "amount" -> TransactionRequestXml::getAmount;
+            default -> {
+                Function<TransactionRequestXml, String> field = stringField(name);
+                yield field::apply;
+            }
+        };
+    }
+
+    private static Function<TransactionRequestXml, String> stringField(String name) {
+        return switch (require(name, "field")) {
+            case "trxId" -> TransactionRequestXml::getTrxId;
+            case "bankId" -> TransactionRequestXml::getBankId;
+            case "fromAccount" -> TransactionRequestXml::getFromAccount;
+            case "toAccount" -> TransactionRequestXml::getToAccount;
+            case "currency" -> TransactionRequestXml::getCurrency;
+            default -> throw new IllegalArgumentException("unknown or non-text field '" + name + "'");
+        };
+    }
+
+    private static <T> T require(T value, String property) {
+        if (value == null) {
+            throw new IllegalArgumentException("missing '" + property + "'");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,163 @@
+package org.example.server.rules;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.server.dto.RuleSetStats;
+import org.example.server.dto.RuleStats;
+import org.example.server.model.TransactionRequestXml;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the active CompiledRuleSet and swaps it when the rules file changes.
+ *
+ * Responsibilities:
+ * - Loads and compiles transaction.rules.location at startup; invalid rules
+ *   fail startup.
+ * - If the location is a file, polls its modification time every
+ *   transaction.rules.reload-interval-ms and recompiles on change.
+ *   Reloads can also be triggered through POST /server/rules/reload.
+ * - A rule set that fails to load or compile is rejected and the active one
+ *   stays in place.
+ *
+ * Concurrency:
+ * - The active set is an immutable object behind an AtomicReference. Each
+ *   evaluation reads it once, so a request is always checked against one
+ *   complete rule set, never a mix of old and new rules.
+ * - Reloads are serialized; evaluations never wait for them.
+ */
+@Service
+public class RuleEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(RuleEngine.class);
+
+    // Static, so rules files can also be read outside Spring (RuleEvaluationBenchmark).
+    private static final ObjectMapper JSON = new ObjectMapper()
+            .enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+
+    private final Resource location;
+    private final long reloadIntervalMs;
+    private final AtomicReference<CompiledRuleSet> active = new AtomicReference<>();
+
+    private long version;
+    private long lastModified;
+    private Thread reloader;
+
+    public RuleEngine(ResourceLoader resourceLoader,
+                      @Value("${transaction.rules.location:classpath:rules.json}") String location,
+                      @Value("${transaction.rules.reload-interval-ms:5000}") long reloadIntervalMs) {
+        this.location = resourceLoader.getResource(location);
+        this.reloadIntervalMs = reloadIntervalMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        reload();
+        if (reloadIntervalMs > 0 && location.isFile()) {
+            reloader = new Thread(this::watch, "rules-reloader");
+            reloader.setDaemon(true);
+            reloader.start();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (reloader != null) {
+            reloader.interrupt();
+        }
+    }
+
+    /**
+     * @return null if the request passes every rule, or the reason of the first rule it fails.
+     */
+    public String evaluate(TransactionRequestXml request) {
+        return active.get().evaluate(request);
+    }
+
+    /**
+     * Loads, compiles and activates the rules at the configured location.
+     *
+     * @throws IllegalArgumentException if the rules cannot be read or compiled;
+     *         the active rule set is left unchanged.
+     */
+    public synchronized CompiledRuleSet reload() {
+        long modified = lastModified();
+        CompiledRuleSet compiled;
+        try (InputStream in = location.getInputStream()) {
+            compiled = RuleCompiler.compile(read(in), version + 1, location.getDescription());
+        } catch (IOException ex) {
+            throw new IllegalArgumentException("Cannot read rules from " + location.getDescription(), ex);
+        }
+        version = compiled.getVersion();
+        lastModified = modified;
+        active.set(compiled);
+        log.info("Activated rule set v{} with {} rules from {}",
+                compiled.getVersion(), compiled.getRules().size(), compiled.getSource());
+        return compiled;
+    }
+
+    public RuleSetStats stats() {
+        CompiledRuleSet set = active.get();
+        long evaluations = set.getEvaluations();
+        return new RuleSetStats(
+                set.getVersion(),
+                set.getSource(),
+                set.getLoadedAt().toString(),
+                evaluations,
+                evaluations == 0 ? 0 : set.getEvaluationNanos() / evaluations,
+                set.getRules().stream()
+                        .map(rule -> new RuleStats(rule.getName(), rule.getReason(), rule.getHits()))
+                        .toList());
+    }
+
+    /**
+     * Parses a rules file.
+     */
+    public static RuleSetDefinition read(InputStream in) throws IOException {
+        return JSON.readValue(in, RuleSetDefinition.class);
+    }
+
+    private void watch() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(reloadIntervalMs);
+                long modified = lastModified();
+                boolean changed;
+                synchronized (this) {
+                    changed = modified != lastModified;
+                }
+                if (changed) {
+                    reload();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException ex) {
+                log.error("Rejected changed rules at {}, keeping rule set v{}",
+                        location.getDescription(), active.get().getVersion(), ex);
+                // Do not retry the same broken file until it changes again.
+                synchronized (this) {
+                    lastModified = lastModified();
+                }
+            }
+        }
+    }
+
+    private long lastModified() {
+        try {
+            return location.isFile() ? location.lastModified() : 0;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package org.example.server.rules;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Contents of the rules file: rules in evaluation order.
+ */
+public class RuleSetDefinition {
+
+    private List<RuleDefinition> rules = new ArrayList<>();
+
+    public List<RuleDefinition> getRules() {
+        return rules;
+    }
+
+    public void setRules(List<RuleDefinition> rules) {
+        this.rules = rules;
+    }
+}
@@ -0,0 +1,786 @@
+package org.example.server.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.server.repository.AccountBalanceRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory account ledger backed by 'account_balance'.
+ *
+ * Balances are loaded once at startup and held as long minor units (cents).
+ * Accounts are spread over a fixed number of shards by account number; each
+ * shard has its own lock, so transfers touching different shards run fully
+ * in parallel and no request ever takes a row lock in Postgres.
+ *
+ * Concurrency:
+ * - A transfer locks the two shards in ascending shard order (once if both
+ *   accounts share a shard), which makes two-account transfers deadlock-free.
+ * - Account lookup goes through a ConcurrentHashMap and never blocks.
+ *
+ * Hot accounts:
+ * - A few accounts take a large share of all transfers, and every transfer
+ *   touching one of them queues on its shard lock. An account whose shard
+ *   lock was found held more than hot.contention-threshold times within
+ *   hot.window-ms is made hot (at most hot.max-accounts of them, for the
+ *   life of the process).
+ * - A hot account's balance is split over hot.slots slots, each on its own
+ *   cache line and updated lock-free. A credit adds to a random slot; a
+ *   debit takes from the first slot, starting at a random one, that holds
+ *   enough on its own.
+ * - Only when no single slot can cover a debit does it take the account's
+ *   sweep lock, collect every slot, and decide on the true total. Either it
+ *   debits and spreads the rest evenly over the slots again, or it reports
+ *   insufficient funds. Slots never go below zero through a checked debit,
+ *   so a hot account cannot be overdrawn. Funds are only reported short if
+ *   the whole balance is short.
+ * - The balance is the sum of the slots, read under the sweep lock.
+ * - A transfer touching a hot account debits one side, then credits the
+ *   other, instead of holding both locks. Between the two steps the amount
+ *   is in neither balance.
+ *
+ * Single node:
+ * - Funds are only checked against this process's balances, so two
+ *   processes sharing account_balance could each let an account spend its
+ *   whole balance. The ledger therefore holds a database-wide lock
+ *   (AccountBalanceRepository.tryAcquireLedgerLock) while it runs, and a
+ *   second node that tries to load it fails to start.
+ * - Further server nodes run with remote-url set to the ledger node. They
+ *   neither take the lock nor load balances; transfer() and reverse() are
+ *   calls to the ledger node's /server/ledger endpoints (LedgerController),
+ *   authenticated with the shared transaction.ledger.secret. Decoding,
+ *   rules, logging and everything else still scale out with the nodes.
+ * - Each remote call carries the trxId and an id of this transfer attempt
+ *   (TransferRef); the ledger node applies an attempt at most once
+ *   (LedgerTransferRegistry), so calls are retried safely. A transfer still
+ *   unanswered after its retries is answered UNAVAILABLE and cancelled in
+ *   the background with a reversal of the same attempt, which also keeps a
+ *   late copy of the call from being applied.
+ * - The lock lives as long as the database session holding it. That session
+ *   is checked every lock-check-ms; if it is gone, another node may take the
+ *   lock, so transfers are refused (UNAVAILABLE) until this one has it
+ *   again. It then only resumes if no other ledger loaded the balances in
+ *   between (AccountBalanceRepository.claimLedger); otherwise its balances
+ *   are stale and it refuses transfers until restarted.
+ *
+ * Persistence:
+ * - The ledger itself writes nothing. The statement that inserts a batch of
+ *   transaction_log rows also adds the netted balance changes of its SUCCESS
+ *   rows to account_balance_delta (TransactionLogJdbcRepository), so the
+ *   stored balances always match the committed log, after a crash or a
+ *   failover too. A transfer reversed because its row was not inserted never
+ *   reaches the database.
+ * - An account's stored balance is account_balance.balance plus its delta
+ *   rows; that sum is what load() reads. Every fold-interval-ms a background
+ *   task moves the delta rows into account_balance in one statement, so
+ *   account_balance on its own lags the log by about one interval.
+ */
+@Service
+public class AccountLedgerService {
+
+    /** Carries transaction.ledger.secret on calls between server nodes. */
+    public static final String SECRET_HEADER = "X-Ledger-Secret";
+
+    private static final Logger log = LoggerFactory.getLogger(AccountLedgerService.class);
+
+    public enum TransferResult {
+        OK,
+        UNKNOWN_ACCOUNT,
+        INSUFFICIENT_FUNDS,
+        INVALID_AMOUNT,
+        // Not applied: the ledger lock is not held, or the ledger node
+        // cannot be reached; retry later.
+        UNAVAILABLE
+    }
+
+    /**
+     * One transfer attempt of a transaction. Pass the same ref to transfer()
+     * and to the reverse() undoing it: a remote ledger applies each attempt
+     * at most once and only reverses an attempt it applied. attemptId is
+     * null with a local ledger.
+     */
+    public record TransferRef(String trxId, String attemptId) {
+    }
+
+    private final AccountBalanceRepository balanceRepository;
+    private final ConcurrentHashMap<String, Account> accounts = new ConcurrentHashMap<>();
+    private final Shard[] shards;
+    private final long foldIntervalMs;
+    private final ScheduledExecutorService folder;
+    private final long lockCheckMs;
+    private final ScheduledExecutorService lockKeeper;
+    private final String owner = UUID.randomUUID().toString();
+    private final boolean hotEnabled;
+    private final int hotSlots;
+    private final int hotThreshold;
+    private final long hotWindowNanos;
+    private final int maxHotAccounts;
+    private final List<Account> hotAccounts = new CopyOnWriteArrayList<>();
+    // Set if another node runs the ledger.
+    private final RemoteLedger remote;
+
+    // Set while the ledger lock is lost; transfers are refused meanwhile.
+    private volatile boolean fenced;
+
+    public AccountLedgerService(AccountBalanceRepository balanceRepository,
+                                @Value("${transaction.ledger.shards:64}") int shardCount,
+                                @Value("${transaction.ledger.fold-interval-ms:1000}") long foldIntervalMs,
+                                @Value("${transaction.ledger.remote-url:}") String remoteUrl,
+                                @Value("${transaction.ledger.remote-timeout-ms:2000}") long remoteTimeoutMs,
+                                @Value("${transaction.ledger.secret:}") String secret,
+                                @Value("${transaction.ledger.lock-check-ms:2000}") long lockCheckMs,
+                                @Value("${transaction.ledger.hot.enabled:true}") boolean hotEnabled,
+                                @Value("${transaction.ledger.hot.slots:0}") int hotSlots,
+                                @Value("${transaction.ledger.hot.contention-threshold:1000}") int hotThreshold,
+                                @Value("${transaction.ledger.hot.window-ms:1000}") long hotWindowMs,
+                                @Value("${transaction.ledger.hot.max-accounts:64}") int maxHotAccounts) {
+        this.balanceRepository = balanceRepository;
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard();
+        }
+        this.foldIntervalMs = foldIntervalMs;
+        this.remote = remoteUrl.isBlank() ? null : new RemoteLedger(remoteUrl, remoteTimeoutMs, secret);
+        this.lockCheckMs = lockCheckMs;
+        this.hotEnabled = hotEnabled;
+        // 0 = one slot per core
+        this.hotSlots = hotSlots > 0 ? hotSlots : Runtime.getRuntime().availableProcessors();
+        this.hotThreshold = hotThreshold;
+        this.hotWindowNanos = TimeUnit.MILLISECONDS.toNanos(hotWindowMs);
+        this.maxHotAccounts = maxHotAccounts;
+        this.folder = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ledger-fold");
+            t.setDaemon(true);
+            return t;
+        });
+        // Own thread: a fold stuck on an unreachable database must not delay the lock check.
+        this.lockKeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ledger-lock");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Takes the ledger lock, then loads every balance. A second process on
+     * the same database fails to start here instead of waiting; with
+     * remote-url set there is nothing to load.
+     */
+    @PostConstruct
+    public void load() {
+        if (remote != null) {
+            if (remote.secret.isEmpty()) {
+                throw new IllegalStateException("transaction.ledger.remote-url needs transaction.ledger.secret, "
+                        + "the secret the ledger node was started with");
+            }
+            log.info("Using the account ledger of {}", remote.baseUrl);
+            return;
+        }
+        if (!balanceRepository.tryAcquireLedgerLock()) {
+            throw new IllegalStateException("Another server node runs the in-memory account ledger on this "
+                    + "database; start this one with transaction.ledger.remote-url=<that node> to use it");
+        }
+        balanceRepository.claimLedger(owner);
+        balanceRepository.forEachBalance((accountNo, balance) -> {
+            int shard = Math.floorMod(accountNo.hashCode(), shards.length);
+            accounts.put(accountNo, new Account(accountNo, shard, toMinorUnits(balance)));
+        });
+        log.info("Loaded {} account balances into the ledger", accounts.size());
+        folder.scheduleWithFixedDelay(this::fold, foldIntervalMs, foldIntervalMs, TimeUnit.MILLISECONDS);
+        lockKeeper.scheduleWithFixedDelay(this::checkLock, lockCheckMs, lockCheckMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (remote != null) {
+            remote.stop();
+        }
+        lockKeeper.shutdown();
+        folder.shutdown();
+        lockKeeper.awaitTermination(10, TimeUnit.SECONDS);
+        folder.awaitTermination(10, TimeUnit.SECONDS);
+        balanceRepository.releaseLedgerLock();
+    }
+
+    /**
+     * @return a new attempt at transferring the funds of trxId.
+     */
+    public TransferRef newTransfer(String trxId) {
+        return new TransferRef(trxId, remote != null ? remote.nextAttemptId() : null);
+    }
+
+    /**
+     * Moves amount from one account to the other if the source has enough funds.
+     *
+     * @param ref from newTransfer(); may be null with a local ledger.
+     */
+    public TransferResult transfer(TransferRef ref, String fromAccount, String toAccount, BigDecimal amount) {
+        if (remote != null) {
+            return remote.transfer(ref, fromAccount, toAccount, amount);
+        }
+        if (fenced) {
+            return TransferResult.UNAVAILABLE;
+        }
+        long minor = toMinorUnits(amount);
+        if (minor <= 0) {
+            return TransferResult.INVALID_AMOUNT;
+        }
+        Account from = accounts.get(fromAccount);
+        Account to = accounts.get(toAccount);
+        if (from == null || to == null) {
+            return TransferResult.UNKNOWN_ACCOUNT;
+        }
+        return apply(from, to, minor, true);
+    }
+
+    /**
+     * Undoes a transfer that was applied but whose transaction could not be
+     * recorded (e.g. its trxId turned out to be a duplicate). The balance
+     * check is skipped: the funds are being returned, not spent.
+     *
+     * @param ref the ref the transfer was made with.
+     */
+    public void reverse(TransferRef ref, String fromAccount, String toAccount, BigDecimal amount) {
+        if (remote != null) {
+            remote.reverse(ref, fromAccount, toAccount, amount);
+            return;
+        }
+        Account from = accounts.get(fromAccount);
+        Account to = accounts.get(toAccount);
+        if (from != null && to != null) {
+            apply(to, from, toMinorUnits(amount), false);
+        }
+    }
+
+    /**
+     * @return true if transfers are calls to another node's ledger, which
+     * block for up to remote-timeout-ms.
+     */
+    public boolean isRemote() {
+        return remote != null;
+    }
+
+    /**
+     * Current in-memory balance, or null for an unknown account or a remote
+     * ledger.
+     */
+    public BigDecimal getBalance(String accountNo) {
+        Account account = accounts.get(accountNo);
+        if (account == null) {
+            return null;
+        }
+        ReentrantLock lock = shards[account.shard].lock;
+        lock.lock();
+        try {
+            HotAccount hot = account.hot;
+            return BigDecimal.valueOf(hot != null ? hot.balance() : account.balance, 2);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of accounts currently split into slots.
+     */
+    public int getHotAccountCount() {
+        return hotAccounts.size();
+    }
+
+    private TransferResult apply(Account from, Account to, long minor, boolean checkFunds) {
+        if (from.hot == null && to.hot == null) {
+            TransferResult result = applyLocked(from, to, minor, checkFunds);
+            if (result != null) {
+                return result;
+            }
+            // One of them was made hot while we waited for its lock.
+        }
+        if (!debit(from, minor, checkFunds)) {
+            return TransferResult.INSUFFICIENT_FUNDS;
+        }
+        credit(to, minor);
+        return TransferResult.OK;
+    }
+
+    /**
+     * Transfer between two accounts that are not hot, atomically under both
+     * shard locks.
+     *
+     * @return the result, or null if either account turned out to be hot.
+     */
+    private TransferResult applyLocked(Account from, Account to, long minor, boolean checkFunds) {
+        Shard first = shards[Math.min(from.shard, to.shard)];
+        Shard second = shards[Math.max(from.shard, to.shard)];
+        boolean contended = lock(first);
+        if (second != first) {
+            contended |= lock(second);
+        }
+        Account promote = null;
+        try {
+            if (from.hot != null || to.hot != null) {
+                return null;
+            }
+            if (contended) {
+                promote = contended(from) ? from : contended(to) ? to : null;
+            }
+            if (checkFunds && from.balance < minor) {
+                return TransferResult.INSUFFICIENT_FUNDS;
+            }
+            from.balance -= minor;
+            to.balance += minor;
+            return TransferResult.OK;
+        } finally {
+            if (second != first) {
+                second.lock.unlock();
+            }
+            first.lock.unlock();
+            if (promote != null) {
+                promote(promote);
+            }
+        }
+    }
+
+    /**
+     * Takes minor from one account, on its own.
+     *
+     * @return false if checkFunds and the balance does not cover it.
+     */
+    private boolean debit(Account account, long minor, boolean checkFunds) {
+        while (true) {
+            HotAccount hot = account.hot;
+            if (hot != null) {
+                return hot.debit(minor, checkFunds);
+            }
+            Shard shard = shards[account.shard];
+            boolean promote = lock(shard) && contended(account);
+            try {
+                if (account.hot == null) {
+                    if (checkFunds && account.balance < minor) {
+                        return false;
+                    }
+                    account.balance -= minor;
+                    return true;
+                }
+            } finally {
+                shard.lock.unlock();
+                if (promote) {
+                    promote(account);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds minor to one account, on its own.
+     */
+    private void credit(Account account, long minor) {
+        while (true) {
+            HotAccount hot = account.hot;
+            if (hot != null) {
+                hot.credit(minor);
+                return;
+            }
+            Shard shard = shards[account.shard];
+            boolean promote = lock(shard) && contended(account);
+            try {
+                if (account.hot == null) {
+                    account.balance += minor;
+                    return;
+                }
+            } finally {
+                shard.lock.unlock();
+                if (promote) {
+                    promote(account);
+                }
+            }
+        }
+    }
+
+    /**
+     * Locks the shard.
+     *
+     * @return true if it was held by another thread first.
+     */
+    private static boolean lock(Shard shard) {
+        if (shard.lock.tryLock()) {
+            return false;
+        }
+        shard.lock.lock();
+        return true;
+    }
+
+    /**
+     * Counts one contended lock acquisition for the account. Caller holds
+     * its shard lock.
+     *
+     * @return true if the account just crossed the hot threshold.
+     */
+    private boolean contended(Account account) {
+        if (!hotEnabled || account.hot != null) {
+            return false;
+        }
+        long now = System.nanoTime();
+        if (now - account.windowStart > hotWindowNanos) {
+            account.windowStart = now;
+            account.contentions = 0;
+        }
+        return ++account.contentions == hotThreshold;
+    }
+
+    /**
+     * Splits the account's balance into slots. From then on its balance
+     * lives in the slots.
+     */
+    private void promote(Account account) {
+        Shard shard = shards[account.shard];
+        shard.lock.lock();
+        try {
+            synchronized (hotAccounts) {
+                if (account.hot != null || hotAccounts.size() >= maxHotAccounts) {
+                    return;
+                }
+                account.hot = new HotAccount(hotSlots, account.balance);
+                hotAccounts.add(account);
+            }
+        } finally {
+            shard.lock.unlock();
+        }
+        log.info("Account {} is hot, splitting its balance over {} slots", account.accountNo, hotSlots);
+    }
+
+    /**
+     * Checks that the ledger lock is still held, and fences the ledger while
+     * it is not; see "Single node" above.
+     */
+    private void checkLock() {
+        try {
+            if (balanceRepository.isLedgerLockHeld()) {
+                return;
+            }
+            if (!fenced) {
+                fenced = true;
+                log.error("Lost the account ledger lock; refusing transfers until it is taken again");
+            }
+            if (!balanceRepository.tryAcquireLedgerLock()) {
+                return;
+            }
+            if (balanceRepository.isLedgerOwner(owner)) {
+                fenced = false;
+                log.info("Took the account ledger lock again; accepting transfers");
+            } else {
+                balanceRepository.releaseLedgerLock();
+                lockKeeper.shutdown();
+                log.error("Another server node loaded the account ledger meanwhile; "
+                        + "this node refuses transfers until it is restarted");
+            }
+        } catch (RuntimeException ex) {
+            log.error("Cannot check the account ledger lock, will retry", ex);
+        }
+    }
+
+    /**
+     * Moves the committed balance deltas into account_balance. A failed fold
+     * leaves them in account_balance_delta for the next one.
+     */
+    private void fold() {
+        try {
+            balanceRepository.foldDeltas();
+        } catch (DataAccessException ex) {
+            log.error("Failed to fold account balance deltas into account_balance, will retry", ex);
+        }
+    }
+
+    /**
+     * Converts to cents; -1 if the amount has more than two decimals.
+     */
+    private static long toMinorUnits(BigDecimal amount) {
+        try {
+            return amount.movePointRight(2).longValueExact();
+        } catch (ArithmeticException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Client of the ledger node's LedgerController. Every call of one
+     * attempt is idempotent on the ledger node, so transfers are retried on
+     * failure, and reversals until they are confirmed.
+     */
+    private static final class RemoteLedger {
+        private static final int TRANSFER_ATTEMPTS = 3;
+        private static final int REVERSE_ATTEMPTS = 60;
+        private static final long REVERSE_RETRY_MS = 1000;
+
+        private final String baseUrl;
+        private final URI transferUri;
+        private final URI reverseUri;
+        private final Duration timeout;
+        private final String secret;
+        private final HttpClient httpClient;
+        private final String node = UUID.randomUUID().toString();
+        private final AtomicLong attempts = new AtomicLong();
+        private final ScheduledExecutorService reverser = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ledger-reverse");
+            t.setDaemon(true);
+            return t;
+        });
+
+        private RemoteLedger(String baseUrl, long timeoutMs, String secret) {
+            String base = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+            this.baseUrl = base;
+            this.transferUri = URI.create(base + "/server/ledger/transfer");
+            this.reverseUri = URI.create(base + "/server/ledger/reverse");
+            this.timeout = Duration.ofMillis(timeoutMs);
+            this.secret = secret;
+            this.httpClient = HttpClient.newBuilder()
+                    .connectTimeout(timeout)
+                    .build();
+        }
+
+        private String nextAttemptId() {
+            return node + "-" + attempts.incrementAndGet();
+        }
+
+        private void stop() {
+            // Pending reversals are lost; their funds stay held until the ledger node restarts.
+            int pending = reverser.shutdownNow().size();
+            if (pending > 0) {
+                log.error("{} transfers were not reversed on the account ledger at {}", pending, baseUrl);
+            }
+        }
+
+        private TransferResult transfer(TransferRef ref, String fromAccount, String toAccount, BigDecimal amount) {
+            HttpRequest request = request(transferUri, ref, fromAccount, toAccount, amount);
+            for (int attempt = 1; attempt <= TRANSFER_ATTEMPTS; attempt++) {
+                try {
+                    HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+                    if (response.statusCode() == 200) {
+                        return TransferResult.valueOf(response.body().trim());
+                    }
+                    // Answered, so not applied: no retry, nothing to cancel.
+                    log.warn("Account ledger at {} answered {} to a transfer", baseUrl, response.statusCode());
+                    return TransferResult.UNAVAILABLE;
+                } catch (IOException | IllegalArgumentException ex) {
+                    log.warn("Cannot reach the account ledger at {}: {}", baseUrl, ex.toString());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            // The ledger node may have applied it: cancel the attempt.
+            reverse(ref, fromAccount, toAccount, amount);
+            return TransferResult.UNAVAILABLE;
+        }
+
+        private void reverse(TransferRef ref, String fromAccount, String toAccount, BigDecimal amount) {
+            HttpRequest request = request(reverseUri, ref, fromAccount, toAccount, amount);
+            if (!tryReverse(request)) {
+                scheduleReverse(request, ref, 2);
+            }
+        }
+
+        private void scheduleReverse(HttpRequest request, TransferRef ref, int attempt) {
+            try {
+                reverser.schedule(() -> {
+                    if (tryReverse(request)) {
+                        return;
+                    }
+                    if (attempt < REVERSE_ATTEMPTS) {
+                        scheduleReverse(request, ref, attempt + 1);
+                    } else {
+                        log.error("Could not reverse transfer {} of {} on the account ledger at {}",
+                                ref.attemptId(), ref.trxId(), baseUrl);
+                    }
+                }, REVERSE_RETRY_MS, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException shuttingDown) {
+                log.error("Could not reverse transfer {} of {} on the account ledger at {}",
+                        ref.attemptId(), ref.trxId(), baseUrl);
+            }
+        }
+
+        /**
+         * @return true once the ledger node has answered the reversal for good.
+         */
+        private boolean tryReverse(HttpRequest request) {
+            try {
+                int status = httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                if (status / 100 == 2) {
+                    return true;
+                }
+                if (status / 100 == 4) {
+                    // Refused (wrong secret, another transfer's attempt): a retry is refused too.
+                    log.error("Account ledger at {} refused a reversal with {}", baseUrl, status);
+                    return true;
+                }
+                log.warn("Account ledger at {} answered {} to a reversal", baseUrl, status);
+            } catch (IOException ex) {
+                log.warn("Cannot reach the account ledger at {}: {}", baseUrl, ex.toString());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }
+
+        private HttpRequest request(URI uri, TransferRef ref, String fromAccount, String toAccount,
+                                    BigDecimal amount) {
+            String form = "trxId=" + URLEncoder.encode(ref.trxId(), StandardCharsets.UTF_8)
+                    + "&attempt=" + URLEncoder.encode(ref.attemptId(), StandardCharsets.UTF_8)
+                    + "&from=" + URLEncoder.encode(fromAccount, StandardCharsets.UTF_8)
+                    + "&to=" + URLEncoder.encode(toAccount, StandardCharsets.UTF_8)
+                    + "&amount=" + amount.toPlainString();
+            return HttpRequest.newBuilder(uri)
+                    .timeout(timeout)
+                    .header("Content-Type", "application/x-www-form-urlencoded")
+                    .header(SECRET_HEADER, secret)
+                    .POST(HttpRequest.BodyPublishers.ofString(form))
+                    .build();
+        }
+    }
+
+    private static final class Account {
+        private final String accountNo;
+        private final int shard;
+        // Guarded by the owning shard's lock.
+        private long balance;
+        private int contentions;
+        private long windowStart;
+        // Set once, under the shard lock; balance is then held here.
+        private volatile HotAccount hot;
+
+        private Account(String accountNo, int shard, long balance) {
+            this.accountNo = accountNo;
+            this.shard = shard;
+            this.balance = balance;
+        }
+    }
+
+    /**
+     * Balance of a hot account, split into slots. Slot i keeps its balance at
+     * cells[i * STRIDE], STRIDE longs (128 bytes) apart, so no two slots share
+     * a cache line.
+     */
+    private static final class HotAccount {
+        private static final int STRIDE = 16;
+
+        private final int slots;
+        private final AtomicLongArray cells;
+        private final ReentrantLock sweepLock = new ReentrantLock();
+
+        private HotAccount(int slots, long balance) {
+            this.slots = slots;
+            this.cells = new AtomicLongArray(slots * STRIDE);
+            spread(balance);
+        }
+
+        private void credit(long minor) {
+            cells.addAndGet(ThreadLocalRandom.current().nextInt(slots) * STRIDE, minor);
+        }
+
+        private boolean debit(long minor, boolean checkFunds) {
+            int start = ThreadLocalRandom.current().nextInt(slots);
+            if (!checkFunds) {
+                cells.addAndGet(start * STRIDE, -minor);
+                return true;
+            }
+            for (int i = 0; i < slots; i++) {
+                int slot = ((start + i) % slots) * STRIDE;
+                if (take(slot, minor)) {
+                    return true;
+                }
+            }
+            return sweep(minor);
+        }
+
+        /**
+         * Takes minor from one slot if it holds that much.
+         */
+        private boolean take(int slot, long minor) {
+            while (true) {
+                long balance = cells.get(slot);
+                if (balance < minor) {
+                    return false;
+                }
+                if (cells.compareAndSet(slot, balance, balance - minor)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Collects all slots and debits the total, then spreads what is left.
+         * Debits meanwhile find emptied slots and queue here behind us.
+         */
+        private boolean sweep(long minor) {
+            sweepLock.lock();
+            try {
+                long total = 0;
+                for (int i = 0; i < slots; i++) {
+                    total += cells.getAndSet(i * STRIDE, 0);
+                }
+                boolean covered = total >= minor;
+                if (covered) {
+                    total -= minor;
+                }
+                spread(total);
+                return covered;
+            } finally {
+                sweepLock.unlock();
+            }
+        }
+
+        private void spread(long total) {
+            long each = Math.floorDiv(total, slots);
+            long rest = Math.floorMod(total, slots);
+            for (int i = 0; i < slots; i++) {
+                cells.addAndGet(i * STRIDE, i == 0 ? each + rest : each);
+            }
+        }
+
+        /**
+         * Sum of the slots. Under the sweep lock, so a sweep's collected
+         * funds are never missed; concurrent credits and debits may or may
+         * not be included.
+         */
+        private long balance() {
+            sweepLock.lock();
+            try {
+                long total = 0;
+                for (int i = 0; i < slots; i++) {
+                    total += cells.get(i * STRIDE);
+                }
+                return total;
+            } finally {
+                sweepLock.unlock();
+            }
+        }
+    }
+
+    private static final class Shard {
+        private final ReentrantLock lock = new ReentrantLock();
+    }
+}
@@ -0,0 +1,204 @@
+package org.example.server.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.example.server.dto.TransactionOutcome;
+import org.example.server.repository.TransactionLogJdbcRepository;
+import org.example.server.util.BloomFilter;
+import org.example.server.util.TrxIdDate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tiered lookup of the original outcome of an already processed trxId.
+ *
+ * Tiers, cheapest first:
+ * 1. Bounded in-memory cache of recent trxId -> outcome.
+ * 2. Bloom filters of every trxId in 'transaction_log', one per trx_date
+ *    (TrxIdDate.of), warmed at startup and updated as rows are committed. A
+ *    negative answer proves the trxId is new, so new transactions never pay
+ *    a DB probe. A day's filter is dropped once the day is past
+ *    TransactionLogPartitionManager's retention, as its partition is, so
+ *    the filters do not fill up and the false-positive rate stays at
+ *    bloom-fpp for up to bloom-expected-ids-per-day ids a day.
+ * 3. DB lookup, only for cache misses the Bloom filter cannot rule out
+ *    (older trxIds and false positives).
+ *
+ * Status lookups (GET /server/transaction/{trxId}) use findAll(), which
+ * skips the Bloom tier: the filters only know the ids committed through
+ * this node, so a trxId committed by another node would be reported
+ * NOT_FOUND. Every cache miss is read from the DB instead. The dedup path
+ * keeps the shortcut, as the insert's ON CONFLICT catches what it misses.
+ *
+ * Until the warm-up scan finishes, the Bloom filter is bypassed and every
+ * cache miss goes to the DB, so duplicates are never missed.
+ */
+@Service
+public class IdempotencyStore {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyStore.class);
+
+    private final TransactionLogJdbcRepository jdbcRepository;
+    private final TransactionLogPartitionManager partitionManager;
+    private final Cache<String, TransactionOutcome> recent;
+    private final ConcurrentHashMap<LocalDate, BloomFilter> knownIds = new ConcurrentHashMap<>();
+    private final long expectedIdsPerDay;
+    private final double falsePositiveRate;
+
+    private volatile boolean warmed;
+
+    public IdempotencyStore(TransactionLogJdbcRepository jdbcRepository,
+                            TransactionLogPartitionManager partitionManager,
+                            @Value("${transaction.idempotency.cache-size:200000}") long cacheSize,
+                            @Value("${transaction.idempotency.bloom-expected-ids-per-day:2000000}")
+                            long expectedIdsPerDay,
+                            @Value("${transaction.idempotency.bloom-fpp:0.01}") double falsePositiveRate) {
+        this.jdbcRepository = jdbcRepository;
+        this.partitionManager = partitionManager;
+        this.recent = Caffeine.newBuilder().maximumSize(cacheSize).build();
+        this.expectedIdsPerDay = expectedIdsPerDay;
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    /**
+     * Warms the Bloom filter from 'transaction_log' in the background so
+     * startup is not blocked by a large table.
+     */
+    @PostConstruct
+    public void warmUp() {
+        Thread t = new Thread(() -> {
+            long start = System.currentTimeMillis();
+            try {
+                long[] count = {0};
+                jdbcRepository.forEachTrxId(trxId -> {
+                    remember(trxId);
+                    count[0]++;
+                });
+                warmed = true;
+                log.info("Idempotency Bloom filters warmed with {} trxIds of {} days in {} ms",
+                        count[0], knownIds.size(), System.currentTimeMillis() - start);
+            } catch (RuntimeException ex) {
+                log.error("Idempotency Bloom filter warm-up failed, falling back to DB lookups", ex);
+            }
+        }, "idempotency-warmup");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * @return the original outcome of trxId, or null if it has not been processed.
+     */
+    public TransactionOutcome find(String trxId) {
+        TransactionOutcome outcome = recent.getIfPresent(trxId);
+        if (outcome != null) {
+            return outcome;
+        }
+        if (warmed && !mightBeKnown(trxId)) {
+            return null;
+        }
+        outcome = jdbcRepository.findOutcome(trxId);
+        if (outcome != null) {
+            recent.put(trxId, outcome);
+        }
+        return outcome;
+    }
+
+    /**
+     * Looks up a trxId the database reported as already present (e.g.
+     * committed by another server node), bypassing the Bloom filter, and
+     * remembers its outcome.
+     *
+     * @return the original outcome of trxId, or null if its row is gone.
+     */
+    public TransactionOutcome findCommitted(String trxId) {
+        TransactionOutcome outcome = recent.getIfPresent(trxId);
+        if (outcome != null) {
+            return outcome;
+        }
+        outcome = jdbcRepository.findOutcome(trxId);
+        if (outcome != null) {
+            record(trxId, outcome);
+        }
+        return outcome;
+    }
+
+    /**
+     * Status read of many trxIds: cache hits are answered from memory and
+     * every miss is looked up with one DB query, without the Bloom tier.
+     *
+     * @return outcome by trxId; trxIds that have not been processed are absent.
+     */
+    public Map<String, TransactionOutcome> findAll(Collection<String> trxIds) {
+        Map<String, TransactionOutcome> outcomes = new HashMap<>(trxIds.size() * 2);
+        List<String> misses = new ArrayList<>();
+        for (String trxId : trxIds) {
+            TransactionOutcome outcome = recent.getIfPresent(trxId);
+            if (outcome != null) {
+                outcomes.put(trxId, outcome);
+            } else {
+                misses.add(trxId);
+            }
+        }
+        if (!misses.isEmpty()) {
+            Map<String, TransactionOutcome> loaded = jdbcRepository.findOutcomes(misses);
+            recent.putAll(loaded);
+            outcomes.putAll(loaded);
+        }
+        return outcomes;
+    }
+
+    /**
+     * Records the outcome of a trxId whose log row has been committed.
+     */
+    public void record(String trxId, TransactionOutcome outcome) {
+        remember(trxId);
+        recent.put(trxId, outcome);
+    }
+
+    /**
+     * Drops an outcome recorded before its row was committed, when the row
+     * then was not inserted. Later lookups of trxId go to the DB.
+     */
+    public void forget(String trxId) {
+        recent.invalidate(trxId);
+    }
+
+    private boolean mightBeKnown(String trxId) {
+        BloomFilter filter = knownIds.get(TrxIdDate.of(trxId));
+        return filter != null && filter.mightContain(trxId);
+    }
+
+    /**
+     * Adds trxId to the filter of its day. The first id of a new day also
+     * drops the filters of expired days.
+     */
+    private void remember(String trxId) {
+        LocalDate day = TrxIdDate.of(trxId);
+        BloomFilter filter = knownIds.get(day);
+        if (filter == null) {
+            BloomFilter created = new BloomFilter(expectedIdsPerDay, falsePositiveRate);
+            filter = knownIds.putIfAbsent(day, created);
+            if (filter == null) {
+                filter = created;
+                dropExpiredDays();
+            }
+        }
+        filter.put(trxId);
+    }
+
+    private void dropExpiredDays() {
+        LocalDate cutoff = partitionManager.retentionCutoff();
+        knownIds.keySet().removeIf(day -> !day.equals(TrxIdDate.UNDATED) && day.isBefore(cutoff));
+    }
+}
@@ -0,0 +1,106 @@
+package org.example.server.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.example.server.service.AccountLedgerService.TransferRef;
+import org.example.server.service.AccountLedgerService.TransferResult;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+/**
+ * Transfers the ledger node has made for other server nodes, by attempt id
+ * (AccountLedgerService.TransferRef), so every remote call is idempotent.
+ *
+ * - A transfer is applied once per attempt; a repeated call answers the
+ *   first call's result.
+ * - A reversal only undoes a transfer applied for the same attempt, trxId,
+ *   accounts and amount, and only once. So no call can credit an account
+ *   with funds that were not taken from the other one first.
+ * - A reversal of an attempt not seen yet (the caller gave up on a transfer
+ *   that has not arrived) is kept as cancelled: the transfer, if it still
+ *   arrives, is refused with UNAVAILABLE.
+ * - A call whose trxId, accounts or amount differ from the first call of
+ *   its attempt is refused (IllegalArgumentException).
+ *
+ * Attempts are kept ttl-minutes, far beyond the callers' retries, and at
+ * most max-size of them.
+ */
+@Component
+public class LedgerTransferRegistry {
+
+    private final AccountLedgerService ledger;
+    private final Cache<String, RemoteTransfer> transfers;
+
+    public LedgerTransferRegistry(AccountLedgerService ledger,
+                                  @Value("${transaction.ledger.remote-attempts.ttl-minutes:10}") long ttlMinutes,
+                                  @Value("${transaction.ledger.remote-attempts.max-size:5000000}") long maxSize) {
+        this.ledger = ledger;
+        this.transfers = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .maximumSize(maxSize)
+                .build();
+    }
+
+    public TransferResult transfer(TransferRef ref, String fromAccount, String toAccount, BigDecimal amount) {
+        RemoteTransfer call = new RemoteTransfer(ref.trxId(), fromAccount, toAccount, amount, null, false);
+        RemoteTransfer recorded = transfers.asMap().compute(ref.attemptId(), (id, previous) -> {
+            if (previous != null) {
+                return previous;
+            }
+            return call.withResult(ledger.transfer(ref, fromAccount, toAccount, amount));
+        });
+        check(recorded, call);
+        return recorded.result() != null ? recorded.result() : TransferResult.UNAVAILABLE;
+    }
+
+    public void reverse(TransferRef ref, String fromAccount, String toAccount, BigDecimal amount) {
+        RemoteTransfer call = new RemoteTransfer(ref.trxId(), fromAccount, toAccount, amount, null, true);
+        RemoteTransfer[] recorded = new RemoteTransfer[1];
+        transfers.asMap().compute(ref.attemptId(), (id, previous) -> {
+            recorded[0] = previous;
+            if (previous == null) {
+                return call;
+            }
+            if (previous.reversed() || !previous.sameCall(call)) {
+                return previous;
+            }
+            if (previous.result() == TransferResult.OK) {
+                ledger.reverse(ref, fromAccount, toAccount, amount);
+            }
+            return previous.asReversed();
+        });
+        if (recorded[0] != null) {
+            check(recorded[0], call);
+        }
+    }
+
+    private static void check(RemoteTransfer recorded, RemoteTransfer call) {
+        if (!recorded.sameCall(call)) {
+            throw new IllegalArgumentException("Attempt was made for another transfer of " + recorded.trxId());
+        }
+    }
+
+    /**
+     * @param result   null if cancelled before it arrived.
+     * @param reversed whether a reversal was received.
+     */
+    private record RemoteTransfer(String trxId, String fromAccount, String toAccount, BigDecimal amount,
+                                  TransferResult result, boolean reversed) {
+
+        RemoteTransfer withResult(TransferResult transferResult) {
+            return new RemoteTransfer(trxId, fromAccount, toAccount, amount, transferResult, false);
+        }
+
+        RemoteTransfer asReversed() {
+            return new RemoteTransfer(trxId, fromAccount, toAccount, amount, result, true);
+        }
+
+        boolean sameCall(RemoteTransfer other) {
+            return trxId.equals(other.trxId) && fromAccount.equals(other.fromAccount)
+                    && toAccount.equals(other.toAccount) && amount.compareTo(other.amount) == 0;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package org.example.server.service;
+
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import jakarta.annotation.PreDestroy;
+import org.example.server.dto.TransactionResponseDto;
+import org.example.server.exception.ServerOverloadedException;
+import org.example.server.model.TransactionRequestXml;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Streams a <TransactionBatch> document and processes its items in parallel.
+ *
+ * Responsibilities:
+ * - Read the request body incrementally with a StAX reader; only the
+ *   <TransactionRequest> element currently being bound is held in memory.
+ * - Bind each element to TransactionRequestXml with the shared XmlMapper and
+ *   dispatch it through TransactionOrchestratorService (and its admission
+ *   control) as soon as it has been read. Shed items are answered with
+ *   "Server Overloaded" so the client can resend just those.
+ * - Hand every TransactionResponseDto to the caller's sink as it completes,
+ *   so results are streamed back in completion order, not document order.
+ *
+ * Back-pressure: at most max-in-flight items per batch are being processed at
+ * once; reading pauses (and with it the client upload) until a slot frees up.
+ *
+ * Each batch is read on a virtual thread of its own ("batch-reader"), which
+ * spends its time blocked on the upload or on that window. The request
+ * thread returns at once, so the response starts streaming while the body
+ * is still being read.
+ *
+ * Once the response is gone (timed out, client disconnected) the caller
+ * sets the batch's cancel flag: the reader stops at the next item, closes
+ * the body and drops the results of items still in flight. A sink that
+ * fails also cancels the batch, which then completes with its exception.
+ */
+@Service
+public class TransactionBatchService {
+
+    private static final String ITEM_ELEMENT = "TransactionRequest";
+    private static final long CANCEL_CHECK_MS = 100;
+
+    private final XmlMapper xmlMapper;
+    private final XMLInputFactory xmlInputFactory;
+    private final TransactionOrchestratorService orchestratorService;
+    private final int maxInFlight;
+    private final ExecutorService readers =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("batch-reader-", 0).factory());
+
+    public TransactionBatchService(XmlMapper xmlMapper,
+                                   TransactionOrchestratorService orchestratorService,
+                                   @Value("${transaction.batch.max-in-flight:256}") int maxInFlight) {
+        this.xmlMapper = xmlMapper;
+        this.xmlInputFactory = xmlMapper.getFactory().getXMLInputFactory();
+        this.orchestratorService = orchestratorService;
+        this.maxInFlight = maxInFlight;
+    }
+
+    @PreDestroy
+    public void stop() {
+        readers.shutdownNow();
+    }
+
+    /**
+     * Parses the batch on a reader thread and processes items asynchronously.
+     * Returns without waiting for the body.
+     *
+     * @param xml       Request body containing a <TransactionBatch> of <TransactionRequest> elements.
+     * @param sink      Receives one response per item; may be called concurrently.
+     * @param cancelled Set by the caller once responses can no longer be delivered.
+     * @return Future completing once every item's response has been handed to
+     *         the sink; with CancellationException if the batch was cancelled,
+     *         or with the sink's exception if it failed.
+     */
+    public CompletableFuture<Void> processBatch(InputStream xml, Consumer<TransactionResponseDto> sink,
+                                                AtomicBoolean cancelled) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        try {
+            readers.execute(() -> read(xml, sink, cancelled, done));
+        } catch (RejectedExecutionException e) {
+            done.completeExceptionally(e);
+        }
+        return done;
+    }
+
+    private void read(InputStream xml, Consumer<TransactionResponseDto> sink, AtomicBoolean cancelled,
+                      CompletableFuture<Void> done) {
+        // One extra count for the reader itself, released once parsing ends.
+        AtomicInteger pending = new AtomicInteger(1);
+        AtomicReference<RuntimeException> sinkFailure = new AtomicReference<>();
+        Semaphore window = new Semaphore(maxInFlight);
+        Consumer<TransactionResponseDto> deliver = result -> {
+            if (cancelled.get()) {
+                return;
+            }
+            try {
+                sink.accept(result);
+            } catch (RuntimeException e) {
+                // Typically the client is gone: stop reading, fail the batch.
+                sinkFailure.compareAndSet(null, e);
+                cancelled.set(true);
+            }
+        };
+        Runnable itemDone = () -> {
+            if (pending.decrementAndGet() != 0) {
+                return;
+            }
+            if (sinkFailure.get() != null) {
+                done.completeExceptionally(sinkFailure.get());
+            } else if (cancelled.get()) {
+                done.completeExceptionally(new CancellationException("Batch response closed"));
+            } else {
+                done.complete(null);
+            }
+        };
+
+        XMLStreamReader reader = null;
+        try {
+            reader = xmlInputFactory.createXMLStreamReader(xml);
+            while (!cancelled.get() && reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT
+                        || !ITEM_ELEMENT.equals(reader.getLocalName())) {
+                    continue;
+                }
+
+                long startTime = System.currentTimeMillis();
+                TransactionRequestXml request;
+                try {
+                    request = xmlMapper.readValue(reader, TransactionRequestXml.class);
+                } catch (Exception e) {
+                    // Bad item: report it and resume at the next <TransactionRequest>.
+                    deliver.accept(new TransactionResponseDto(null, "FAILED", "Invalid XML format",
+                            System.currentTimeMillis() - startTime));
+                    continue;
+                }
+
+                if (!acquire(window, cancelled)) {
+                    break;
+                }
+                pending.incrementAndGet();
+                orchestratorService.dispatch(request, startTime)
+                        .exceptionally(ex -> new TransactionResponseDto(request.getTrxId(), "FAILED",
+                                failureReason(ex), System.currentTimeMillis() - startTime))
+                        .thenAccept(deliver)
+                        .whenComplete((v, ex) -> {
+                            window.release();
+                            itemDone.run();
+                        });
+            }
+        } catch (XMLStreamException e) {
+            // Malformed document: items read so far still complete, the rest is dropped.
+            deliver.accept(new TransactionResponseDto(null, "FAILED", "Invalid XML format", 0));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeQuietly(reader);
+            if (cancelled.get()) {
+                closeQuietly(xml);
+            }
+            itemDone.run();
+        }
+    }
+
+    /**
+     * Waits for a free slot in the window.
+     *
+     * @return false if the batch was cancelled meanwhile.
+     */
+    private static boolean acquire(Semaphore window, AtomicBoolean cancelled) throws InterruptedException {
+        while (!window.tryAcquire(CANCEL_CHECK_MS, TimeUnit.MILLISECONDS)) {
+            if (cancelled.get()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String failureReason(Throwable ex) {
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        return cause instanceof ServerOverloadedException ? "Server Overloaded" : "Processing error";
+    }
+
+    private static void closeQuietly(XMLStreamReader reader) {
+        if (reader == null) {
+            return;
+        }
+        try {
+            reader.close();
+        } catch (XMLStreamException ignored) {
+            // nothing left to release
+        }
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException ignored) {
+            // the request is over anyway
+        }
+    }
+}
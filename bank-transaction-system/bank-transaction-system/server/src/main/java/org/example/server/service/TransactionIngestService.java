@@ -0,0 +1,384 @@
+package org.example.server.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.server.codec.TransactionRequestBinaryDecoder;
+import org.example.server.codec.TransactionRequestXmlDecoder;
+import org.example.server.dto.TransactionResponseDto;
+import org.example.server.exception.ServerOverloadedException;
+import org.example.server.ingest.IngestLog;
+import org.example.server.metrics.TransactionMetrics;
+import org.example.server.metrics.TransactionMetrics.Stage;
+import org.example.server.model.TransactionRequestXml;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Accepts transactions into the durable IngestLog and processes them from it.
+ *
+ * Responsibilities:
+ * - Append each decoded request's raw body to the IngestLog and answer the
+ *   HTTP request according to the ack mode:
+ *   - PROCESSED: with the final outcome, once the record has been processed
+ *     (same response as without the log).
+ *   - DURABLE:   with ACCEPTED as soon as the record is fsynced; the outcome
+ *     is then available from GET /server/transaction/{trxId}.
+ * - Read records in log order on the "ingest-reader" thread and process them
+ *   through TransactionProcessingService on a pool of ingest workers, with at
+ *   most max-in-flight records being processed at once. The HTTP accept rate
+ *   is bounded only by the log (max-backlog); the processing and DB commit
+ *   rate only by workers and max-in-flight.
+ * - Mark each record processed once its log row is acknowledged, so the log
+ *   can checkpoint and delete committed segments. A record whose processing
+ *   fails transiently (overload, lost connection, timeout, deadlock) is
+ *   retried after retry-delay-ms rather than skipped. Any other failure would
+ *   fail the same way on every attempt and pin the log, so the record is
+ *   answered FAILED ("Internal Error"), logged as dead-lettered and marked
+ *   processed.
+ * - Keep the admission control of the executor path for ack PROCESSED: a
+ *   record picked up more than max-queue-time-ms after its append is marked
+ *   processed without being processed, and its request answered with
+ *   ServerOverloadedException (503 + Retry-After) instead of late.
+ * - Record queue (append to worker pick-up) and total time plus the outcome
+ *   of every record in TransactionMetrics.
+ *
+ * Records left unprocessed by a crash or shutdown are read again on the next
+ * start; they carry no waiting HTTP request, and a record that had in fact
+ * been processed is answered from TransactionProcessingService's idempotency
+ * check with its original outcome.
+ */
+@Service
+public class TransactionIngestService {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionIngestService.class);
+
+    public static final String ACCEPTED = "ACCEPTED";
+
+    public enum Ack {
+        PROCESSED,
+        DURABLE
+    }
+
+    private final IngestLog ingestLog;
+    private final TransactionRequestXmlDecoder xmlDecoder;
+    private final TransactionRequestBinaryDecoder binaryDecoder;
+    private final TransactionProcessingService processingService;
+    private final TransactionMetrics metrics;
+    private final Ack ack;
+    private final int workers;
+    private final Semaphore inFlight;
+    private final long retryDelayMs;
+    private final long maxQueueTimeNanos;
+    private final long retryAfterSeconds;
+
+    // trxIds appended by this node and not yet processed, for status lookups
+    private final Map<String, Long> queued = new ConcurrentHashMap<>();
+
+    private ExecutorService workerPool;
+    private ScheduledExecutorService retryScheduler;
+    private Thread reader;
+    private volatile boolean running;
+
+    public TransactionIngestService(IngestLog ingestLog,
+                                    TransactionRequestXmlDecoder xmlDecoder,
+                                    TransactionRequestBinaryDecoder binaryDecoder,
+                                    TransactionProcessingService processingService,
+                                    TransactionMetrics metrics,
+                                    @Value("${transaction.ingest.ack:PROCESSED}") Ack ack,
+                                    @Value("${transaction.ingest.workers:16}") int workers,
+                                    @Value("${transaction.ingest.max-in-flight:1000}") int maxInFlight,
+                                    @Value("${transaction.ingest.retry-delay-ms:1000}") long retryDelayMs,
+                                    @Value("${transaction.admission.max-queue-time-ms:1000}") long maxQueueTimeMs,
+                                    @Value("${transaction.admission.retry-after-seconds:1}") long retryAfterSeconds) {
+        this.ingestLog = ingestLog;
+        this.xmlDecoder = xmlDecoder;
+        this.binaryDecoder = binaryDecoder;
+        this.processingService = processingService;
+        this.metrics = metrics;
+        this.ack = ack;
+        this.workers = workers;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.retryDelayMs = retryDelayMs;
+        this.maxQueueTimeNanos = TimeUnit.MILLISECONDS.toNanos(maxQueueTimeMs);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public boolean isEnabled() {
+        return ingestLog.isEnabled();
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!isEnabled()) {
+            return;
+        }
+        ingestLog.start();
+        AtomicInteger threadIndex = new AtomicInteger();
+        workerPool = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "ingest-worker-" + threadIndex.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+        retryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ingest-retry");
+            t.setDaemon(true);
+            return t;
+        });
+        running = true;
+        reader = new Thread(this::runReader, "ingest-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Stops reading, lets records already being processed finish, and
+     * checkpoints the log. Everything else is processed after the restart.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        reader.interrupt();
+        reader.join(TimeUnit.SECONDS.toMillis(10));
+        retryScheduler.shutdownNow();
+        workerPool.shutdown();
+        workerPool.awaitTermination(10, TimeUnit.SECONDS);
+        ingestLog.stop();
+    }
+
+    /**
+     * Appends a decoded request to the log.
+     *
+     * @param type    IngestLog.TYPE_XML or IngestLog.TYPE_BINARY.
+     * @param raw     body as received, decoded again after a restart.
+     * @param request the decoded body, processed directly while this node runs.
+     * @return Future of the response for the configured ack mode, or failing
+     *         with ServerOverloadedException if the log backlog is full.
+     */
+    public CompletableFuture<TransactionResponseDto> submit(byte type, byte[] raw,
+                                                            TransactionRequestXml request, long startTime) {
+        PendingIngest pending = new PendingIngest(request, startTime, System.nanoTime());
+        if (request.getTrxId() != null) {
+            queued.put(request.getTrxId(), pending.appendedAt);
+        }
+        CompletableFuture<Long> durable = ingestLog.append(type, raw, pending);
+        durable.whenComplete((offset, ex) -> {
+            if (ex != null) {
+                unqueue(request, pending);
+            }
+        });
+
+        if (ack == Ack.DURABLE) {
+            return durable.thenApply(offset -> new TransactionResponseDto(request.getTrxId(), ACCEPTED,
+                    "Queued for processing", System.currentTimeMillis() - startTime));
+        }
+        return durable.thenCompose(offset -> pending.result);
+    }
+
+    /**
+     * @return whether trxId has been accepted into the log by this node and
+     *         not processed yet.
+     */
+    public boolean isQueued(String trxId) {
+        return queued.containsKey(trxId);
+    }
+
+    private void runReader() {
+        while (running) {
+            try {
+                inFlight.acquire();
+                IngestLog.Record record = ingestLog.next(100, TimeUnit.MILLISECONDS);
+                if (record == null) {
+                    inFlight.release();
+                    continue;
+                }
+                workerPool.execute(() -> process(record));
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void process(IngestLog.Record record) {
+        PendingIngest pending = record.attachment() instanceof PendingIngest p ? p : null;
+        long pickedUpAt = System.nanoTime();
+        long startTime;
+        TransactionRequestXml request;
+        if (pending != null) {
+            request = pending.request;
+            startTime = pending.startTime;
+            metrics.record(Stage.QUEUE, pickedUpAt - pending.appendedAt);
+            if (ack == Ack.PROCESSED && pickedUpAt - pending.appendedAt > maxQueueTimeNanos) {
+                shed(record, pending);
+                return;
+            }
+        } else {
+            startTime = System.currentTimeMillis();
+            try {
+                request = decode(record);
+            } catch (IOException | RuntimeException e) {
+                // Was decodable when appended, so the record itself is damaged.
+                log.error("Ingest log record {} cannot be decoded and is skipped", record.offset(), e);
+                done(record);
+                return;
+            }
+        }
+
+        CompletableFuture<TransactionResponseDto> result;
+        try {
+            result = processingService.process(request, startTime);
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        result.whenComplete((response, ex) -> {
+            if (ex != null) {
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                if (running && !isTransient(cause)) {
+                    deadLetter(record, request, pending, startTime, cause);
+                    return;
+                }
+                if (pending != null) {
+                    metrics.outcome(request.getBankId(), "FAILED",
+                            cause instanceof ServerOverloadedException ? "Server Overloaded" : "Internal Error");
+                    pending.result.completeExceptionally(cause instanceof ServerOverloadedException
+                            ? cause
+                            : new ServerOverloadedException(request.getTrxId(), "Processing failed, will retry",
+                            retryAfterSeconds));
+                }
+                log.warn("Processing of ingest log record {} ({}) failed, retrying in {} ms",
+                        record.offset(), request.getTrxId(), retryDelayMs, cause);
+                retry(new IngestLog.Record(record.offset(), record.type(), record.payload(), null));
+                return;
+            }
+            response.setQueueTimeMs(pending != null
+                    ? TimeUnit.NANOSECONDS.toMillis(pickedUpAt - pending.appendedAt)
+                    : 0);
+            done(record);
+            unqueue(request, pending);
+            metrics.outcome(request.getBankId(), response.getStatus(), response.getReason());
+            if (pending != null) {
+                metrics.lap(Stage.TOTAL, pending.appendedAt);
+                pending.result.complete(response);
+            }
+        });
+    }
+
+    /**
+     * Drops a record whose caller has waited longer than max-queue-time-ms:
+     * it is marked processed without being processed, and the caller retries with the
+     * same trxId.
+     */
+    private void shed(IngestLog.Record record, PendingIngest pending) {
+        done(record);
+        unqueue(pending.request, pending);
+        metrics.outcome(pending.request.getBankId(), "FAILED", "Server Overloaded");
+        metrics.lap(Stage.TOTAL, pending.appendedAt);
+        pending.result.completeExceptionally(new ServerOverloadedException(pending.request.getTrxId(),
+                "Queue wait time exceeded", retryAfterSeconds));
+    }
+
+    /**
+     * @return whether a later attempt can succeed where this one failed:
+     *         overload, unavailable database connections, timeouts and other
+     *         transient or recoverable database errors.
+     */
+    private static boolean isTransient(Throwable cause) {
+        return cause instanceof ServerOverloadedException
+                || cause instanceof TransientDataAccessException
+                || cause instanceof RecoverableDataAccessException
+                || cause instanceof DataAccessResourceFailureException;
+    }
+
+    /**
+     * Settles a record that fails deterministically (e.g. a constraint
+     * violation): answers it FAILED and marks it processed so it neither
+     * blocks the checkpoint nor is replayed after a restart.
+     */
+    private void deadLetter(IngestLog.Record record, TransactionRequestXml request, PendingIngest pending,
+                            long startTime, Throwable cause) {
+        log.error("Processing of ingest log record {} ({}) failed permanently, dead-lettered as FAILED",
+                record.offset(), request.getTrxId(), cause);
+        done(record);
+        unqueue(request, pending);
+        metrics.outcome(request.getBankId(), "FAILED", "Internal Error");
+        if (pending != null) {
+            metrics.lap(Stage.TOTAL, pending.appendedAt);
+            pending.result.complete(new TransactionResponseDto(request.getTrxId(), "FAILED", "Internal Error",
+                    System.currentTimeMillis() - startTime));
+        }
+    }
+
+    /**
+     * Processes a failed record again after retry-delay-ms, keeping its
+     * in-flight slot so a failing database slows the reader down.
+     */
+    private void retry(IngestLog.Record record) {
+        if (!running) {
+            // Not marked processed: read again after the restart.
+            inFlight.release();
+            return;
+        }
+        try {
+            retryScheduler.schedule(() -> workerPool.execute(() -> process(record)),
+                    retryDelayMs, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            inFlight.release();
+        }
+    }
+
+    private void unqueue(TransactionRequestXml request, PendingIngest pending) {
+        if (request.getTrxId() == null) {
+            return;
+        }
+        if (pending != null) {
+            queued.remove(request.getTrxId(), pending.appendedAt);
+        } else {
+            // A retry or a record from before a restart: whatever was queued under
+            // this trxId is now settled by the idempotency check.
+            queued.remove(request.getTrxId());
+        }
+    }
+
+    private void done(IngestLog.Record record) {
+        ingestLog.processed(record.offset());
+        inFlight.release();
+    }
+
+    private TransactionRequestXml decode(IngestLog.Record record) throws IOException {
+        ByteArrayInputStream body = new ByteArrayInputStream(record.payload());
+        return record.type() == IngestLog.TYPE_BINARY ? binaryDecoder.decode(body) : xmlDecoder.decode(body);
+    }
+
+    private static final class PendingIngest {
+        private final TransactionRequestXml request;
+        private final long startTime;
+        private final long appendedAt;
+        private final CompletableFuture<TransactionResponseDto> result = new CompletableFuture<>();
+
+        private PendingIngest(TransactionRequestXml request, long startTime, long appendedAt) {
+            this.request = request;
+            this.startTime = startTime;
+            this.appendedAt = appendedAt;
+        }
+    }
+}
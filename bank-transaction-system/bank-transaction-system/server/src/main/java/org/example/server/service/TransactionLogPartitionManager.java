@@ -0,0 +1,196 @@
+package org.example.server.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.server.repository.TransactionLogPartitionRepository;
+import org.example.server.util.TrxIdDate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lifecycle of the daily partitions of 'transaction_log'.
+ *
+ * Responsibilities:
+ * - Keeps partitions from days-behind days ago up to days-ahead days ahead
+ *   (UTC) in place, so inserts never fall into the default partition in
+ *   normal operation. Runs once at startup, before traffic, and then every
+ *   maintenance-interval-ms.
+ * - Expires partitions older than retention-days: DETACH leaves the day as a
+ *   standalone table (for archiving), DROP removes it. Expired rows in the
+ *   default partition are moved to 'transaction_log_archive' with DETACH
+ *   and deleted with DROP.
+ * - Tells which trxId days can be stored (checkTrxDate): none older than
+ *   retention-days, which would be expired at once, and none beyond
+ *   days-ahead, which would sit in the default partition and block the
+ *   creation of their day's partition. Undated ids are always accepted.
+ *
+ * Expiring a day also ends duplicate detection for its trxIds: a trxId whose
+ * partition is gone can be accepted again. retention-days must therefore
+ * exceed the longest time a client may still resend a transaction.
+ *
+ * A failing step (e.g. creating a day whose rows already sit in the default
+ * partition) is logged and retried on the next run; it never blocks others.
+ */
+@Service
+public class TransactionLogPartitionManager {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionLogPartitionManager.class);
+
+    public enum ExpiryAction {
+        DETACH,
+        DROP
+    }
+
+    private final TransactionLogPartitionRepository partitionRepository;
+    private final boolean enabled;
+    private final int daysAhead;
+    private final int daysBehind;
+    private final int retentionDays;
+    private final ExpiryAction expiryAction;
+    private final long maintenanceIntervalMs;
+    private final ScheduledExecutorService scheduler;
+
+    public TransactionLogPartitionManager(TransactionLogPartitionRepository partitionRepository,
+                                          @Value("${transaction.partitions.enabled:true}") boolean enabled,
+                                          @Value("${transaction.partitions.days-ahead:7}") int daysAhead,
+                                          @Value("${transaction.partitions.days-behind:1}") int daysBehind,
+                                          @Value("${transaction.partitions.retention-days:90}") int retentionDays,
+                                          @Value("${transaction.partitions.expiry-action:DETACH}")
+                                          ExpiryAction expiryAction,
+                                          @Value("${transaction.partitions.maintenance-interval-ms:3600000}")
+                                          long maintenanceIntervalMs) {
+        if (retentionDays <= daysBehind) {
+            throw new IllegalArgumentException("transaction.partitions.retention-days must exceed days-behind");
+        }
+        this.partitionRepository = partitionRepository;
+        this.enabled = enabled;
+        this.daysAhead = daysAhead;
+        this.daysBehind = daysBehind;
+        this.retentionDays = retentionDays;
+        this.expiryAction = expiryAction;
+        this.maintenanceIntervalMs = maintenanceIntervalMs;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "partition-maintenance");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        maintain();
+        scheduler.scheduleWithFixedDelay(this::maintain, maintenanceIntervalMs, maintenanceIntervalMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Creates missing partitions and expires old ones.
+     */
+    public void maintain() {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        Set<LocalDate> existing;
+        try {
+            existing = new HashSet<>(partitionRepository.findPartitionDays());
+        } catch (DataAccessException ex) {
+            log.error("Cannot list transaction_log partitions", ex);
+            return;
+        }
+
+        LocalDate last = today.plusDays(daysAhead);
+        for (LocalDate day = today.minusDays(daysBehind); !day.isAfter(last); day = day.plusDays(1)) {
+            if (!existing.contains(day)) {
+                create(day);
+            }
+        }
+
+        LocalDate cutoff = retentionCutoff();
+        List<LocalDate> expired = existing.stream().filter(day -> day.isBefore(cutoff)).sorted().toList();
+        for (LocalDate day : expired) {
+            expire(day);
+        }
+        expireDefaultRows(cutoff);
+    }
+
+    /**
+     * @return the first day that is kept; older days are expired. UNDATED
+     * is never expired.
+     */
+    public LocalDate retentionCutoff() {
+        return LocalDate.now(ZoneOffset.UTC).minusDays(retentionDays);
+    }
+
+    /**
+     * @return null if rows of day can be stored, or the reason they cannot.
+     */
+    public String checkTrxDate(LocalDate day) {
+        if (day.equals(TrxIdDate.UNDATED)) {
+            return null;
+        }
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        if (day.isBefore(retentionCutoff()) || day.isAfter(today.plusDays(daysAhead))) {
+            return "Transaction date out of range";
+        }
+        return null;
+    }
+
+    private void expireDefaultRows(LocalDate cutoff) {
+        try {
+            if (expiryAction == ExpiryAction.DROP) {
+                int deleted = partitionRepository.deleteExpiredDefaultRows(cutoff);
+                if (deleted > 0) {
+                    log.info("Deleted {} expired rows from transaction_log_default", deleted);
+                }
+            } else {
+                int moved = partitionRepository.archiveExpiredDefaultRows(cutoff);
+                if (moved > 0) {
+                    log.info("Moved {} expired rows from transaction_log_default to transaction_log_archive", moved);
+                }
+            }
+        } catch (DataAccessException ex) {
+            log.warn("Cannot expire rows of transaction_log_default", ex);
+        }
+    }
+
+    private void create(LocalDate day) {
+        try {
+            partitionRepository.createPartition(day);
+            log.info("Created partition {}", TransactionLogPartitionRepository.name(day));
+        } catch (DataAccessException ex) {
+            log.warn("Cannot create partition {}; its rows stay in transaction_log_default",
+                    TransactionLogPartitionRepository.name(day), ex);
+        }
+    }
+
+    private void expire(LocalDate day) {
+        try {
+            if (expiryAction == ExpiryAction.DROP) {
+                partitionRepository.dropPartition(day);
+            } else {
+                partitionRepository.detachPartition(day);
+            }
+            log.info("Expired partition {} ({})", TransactionLogPartitionRepository.name(day), expiryAction);
+        } catch (DataAccessException ex) {
+            log.warn("Cannot expire partition {}", TransactionLogPartitionRepository.name(day), ex);
+        }
+    }
+}
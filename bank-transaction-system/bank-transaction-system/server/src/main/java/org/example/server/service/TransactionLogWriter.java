@@ -0,0 +1,269 @@
+package org.example.server.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.server.entity.TransactionLog;
+import org.example.server.repository.TransactionLogJdbcRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind (group commit) stage for TransactionLog persistence.
+ *
+ * Worker threads hand rows to {@link #write(TransactionLog)}; they are collected
+ * in a bounded buffer and a small set of flusher threads writes them in
+ * multi-row batches via TransactionLogJdbcRepository. A batch is flushed as
+ * soon as it reaches batch-size rows or flush-interval-ms after its first row,
+ * whichever comes first. Each flusher updates its own slot of
+ * transaction_daily_rollup, so their commits do not queue on shared rows.
+ *
+ * Durability modes (applied by callers via {@link #getDurability()}):
+ * - FLUSH:   callers answer only once the row's batch has been committed.
+ * - ENQUEUE: callers answer as soon as the row is buffered. Rows still
+ *            buffered on a crash are lost, and duplicates detected at flush
+ *            time are only logged.
+ * In both modes the future returned by {@link #write(TransactionLog)}
+ * reflects the real commit outcome, so callers can still react to it.
+ *
+ * Back-pressure: when the buffer is full, write() blocks the calling worker
+ * thread until the flushers make room.
+ */
+@Service
+public class TransactionLogWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionLogWriter.class);
+
+    public enum Durability {
+        FLUSH,
+        ENQUEUE
+    }
+
+    private final TransactionLogJdbcRepository jdbcRepository;
+    private final Durability durability;
+    private final BlockingQueue<PendingLog> buffer;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final int flusherThreads;
+    private final List<Thread> flushers = new ArrayList<>();
+
+    private volatile boolean running;
+
+    public TransactionLogWriter(TransactionLogJdbcRepository jdbcRepository,
+                                @Value("${transaction.log-writer.durability:FLUSH}") Durability durability,
+                                @Value("${transaction.log-writer.capacity:20000}") int capacity,
+                                @Value("${transaction.log-writer.batch-size:500}") int batchSize,
+                                @Value("${transaction.log-writer.flush-interval-ms:5}") long flushIntervalMs,
+                                @Value("${transaction.log-writer.flusher-threads:4}") int flusherThreads) {
+        this.jdbcRepository = jdbcRepository;
+        this.durability = durability;
+        this.buffer = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = Math.min(batchSize, TransactionLogJdbcRepository.MAX_ROWS_PER_STATEMENT);
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.flusherThreads = flusherThreads;
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        for (int i = 0; i < flusherThreads; i++) {
+            int slot = i;
+            Thread t = new Thread(() -> runFlusher(slot), "txlog-writer-" + i);
+            t.setDaemon(true);
+            t.start();
+            flushers.add(t);
+        }
+    }
+
+    /**
+     * Stops accepting rows and flushes whatever is still buffered before the
+     * datasource is closed.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        for (Thread t : flushers) {
+            t.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        List<PendingLog> rest = new ArrayList<>();
+        buffer.drainTo(rest);
+        for (int from = 0; from < rest.size(); from += batchSize) {
+            flushSafely(rest.subList(from, Math.min(rest.size(), from + batchSize)), 0);
+        }
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Buffers a row for the next group commit.
+     *
+     * @return future completing once the row's batch is committed, with true
+     *         if the row was inserted and false if its trxId already existed.
+     */
+    public CompletableFuture<Boolean> write(TransactionLog row) {
+        if (!running) {
+            return CompletableFuture.failedFuture(
+                    new IllegalStateException("Transaction log writer is stopped"));
+        }
+
+        PendingLog pending = new PendingLog(row);
+        try {
+            buffer.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+        return pending.result;
+    }
+
+    /**
+     * @param slot this flusher's index; its batches update their own
+     *             transaction_daily_rollup rows, not those of other flushers.
+     */
+    private void runFlusher(int slot) {
+        List<PendingLog> batch = new ArrayList<>(batchSize);
+        while (running || !buffer.isEmpty()) {
+            try {
+                PendingLog first = buffer.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // Linger until the batch is full or the first row has waited flush-interval-ms.
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    buffer.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingLog next = buffer.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                flushSafely(batch, slot);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                flushSafely(batch, slot);
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Flushes batch on a flusher thread: whatever escapes flush() fails the
+     * rows still pending instead of ending the thread with their futures
+     * never completed.
+     */
+    private void flushSafely(List<PendingLog> batch, int slot) {
+        try {
+            flush(batch, slot);
+        } catch (RuntimeException ex) {
+            log.error("Failed to flush a batch of {} transaction logs", batch.size(), ex);
+            for (PendingLog p : batch) {
+                if (!p.result.isDone()) {
+                    fail(p, ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes one batch and completes the pending futures. If the batch
+     * statement fails (e.g. a row violating a NOT NULL column), rows are
+     * retried one by one so a single bad row cannot fail its neighbours.
+     */
+    private void flush(List<PendingLog> batch, int slot) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        // Only the first occurrence of a trxId within a batch can be inserted.
+        Map<String, PendingLog> unique = new HashMap<>(batch.size() * 2);
+        List<PendingLog> rows = new ArrayList<>(batch.size());
+        List<PendingLog> duplicates = new ArrayList<>();
+        for (PendingLog p : batch) {
+            if (unique.putIfAbsent(p.row.getTrxId(), p) == null) {
+                rows.add(p);
+            } else {
+                duplicates.add(p);
+            }
+        }
+
+        try {
+            complete(rows, insert(rows, slot));
+        } catch (RuntimeException ex) {
+            if (rows.size() == 1) {
+                fail(rows.get(0), ex);
+            } else {
+                for (PendingLog p : rows) {
+                    try {
+                        complete(List.of(p), insert(List.of(p), slot));
+                    } catch (RuntimeException single) {
+                        fail(p, single);
+                    }
+                }
+            }
+        }
+
+        for (PendingLog p : duplicates) {
+            complete(p, false);
+        }
+    }
+
+    private Set<String> insert(List<PendingLog> rows, int slot) {
+        List<TransactionLog> logs = new ArrayList<>(rows.size());
+        for (PendingLog p : rows) {
+            logs.add(p.row);
+        }
+        return jdbcRepository.insertIgnoringDuplicates(logs, slot);
+    }
+
+    private void complete(List<PendingLog> rows, Set<String> inserted) {
+        for (PendingLog p : rows) {
+            complete(p, inserted.contains(p.row.getTrxId()));
+        }
+    }
+
+    private void complete(PendingLog p, boolean inserted) {
+        if (!inserted && durability == Durability.ENQUEUE) {
+            log.warn("Duplicate trxId {} dropped by write-behind flush", p.row.getTrxId());
+        }
+        p.result.complete(inserted);
+    }
+
+    private void fail(PendingLog p, RuntimeException ex) {
+        if (durability == Durability.ENQUEUE) {
+            log.error("Failed to persist transaction log for trxId {}", p.row.getTrxId(), ex);
+        }
+        p.result.completeExceptionally(ex);
+    }
+
+    private static final class PendingLog {
+        private final TransactionLog row;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        private PendingLog(TransactionLog row) {
+            this.row = row;
+        }
+    }
+}
@@ -1,20 +1,49 @@
 package org.example.server.service;
 
-import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import org.example.server.codec.TransactionRequestBinaryDecoder;
+import org.example.server.codec.TransactionRequestXmlDecoder;
 import org.example.server.dto.TransactionResponseDto;
+import org.example.server.exception.ServerOverloadedException;
+import org.example.server.ingest.IngestLog;
+import org.example.server.metrics.TransactionMetrics;
+import org.example.server.metrics.TransactionMetrics.Stage;
 import org.example.server.model.TransactionRequestXml;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
  * Orchestrates XML unmarshalling and asynchronous processing.
  *
  * Responsibilities:
- * - Parse incoming XML into TransactionRequestXml via XmlMapper.
- * - Submit processing work to the transactionExecutor (ExecutorService).
- * - Wraps result in a CompletableFuture for non-blocking HTTP handling.
+ * - Decode the incoming body into TransactionRequestXml on the request
+ *   thread, reading straight from the servlet InputStream with
+ *   TransactionRequestXmlDecoder (XmlMapper is only its fallback) or, for
+ *   the compact binary encoding, TransactionRequestBinaryDecoder.
+ * - Submit processing work to the transactionExecutor (ExecutorService)
+ *   under admission control: a full queue, or a task that waited longer than
+ *   max-queue-time-ms before a worker picked it up, is shed with
+ *   ServerOverloadedException instead of being processed late.
+ * - Record each request's queue-wait time in its response, and the decode,
+ *   queue and total time plus the outcome of every request in
+ *   TransactionMetrics.
+ * - Wraps result in a CompletableFuture for non-blocking HTTP handling. The
+ *   future completes when TransactionLogWriter acknowledges the log row, so
+ *   the executor thread is never parked waiting for a group commit.
+ * - With transaction.ingest.enabled, read the body in full (at most
+ *   max-request-bytes), decode it, and hand the raw bytes to
+ *   TransactionIngestService instead of the executor: the request is then
+ *   processed from the durable ingest log. Bodies that cannot be decoded are
+ *   still answered FAILED at once and never logged.
  *
  * This service separates transport concerns from core processing logic.
  */
@@ -22,37 +51,128 @@ import java.util.concurrent.ExecutorService;
 @Service
 public class TransactionOrchestratorService {
 
-    private final XmlMapper xmlMapper;
+    private final TransactionRequestXmlDecoder requestDecoder;
+    private final TransactionRequestBinaryDecoder binaryDecoder;
     private final ExecutorService transactionExecutor;
     private final TransactionProcessingService processingService;
+    private final TransactionIngestService ingestService;
+    private final TransactionMetrics metrics;
+    private final long maxQueueTimeNanos;
+    private final long retryAfterSeconds;
+    private final int maxRequestBytes;
 
-    public TransactionOrchestratorService(XmlMapper xmlMapper,
+    public TransactionOrchestratorService(TransactionRequestXmlDecoder requestDecoder,
+                                          TransactionRequestBinaryDecoder binaryDecoder,
                                           ExecutorService transactionExecutor,
-                                          TransactionProcessingService processingService) {
-        this.xmlMapper = xmlMapper;
+                                          TransactionProcessingService processingService,
+                                          TransactionIngestService ingestService,
+                                          TransactionMetrics metrics,
+                                          @Value("${transaction.admission.max-queue-time-ms:1000}") long maxQueueTimeMs,
+                                          @Value("${transaction.admission.retry-after-seconds:1}") long retryAfterSeconds,
+                                          @Value("${transaction.ingest.max-request-bytes:65536}") int maxRequestBytes) {
+        this.requestDecoder = requestDecoder;
+        this.binaryDecoder = binaryDecoder;
         this.transactionExecutor = transactionExecutor;
         this.processingService = processingService;
+        this.ingestService = ingestService;
+        this.metrics = metrics;
+        this.maxQueueTimeNanos = TimeUnit.MILLISECONDS.toNanos(maxQueueTimeMs);
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.maxRequestBytes = maxRequestBytes;
     }
 
     /**
-     * Asynchronously unmarshals XML and processes the transaction.
+     * Decodes the XML body and processes the transaction asynchronously.
      */
-    public CompletableFuture<TransactionResponseDto> processAsync(String xml) {
+    public CompletableFuture<TransactionResponseDto> processAsync(InputStream xml) {
+        return processAsync(xml, IngestLog.TYPE_XML, requestDecoder::decode, "Invalid XML format");
+    }
+
+    /**
+     * Decodes a binary-encoded body and processes the transaction asynchronously.
+     */
+    public CompletableFuture<TransactionResponseDto> processBinaryAsync(InputStream body) {
+        return processAsync(body, IngestLog.TYPE_BINARY, binaryDecoder::decode, "Invalid binary format");
+    }
+
+    private CompletableFuture<TransactionResponseDto> processAsync(InputStream body, byte type, BodyDecoder decoder,
+                                                                   String invalidReason) {
         long startTime = System.currentTimeMillis();
+        long decodeStart = System.nanoTime();
 
-        return CompletableFuture.supplyAsync(() -> {
-            TransactionRequestXml request;
-            try {
-                request = xmlMapper.readValue(xml, TransactionRequestXml.class);
-            } catch (Exception e) {
-                long time = System.currentTimeMillis() - startTime;
-                // Validation error: invalid XML format
-                return new TransactionResponseDto(null, "FAILED",
-                        "Invalid XML format", time);
+        byte[] raw = null;
+        TransactionRequestXml request;
+        try {
+            if (ingestService.isEnabled()) {
+                raw = body.readNBytes(maxRequestBytes + 1);
+                if (raw.length > maxRequestBytes) {
+                    throw new IOException("Request body larger than " + maxRequestBytes + " bytes");
+                }
+                body = new ByteArrayInputStream(raw);
             }
+            request = decoder.decode(body);
+        } catch (Exception e) {
+            metrics.lap(Stage.DECODE, decodeStart);
+            metrics.outcome(null, "FAILED", invalidReason);
+            long time = System.currentTimeMillis() - startTime;
+            // Validation error: body cannot be decoded
+            return CompletableFuture.completedFuture(new TransactionResponseDto(null, "FAILED",
+                    invalidReason, time));
+        }
+        metrics.lap(Stage.DECODE, decodeStart);
+
+        if (raw != null) {
+            return ingestService.submit(type, raw, request, startTime);
+        }
+        return dispatch(request, startTime);
+    }
+
+    /**
+     * Submits an already decoded request to the processing executor.
+     *
+     * @return Future of the response, or failing with ServerOverloadedException
+     *         if the request was shed by admission control.
+     */
+    public CompletableFuture<TransactionResponseDto> dispatch(TransactionRequestXml request, long startTime) {
+        long enqueuedAt = System.nanoTime();
+        CompletableFuture<TransactionResponseDto> result;
+        try {
+            // Delegates to processing service for core business logic.
+            result = CompletableFuture.supplyAsync(() -> {
+                long queueNanos = System.nanoTime() - enqueuedAt;
+                metrics.record(Stage.QUEUE, queueNanos);
+                if (queueNanos > maxQueueTimeNanos) {
+                    throw new ServerOverloadedException(request.getTrxId(),
+                            "Queue wait time exceeded", retryAfterSeconds);
+                }
+                long queueTimeMs = TimeUnit.NANOSECONDS.toMillis(queueNanos);
+                return processingService.process(request, startTime).thenApply(response -> {
+                    response.setQueueTimeMs(queueTimeMs);
+                    return response;
+                });
+            }, transactionExecutor).thenCompose(Function.identity());
+        } catch (RejectedExecutionException e) {
+            result = CompletableFuture.failedFuture(new ServerOverloadedException(request.getTrxId(),
+                    "Processing queue full", retryAfterSeconds));
+        }
+        return result.whenComplete((response, ex) -> {
+            metrics.lap(Stage.TOTAL, enqueuedAt);
+            recordOutcome(request, response, ex);
+        });
+    }
+
+    private void recordOutcome(TransactionRequestXml request, TransactionResponseDto response, Throwable ex) {
+        if (response != null) {
+            metrics.outcome(request.getBankId(), response.getStatus(), response.getReason());
+            return;
+        }
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        metrics.outcome(request.getBankId(), "FAILED",
+                cause instanceof ServerOverloadedException ? "Server Overloaded" : "Internal Error");
+    }
 
-            // Delegates to transactional service for core business logic.
-            return processingService.process(request, startTime);
-        }, transactionExecutor);
+    @FunctionalInterface
+    private interface BodyDecoder {
+        TransactionRequestXml decode(InputStream body) throws IOException;
     }
 }
@@ -1,129 +1,307 @@
 package org.example.server.service;
 
 
+import org.example.server.dto.TransactionOutcome;
 import org.example.server.dto.TransactionResponseDto;
 import org.example.server.entity.TransactionLog;
+import org.example.server.exception.ServerOverloadedException;
+import org.example.server.metrics.TransactionMetrics;
+import org.example.server.metrics.TransactionMetrics.Stage;
+import org.example.server.metrics.TransactionStats;
 import org.example.server.model.TransactionRequestXml;
-import org.example.server.repository.TransactionLogRepository;
-import org.springframework.dao.DataIntegrityViolationException;
+import org.example.server.rules.RuleEngine;
+import org.example.server.util.TrxIdDate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
 import java.time.OffsetDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Core transactional service for processing a single TransactionRequestXml.
+ * Core service for processing a single TransactionRequestXml.
  *
  * This class:
- * - Validates request fields.
+ * - Validates the request against the compiled rules of the RuleEngine
+ *   (field checks and per-bank / per-currency limits). Requests missing a
+ *   field of a NOT NULL column, or whose trxId is dated outside the kept
+ *   partitions, are answered FAILED without being logged.
  * - Ensures trxId uniqueness using an in-memory ConcurrentHashMap for in-flight
- *   requests plus a UNIQUE constraint in the database.
- * - Applies simple business rules (insufficient balance, etc.).
- * - Persists a TransactionLog entry with processing timings.
+ *   requests, the tiered IdempotencyStore for already processed ones, plus a
+ *   UNIQUE constraint in the database.
+ * - Answers a replayed trxId with its original status and reason instead of
+ *   processing it again.
+ * - Debits fromAccount and credits toAccount in the in-memory
+ *   AccountLedgerService (insufficient balance, unknown account). While the
+ *   ledger is unavailable the request is answered 503 + Retry-After and not
+ *   logged, so the client can resend it.
+ * - Hands a TransactionLog entry with processing timings to the
+ *   TransactionLogWriter for group commit.
+ * - Times each of these stages in TransactionMetrics, and counts every
+ *   response with its latency in TransactionStats (GET /server/stats).
  *
  * Concurrency:
- * - Annotated @Transactional so each call runs in a DB transaction.
- * - noRollbackFor = DataIntegrityViolationException ensures that duplicate trxId
- *   violations are treated as business failures instead of HTTP 500 errors.
+ * - Persistence is asynchronous: the returned future completes once the
+ *   writer acknowledges the row (after its batch commits in FLUSH mode, as
+ *   soon as it is buffered in ENQUEUE mode).
+ * - The trxId stays in the in-flight map until its row is committed, in
+ *   ENQUEUE mode too, so a concurrent duplicate cannot slip in while its
+ *   original is still buffered; it waits for (or, once answered, at once
+ *   gets) and then replays the original's result.
+ * - An outcome is recorded in the IdempotencyStore once its row is committed
+ *   (FLUSH) or buffered (ENQUEUE), before the trxId leaves the in-flight
+ *   map. In ENQUEUE mode it is forgotten again if the row is then not
+ *   inserted, so later lookups go to the DB.
+ * - Duplicates the store could not see (e.g. another server instance) are
+ *   reported by the writer's ON CONFLICT DO NOTHING insert and answered with
+ *   the committed row's status and reason instead of HTTP 500 errors.
+ * - A transfer is applied to the ledger before its log row is written; if the
+ *   row turns out to be a duplicate or cannot be persisted, the transfer is
+ *   reversed.
  */
 
 @Service
 public class TransactionProcessingService {
 
-    private final TransactionLogRepository logRepository;
+    private final TransactionLogWriter logWriter;
+    private final AccountLedgerService ledger;
+    private final IdempotencyStore idempotencyStore;
+    private final RuleEngine ruleEngine;
+    private final TransactionMetrics metrics;
+    private final TransactionStats stats;
+    private final TransactionLogPartitionManager partitionManager;
+    private final long retryAfterSeconds;
 
     // Tracks in-flight transactions to avoid concurrent duplicates
-    private final ConcurrentHashMap<String, Boolean> inFlightTransactions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<TransactionResponseDto>> inFlightTransactions =
+            new ConcurrentHashMap<>();
 
-    public TransactionProcessingService(TransactionLogRepository logRepository) {
-        this.logRepository = logRepository;
+    public TransactionProcessingService(TransactionLogWriter logWriter,
+                                        AccountLedgerService ledger,
+                                        IdempotencyStore idempotencyStore,
+                                        RuleEngine ruleEngine,
+                                        TransactionMetrics metrics,
+                                        TransactionStats stats,
+                                        TransactionLogPartitionManager partitionManager,
+                                        @Value("${transaction.admission.retry-after-seconds:1}") long retryAfterSeconds) {
+        this.logWriter = logWriter;
+        this.ledger = ledger;
+        this.idempotencyStore = idempotencyStore;
+        this.ruleEngine = ruleEngine;
+        this.metrics = metrics;
+        this.stats = stats;
+        this.partitionManager = partitionManager;
+        this.retryAfterSeconds = retryAfterSeconds;
     }
 
     /**
-     * Process a single transaction request within a DB transaction.
+     * Process a single transaction request.
      *
      * @param request   Parsed XML request.
      * @param startTime Time in ms when request handling started.
-     * @return Structured response with status, reason, and processing time.
+     * @return Future of the structured response with status, reason, and processing time.
      */
-    @Transactional(noRollbackFor = DataIntegrityViolationException.class)
-    public TransactionResponseDto process(TransactionRequestXml request, long startTime) {
+    public CompletableFuture<TransactionResponseDto> process(TransactionRequestXml request, long startTime) {
+        long processStart = System.nanoTime();
+        CompletableFuture<TransactionResponseDto> result = processRequest(request, startTime, processStart);
+        if (stats.isEnabled()) {
+            result.whenComplete((response, ex) -> {
+                long latency = System.nanoTime() - processStart;
+                if (ex == null) {
+                    stats.record(request.getBankId(), request.getCurrency(), response.getStatus(),
+                            response.getReason(), latency);
+                } else {
+                    Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                    stats.record(request.getBankId(), request.getCurrency(), "FAILED",
+                            cause instanceof ServerOverloadedException ? "Server Overloaded" : "Internal Error",
+                            latency);
+                }
+            });
+        }
+        return result;
+    }
+
+    private CompletableFuture<TransactionResponseDto> processRequest(TransactionRequestXml request, long startTime,
+                                                                     long stageStart) {
         String trxId = request.getTrxId();
-        long processingTime;
 
+        CompletableFuture<TransactionResponseDto> inFlight = new CompletableFuture<>();
         if (trxId != null) {
-            Boolean existing = inFlightTransactions.putIfAbsent(trxId, Boolean.TRUE);
-            if (existing != null) {
-                processingTime = System.currentTimeMillis() - startTime;
-                return new TransactionResponseDto(trxId, "FAILED",
-                        "Duplicate Transaction (in-flight)", processingTime);
+            CompletableFuture<TransactionResponseDto> original = inFlightTransactions.putIfAbsent(trxId, inFlight);
+            stageStart = metrics.lap(Stage.IN_FLIGHT, stageStart);
+            if (original != null) {
+                return original.handle((response, ex) -> ex == null
+                        ? replay(trxId, new TransactionOutcome(response.getStatus(), response.getReason()), startTime)
+                        : new TransactionResponseDto(trxId, "FAILED", "Duplicate Transaction (in-flight)",
+                                System.currentTimeMillis() - startTime));
             }
         }
 
+        CompletableFuture<TransactionResponseDto> result;
+        // Set once a row is handed to the writer.
+        CompletableFuture<Boolean> persisted = null;
         try {
-            String validationError = validate(request);
-            if (validationError != null) {
-                processingTime = System.currentTimeMillis() - startTime;
-                saveLog(request, "FAILED", validationError, startTime, processingTime);
-                return new TransactionResponseDto(trxId, "FAILED", validationError, processingTime);
+            TransactionOutcome previous = trxId != null ? idempotencyStore.find(trxId) : null;
+            stageStart = metrics.lap(Stage.IDEMPOTENCY, stageStart);
+            String validationError = previous == null ? validate(request) : null;
+            String unstorable = previous == null ? unstorable(request) : null;
+            if (previous == null) {
+                stageStart = metrics.lap(Stage.VALIDATE, stageStart);
             }
+            if (previous != null) {
+                result = CompletableFuture.completedFuture(replay(trxId, previous, startTime));
+            } else if (unstorable != null) {
+                // The row could never be inserted, or would be expired at once: answer without persisting it.
+                String reason = validationError != null ? validationError : unstorable;
+                result = CompletableFuture.completedFuture(new TransactionResponseDto(trxId, "FAILED", reason,
+                        System.currentTimeMillis() - startTime));
+            } else if (validationError != null) {
+                persisted = saveLog(request, "FAILED", validationError, startTime);
+                result = acknowledged(persisted, stageStart)
+                        .thenApply(inserted -> new TransactionResponseDto(trxId, "FAILED", validationError,
+                                System.currentTimeMillis() - startTime));
+            } else {
+                AccountLedgerService.TransferRef ref = ledger.newTransfer(trxId);
+                AccountLedgerService.TransferResult transfer = ledger.transfer(
+                        ref, request.getFromAccount(), request.getToAccount(), request.getAmount());
+                stageStart = metrics.lap(Stage.LEDGER, stageStart);
+                String status = transfer == AccountLedgerService.TransferResult.OK ? "SUCCESS" : "FAILED";
+                String reason = switch (transfer) {
+                    case OK -> "Completed";
+                    case INSUFFICIENT_FUNDS -> "Insufficient Balance";
+                    case UNKNOWN_ACCOUNT -> "Unknown Account";
+                    case INVALID_AMOUNT -> "Invalid amount";
+                    case UNAVAILABLE -> throw new ServerOverloadedException(trxId, "Account ledger unavailable",
+                            retryAfterSeconds);
+                };
 
-            String status = "SUCCESS";
-            String reason = "Completed";
+                persisted = saveLog(request, status, reason, startTime);
+                if (transfer == AccountLedgerService.TransferResult.OK) {
+                    persisted.whenComplete((inserted, ex) -> {
+                        if (ex != null || !inserted) {
+                            ledger.reverse(ref, request.getFromAccount(), request.getToAccount(), request.getAmount());
+                        }
+                    });
+                }
 
-            if (request.getAmount().compareTo(new BigDecimal("100000")) > 0) {
-                status = "FAILED";
-                reason = "Insufficient Balance";
+                result = acknowledged(persisted, stageStart)
+                        .thenApply(inserted -> inserted
+                                ? new TransactionResponseDto(trxId, status, reason,
+                                        System.currentTimeMillis() - startTime)
+                                : original(trxId, startTime));
             }
+        } catch (RuntimeException ex) {
+            result = CompletableFuture.failedFuture(ex);
+        }
 
-            processingTime = System.currentTimeMillis() - startTime;
-
-            try {
-                saveLog(request, status, reason, startTime, processingTime);
-            } catch (DataIntegrityViolationException ex) {
-                status = "FAILED";
-                reason = "Duplicate Transaction";
-                processingTime = System.currentTimeMillis() - startTime;
+        if (trxId == null) {
+            return result;
+        }
+        // In ENQUEUE mode the response may be answered long before the commit.
+        CompletableFuture<?> settled = persisted != null ? CompletableFuture.allOf(result, persisted) : result;
+        settled.whenComplete((v, ex) -> inFlightTransactions.remove(trxId, inFlight));
+        return result.whenComplete((response, ex) -> {
+            if (ex == null) {
+                inFlight.complete(response);
+            } else {
+                inFlight.completeExceptionally(ex);
             }
+        });
+    }
 
-            return new TransactionResponseDto(trxId, status, reason, processingTime);
-        } finally {
-            if (trxId != null) {
-                inFlightTransactions.remove(trxId);
-            }
+    /**
+     * @return true while trxId is being processed (not yet acknowledged).
+     */
+    public boolean isInFlight(String trxId) {
+        CompletableFuture<TransactionResponseDto> inFlight = inFlightTransactions.get(trxId);
+        return inFlight != null && !inFlight.isDone();
+    }
+
+    /**
+     * Answers a trxId that was already in the table with its recorded outcome.
+     * Runs on the writer's flusher thread: one primary key lookup, and only
+     * for the rare duplicate the in-memory checks could not see.
+     */
+    private TransactionResponseDto original(String trxId, long startTime) {
+        TransactionOutcome outcome = idempotencyStore.findCommitted(trxId);
+        return outcome != null
+                ? replay(trxId, outcome, startTime)
+                : new TransactionResponseDto(trxId, "FAILED", "Duplicate Transaction",
+                        System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Answers a duplicate trxId with the outcome of its original request.
+     */
+    private static TransactionResponseDto replay(String trxId, TransactionOutcome outcome, long startTime) {
+        return new TransactionResponseDto(trxId, outcome.status(), outcome.reason(),
+                System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Applies the writer's durability mode: in ENQUEUE mode a successfully
+     * buffered row is acknowledged immediately instead of after its commit.
+     * The wait, from persistStart, is recorded as the persist stage.
+     */
+    private CompletableFuture<Boolean> acknowledged(CompletableFuture<Boolean> persisted, long persistStart) {
+        if (logWriter.getDurability() == TransactionLogWriter.Durability.ENQUEUE
+                && !persisted.isCompletedExceptionally()) {
+            metrics.lap(Stage.PERSIST, persistStart);
+            return CompletableFuture.completedFuture(Boolean.TRUE);
         }
+        return persisted.whenComplete((inserted, ex) -> metrics.lap(Stage.PERSIST, persistStart));
     }
 
     /**
-     * Performs basic field validation (ids, accounts, amount, currency).
+     * Runs the active validation and business rules.
      *
      * @return null if valid, or a human-readable error message.
      */
     private String validate(TransactionRequestXml r) {
+        if (r == null) return "Null request";
+        return ruleEngine.evaluate(r);
+    }
+
+    /**
+     * Checks the request fields backing NOT NULL columns of transaction_log,
+     * whatever the active rules require, so the writer is never handed a row
+     * that fails its whole batch. Also rejects trxIds whose day lies outside
+     * the partitions kept by TransactionLogPartitionManager.
+     *
+     * @return null if the row can be stored, or the reason it cannot.
+     */
+    private String unstorable(TransactionRequestXml r) {
+        String missing = missingColumn(r);
+        return missing != null ? missing : partitionManager.checkTrxDate(TrxIdDate.of(r.getTrxId()));
+    }
+
+    private static String missingColumn(TransactionRequestXml r) {
         if (r == null) return "Null request";
         if (r.getTrxId() == null || r.getTrxId().isBlank()) return "Missing trxId";
-        if (r.getBankId() == null || r.getBankId().isBlank()) return "Missing bankId";
-        if (r.getFromAccount() == null || !r.getFromAccount().matches("\\d{10}"))
-            return "Invalid fromAccount";
-        if (r.getToAccount() == null || !r.getToAccount().matches("\\d{10}"))
-            return "Invalid toAccount";
-        if (r.getAmount() == null || r.getAmount().compareTo(BigDecimal.ZERO) <= 0)
-            return "Invalid amount";
-        if (r.getCurrency() == null || r.getCurrency().isBlank())
-            return "Invalid currency";
+        if (r.getBankId() == null) return "Missing bankId";
+        if (r.getCustomerId() == null) return "Missing customerId";
+        if (r.getFromAccount() == null) return "Invalid fromAccount";
+        if (r.getToAccount() == null) return "Invalid toAccount";
+        if (r.getAmount() == null) return "Invalid amount";
+        if (r.getCurrency() == null) return "Invalid currency";
         return null;
     }
 
     /**
-     * Persists the transaction log entry in the database.
+     * Builds the transaction log entry and queues it for group commit.
      * This is the only place where we touch the TransactionLog entity.
+     * Once the row is committed its outcome is recorded for replays; in
+     * ENQUEUE mode, where the caller answers before the commit, once it is
+     * buffered.
+     *
+     * @return future completing with false if the trxId already exists.
      */
-    private void saveLog(TransactionRequestXml r, String status, String reason,
-                         long startTime, long processingTime) {
+    private CompletableFuture<Boolean> saveLog(TransactionRequestXml r, String status, String reason,
+                                               long startTime) {
         TransactionLog log = new TransactionLog();
         log.setTrxId(r.getTrxId());
+        log.setTrxDate(TrxIdDate.of(r.getTrxId()));
         log.setBankId(r.getBankId());
         log.setCustomerId(r.getCustomerId());
         log.setFromAccount(r.getFromAccount());
@@ -136,8 +314,25 @@ public class TransactionProcessingService {
                 ? r.getTimestamp()
                 : OffsetDateTime.now());
         log.setProcessedTimestamp(OffsetDateTime.now());
-        log.setProcessingTimeMs(processingTime);
+        log.setProcessingTimeMs(System.currentTimeMillis() - startTime);
 
-        logRepository.save(log);
+        String trxId = r.getTrxId();
+        TransactionOutcome outcome = new TransactionOutcome(status, reason);
+        CompletableFuture<Boolean> persisted = logWriter.write(log);
+        if (logWriter.getDurability() == TransactionLogWriter.Durability.ENQUEUE
+                && !persisted.isCompletedExceptionally()) {
+            idempotencyStore.record(trxId, outcome);
+            return persisted.whenComplete((inserted, ex) -> {
+                if (ex != null || !inserted) {
+                    idempotencyStore.forget(trxId);
+                }
+            });
+        }
+        return persisted.thenApply(inserted -> {
+            if (inserted) {
+                idempotencyStore.record(trxId, outcome);
+            }
+            return inserted;
+        });
     }
 }
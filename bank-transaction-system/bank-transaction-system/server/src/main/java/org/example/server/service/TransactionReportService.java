@@ -0,0 +1,324 @@
+package org.example.server.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.server.dto.DailyRollupDto;
+import org.example.server.dto.RollupRebuildStatus;
+import org.example.server.repository.TransactionReportRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Daily settlement reports from transaction_daily_rollup, and rebuilds of
+ * the rollup from transaction_log.
+ *
+ * Responsibilities:
+ * - Answer report queries from the rollup, which the insert statement of
+ *   TransactionLogJdbcRepository keeps current, so a report costs one index
+ *   range read whatever the day's volume.
+ * - Rebuild a day on request, and the previous day once a day when
+ *   reconcile-previous-day is set: recompute its groups from the log and
+ *   correct the rollup where it differs (e.g. rows loaded or removed outside
+ *   the server, or rollups of days logged before the table existed).
+ *
+ * A rebuild never blocks writers and stays exact while the day is still
+ * being written to:
+ * - A coordinator REPEATABLE READ transaction exports its snapshot S and
+ *   reads the day's rollup R(S).
+ * - rebuild-workers transactions import S and aggregate chunks of
+ *   chunk-blocks heap blocks of the day's partition (plus the day's rows in
+ *   the default partition) in Postgres; only grouped totals are returned, so
+ *   memory is bounded by the number of groups, not rows.
+ * - The merged totals T(S) minus R(S) are added to the rollup. Rows committed
+ *   after S are in neither T(S) nor R(S) but already in the rollup, so the
+ *   result equals the log as of the correction's commit.
+ *
+ * Concurrency:
+ * - Rebuilds run one at a time on the "report-rebuild" thread; each holds
+ *   rebuild-workers + 1 pooled connections while it runs.
+ * - The latest status per day is kept in memory for GET .../rebuild.
+ */
+@Service
+public class TransactionReportService {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionReportService.class);
+
+    private final TransactionReportRepository repository;
+    private final TransactionTemplate snapshotTransaction;
+    private final TransactionTemplate writeTransaction;
+    private final int workers;
+    private final long chunkBlocks;
+    private final int maxRangeDays;
+    private final int retentionDays;
+    private final boolean reconcilePreviousDay;
+    private final long reconcileAfterMinutes;
+    private final Map<LocalDate, RollupRebuildStatus> rebuilds = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService coordinator;
+    private ExecutorService workerPool;
+    private volatile LocalDate lastReconciled;
+
+    public TransactionReportService(TransactionReportRepository repository,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${transaction.reports.rebuild-workers:4}") int workers,
+                                    @Value("${transaction.reports.chunk-blocks:16384}") long chunkBlocks,
+                                    @Value("${transaction.reports.max-range-days:366}") int maxRangeDays,
+                                    @Value("${transaction.partitions.retention-days:90}") int retentionDays,
+                                    @Value("${transaction.reports.reconcile-previous-day:true}")
+                                    boolean reconcilePreviousDay,
+                                    @Value("${transaction.reports.reconcile-after-minutes:30}")
+                                    long reconcileAfterMinutes) {
+        this.repository = repository;
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshotTransaction.setReadOnly(true);
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.workers = workers;
+        this.chunkBlocks = chunkBlocks;
+        this.maxRangeDays = maxRangeDays;
+        this.retentionDays = retentionDays;
+        this.reconcilePreviousDay = reconcilePreviousDay;
+        this.reconcileAfterMinutes = reconcileAfterMinutes;
+    }
+
+    @PostConstruct
+    public void start() {
+        coordinator = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "report-rebuild");
+            t.setDaemon(true);
+            return t;
+        });
+        AtomicInteger threadIndex = new AtomicInteger();
+        workerPool = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "report-scan-" + threadIndex.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+        if (reconcilePreviousDay) {
+            coordinator.scheduleWithFixedDelay(this::reconcilePreviousDay, 1, 10, TimeUnit.MINUTES);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        coordinator.shutdownNow();
+        workerPool.shutdownNow();
+    }
+
+    /**
+     * @return rollup rows of the days from..to (inclusive).
+     * @throws IllegalArgumentException if to is before from or the range
+     *                                  exceeds max-range-days.
+     */
+    public List<DailyRollupDto> daily(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("'to' is before 'from'");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= maxRangeDays) {
+            throw new IllegalArgumentException("At most " + maxRangeDays + " days per report");
+        }
+        return repository.findDaily(from, to);
+    }
+
+    /**
+     * Queues a rebuild of day unless one is already queued or running.
+     *
+     * @return the rebuild's status (RUNNING until it has finished).
+     * @throws IllegalArgumentException if day is past partition retention,
+     *                                  whose rows may be gone from the log.
+     */
+    public RollupRebuildStatus startRebuild(LocalDate day) {
+        checkRebuildable(day);
+        RollupRebuildStatus running = claim(day);
+        if (running == null) {
+            return rebuilds.get(day);
+        }
+        coordinator.execute(() -> rebuild(day, running.startedAt()));
+        return running;
+    }
+
+    /**
+     * @return status of the latest rebuild of day, or null if there was none
+     *         since startup.
+     */
+    public RollupRebuildStatus rebuildStatus(LocalDate day) {
+        return rebuilds.get(day);
+    }
+
+    private void reconcilePreviousDay() {
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        LocalDate yesterday = now.toLocalDate().minusDays(1);
+        if (yesterday.equals(lastReconciled)
+                || now.toLocalTime().isBefore(LocalTime.MIDNIGHT.plusMinutes(reconcileAfterMinutes))) {
+            return;
+        }
+        RollupRebuildStatus running = claim(yesterday);
+        if (running == null) {
+            return;
+        }
+        RollupRebuildStatus result = rebuild(yesterday, running.startedAt());
+        if (RollupRebuildStatus.DONE.equals(result.state())) {
+            lastReconciled = yesterday;
+        }
+    }
+
+    private RollupRebuildStatus rebuild(LocalDate day, String startedAt) {
+        long start = System.nanoTime();
+        RollupRebuildStatus status;
+        try {
+            Scan scan = snapshotTransaction.execute(tx -> scan(day));
+            List<DailyRollupDto> corrections = corrections(day, scan);
+            if (!corrections.isEmpty()) {
+                writeTransaction.executeWithoutResult(tx -> repository.applyDeltas(day, corrections));
+            }
+            status = new RollupRebuildStatus(day, RollupRebuildStatus.DONE, startedAt, Instant.now().toString(),
+                    scan.chunks, scan.rows, corrections, null);
+            log.info("Rebuilt rollup of {}: {} rows in {} chunks, {} corrections, {} ms", day, scan.rows,
+                    scan.chunks, corrections.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (RuntimeException e) {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            log.error("Rebuild of rollup of {} failed", day, cause);
+            status = new RollupRebuildStatus(day, RollupRebuildStatus.FAILED, startedAt, Instant.now().toString(),
+                    0, 0, List.of(), String.valueOf(cause.getMessage()));
+        }
+        rebuilds.put(day, status);
+        return status;
+    }
+
+    /**
+     * Runs in the coordinator's REPEATABLE READ transaction, which stays open
+     * until every worker has imported its snapshot and finished.
+     */
+    private Scan scan(LocalDate day) {
+        String snapshot = repository.exportSnapshot();
+        List<DailyRollupDto> recorded = repository.findDaily(day, day);
+        long blocks = repository.partitionBlocks(day);
+
+        // A chunk is a block range [from, to) of the partition, or {-1, -1}
+        // for the day's rows outside it.
+        List<long[]> chunks = new ArrayList<>();
+        chunks.add(new long[]{-1, -1});
+        for (long from = 0; blocks >= 0 && (from == 0 || from < blocks); from += chunkBlocks) {
+            // The last range is open so nothing past the size read above is missed.
+            chunks.add(new long[]{from, from + chunkBlocks >= blocks ? -1 : from + chunkBlocks});
+        }
+
+        List<CompletableFuture<Map<Group, DailyRollupDto>>> parts = new ArrayList<>(workers);
+        int scanners = Math.min(workers, chunks.size());
+        for (int w = 0; w < scanners; w++) {
+            int first = w;
+            parts.add(CompletableFuture.supplyAsync(() -> snapshotTransaction.execute(tx -> {
+                repository.importSnapshot(snapshot);
+                Map<Group, DailyRollupDto> totals = new HashMap<>();
+                for (int c = first; c < chunks.size(); c += scanners) {
+                    long[] chunk = chunks.get(c);
+                    List<DailyRollupDto> groups;
+                    if (chunk[0] >= 0) {
+                        groups = repository.aggregateBlocks(day, chunk[0], chunk[1]);
+                    } else if (blocks >= 0) {
+                        groups = repository.aggregateDefaultPartition(day);
+                    } else {
+                        groups = repository.aggregateDay(day);
+                    }
+                    merge(totals, groups, false);
+                }
+                return totals;
+            }), workerPool));
+        }
+
+        Map<Group, DailyRollupDto> actual = new HashMap<>();
+        for (CompletableFuture<Map<Group, DailyRollupDto>> part : parts) {
+            merge(actual, part.join().values(), false);
+        }
+        return new Scan(recorded, actual, chunks.size());
+    }
+
+    private static List<DailyRollupDto> corrections(LocalDate day, Scan scan) {
+        Map<Group, DailyRollupDto> delta = new HashMap<>(scan.actual);
+        merge(delta, scan.recorded, true);
+        List<DailyRollupDto> corrections = new ArrayList<>();
+        for (DailyRollupDto d : delta.values()) {
+            if (d.count() != 0 || d.totalAmount().signum() != 0) {
+                corrections.add(d);
+            }
+        }
+        return corrections;
+    }
+
+    private static void merge(Map<Group, DailyRollupDto> totals, Iterable<DailyRollupDto> groups, boolean subtract) {
+        for (DailyRollupDto g : groups) {
+            long count = subtract ? -g.count() : g.count();
+            BigDecimal amount = subtract ? g.totalAmount().negate() : g.totalAmount();
+            totals.merge(new Group(g.bankId(), g.currency(), g.status()),
+                    new DailyRollupDto(g.date(), g.bankId(), g.currency(), g.status(), count, amount),
+                    (a, b) -> new DailyRollupDto(a.date(), a.bankId(), a.currency(), a.status(),
+                            a.count() + b.count(), a.totalAmount().add(b.totalAmount())));
+        }
+    }
+
+    private void checkRebuildable(LocalDate day) {
+        LocalDate cutoff = LocalDate.now(ZoneOffset.UTC).minusDays(retentionDays);
+        if (day.isBefore(cutoff) && !day.equals(LocalDate.EPOCH)) {
+            throw new IllegalArgumentException("Days before " + cutoff
+                    + " are past partition retention and cannot be rebuilt");
+        }
+    }
+
+    /**
+     * @return a RUNNING status recorded for day, or null if a rebuild of day
+     *         is already queued or running.
+     */
+    private RollupRebuildStatus claim(LocalDate day) {
+        RollupRebuildStatus running = new RollupRebuildStatus(day, RollupRebuildStatus.RUNNING,
+                Instant.now().toString(), null, 0, 0, List.of(), null);
+        RollupRebuildStatus current = rebuilds.compute(day, (d, previous) ->
+                previous != null && RollupRebuildStatus.RUNNING.equals(previous.state()) ? previous : running);
+        return current == running ? running : null;
+    }
+
+    private record Group(String bankId, String currency, String status) {
+    }
+
+    private static final class Scan {
+        private final List<DailyRollupDto> recorded;
+        private final Map<Group, DailyRollupDto> actual;
+        private final int chunks;
+        private final long rows;
+
+        private Scan(List<DailyRollupDto> recorded, Map<Group, DailyRollupDto> actual, int chunks) {
+            this.recorded = recorded;
+            this.actual = actual;
+            this.chunks = chunks;
+            long rows = 0;
+            for (DailyRollupDto d : actual.values()) {
+                rows += d.count();
+            }
+            this.rows = rows;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.example.server.service;
+
+import org.example.server.dto.TransactionOutcome;
+import org.example.server.dto.TransactionStatusDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Status lookups for processed transactions.
+ *
+ * A trxId is reported PROCESSING while it is in flight or waiting in the
+ * ingest log (accepted by this node, not yet processed), otherwise with the
+ * outcome found by IdempotencyStore (recent-outcome cache, then the DB), or
+ * NOT_FOUND. A bulk lookup costs at most one DB query, however many of its
+ * trxIds miss the cache.
+ */
+@Service
+public class TransactionStatusService {
+
+    private final TransactionProcessingService processingService;
+    private final TransactionIngestService ingestService;
+    private final IdempotencyStore idempotencyStore;
+    private final int maxBulkSize;
+
+    public TransactionStatusService(TransactionProcessingService processingService,
+                                    TransactionIngestService ingestService,
+                                    IdempotencyStore idempotencyStore,
+                                    @Value("${transaction.status.max-bulk-size:1000}") int maxBulkSize) {
+        this.processingService = processingService;
+        this.ingestService = ingestService;
+        this.idempotencyStore = idempotencyStore;
+        this.maxBulkSize = maxBulkSize;
+    }
+
+    public TransactionStatusDto lookup(String trxId) {
+        return lookupAll(List.of(trxId)).get(0);
+    }
+
+    /**
+     * @return one status per distinct trxId, in request order.
+     * @throws IllegalArgumentException if more than max-bulk-size trxIds are requested.
+     */
+    public List<TransactionStatusDto> lookupAll(List<String> trxIds) {
+        Set<String> distinct = new LinkedHashSet<>(trxIds);
+        distinct.remove(null);
+        if (distinct.size() > maxBulkSize) {
+            throw new IllegalArgumentException("At most " + maxBulkSize + " trxIds per lookup");
+        }
+
+        Set<String> inFlight = new HashSet<>();
+        List<String> settled = new ArrayList<>(distinct.size());
+        for (String trxId : distinct) {
+            if (isPending(trxId)) {
+                inFlight.add(trxId);
+            } else {
+                settled.add(trxId);
+            }
+        }
+        Map<String, TransactionOutcome> outcomes = idempotencyStore.findAll(settled);
+
+        List<TransactionStatusDto> statuses = new ArrayList<>(distinct.size());
+        for (String trxId : distinct) {
+            TransactionOutcome outcome = outcomes.get(trxId);
+            if (outcome != null) {
+                statuses.add(new TransactionStatusDto(trxId, outcome.status(), outcome.reason()));
+            } else if (inFlight.contains(trxId) || isPending(trxId)) {
+                // Either still running, or started after the first check.
+                statuses.add(new TransactionStatusDto(trxId, TransactionStatusDto.PROCESSING, null));
+            } else {
+                statuses.add(new TransactionStatusDto(trxId, TransactionStatusDto.NOT_FOUND, null));
+            }
+        }
+        return statuses;
+    }
+
+    private boolean isPending(String trxId) {
+        return processingService.isInFlight(trxId) || ingestService.isQueued(trxId);
+    }
+}
@@ -0,0 +1,68 @@
+package org.example.server.util;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Derives the partition day ('transaction_log.trx_date') of a trxId.
+ *
+ * The day must be a pure function of the trxId: the same id always maps to
+ * the same partition, so UNIQUE (trx_id, trx_date) is as strong as a global
+ * unique index on trx_id. Recognised formats:
+ * - TRX-0000000000000000000: ids of the bank clients' TransactionIdGenerator;
+ *   the top 40 bits of the 64-bit id are milliseconds since
+ *   2025-01-01T00:00:00Z (the day is taken in UTC).
+ * - TRX-yyyyMMdd-...: ids carrying their date, as in the sample requests.
+ * Any other id gets UNDATED and is kept in its own partition, which is never
+ * expired.
+ *
+ * database/migrate-transaction-log-partitioning.sql implements the same
+ * rules in SQL; keep both in sync.
+ */
+public final class TrxIdDate {
+
+    public static final LocalDate UNDATED = LocalDate.of(1970, 1, 1);
+
+    private static final long ID_EPOCH_MS = 1735689600000L; // 2025-01-01T00:00:00Z
+    private static final int ID_TIME_SHIFT = 23;
+    private static final int ID_DIGITS = 19;
+    private static final String PREFIX = "TRX-";
+    private static final DateTimeFormatter BASIC_DATE = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private TrxIdDate() {
+    }
+
+    public static LocalDate of(String trxId) {
+        if (trxId == null || !trxId.startsWith(PREFIX)) {
+            return UNDATED;
+        }
+        int start = PREFIX.length();
+        try {
+            if (trxId.length() == start + ID_DIGITS && isDigits(trxId, start, trxId.length())) {
+                long id = Long.parseLong(trxId, start, trxId.length(), 10);
+                long epochMs = (id >>> ID_TIME_SHIFT) + ID_EPOCH_MS;
+                return LocalDate.ofInstant(Instant.ofEpochMilli(epochMs), ZoneOffset.UTC);
+            }
+            int dateEnd = start + 8;
+            if (trxId.length() > dateEnd && trxId.charAt(dateEnd) == '-' && isDigits(trxId, start, dateEnd)) {
+                return LocalDate.parse(trxId.substring(start, dateEnd), BASIC_DATE);
+            }
+        } catch (NumberFormatException | DateTimeException e) {
+            // Out-of-range id or impossible date: not one of the dated formats.
+        }
+        return UNDATED;
+    }
+
+    private static boolean isDigits(String s, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,6 +1,15 @@
+-- transaction_log is range-partitioned by day on trx_date, the day encoded
+-- in trx_id (see TrxIdDate). A unique index on a partitioned table must
+-- contain the partition key; because trx_date is a function of trx_id,
+-- UNIQUE (trx_id, trx_date) still makes trx_id unique across partitions.
+-- Daily partitions (transaction_log_pYYYYMMDD) are created ahead of time and
+-- expired by TransactionLogPartitionManager (transaction.partitions.*).
+-- An existing unpartitioned table must first be converted with
+-- database/migrate-transaction-log-partitioning.sql.
 CREATE TABLE IF NOT EXISTS transaction_log (
-                                               id BIGSERIAL PRIMARY KEY,
-                                               trx_id VARCHAR(50) NOT NULL UNIQUE,
+    id BIGSERIAL NOT NULL,
+    trx_id VARCHAR(50) NOT NULL,
+    trx_date DATE NOT NULL,
     bank_id VARCHAR(20) NOT NULL,
     customer_id BIGINT NOT NULL,
     from_account VARCHAR(20) NOT NULL,
@@ -11,14 +20,66 @@ CREATE TABLE IF NOT EXISTS transaction_log (
     reason VARCHAR(255),
     request_timestamp TIMESTAMPTZ NOT NULL,
     processed_timestamp TIMESTAMPTZ NOT NULL,
-    processing_time_ms BIGINT NOT NULL
-    );
+    processing_time_ms BIGINT NOT NULL,
+    CONSTRAINT uk_trx_id UNIQUE (trx_id, trx_date)
+    ) PARTITION BY RANGE (trx_date);
+
+-- trxIds without an encoded date; never expired
+CREATE TABLE IF NOT EXISTS transaction_log_undated PARTITION OF transaction_log
+    FOR VALUES FROM ('1970-01-01') TO ('1970-01-02');
+
+-- rows whose day has no partition (yet); kept small by the partition manager
+CREATE TABLE IF NOT EXISTS transaction_log_default PARTITION OF transaction_log DEFAULT;
+
+-- expired rows of transaction_log_default with expiry-action DETACH, moved
+-- here by TransactionLogPartitionManager; same columns in the same order
+CREATE TABLE IF NOT EXISTS transaction_log_archive (LIKE transaction_log);
+
+-- Per-day totals of transaction_log by bank, currency and status. Updated by
+-- the statement that inserts the rows (TransactionLogJdbcRepository), so it
+-- always matches the committed log; TransactionReportService can recompute a
+-- day from the log and correct it. Not expired with the partitions.
+-- Each log writer flusher adds to its own slot, so concurrent batches never
+-- wait on each other's rollup rows; a group's totals are the sum over its
+-- slots. An existing table without slot must first be converted with
+-- database/migrate-daily-rollup-slots.sql.
+CREATE TABLE IF NOT EXISTS transaction_daily_rollup (
+    trx_date DATE NOT NULL,
+    bank_id VARCHAR(20) NOT NULL,
+    currency VARCHAR(10) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    slot SMALLINT NOT NULL,
+    tx_count BIGINT NOT NULL,
+    total_amount NUMERIC(24, 2) NOT NULL,
+    PRIMARY KEY (trx_date, bank_id, currency, status, slot)
+);
 
 CREATE TABLE IF NOT EXISTS account_balance (
                                                account_no VARCHAR(20) PRIMARY KEY,
     balance NUMERIC(18, 2) NOT NULL
     );
 
+-- Balance changes of the SUCCESS rows of transaction_log, netted per
+-- account and added by the statement that inserts the rows
+-- (TransactionLogJdbcRepository), so they commit with the log. One row per
+-- account and log writer slot, so concurrent batches never share a row.
+-- An account's balance is account_balance.balance plus its deltas;
+-- AccountLedgerService folds them into account_balance in the background.
+CREATE TABLE IF NOT EXISTS account_balance_delta (
+    account_no VARCHAR(20) NOT NULL,
+    slot SMALLINT NOT NULL,
+    delta NUMERIC(18, 2) NOT NULL,
+    PRIMARY KEY (account_no, slot)
+);
+
+-- The ledger (AccountLedgerService) that last loaded the balances. A ledger
+-- that lost its lock only resumes if no other one has loaded them since.
+CREATE TABLE IF NOT EXISTS account_ledger_owner (
+    id SMALLINT PRIMARY KEY,
+    owner VARCHAR(64) NOT NULL,
+    loaded_at TIMESTAMPTZ NOT NULL
+);
+
 INSERT INTO account_balance (account_no, balance) VALUES
     ('1234567890', 1000000.00)
     ON CONFLICT (account_no) DO NOTHING;
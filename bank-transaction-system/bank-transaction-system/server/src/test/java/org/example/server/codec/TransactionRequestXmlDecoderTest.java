@@ -0,0 +1,122 @@
+package org.example.server.codec;
+
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.example.server.model.TransactionRequestXml;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * The fast path must decode exactly what the XmlMapper would: same
+ * timestamps (normalised to UTC) and same BigDecimal scale.
+ */
+class TransactionRequestXmlDecoderTest {
+
+    // Configured as in ServerConfig.xmlMapper()
+    private final XmlMapper xmlMapper = new XmlMapper();
+    private final TransactionRequestXmlDecoder decoder;
+
+    TransactionRequestXmlDecoderTest() {
+        xmlMapper.registerModule(new JavaTimeModule());
+        xmlMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        decoder = new TransactionRequestXmlDecoder(xmlMapper);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "2024-05-01T10:15:30Z",
+            "2024-05-01T10:15:30.123Z",
+            "2024-05-01T10:15:30.123456789Z",
+            "2024-05-01T10:15:30+02:00",
+            "2024-05-01T00:15:30.5+05:30",
+            "2024-12-31T23:59:59-08:00",
+            "2024-02-29T12:00:00+00:00"
+    })
+    void timestampsMatchXmlMapper(String timestamp) throws IOException {
+        byte[] xml = request("100.00", timestamp);
+
+        TransactionRequestXml fast = TransactionRequestXmlDecoder.parse(xml, xml.length);
+
+        assertNotNull(fast, "fast path should handle " + timestamp);
+        assertSameRequest(xmlMapper.readValue(xml, TransactionRequestXml.class), fast);
+        assertEquals(ZoneOffset.UTC, fast.getTimestamp().getOffset());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"0", "0.0", "1", "100", "100.5", "100.50", "100.500", "-12.34", "+7.10",
+            ".5", "5.", "000123.4500", "999999999999999999", "0.00000000000000001"})
+    void amountsMatchXmlMapperIncludingScale(String amount) throws IOException {
+        byte[] xml = request(amount, "2024-05-01T10:15:30Z");
+
+        TransactionRequestXml fast = TransactionRequestXmlDecoder.parse(xml, xml.length);
+
+        assertNotNull(fast, "fast path should handle " + amount);
+        TransactionRequestXml expected = xmlMapper.readValue(xml, TransactionRequestXml.class);
+        assertEquals(expected.getAmount().scale(), fast.getAmount().scale(), amount);
+        assertSameRequest(expected, fast);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "<TransactionRequest xmlns=\"urn:bank\"><TrxId>T-1</TrxId><Amount>1.5</Amount></TransactionRequest>",
+            "<TransactionRequest><TrxId><![CDATA[T-1]]></TrxId><Amount>1.5</Amount></TransactionRequest>",
+            "<TransactionRequest><TrxId>T&amp;1</TrxId><Amount>1.5</Amount></TransactionRequest>",
+            "<TransactionRequest><!-- c --><TrxId>T-1</TrxId><Amount>1E+2</Amount></TransactionRequest>"
+    })
+    void unusualDocumentsFallBackToXmlMapper(String document) throws IOException {
+        byte[] xml = document.getBytes(StandardCharsets.UTF_8);
+
+        assertNull(TransactionRequestXmlDecoder.parse(xml, xml.length));
+        assertSameRequest(xmlMapper.readValue(xml, TransactionRequestXml.class), decoder.decode(xml, xml.length));
+    }
+
+    @Test
+    void streamDecodeMatchesXmlMapper() throws IOException {
+        byte[] xml = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + new String(request("42.10", "2024-05-01T10:15:30+01:00"), StandardCharsets.UTF_8) + "\n")
+                .getBytes(StandardCharsets.UTF_8);
+
+        TransactionRequestXml decoded = decoder.decode(new ByteArrayInputStream(xml));
+
+        assertSameRequest(xmlMapper.readValue(xml, TransactionRequestXml.class), decoded);
+    }
+
+    private static byte[] request(String amount, String timestamp) {
+        return ("<TransactionRequest>"
+                + "<TrxId>A-20240501-000001</TrxId>"
+                + "<BankId>BANK_A</BankId>"
+                + "<CustomerId>123456</CustomerId>"
+                + "<FromAccount>ACC-1</FromAccount>"
+                + "<ToAccount>ACC-2</ToAccount>"
+                + "<Amount>" + amount + "</Amount>"
+                + "<Currency>EUR</Currency>"
+                + "<Timestamp>" + timestamp + "</Timestamp>"
+                + "</TransactionRequest>").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Field by field with equals(), so BigDecimal scale and the timestamp's
+     * offset count.
+     */
+    private static void assertSameRequest(TransactionRequestXml expected, TransactionRequestXml actual) {
+        assertEquals(expected.getTrxId(), actual.getTrxId());
+        assertEquals(expected.getBankId(), actual.getBankId());
+        assertEquals(expected.getCustomerId(), actual.getCustomerId());
+        assertEquals(expected.getFromAccount(), actual.getFromAccount());
+        assertEquals(expected.getToAccount(), actual.getToAccount());
+        assertEquals(expected.getAmount(), actual.getAmount());
+        assertEquals(expected.getCurrency(), actual.getCurrency());
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+    }
+}
@@ -0,0 +1,139 @@
+package org.example.server.service;
+
+import org.example.server.repository.AccountBalanceRepository;
+import org.example.server.service.AccountLedgerService.TransferRef;
+import org.example.server.service.AccountLedgerService.TransferResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Remote ledger calls must be safe to repeat, and no call may credit funds
+ * that its attempt did not debit first.
+ */
+class LedgerTransferRegistryTest {
+
+    private static final String A = "1111111111";
+    private static final String B = "2222222222";
+    private static final BigDecimal AMOUNT = new BigDecimal("10.00");
+
+    private AccountLedgerService ledger;
+    private LedgerTransferRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        ledger = new AccountLedgerService(new InMemoryBalances(), 4, 1000, "", 2000, "", 2000, false, 1, 1000,
+                1000, 64);
+        ledger.load();
+        registry = new LedgerTransferRegistry(ledger, 10, 1000);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        ledger.stop();
+    }
+
+    @Test
+    void repeatedTransferIsAppliedOnce() {
+        TransferRef ref = new TransferRef("TRX-1", "node-1");
+
+        assertEquals(TransferResult.OK, registry.transfer(ref, A, B, AMOUNT));
+        assertEquals(TransferResult.OK, registry.transfer(ref, A, B, AMOUNT));
+
+        assertBalances("90.00", "110.00");
+    }
+
+    @Test
+    void repeatedReversalUndoesTheTransferOnce() {
+        TransferRef ref = new TransferRef("TRX-1", "node-1");
+        registry.transfer(ref, A, B, AMOUNT);
+
+        registry.reverse(ref, A, B, AMOUNT);
+        registry.reverse(ref, A, B, AMOUNT);
+
+        assertBalances("100.00", "100.00");
+    }
+
+    @Test
+    void reversalWithoutTransferCreditsNothingAndCancelsIt() {
+        TransferRef ref = new TransferRef("TRX-1", "node-1");
+
+        registry.reverse(ref, A, B, AMOUNT);
+        assertBalances("100.00", "100.00");
+
+        assertEquals(TransferResult.UNAVAILABLE, registry.transfer(ref, A, B, AMOUNT));
+        assertBalances("100.00", "100.00");
+    }
+
+    @Test
+    void refusedTransferIsNotReversed() {
+        TransferRef ref = new TransferRef("TRX-1", "node-1");
+
+        assertEquals(TransferResult.INSUFFICIENT_FUNDS, registry.transfer(ref, A, B, new BigDecimal("500.00")));
+        registry.reverse(ref, A, B, new BigDecimal("500.00"));
+
+        assertBalances("100.00", "100.00");
+    }
+
+    @Test
+    void callsContradictingTheirAttemptAreRefused() {
+        TransferRef ref = new TransferRef("TRX-1", "node-1");
+        registry.transfer(ref, A, B, AMOUNT);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> registry.transfer(new TransferRef("TRX-2", "node-1"), A, B, AMOUNT));
+        assertThrows(IllegalArgumentException.class,
+                () -> registry.reverse(ref, B, A, AMOUNT));
+        assertThrows(IllegalArgumentException.class,
+                () -> registry.reverse(ref, A, B, new BigDecimal("90.00")));
+
+        assertBalances("90.00", "110.00");
+    }
+
+    private void assertBalances(String a, String b) {
+        assertEquals(0, new BigDecimal(a).compareTo(ledger.getBalance(A)), A);
+        assertEquals(0, new BigDecimal(b).compareTo(ledger.getBalance(B)), B);
+    }
+
+    private static final class InMemoryBalances implements AccountBalanceRepository {
+
+        @Override
+        public void forEachBalance(BiConsumer<String, BigDecimal> consumer) {
+            consumer.accept(A, new BigDecimal("100.00"));
+            consumer.accept(B, new BigDecimal("100.00"));
+        }
+
+        @Override
+        public boolean tryAcquireLedgerLock() {
+            return true;
+        }
+
+        @Override
+        public void releaseLedgerLock() {
+        }
+
+        @Override
+        public boolean isLedgerLockHeld() {
+            return true;
+        }
+
+        @Override
+        public void claimLedger(String owner) {
+        }
+
+        @Override
+        public boolean isLedgerOwner(String owner) {
+            return true;
+        }
+
+        @Override
+        public void foldDeltas() {
+        }
+    }
+}
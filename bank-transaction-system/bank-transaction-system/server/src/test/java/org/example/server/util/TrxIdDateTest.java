@@ -0,0 +1,115 @@
+package org.example.server.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * TrxIdDate must put an id of the bank clients' TransactionIdGenerator on
+ * the UTC day of the timestamp the generator encoded in it.
+ */
+class TrxIdDateTest {
+
+    // Mirror of the layout in the bank clients' TransactionIdGenerator, which
+    // the server cannot depend on; keep in sync with it.
+    private static final long EPOCH_MS = 1735689600000L; // 2025-01-01T00:00:00Z
+    private static final int SEQUENCE_BITS = 13;
+    private static final int NODE_SHIFT = SEQUENCE_BITS;
+    private static final int BANK_SHIFT = SEQUENCE_BITS + 5;
+    private static final int TIME_SHIFT = SEQUENCE_BITS + 5 + 5;
+    private static final long MAX_TIME = (1L << 40) - 1;
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "2025-01-01T00:00:00Z",
+            "2025-01-01T23:59:59.999Z",
+            "2025-01-02T00:00:00Z",
+            "2026-02-28T23:59:59.999Z",
+            "2028-02-29T12:00:00Z",
+            "2028-12-31T23:59:59.999Z",
+            "2029-01-01T00:00:00Z"
+    })
+    void dayIsTheUtcDayOfTheEncodedTimestamp(String instant) {
+        long time = Instant.parse(instant).toEpochMilli() - EPOCH_MS;
+        for (int bank : new int[]{0, 1, 2, 31}) {
+            for (int node : new int[]{0, 31}) {
+                for (long sequence : new long[]{0, (1L << SEQUENCE_BITS) - 1}) {
+                    long id = id(time, bank, node, sequence);
+
+                    assertEquals(dayOf(timestampOf(id)), TrxIdDate.of(format(id)), format(id));
+                }
+            }
+        }
+    }
+
+    @Test
+    void randomIdsMatchTheirTimestamp() {
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < 100_000; i++) {
+            long id = id(random.nextLong(MAX_TIME + 1), random.nextInt(32), random.nextInt(32),
+                    random.nextLong(1L << SEQUENCE_BITS));
+
+            assertEquals(dayOf(timestampOf(id)), TrxIdDate.of(format(id)), format(id));
+        }
+    }
+
+    @Test
+    void lastRepresentableTimestamp() {
+        long id = id(MAX_TIME, 31, 31, (1L << SEQUENCE_BITS) - 1);
+
+        assertEquals(Long.MAX_VALUE, id);
+        assertEquals(dayOf(timestampOf(id)), TrxIdDate.of(format(id)));
+    }
+
+    @Test
+    void datedIds() {
+        assertEquals(LocalDate.of(2024, 5, 1), TrxIdDate.of("TRX-20240501-000001"));
+        assertEquals(LocalDate.of(2024, 2, 29), TrxIdDate.of("TRX-20240229-A"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "",
+            "A-20240501-000001",
+            "TRX-",
+            "TRX-20240501",
+            "TRX-20240230-000001",
+            "TRX-2024050X-000001",
+            "TRX-123",
+            "TRX-9999999999999999999",
+            "TRX-000000000000000000a"
+    })
+    void otherIdsAreUndated(String trxId) {
+        assertEquals(TrxIdDate.UNDATED, TrxIdDate.of(trxId));
+    }
+
+    @Test
+    void nullIsUndated() {
+        assertEquals(TrxIdDate.UNDATED, TrxIdDate.of(null));
+    }
+
+    private static long id(long time, int bank, int node, long sequence) {
+        return (time << TIME_SHIFT) | ((long) bank << BANK_SHIFT) | ((long) node << NODE_SHIFT) | sequence;
+    }
+
+    /** As TransactionIdGenerator.format(). */
+    private static String format(long id) {
+        return "TRX-" + String.format("%019d", id);
+    }
+
+    /** As TransactionIdGenerator.timestampOf(). */
+    private static long timestampOf(long id) {
+        return (id >>> TIME_SHIFT) + EPOCH_MS;
+    }
+
+    private static LocalDate dayOf(long epochMs) {
+        return Instant.ofEpochMilli(epochMs).atZone(ZoneOffset.UTC).toLocalDate();
+    }
+}